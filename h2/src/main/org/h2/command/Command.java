@@ -8,6 +8,7 @@
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Set;
 import org.h2.api.ErrorCode;
 import org.h2.engine.Constants;
@@ -124,6 +125,28 @@ public abstract class Command implements CommandInterface {
      */
     public abstract ResultInterface query(long maxrows);
 
+    /**
+     * Check whether {@link #updateBatch(ArrayList)} can be used for this
+     * command.
+     *
+     * @return whether all parameter sets of a batch can be executed at once
+     */
+    protected boolean isBatchUpdateSupported() {
+        return false;
+    }
+
+    /**
+     * Execute an updating statement once for each parameter set of a batch, as
+     * a single operation. This is only supported for statements that update
+     * exactly one row for each parameter set.
+     *
+     * @param batchParameters the parameter sets
+     * @return the update count
+     */
+    protected long updateBatch(ArrayList<Value[]> batchParameters) {
+        throw DbException.getInternalError(toString());
+    }
+
     @Override
     public final ResultInterface getMetaData() {
         return queryMeta();
@@ -245,7 +268,7 @@ public ResultWithGeneratedKeys executeUpdate(Object generatedKeysRequest) {
         session.lock();
         try {
             session.waitIfExclusiveModeEnabled();
-            return executeUpdate(generatedKeysRequest, true);
+            return executeUpdate(null, generatedKeysRequest, true);
         } finally {
             session.unlock();
         }
@@ -260,6 +283,27 @@ public BatchResult executeBatchUpdate(ArrayList<Value[]> batchParameters, Object
             long[] updateCounts = new long[size];
             MergedResult generatedKeys = generatedKeysRequest != null ? new MergedResult() : null;
             ArrayList<SQLException> exceptions = new ArrayList<>();
+            if (size > 1 && (generatedKeysRequest == null || Boolean.FALSE.equals(generatedKeysRequest))
+                    && isBatchUpdateSupported()) {
+                try {
+                    executeUpdate(batchParameters, null, true);
+                    Arrays.fill(updateCounts, 1L);
+                    return new BatchResult(updateCounts, generatedKeys != null ? generatedKeys.getResult() : null,
+                            exceptions);
+                } catch (DbException e) {
+                    if (e.getErrorCode() == ErrorCode.DEADLOCK_1 || e.getSuppressed().length > 0) {
+                        // the whole transaction was rolled back, or the
+                        // rollback to the savepoint failed
+                        Arrays.fill(updateCounts, Statement.EXECUTE_FAILED);
+                        exceptions.add(DbException.toSQLException(e));
+                        return new BatchResult(updateCounts, generatedKeys != null ? generatedKeys.getResult() : null,
+                                exceptions);
+                    }
+                    // the changes of the batch were rolled back to the
+                    // savepoint, execute the parameter sets one by one to find
+                    // out which ones fail
+                }
+            }
             for (int i = 0; i < size; i++) {
                 Value[] set = batchParameters.get(i);
                 ArrayList<? extends ParameterInterface> parameters = getParameters();
@@ -268,7 +312,7 @@ public BatchResult executeBatchUpdate(ArrayList<Value[]> batchParameters, Object
                 }
                 long updateCount;
                 try {
-                    ResultWithGeneratedKeys result = executeUpdate(generatedKeysRequest, i + 1 == size);
+                    ResultWithGeneratedKeys result = executeUpdate(null, generatedKeysRequest, i + 1 == size);
                     updateCount = result.getUpdateCount();
                     if (generatedKeys != null) {
                         ResultInterface keys = result.getGeneratedKeys();
@@ -288,7 +332,8 @@ public BatchResult executeBatchUpdate(ArrayList<Value[]> batchParameters, Object
         }
     }
 
-    private ResultWithGeneratedKeys executeUpdate(Object generatedKeysRequest, boolean commitIfAutoCommit) {
+    private ResultWithGeneratedKeys executeUpdate(ArrayList<Value[]> batchParameters, Object generatedKeysRequest,
+            boolean commitIfAutoCommit) {
         long start = 0;
         boolean callStop = true;
         Database database = getDatabase();
@@ -301,7 +346,8 @@ private ResultWithGeneratedKeys executeUpdate(Object generatedKeysRequest, boole
             while (true) {
                 database.checkPowerOff();
                 try {
-                    return update(generatedKeysRequest);
+                    return batchParameters != null ? ResultWithGeneratedKeys.of(updateBatch(batchParameters))
+                            : update(generatedKeysRequest);
                 } catch (DbException e) {
                     // cannot retry some commands
                     if (!isRetryable()) {
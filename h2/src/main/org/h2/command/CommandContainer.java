@@ -12,6 +12,7 @@
 import org.h2.api.DatabaseEventListener;
 import org.h2.api.ErrorCode;
 import org.h2.command.dml.DataChangeStatement;
+import org.h2.command.dml.Insert;
 import org.h2.engine.Database;
 import org.h2.engine.DbObject;
 import org.h2.engine.DbSettings;
@@ -212,6 +213,23 @@ private ResultWithGeneratedKeys executeUpdateWithGeneratedKeys(DataChangeStateme
                 statement.update(new GeneratedKeysCollector(indexes, result), ResultOption.FINAL), result);
     }
 
+    @Override
+    protected boolean isBatchUpdateSupported() {
+        return prepared instanceof Insert && ((Insert) prepared).isBatchSupported();
+    }
+
+    @Override
+    protected long updateBatch(ArrayList<Value[]> batchParameters) {
+        recompileIfRequired();
+        Database database = getDatabase();
+        setProgress(database, DatabaseEventListener.STATE_STATEMENT_START);
+        start();
+        long updateCount = ((Insert) prepared).insertBatch(batchParameters);
+        prepared.trace(database, startTimeNanos, updateCount);
+        setProgress(database, DatabaseEventListener.STATE_STATEMENT_END);
+        return updateCount;
+    }
+
     @Override
     public ResultInterface query(long maxrows) {
         recompileIfRequired();
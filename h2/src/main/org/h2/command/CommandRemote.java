@@ -9,6 +9,7 @@
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Objects;
 
 import org.h2.engine.Constants;
 import org.h2.engine.GeneratedKeysMode;
@@ -39,13 +40,18 @@ public class CommandRemote implements CommandInterface {
     private final ArrayList<ParameterInterface> parameters;
     private final Trace trace;
     private final String sql;
-    private final int fetchSize;
+    private int fetchSize;
     private SessionRemote session;
     private int id;
     private boolean isQuery;
     private int cmdType = UNKNOWN;
     private boolean readonly;
     private final int created;
+    private boolean cacheable;
+    private boolean canReuse;
+    private ResultRemote metaData;
+    private int metaDataId;
+    private long metaDataSchemaVersion;
 
     public CommandRemote(SessionRemote session,
             ArrayList<Transfer> transferList, String sql, int fetchSize) {
@@ -85,7 +91,14 @@ private void prepare(SessionRemote s, boolean createParams) {
                 isQuery = transfer.readBoolean();
                 readonly = transfer.readBoolean();
 
-                cmdType = createParams ? transfer.readInt() : UNKNOWN;
+                if (createParams) {
+                    cmdType = transfer.readInt();
+                    if (s.getClientVersion() >= Constants.TCP_PROTOCOL_VERSION_24) {
+                        cacheable = transfer.readBoolean();
+                    }
+                } else {
+                    cmdType = UNKNOWN;
+                }
 
                 int paramCount = transfer.readInt();
                 if (createParams) {
@@ -132,6 +145,9 @@ public ResultInterface getMetaData() {
             if (!isQuery) {
                 return null;
             }
+            if (metaData != null && metaDataId == id && metaDataSchemaVersion == session.getSchemaVersion()) {
+                return metaData;
+            }
             int objectId = session.getNextId();
             ResultRemote result = null;
             for (int i = 0, count = 0; i < transferList.size(); i++) {
@@ -151,6 +167,14 @@ public ResultInterface getMetaData() {
                 }
             }
             session.autoCommitIfCluster();
+            if (result != null && session.isCommandCacheEnabled()) {
+                // the meta data result has no rows and is already closed on
+                // the server, so it can be returned again until the command
+                // is prepared again or the schema is changed
+                metaData = result;
+                metaDataId = id;
+                metaDataSchemaVersion = session.getSchemaVersion();
+            }
             return result;
         } finally {
             session.unlock();
@@ -196,12 +220,30 @@ public ResultInterface executeQuery(long maxRows, boolean scrollable) {
             }
             session.autoCommitIfCluster();
             session.readSessionState();
+            if (metaData != null && result != null && !hasSameColumns(metaData, result)) {
+                // the command was re-compiled by a change that the schema
+                // version doesn't reflect
+                metaData = null;
+            }
             return result;
         } finally {
             session.unlock();
         }
     }
 
+    private static boolean hasSameColumns(ResultInterface a, ResultInterface b) {
+        int columnCount = a.getVisibleColumnCount();
+        if (columnCount != b.getVisibleColumnCount()) {
+            return false;
+        }
+        for (int i = 0; i < columnCount; i++) {
+            if (!Objects.equals(a.getAlias(i), b.getAlias(i)) || !a.getColumnType(i).equals(b.getColumnType(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     @Override
     public ResultWithGeneratedKeys executeUpdate(Object generatedKeysRequest) {
         checkParameters();
@@ -274,10 +316,14 @@ public BatchResult executeBatchUpdate(ArrayList<Value[]> batchParameters, Object
                         session.traceOperation("COMMAND_EXECUTE_BATCH_UPDATE", id);
                         transfer.writeInt(SessionRemote.COMMAND_EXECUTE_BATCH_UPDATE).writeInt(id);
                         transfer.writeInt(size);
-                        for (Value[] parameters : batchParameters) {
-                            int len = parameters.length;
-                            transfer.writeInt(len);
-                            sendParameters(transfer, parameters);
+                        if (transfer.getVersion() >= Constants.TCP_PROTOCOL_VERSION_23) {
+                            sendBatchParameters(transfer, batchParameters);
+                        } else {
+                            for (Value[] parameters : batchParameters) {
+                                int len = parameters.length;
+                                transfer.writeInt(len);
+                                sendParameters(transfer, parameters);
+                            }
                         }
                         sendGeneratedKeysRequest(generatedKeysRequest, generatedKeysMode, transfer);
                         session.done(transfer);
@@ -366,6 +412,23 @@ private void sendParameters(Transfer transfer, Value[] parameters) throws IOExce
         }
     }
 
+    private void sendBatchParameters(Transfer transfer, ArrayList<Value[]> batchParameters) throws IOException {
+        int size = batchParameters.size();
+        int len = size > 0 ? batchParameters.get(0).length : 0;
+        transfer.writeInt(len);
+        Value[] column = new Value[size];
+        for (int j = 0; j < len; j++) {
+            for (int i = 0; i < size; i++) {
+                Value pVal = batchParameters.get(i)[j];
+                if (pVal == null && cmdType == EXPLAIN) {
+                    pVal = ValueNull.INSTANCE;
+                }
+                column[i] = pVal;
+            }
+            transfer.writeValueColumn(column);
+        }
+    }
+
     private static void sendGeneratedKeysRequest(Object generatedKeysRequest, int generatedKeysMode, Transfer transfer)
             throws IOException {
         transfer.writeInt(generatedKeysMode);
@@ -391,6 +454,31 @@ private static void sendGeneratedKeysRequest(Object generatedKeysRequest, int ge
 
     @Override
     public void close() {
+        final SessionRemote session = this.session;
+        if (session == null || session.isClosed()) {
+            return;
+        }
+        session.lock();
+        try {
+            if (session.isCommandCached(this)) {
+                // keep the command prepared on the server
+                removeParameterValues();
+                for (ParameterInterface p : parameters) {
+                    p.setValue(null, false);
+                }
+                canReuse = true;
+                return;
+            }
+        } finally {
+            session.unlock();
+        }
+        closeRemote();
+    }
+
+    /**
+     * Close the command on the server, even if it is cached by the session.
+     */
+    public void closeRemote() {
         final SessionRemote session = this.session;
         if (session == null || session.isClosed()) {
             return;
@@ -409,6 +497,13 @@ public void close() {
             session.unlock();
         }
         this.session = null;
+        canReuse = false;
+        metaData = null;
+        removeParameterValues();
+        parameters.clear();
+    }
+
+    private void removeParameterValues() {
         try {
             for (ParameterInterface p : parameters) {
                 Value v = p.getParamValue();
@@ -419,7 +514,65 @@ public void close() {
         } catch (DbException e) {
             trace.error(e, "close");
         }
-        parameters.clear();
+    }
+
+    /**
+     * Check if this command may be cached by the session and re-used after it
+     * was closed.
+     *
+     * @return true if it may be cached
+     */
+    public boolean isCacheable() {
+        return cacheable;
+    }
+
+    /**
+     * Check if this command was closed, but is still prepared on the server,
+     * so that it can be re-used.
+     *
+     * @return true if it can be re-used
+     */
+    public boolean canReuse() {
+        return canReuse && session != null;
+    }
+
+    /**
+     * Re-use a closed command that is still prepared on the server. If the
+     * command is old, it is mapped to a new id, so that the server does not
+     * remove it from its cache.
+     *
+     * @param fetchSize the fetch size
+     */
+    public void reuse(int fetchSize) {
+        canReuse = false;
+        this.fetchSize = fetchSize;
+        final SessionRemote session = this.session;
+        int currentId = session.getCurrentId();
+        if (session.getLastReconnect() == created && id > currentId - SysProperties.SERVER_CACHED_OBJECTS
+                && id <= currentId - SysProperties.SERVER_CACHED_OBJECTS / 2) {
+            int newId = session.getNextId();
+            session.traceOperation("CHANGE_ID", id);
+            for (int i = 0, count = 0; i < transferList.size(); i++) {
+                try {
+                    transferList.get(i).writeInt(SessionRemote.CHANGE_ID).writeInt(id).writeInt(newId);
+                } catch (IOException e) {
+                    session.removeServer(e, i--, ++count);
+                }
+            }
+            if (metaDataId == id) {
+                metaDataId = newId;
+            }
+            id = newId;
+        }
+    }
+
+    /**
+     * Get the SQL statement.
+     *
+     * @return the SQL statement
+     */
+    public String getSQL() {
+        return sql;
     }
 
     /**
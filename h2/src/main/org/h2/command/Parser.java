@@ -786,6 +786,10 @@ private Prepared parseBackup() {
         BackupCommand command = new BackupCommand(session);
         read(TO);
         command.setFileName(readExpression());
+        if (readIf("INCREMENTAL")) {
+            read(FROM);
+            command.setPreviousFileName(readExpression());
+        }
         return command;
     }
 
@@ -6529,18 +6533,20 @@ private Prepared parseCreate() {
                 read(CLOSE_PAREN);
             } else {
                 columns = parseIndexColumnList();
-                if (nullsDistinct != null) {
-                    uniqueColumnCount = columns.length;
-                    if (readIf("INCLUDE")) {
-                        read(OPEN_PAREN);
-                        IndexColumn[] columnsToInclude = parseIndexColumnList();
-                        int nonUniqueCount = columnsToInclude.length;
-                        columns = Arrays.copyOf(columns, uniqueColumnCount + nonUniqueCount);
-                        System.arraycopy(columnsToInclude, 0, columns, uniqueColumnCount, nonUniqueCount);
-                    }
-                } else if (primaryKey) {
+                if (nullsDistinct != null || primaryKey) {
                     uniqueColumnCount = columns.length;
                 }
+                if (!primaryKey && readIf("INCLUDE")) {
+                    read(OPEN_PAREN);
+                    IndexColumn[] columnsToInclude = parseIndexColumnList();
+                    int keyColumnCount = columns.length, includedColumnCount = columnsToInclude.length;
+                    columns = Arrays.copyOf(columns, keyColumnCount + includedColumnCount);
+                    System.arraycopy(columnsToInclude, 0, columns, keyColumnCount, includedColumnCount);
+                    command.setIncludedColumnCount(includedColumnCount);
+                }
+            }
+            if (!primaryKey && readIf(WHERE)) {
+                command.setCondition(readExpression());
             }
             command.setIndexColumns(columns);
             command.setUnique(nullsDistinct, uniqueColumnCount);
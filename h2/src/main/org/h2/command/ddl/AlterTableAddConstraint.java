@@ -113,7 +113,11 @@ private int tryUpdate(Table table) {
             constraintName = null;
         }
         Database db = getDatabase();
-        db.lockMeta(session);
+        if (!table.isTemporary() || table.isGlobalTemporary()
+                || type == CommandInterface.ALTER_TABLE_ADD_CONSTRAINT_REFERENTIAL) {
+            // constraints of local temporary tables are stored in the session
+            db.lockMeta(session);
+        }
         table.lock(session, Table.EXCLUSIVE_LOCK);
         Constraint constraint;
         switch (type) {
@@ -400,7 +404,7 @@ private static Index getIndex(Table t, IndexColumn[] cols, NullsDistinct nullsDi
     }
 
     private static boolean canUseIndex(Index index, Table table, IndexColumn[] cols, NullsDistinct nullsDistinct) {
-        if (index.getTable() != table) {
+        if (index.getTable() != table || index.getIndexType().getCondition() != null) {
             return false;
         }
         int allowedColumns;
@@ -12,11 +12,24 @@
 import org.h2.engine.Right;
 import org.h2.engine.SessionLocal;
 import org.h2.engine.NullsDistinct;
+import org.h2.expression.Expression;
+import org.h2.expression.ExpressionColumn;
+import org.h2.expression.ExpressionVisitor;
+import org.h2.expression.condition.BetweenPredicate;
+import org.h2.expression.condition.Comparison;
+import org.h2.expression.condition.ConditionAndOr;
+import org.h2.expression.condition.ConditionAndOrN;
+import org.h2.expression.condition.ConditionInConstantSet;
+import org.h2.expression.condition.ConditionInList;
+import org.h2.expression.condition.NullPredicate;
+import org.h2.index.IndexCondition;
 import org.h2.index.IndexType;
 import org.h2.message.DbException;
 import org.h2.schema.Schema;
 import org.h2.table.IndexColumn;
 import org.h2.table.Table;
+import org.h2.table.TableFilter;
+import org.h2.table.TableType;
 
 /**
  * This class represents the statement
@@ -29,10 +42,12 @@ public class CreateIndex extends SchemaCommand {
     private IndexColumn[] indexColumns;
     private NullsDistinct nullsDistinct;
     private int uniqueColumnCount;
+    private int includedColumnCount;
     private boolean primaryKey, hash, spatial;
     private boolean ifTableExists;
     private boolean ifNotExists;
     private String comment;
+    private Expression condition;
 
     public CreateIndex(SessionLocal session, Schema schema) {
         super(session, schema);
@@ -101,11 +116,87 @@ public long update() {
         } else {
             indexType = IndexType.createNonUnique(persistent, hash, spatial);
         }
+        indexType.setIncludedColumnCount(includedColumnCount);
         IndexColumn.mapColumns(indexColumns, table);
+        if (condition != null) {
+            if (primaryKey || spatial || table.getTableType() != TableType.TABLE) {
+                throw DbException.getUnsupportedException("Partial index on " + table.getTraceSQL());
+            }
+            // the filter is kept with the index, it must not refer to the
+            // session of this command
+            TableFilter filter = new TableFilter(session.getDatabase().getSystemSession(), table, null, true,
+                    null, 0, null);
+            condition.mapColumns(filter, 0, Expression.MAP_INITIAL);
+            condition = condition.optimize(session);
+            if (!condition.isEverything(ExpressionVisitor.DETERMINISTIC_VISITOR)) {
+                throw DbException.getUnsupportedException("Partial index condition " + condition.getTraceSQL());
+            }
+            addIndexConditions(filter, condition);
+            indexType.setCondition(condition, filter.getIndexConditions());
+        }
         table.addIndex(session, indexName, id, indexColumns, uniqueColumnCount, indexType, create, comment);
         return 0;
     }
 
+    /**
+     * Creates index conditions from the specified part of the condition of a
+     * partial index. The condition should be a conjunction of simple
+     * predicates that are fully represented by index conditions, otherwise the
+     * optimizer wouldn't be able to find out which queries may use the index.
+     *
+     * @param filter the table filter
+     * @param e the condition or its part
+     */
+    private void addIndexConditions(TableFilter filter, Expression e) {
+        if (e instanceof ConditionAndOr && ((ConditionAndOr) e).getAndOrType() == ConditionAndOr.AND
+                || e instanceof ConditionAndOrN && ((ConditionAndOrN) e).getAndOrType() == ConditionAndOr.AND) {
+            for (int i = 0, l = e.getSubexpressionCount(); i < l; i++) {
+                addIndexConditions(filter, e.getSubexpression(i));
+            }
+            return;
+        }
+        if (e instanceof Comparison || e instanceof NullPredicate || e instanceof BetweenPredicate
+                || e instanceof ConditionInList || e instanceof ConditionInConstantSet) {
+            int columnCount = 0;
+            boolean constant = true;
+            for (int i = 0, l = e.getSubexpressionCount(); i < l; i++) {
+                Expression sub = e.getSubexpression(i);
+                if (sub instanceof ExpressionColumn) {
+                    columnCount++;
+                } else if (!sub.isConstant()) {
+                    constant = false;
+                }
+            }
+            if (columnCount == 1 && constant) {
+                int start = filter.getIndexConditions().size();
+                e.createIndexConditions(session, filter);
+                int end = filter.getIndexConditions().size();
+                if (end > start && (!(e instanceof Comparison) || end == start + 1)) {
+                    boolean supported = true;
+                    for (int i = start; i < end; i++) {
+                        IndexCondition c = filter.getIndexConditions().get(i);
+                        switch (c.getCompareType()) {
+                        case Comparison.EQUAL:
+                        case Comparison.EQUAL_NULL_SAFE:
+                        case Comparison.BIGGER_EQUAL:
+                        case Comparison.BIGGER:
+                        case Comparison.SMALLER_EQUAL:
+                        case Comparison.SMALLER:
+                        case Comparison.IN_LIST:
+                            break;
+                        default:
+                            supported = false;
+                        }
+                    }
+                    if (supported) {
+                        return;
+                    }
+                }
+            }
+        }
+        throw DbException.getUnsupportedException("Partial index condition " + e.getTraceSQL());
+    }
+
     public void setPrimaryKey(boolean b) {
         this.primaryKey = b;
     }
@@ -115,6 +206,14 @@ public void setUnique(NullsDistinct nullsDistinct, int uniqueColumnCount) {
         this.uniqueColumnCount = uniqueColumnCount;
     }
 
+    public void setIncludedColumnCount(int includedColumnCount) {
+        this.includedColumnCount = includedColumnCount;
+    }
+
+    public void setCondition(Expression condition) {
+        this.condition = condition;
+    }
+
     public void setHash(boolean b) {
         this.hash = b;
     }
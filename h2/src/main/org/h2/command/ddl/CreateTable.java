@@ -154,7 +154,7 @@ public long update() {
                 }
             }
             if (asQuery != null && !withNoData) {
-                insertAsData(isSessionTemporary, db, table);
+                insertAsData(isSessionTemporary, db, table, !transactional);
             }
         } catch (DbException e) {
             try {
@@ -173,11 +173,11 @@ public long update() {
 
     /** This is called from REFRESH MATERIALIZED VIEW */
     void insertAsData(Table table) {
-        insertAsData(false, getDatabase(), table);
+        insertAsData(false, getDatabase(), table, false);
     }
 
     /** Insert data for the CREATE TABLE .. AS */
-    private void insertAsData(boolean isSessionTemporary, Database db, Table table) {
+    private void insertAsData(boolean isSessionTemporary, Database db, Table table, boolean directLoad) {
         boolean flushSequences = false;
         if (!isSessionTemporary) {
             db.unlockMeta(session);
@@ -195,6 +195,7 @@ private void insertAsData(boolean isSessionTemporary, Database db, Table table)
             insert.setQuery(asQuery);
             insert.setTable(table);
             insert.setInsertFromSelect(true);
+            insert.setDirectLoad(directLoad);
             insert.prepare();
             insert.update();
         } finally {
@@ -118,7 +118,9 @@ private void executeDrop() {
             if (table != null) {
                 table.setModified();
                 Database db = getDatabase();
-                db.lockMeta(session);
+                if (!table.isTemporary() || table.isGlobalTemporary()) {
+                    db.lockMeta(session);
+                }
                 db.removeSchemaObject(session, table);
             }
         }
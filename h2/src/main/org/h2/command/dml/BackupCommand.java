@@ -8,6 +8,8 @@
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
 import org.h2.api.ErrorCode;
 import org.h2.command.CommandInterface;
@@ -17,6 +19,7 @@
 import org.h2.engine.SessionLocal;
 import org.h2.expression.Expression;
 import org.h2.message.DbException;
+import org.h2.mvstore.BackupManifest;
 import org.h2.mvstore.db.Store;
 import org.h2.result.ResultInterface;
 import org.h2.store.FileLister;
@@ -30,6 +33,8 @@ public class BackupCommand extends Prepared {
 
     private Expression fileNameExpr;
 
+    private Expression previousFileNameExpr;
+
     public BackupCommand(SessionLocal session) {
         super(session);
     }
@@ -38,19 +43,26 @@ public void setFileName(Expression fileName) {
         this.fileNameExpr = fileName;
     }
 
+    public void setPreviousFileName(Expression previousFileName) {
+        this.previousFileNameExpr = previousFileName;
+    }
+
     @Override
     public long update() {
         String name = fileNameExpr.getValue(session).getString();
+        String previousName = previousFileNameExpr == null ? null
+                : previousFileNameExpr.getValue(session).getString();
         session.getUser().checkAdmin();
-        backupTo(name);
+        backupTo(name, previousName);
         return 0;
     }
 
-    private void backupTo(String fileName) {
+    private void backupTo(String fileName, String previousFileName) {
         Database db = getDatabase();
         if (!db.isPersistent()) {
             throw DbException.get(ErrorCode.DATABASE_IS_NOT_PERSISTENT);
         }
+        BackupManifest previous = previousFileName == null ? null : readManifest(previousFileName);
         try {
             Store store = db.getStore();
             store.flush();
@@ -68,7 +80,7 @@ private void backupTo(String fileName) {
                     ArrayList<String> fileList = FileLister.getDatabaseFiles(dir, name, true);
                     for (String n : fileList) {
                         if (n.endsWith(Constants.SUFFIX_MV_FILE)) {
-                            store.getMvStore().getFileStore().backup(out);
+                            store.getMvStore().getFileStore().backup(out, previous);
                         }
                     }
                 }
@@ -79,6 +91,29 @@ private void backupTo(String fileName) {
         }
     }
 
+    /**
+     * Read the manifest of the database file from a backup.
+     *
+     * @param fileName the file name of the backup
+     * @return the manifest
+     */
+    private static BackupManifest readManifest(String fileName) {
+        if (!FileUtils.exists(fileName)) {
+            throw DbException.get(ErrorCode.FILE_NOT_FOUND_1, fileName);
+        }
+        try (ZipInputStream in = new ZipInputStream(FileUtils.newInputStream(fileName))) {
+            for (ZipEntry entry; (entry = in.getNextEntry()) != null;) {
+                if (entry.getName().endsWith(Constants.SUFFIX_MV_FILE + BackupManifest.SUFFIX)) {
+                    return BackupManifest.read(in);
+                }
+            }
+        } catch (IOException e) {
+            throw DbException.convertIOException(e, fileName);
+        }
+        // backups created by older versions do not contain a manifest
+        throw DbException.get(ErrorCode.FILE_CORRUPTED_1, fileName);
+    }
+
     @Override
     public boolean isTransactional() {
         return true;
@@ -5,6 +5,7 @@
  */
 package org.h2.command.dml;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map.Entry;
@@ -14,6 +15,7 @@
 import org.h2.command.Command;
 import org.h2.command.CommandInterface;
 import org.h2.command.query.Query;
+import org.h2.engine.Constants;
 import org.h2.engine.DbObject;
 import org.h2.engine.Right;
 import org.h2.engine.SessionLocal;
@@ -58,6 +60,11 @@ public final class Insert extends CommandWithValues implements ResultTarget {
 
     private Value[] onDuplicateKeyRow;
 
+    /**
+     * The parameter sets of a batch that is executed at once, or {@code null}.
+     */
+    private ArrayList<Value[]> batchParameters;
+
     /**
      * For MySQL-style INSERT IGNORE and PostgreSQL-style ON CONFLICT DO
      * NOTHING.
@@ -68,6 +75,17 @@ public final class Insert extends CommandWithValues implements ResultTarget {
 
     private ResultOption deltaChangeCollectionMode;
 
+    /**
+     * Rows that were checked and wait to be added to the table, or
+     * {@code null} if rows are added one by one.
+     */
+    private ArrayList<Row> batch;
+
+    /**
+     * Whether a direct-path load into a new empty table may be used.
+     */
+    private boolean directLoad;
+
     public Insert(SessionLocal session) {
         super(session);
     }
@@ -139,60 +157,65 @@ public long update(ResultTarget deltaChangeCollector, ResultOption deltaChangeCo
         }
     }
 
+    /**
+     * Check whether {@link #insertBatch(ArrayList)} can be used. This is the
+     * case if this statement inserts exactly one row for each execution and
+     * the table has no triggers. Triggers must be fired once for each
+     * execution, but a failed batch is executed again row by row.
+     *
+     * @return whether a batch of parameter sets can be inserted at once
+     */
+    public boolean isBatchSupported() {
+        return query == null && valuesExpressionList.size() == 1 && duplicateKeyAssignmentMap == null && !ignore
+                && table.isBatchInsertAllowed();
+    }
+
+    /**
+     * Insert one row for each parameter set of a batch. The rows are added to
+     * the table in batches if possible.
+     *
+     * @param batchParameters the parameter sets
+     * @return the number of inserted rows
+     */
+    public long insertBatch(ArrayList<Value[]> batchParameters) {
+        this.batchParameters = batchParameters;
+        try {
+            return insertRows();
+        } finally {
+            this.batchParameters = null;
+        }
+    }
+
     private long insertRows() {
         session.getUser().checkTableRight(table, Right.INSERT);
         setCurrentRowNumber(0);
         table.fire(session, Trigger.INSERT, true);
         rowNumber = 0;
         int listSize = valuesExpressionList.size();
-        if (listSize > 0) {
-            int columnLen = columns.length;
-            for (int x = 0; x < listSize; x++) {
-                Row newRow = table.getTemplateRow();
-                Expression[] expr = valuesExpressionList.get(x);
-                setCurrentRowNumber(x + 1);
-                for (int i = 0; i < columnLen; i++) {
-                    Column c = columns[i];
-                    int index = c.getColumnId();
-                    Expression e = expr[i];
-                    if (e != ValueExpression.DEFAULT) {
-                        try {
-                            newRow.setValue(index, e.getValue(session));
-                        } catch (DbException ex) {
-                            throw setRow(ex, x, getSimpleSQL(expr));
-                        }
-                    }
-                }
-                rowNumber++;
-                table.convertInsertRow(session, newRow, overridingSystem);
-                if (deltaChangeCollectionMode == ResultOption.NEW) {
-                    deltaChangeCollector.addRow(newRow.getValueList().clone());
-                }
-                if (!table.fireBeforeRow(session, null, newRow)) {
-                    table.lock(session, Table.WRITE_LOCK);
-                    try {
-                        table.addRow(session, newRow);
-                    } catch (DbException de) {
-                        if (handleOnDuplicate(de, null)) {
-                            // MySQL returns 2 for updated row
-                            // TODO: detect no-op change
-                            rowNumber++;
-                        } else {
-                            // INSERT IGNORE case
-                            rowNumber--;
-                        }
-                        continue;
-                    }
-                    DataChangeDeltaTable.collectInsertedFinalRow(session, table, deltaChangeCollector,
-                            deltaChangeCollectionMode, newRow);
-                    table.fireAfterRow(session, null, newRow, false);
-                } else {
-                    DataChangeDeltaTable.collectInsertedFinalRow(session, table, deltaChangeCollector,
-                            deltaChangeCollectionMode, newRow);
+        boolean direct = false;
+        batch = (listSize != 1 || batchParameters != null) && duplicateKeyAssignmentMap == null && !ignore
+                && table.isBatchInsertAllowed() ? new ArrayList<>() : null;
+        if (batchParameters != null) {
+            Expression[] expr = valuesExpressionList.get(0);
+            for (int x = 0, size = batchParameters.size(); x < size; x++) {
+                Value[] set = batchParameters.get(x);
+                for (int i = 0, l = set.length; i < l; i++) {
+                    parameters.get(i).setValue(set[i]);
                 }
+                checkParameters();
+                insertValues(expr, x);
+            }
+        } else if (listSize > 0) {
+            for (int x = 0; x < listSize; x++) {
+                insertValues(valuesExpressionList.get(x), x);
             }
         } else {
-            table.lock(session, Table.WRITE_LOCK);
+            if (directLoad && batch != null) {
+                table.lock(session, Table.EXCLUSIVE_LOCK);
+                direct = table.startDirectLoad(session);
+            } else {
+                table.lock(session, Table.WRITE_LOCK);
+            }
             if (insertFromSelect) {
                 query.query(0, this);
             } else {
@@ -215,10 +238,85 @@ private long insertRows() {
                 }
             }
         }
+        if (batch != null) {
+            addBatch();
+            batch = null;
+        }
+        if (direct) {
+            table.endDirectLoad(session);
+        }
         table.fire(session, Trigger.INSERT, false);
         return rowNumber;
     }
 
+    private void insertValues(Expression[] expr, int x) {
+        Row newRow = table.getTemplateRow();
+        setCurrentRowNumber(x + 1);
+        for (int i = 0, columnLen = columns.length; i < columnLen; i++) {
+            Column c = columns[i];
+            int index = c.getColumnId();
+            Expression e = expr[i];
+            if (e != ValueExpression.DEFAULT) {
+                try {
+                    newRow.setValue(index, e.getValue(session));
+                } catch (DbException ex) {
+                    throw setRow(ex, x, getSimpleSQL(expr));
+                }
+            }
+        }
+        rowNumber++;
+        table.convertInsertRow(session, newRow, overridingSystem);
+        if (deltaChangeCollectionMode == ResultOption.NEW) {
+            deltaChangeCollector.addRow(newRow.getValueList().clone());
+        }
+        if (!table.fireBeforeRow(session, null, newRow)) {
+            if (batch != null) {
+                addToBatch(newRow);
+                return;
+            }
+            table.lock(session, Table.WRITE_LOCK);
+            try {
+                table.addRow(session, newRow);
+            } catch (DbException de) {
+                if (handleOnDuplicate(de, null)) {
+                    // MySQL returns 2 for updated row
+                    // TODO: detect no-op change
+                    rowNumber++;
+                } else {
+                    // INSERT IGNORE case
+                    rowNumber--;
+                }
+                return;
+            }
+            DataChangeDeltaTable.collectInsertedFinalRow(session, table, deltaChangeCollector,
+                    deltaChangeCollectionMode, newRow);
+            table.fireAfterRow(session, null, newRow, false);
+        } else {
+            DataChangeDeltaTable.collectInsertedFinalRow(session, table, deltaChangeCollector,
+                    deltaChangeCollectionMode, newRow);
+        }
+    }
+
+    private void addToBatch(Row row) {
+        batch.add(row);
+        if (batch.size() >= Constants.INSERT_BATCH_SIZE) {
+            addBatch();
+        }
+    }
+
+    private void addBatch() {
+        if (!batch.isEmpty()) {
+            table.lock(session, Table.WRITE_LOCK);
+            table.addRows(session, batch);
+            for (Row row : batch) {
+                DataChangeDeltaTable.collectInsertedFinalRow(session, table, deltaChangeCollector,
+                        deltaChangeCollectionMode, row);
+                table.fireAfterRow(session, null, row, false);
+            }
+            batch.clear();
+        }
+    }
+
     @Override
     public void addRow(Value... values) {
         Row newRow = table.getTemplateRow();
@@ -231,6 +329,10 @@ public void addRow(Value... values) {
             deltaChangeCollector.addRow(newRow.getValueList().clone());
         }
         if (!table.fireBeforeRow(session, null, newRow)) {
+            if (batch != null) {
+                addToBatch(newRow);
+                return;
+            }
             table.addRow(session, newRow);
             DataChangeDeltaTable.collectInsertedFinalRow(session, table, deltaChangeCollector,
                     deltaChangeCollectionMode, newRow);
@@ -327,6 +429,17 @@ public void setInsertFromSelect(boolean value) {
         this.insertFromSelect = value;
     }
 
+    /**
+     * Allows a direct-path load, where rows are written bypassing the
+     * transaction and indexes are built after all rows are added. May be used
+     * only for a new table that is dropped if this command fails.
+     *
+     * @param directLoad whether a direct-path load may be used
+     */
+    public void setDirectLoad(boolean directLoad) {
+        this.directLoad = directLoad;
+    }
+
     @Override
     public boolean isCacheable() {
         return duplicateKeyAssignmentMap == null;
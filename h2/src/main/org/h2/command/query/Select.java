@@ -364,7 +364,8 @@ private Index getGroupSortedIndex() {
         }
         for (Index index : topTableFilter.getTable().getIndexes()) {
             IndexType indexType = index.getIndexType();
-            if (!indexType.isScan() && !indexType.isHash() && isGroupSortedIndex(topTableFilter, index)) {
+            if (!indexType.isScan() && !indexType.isHash() && indexType.getCondition() == null
+                    && isGroupSortedIndex(topTableFilter, index)) {
                 return index;
             }
         }
@@ -635,8 +636,9 @@ private List<IndexSort> getIndexSorts() {
         DefaultNullOrdering defaultNullOrdering = getDatabase().getDefaultNullOrdering();
         ArrayList<IndexSort> indexSorts = Utils.newSmallArrayList();
         loop: for (Index index : topTableFilter.getTable().getIndexes()) {
-            if (index.getCreateSQL() == null || index.getIndexType().isHash()) {
-                // can't use scan or hash indexes
+            if (index.getCreateSQL() == null || index.getIndexType().isHash()
+                    || index.getIndexType().getCondition() != null) {
+                // can't use scan, hash, or partial indexes
                 continue;
             }
             IndexColumn[] indexCols = index.getIndexColumns();
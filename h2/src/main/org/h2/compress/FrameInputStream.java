@@ -0,0 +1,108 @@
+/*
+ * Copyright 2004-2025 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (https://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.compress;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * An input stream to read the frames written by a {@link FrameOutputStream}.
+ * Compressed frames are expanded automatically.
+ */
+public class FrameInputStream extends InputStream {
+
+    private final DataInputStream in;
+    private final Compressor compressor;
+    private final byte[] buffer = new byte[FrameOutputStream.MAX_FRAME_LENGTH];
+    private byte[] inBuffer;
+    private int pos, limit;
+
+    /**
+     * Create a new stream.
+     *
+     * @param in the underlying stream
+     * @param compressor the compressor
+     */
+    public FrameInputStream(InputStream in, Compressor compressor) {
+        this.in = new DataInputStream(in);
+        this.compressor = compressor;
+    }
+
+    private boolean readFrame() throws IOException {
+        int ch = in.read();
+        if (ch < 0) {
+            return false;
+        }
+        int len = (ch << 24) | (in.readUnsignedByte() << 16) | (in.readUnsignedByte() << 8)
+                | in.readUnsignedByte();
+        if (len > 0) {
+            checkLength(len);
+            in.readFully(buffer, 0, len);
+        } else {
+            int compressed = -len;
+            len = in.readInt();
+            checkLength(len);
+            checkLength(compressed);
+            if (inBuffer == null) {
+                inBuffer = new byte[FrameOutputStream.MAX_FRAME_LENGTH];
+            }
+            in.readFully(inBuffer, 0, compressed);
+            compressor.expand(inBuffer, 0, compressed, buffer, 0, len);
+        }
+        pos = 0;
+        limit = len;
+        return true;
+    }
+
+    private static void checkLength(int len) throws IOException {
+        if (len <= 0 || len > FrameOutputStream.MAX_FRAME_LENGTH) {
+            throw new IOException("Corrupted frame length " + len);
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (pos >= limit && !readFrame()) {
+            return -1;
+        }
+        return buffer[pos++] & 255;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (pos >= limit && !readFrame()) {
+            return -1;
+        }
+        len = Math.min(len, limit - pos);
+        System.arraycopy(buffer, pos, b, off, len);
+        pos += len;
+        return len;
+    }
+
+    /**
+     * Get the number of bytes that are already expanded, or, if there are
+     * none, the number of bytes of the underlying stream that can be read
+     * without blocking.
+     *
+     * @return the number of bytes
+     * @throws IOException on failure
+     */
+    @Override
+    public int available() throws IOException {
+        int len = limit - pos;
+        return len > 0 ? len : in.available();
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2004-2025 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (https://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.compress;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * An output stream that writes the data in frames, and compresses frames that
+ * are large enough. A frame is written when the buffer is full, or when the
+ * stream is flushed, so that the data of one network round trip usually forms
+ * one frame.
+ * <p>
+ * Each frame starts with a length. A positive length is followed by that many
+ * uncompressed bytes. A negative length is followed by the uncompressed
+ * length and the compressed bytes.
+ */
+public class FrameOutputStream extends OutputStream {
+
+    /**
+     * The maximum number of uncompressed bytes in a frame.
+     */
+    static final int MAX_FRAME_LENGTH = 64 * 1024;
+
+    private final DataOutputStream out;
+    private final Compressor compressor;
+    private final int minCompressLength;
+    private final byte[] buffer = new byte[MAX_FRAME_LENGTH];
+    private byte[] outBuffer;
+    private int pos;
+
+    /**
+     * Create a new stream.
+     *
+     * @param out the underlying stream
+     * @param compressor the compressor
+     * @param minCompressLength the minimum length of a frame to compress it
+     */
+    public FrameOutputStream(OutputStream out, Compressor compressor, int minCompressLength) {
+        this.out = new DataOutputStream(out);
+        this.compressor = compressor;
+        this.minCompressLength = minCompressLength;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (pos >= buffer.length) {
+            writeFrame();
+        }
+        buffer[pos++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] buff, int off, int len) throws IOException {
+        while (len > 0) {
+            if (pos >= buffer.length) {
+                writeFrame();
+            }
+            int copy = Math.min(buffer.length - pos, len);
+            System.arraycopy(buff, off, buffer, pos, copy);
+            pos += copy;
+            off += copy;
+            len -= copy;
+        }
+    }
+
+    private void writeFrame() throws IOException {
+        int len = pos;
+        if (len == 0) {
+            return;
+        }
+        pos = 0;
+        if (len >= minCompressLength) {
+            if (outBuffer == null) {
+                // LZF may expand incompressible data
+                outBuffer = new byte[MAX_FRAME_LENGTH * 2 + 100];
+            }
+            int compressed = compressor.compress(buffer, 0, len, outBuffer, 0);
+            if (compressed < len) {
+                out.writeInt(-compressed);
+                out.writeInt(len);
+                out.write(outBuffer, 0, compressed);
+                return;
+            }
+        }
+        out.writeInt(len);
+        out.write(buffer, 0, len);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writeFrame();
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        out.close();
+    }
+
+}
@@ -66,6 +66,30 @@ public class Constants {
      */
     public static final int TCP_PROTOCOL_VERSION_21 = 21;
 
+    /**
+     * The TCP protocol version number 22.
+     * @since 2.3.230 (TODO)
+     */
+    public static final int TCP_PROTOCOL_VERSION_22 = 22;
+
+    /**
+     * The TCP protocol version number 23.
+     * @since 2.3.230 (TODO)
+     */
+    public static final int TCP_PROTOCOL_VERSION_23 = 23;
+
+    /**
+     * The TCP protocol version number 24.
+     * @since 2.3.230 (TODO)
+     */
+    public static final int TCP_PROTOCOL_VERSION_24 = 24;
+
+    /**
+     * The TCP protocol version number 25.
+     * @since 2.3.230 (TODO)
+     */
+    public static final int TCP_PROTOCOL_VERSION_25 = 25;
+
     /**
      * Minimum supported version of TCP protocol.
      */
@@ -74,7 +98,7 @@ public class Constants {
     /**
      * Maximum supported version of TCP protocol.
      */
-    public static final int TCP_PROTOCOL_VERSION_MAX_SUPPORTED = TCP_PROTOCOL_VERSION_21;
+    public static final int TCP_PROTOCOL_VERSION_MAX_SUPPORTED = TCP_PROTOCOL_VERSION_25;
 
     /**
      * The major version of this database.
@@ -244,6 +268,12 @@ public class Constants {
      */
     public static final int INITIAL_LOCK_TIMEOUT = 2000;
 
+    /**
+     * The maximum number of rows of an INSERT statement that are added to the
+     * table and its indexes together.
+     */
+    public static final int INSERT_BATCH_SIZE = 1024;
+
     /**
      * The block size for I/O operations.
      */
@@ -254,6 +284,12 @@ public class Constants {
      */
     public static final int IO_BUFFER_SIZE_COMPRESS = 128 * 1024;
 
+    /**
+     * The maximum number of bytes of a LOB the server sends for one read
+     * request of a remote connection.
+     */
+    public static final int LOB_READ_MAX_LENGTH = 1024 * 1024;
+
     /**
      * The number of milliseconds to wait between checking the .lock.db file
      * still exists once a database is locked.
@@ -422,6 +458,11 @@ public class Constants {
      */
     public static final String SUFFIX_MV_FILE = ".mv.db";
 
+    /**
+     * The file name suffix of the redo log of a MVStore file.
+     */
+    public static final String SUFFIX_REDO_FILE = ".redo.db";
+
     /**
      * The file name suffix of a new MVStore file, used when compacting a store.
      */
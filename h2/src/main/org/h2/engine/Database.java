@@ -9,7 +9,6 @@
 import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -142,7 +141,7 @@ public final class Database implements DataHandler, CastDataProvider {
 
     private final HashMap<String, TableEngine> tableEngines = new HashMap<>();
 
-    private final Set<SessionLocal> userSessions = Collections.synchronizedSet(new HashSet<>());
+    private final Set<SessionLocal> userSessions = ConcurrentHashMap.newKeySet();
     private final AtomicReference<SessionLocal> exclusiveSession = new AtomicReference<>();
     private final BitSet objectIds = new BitSet();
     private final Object lobSyncObject = new Object();
@@ -150,7 +149,7 @@ public final class Database implements DataHandler, CastDataProvider {
     private final Schema mainSchema;
     private final Schema infoSchema;
     private final Schema pgCatalogSchema;
-    private int nextSessionId;
+    private final AtomicInteger nextSessionId = new AtomicInteger();
     private final AtomicInteger nextTempTableId = new AtomicInteger();
     private final User systemUser;
     private SessionLocal systemSession;
@@ -180,7 +179,7 @@ public final class Database implements DataHandler, CastDataProvider {
 
     private int powerOffCount = initialPowerOffCount;
     private volatile int closeDelay;
-    private DelayedDatabaseCloser delayedCloser;
+    private final AtomicReference<DelayedDatabaseCloser> delayedCloser = new AtomicReference<>();
     private volatile boolean closing;
     private boolean ignoreCase;
     private boolean deleteFilesOnDisconnect;
@@ -536,7 +535,7 @@ public void populateInfo(BiConsumer<String, String> consumer) {
         for (Map.Entry<String, String> entry : getSettings().getSortedSettings()) {
             consumer.accept(entry.getKey(), entry.getValue());
         }
-        getStore().getMvStore().populateInfo(consumer);
+        getStore().populateInfo(consumer);
     }
 
     /**
@@ -875,6 +874,23 @@ public void removeMeta(SessionLocal session, int id) {
         }
     }
 
+    /**
+     * Remove the given object from the metadata. Temporary objects are never
+     * stored in the metadata, so for them the meta table is neither locked nor
+     * searched, and only the id is released at the end of the transaction.
+     *
+     * @param session the session
+     * @param obj the object to remove
+     */
+    public void removeMeta(SessionLocal session, DbObject obj) {
+        int id = obj.getId();
+        if (!obj.isTemporary()) {
+            removeMeta(session, id);
+        } else if (id > 0 && !starting) {
+            session.scheduleDatabaseObjectIdForRelease(id);
+        }
+    }
+
     /**
      * Mark some database ids as unused.
      * @param idsToRelease the ids to release
@@ -1050,7 +1066,7 @@ public RightOwner findUserOrRole(String name) {
      * @return the session, or null if the database is currently closing
      * @throws DbException if the database is in exclusive mode
      */
-    synchronized SessionLocal createSession(User user, NetworkConnectionInfo networkConnectionInfo) {
+    SessionLocal createSession(User user, NetworkConnectionInfo networkConnectionInfo) {
         if (closing) {
             return null;
         }
@@ -1060,16 +1076,26 @@ synchronized SessionLocal createSession(User user, NetworkConnectionInfo network
         SessionLocal session = createSession(user);
         session.setNetworkConnectionInfo(networkConnectionInfo);
         userSessions.add(session);
+        // closeImpl() and setExclusiveSession() check the set of sessions
+        // after they change their state, so at least one side sees the other
+        if (closing) {
+            userSessions.remove(session);
+            return null;
+        }
+        if (exclusiveSession.get() != null) {
+            userSessions.remove(session);
+            throw DbException.get(ErrorCode.DATABASE_IS_IN_EXCLUSIVE_MODE);
+        }
         trace.info("connecting session #{0} to {1}", session.getId(), databaseName);
-        if (delayedCloser != null) {
-            delayedCloser.reset();
-            delayedCloser = null;
+        DelayedDatabaseCloser closer = delayedCloser.getAndSet(null);
+        if (closer != null) {
+            closer.reset();
         }
         return session;
     }
 
     private SessionLocal createSession(User user) {
-        int id = ++nextSessionId;
+        int id = nextSessionId.incrementAndGet();
         return new SessionLocal(this, user, id);
     }
 
@@ -1078,7 +1104,7 @@ private SessionLocal createSession(User user) {
      *
      * @param session the session
      */
-    public synchronized void removeSession(SessionLocal session) {
+    public void removeSession(SessionLocal session) {
         if (session != null) {
             exclusiveSession.compareAndSet(session, null);
             if (userSessions.remove(session)) {
@@ -1092,7 +1118,12 @@ public synchronized void removeSession(SessionLocal session) {
                 } else if (closeDelay < 0) {
                     return;
                 } else {
-                    delayedCloser = new DelayedDatabaseCloser(this, closeDelay * 1000);
+                    // the closer does nothing if a session was created meanwhile
+                    DelayedDatabaseCloser closer = delayedCloser.getAndSet(
+                            new DelayedDatabaseCloser(this, closeDelay * 1000));
+                    if (closer != null) {
+                        closer.reset();
+                    }
                 }
             }
             if (session != null) {
@@ -1203,6 +1234,11 @@ private void closeImpl(boolean fromShutdownHook) {
                 return;
             }
             closing = true;
+            if (!fromShutdownHook && !userSessions.isEmpty()) {
+                // a session was created concurrently
+                closing = false;
+                return;
+            }
             stopServer();
             if (!userSessions.isEmpty()) {
                 assert fromShutdownHook;
@@ -1464,12 +1500,7 @@ public String getName() {
      * @return array of sessions
      */
     public SessionLocal[] getSessions(boolean includingSystemSession) {
-        ArrayList<SessionLocal> list;
-        // need to synchronized on this database,
-        // otherwise the list may contain null elements
-        synchronized (this) {
-            list = new ArrayList<>(userSessions);
-        }
+        ArrayList<SessionLocal> list = new ArrayList<>(userSessions);
         if (includingSystemSession) {
             // copy, to ensure the reference is stable
             SessionLocal s = systemSession;
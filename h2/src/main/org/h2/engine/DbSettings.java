@@ -129,6 +129,16 @@ public class DbSettings extends SettingsBase {
     public final int estimatedFunctionTableRows = get(
             "ESTIMATED_FUNCTION_TABLE_ROWS", 1000);
 
+    /**
+     * Database setting <code>INDEX_BLOOM_FILTER_BITS</code> (default: 0).
+     * The number of bits per entry of in-memory Bloom filters over the first
+     * column of secondary indexes, or 0 to disable them. Equality lookups of
+     * values that are not in the index are rejected by the filter without
+     * reading index pages. This is mostly useful for nested loop joins and
+     * NOT EXISTS conditions where most lookups find nothing.
+     */
+    public final int indexBloomFilterBits = get("INDEX_BLOOM_FILTER_BITS", 0);
+
     /**
      * Database setting <code>LOB_TIMEOUT</code> (default: 300000,
      * which means 5 minutes).
@@ -225,7 +235,9 @@ public class DbSettings extends SettingsBase {
      * statements are cached (excluding UNION and FOR UPDATE statements), CALL
      * if it returns a single value, DELETE, INSERT, MERGE, UPDATE, and
      * transactional statements such as COMMIT. This works for both statements
-     * and prepared statement.
+     * and prepared statement. Remote connections use a cache of the same size
+     * for the statements that are prepared on the server, so that preparing a
+     * statement again does not need a round trip.
      */
     public final int queryCacheSize = get("QUERY_CACHE_SIZE", 8);
 
@@ -235,6 +247,18 @@ public class DbSettings extends SettingsBase {
      */
     public final boolean recompileAlways = get("RECOMPILE_ALWAYS", false);
 
+    /**
+     * Database setting <code>REDO_LOG_SIZE</code> (default: 0).
+     * The maximum size of the redo log in KB, 0 disables the redo log. When
+     * enabled, changes of committed transactions are appended to a separate
+     * log file and synced on each commit, and the database file itself is
+     * only written in the background or when the log reaches this size.
+     * Transactions with changes that can't be logged, such as DDL or large
+     * objects, still write the database file on commit. The redo log can't be
+     * used with encrypted databases.
+     */
+    public final int redoLogSize = get("REDO_LOG_SIZE", 0);
+
     /**
      * Database setting <code>REUSE_SPACE</code> (default: true).
      * If disabled, all changes are appended to the database file, and existing
@@ -289,6 +313,20 @@ public class DbSettings extends SettingsBase {
      */
     public final boolean zeroBasedEnums = get("ZERO_BASED_ENUMS", false);
 
+    /**
+     * Database setting <code>ZONE_MAP_SIZE</code>
+     * (default: 0).
+     * The number of consecutive row keys summarized together in zone maps of
+     * tables. For each such zone minimum and maximum values and count of nulls
+     * of numeric and datetime columns are kept in memory, and table scans with
+     * range or IS NULL conditions on these columns skip zones that can't
+     * contain matching rows. This is most effective on tables with
+     * time-correlated data, such as append-mostly tables. Zone maps are
+     * disabled if set to 0.
+     * This setting only affects MVStore engine.
+     */
+    public final int zoneMapSize = get("ZONE_MAP_SIZE", 0);
+
     private DbSettings(HashMap<String, String> s) {
         super(s);
         boolean lower = get("DATABASE_TO_LOWER", false);
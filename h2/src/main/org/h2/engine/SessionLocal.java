@@ -414,11 +414,11 @@ public void addLocalTempTable(Table table) {
     public void removeLocalTempTable(Table table) {
         if (localTempTables != null && localTempTables.remove(table.getName()) != null) {
             modificationId++;
-            Database db = database;
-            if (db != null) {
-                synchronized (db) {
-                    table.removeChildrenAndResources(this);
-                }
+            if (database != null) {
+                // a local temporary table is not visible to other sessions
+                // and is not stored in the metadata, so the database does
+                // not need to be locked to drop it
+                table.removeChildrenAndResources(this);
             }
         }
     }
@@ -467,9 +467,7 @@ public void addLocalTempTableIndex(Index index) {
     public void removeLocalTempTableIndex(Index index) {
         if (localTempTableIndexes != null) {
             localTempTableIndexes.remove(index.getName());
-            synchronized (database) {
-                index.removeChildrenAndResources(this);
-            }
+            index.removeChildrenAndResources(this);
         }
     }
 
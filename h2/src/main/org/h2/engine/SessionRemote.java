@@ -15,6 +15,7 @@
 import org.h2.command.CommandInterface;
 import org.h2.command.CommandRemote;
 import org.h2.command.dml.SetTypes;
+import org.h2.compress.Compressor;
 import org.h2.engine.Mode.ModeEnum;
 import org.h2.expression.ParameterInterface;
 import org.h2.jdbc.JdbcException;
@@ -29,6 +30,7 @@
 import org.h2.store.FileStore;
 import org.h2.store.LobStorageFrontend;
 import org.h2.store.fs.FileUtils;
+import org.h2.tools.CompressTool;
 import org.h2.util.DateTimeUtils;
 import org.h2.util.JdbcUtils;
 import org.h2.util.MathUtils;
@@ -79,6 +81,11 @@ public final class SessionRemote extends Session implements DataHandler {
     public static final int STATUS_OK = 1;
     public static final int STATUS_CLOSED = 2;
     public static final int STATUS_OK_STATE_CHANGED = 3;
+    /**
+     * Sent before the status if the schema of the database was changed,
+     * followed by the new schema version.
+     */
+    public static final int STATUS_SCHEMA_CHANGED = 4;
 
     private TraceSystem traceSystem;
     private Trace trace;
@@ -88,6 +95,7 @@ public final class SessionRemote extends Session implements DataHandler {
     private ConnectionInfo connectionInfo;
     private String databaseName;
     private String cipher;
+    private int networkCompression;
     private byte[] fileEncryptionKey;
     private final Object lobSyncObject = new Object();
     private String sessionId;
@@ -110,6 +118,15 @@ public final class SessionRemote extends Session implements DataHandler {
 
     private volatile DynamicSettings dynamicSettings;
 
+    /**
+     * The commands that are still prepared on the server, by SQL statement.
+     */
+    private SmallLRUCache<String, CommandRemote> commandCache;
+
+    private long schemaVersion;
+
+    private long commandCacheSchemaVersion;
+
     public SessionRemote(ConnectionInfo ci) {
         this.connectionInfo = ci;
         oldInformationSchema = ci.getProperty("OLD_INFORMATION_SCHEMA", false);
@@ -140,8 +157,14 @@ private Transfer initTransfer(ConnectionInfo ci, String db, String server)
         trans.writeString(ci.getUserName());
         trans.writeBytes(ci.getUserPasswordHash());
         trans.writeBytes(ci.getFilePasswordHash());
-        String[] keys = ci.getKeys();
-        trans.writeInt(keys.length);
+        ArrayList<String> keys = new ArrayList<>();
+        for (String key : ci.getKeys()) {
+            // negotiated below, older servers don't know this setting
+            if (!key.equals("NETWORK_COMPRESSION")) {
+                keys.add(key);
+            }
+        }
+        trans.writeInt(keys.size());
         for (String key : keys) {
             trans.writeString(key).writeString(ci.getProperty(key));
         }
@@ -152,6 +175,10 @@ private Transfer initTransfer(ConnectionInfo ci, String db, String server)
             if (ci.getFileEncryptionKey() != null) {
                 trans.writeBytes(ci.getFileEncryptionKey());
             }
+            if (clientVersion >= Constants.TCP_PROTOCOL_VERSION_22) {
+                trans.writeInt(networkCompression);
+                trans.setCompression(networkCompression);
+            }
             trans.writeInt(SessionRemote.SESSION_SET_ID);
             trans.writeString(sessionId);
             if (clientVersion >= Constants.TCP_PROTOCOL_VERSION_20) {
@@ -423,6 +450,8 @@ private void connectServer(ConnectionInfo ci) {
                 }
             }
         }
+        String compression = ci.getProperty("NETWORK_COMPRESSION", null);
+        networkCompression = compression == null ? Compressor.NO : CompressTool.getCompressAlgorithm(compression);
         cipher = ci.getProperty("CIPHER");
         if (cipher != null) {
             fileEncryptionKey = MathUtils.secureRandomBytes(32);
@@ -454,6 +483,9 @@ private void connectServer(ConnectionInfo ci) {
             traceSystem.close();
             throw e;
         }
+        int commandCacheSize = ci.getDbSettings().queryCacheSize;
+        commandCache = clientVersion >= Constants.TCP_PROTOCOL_VERSION_24 && commandCacheSize > 0
+                ? SmallLRUCache.newInstance(commandCacheSize) : null;
         getDynamicSettings();
     }
 
@@ -485,12 +517,89 @@ public CommandInterface prepareCommand(String sql, int fetchSize) {
         lock();
         try {
             checkClosed();
-            return new CommandRemote(this, transferList, sql, fetchSize);
+            SmallLRUCache<String, CommandRemote> cache = commandCache;
+            if (cache == null) {
+                return new CommandRemote(this, transferList, sql, fetchSize);
+            }
+            if (schemaVersion != commandCacheSchemaVersion) {
+                clearCommandCache();
+            }
+            CommandRemote command = cache.get(sql);
+            if (command != null && command.canReuse()) {
+                command.reuse(fetchSize);
+                return command;
+            }
+            command = new CommandRemote(this, transferList, sql, fetchSize);
+            if (!command.isCacheable()) {
+                return command;
+            }
+            if (schemaVersion != commandCacheSchemaVersion) {
+                clearCommandCache();
+            }
+            CommandRemote old = cache.remove(sql);
+            if (old != null && old.canReuse()) {
+                old.closeRemote();
+            } else if (cache.size() >= cache.getMaxSize()) {
+                // remove the least recently used entry here, so that the
+                // command can be closed on the server
+                old = cache.values().iterator().next();
+                cache.remove(old.getSQL());
+                if (old.canReuse()) {
+                    old.closeRemote();
+                }
+            }
+            cache.put(sql, command);
+            return command;
         } finally {
             unlock();
         }
     }
 
+    /**
+     * Close the cached commands that are not in use and clear the cache.
+     */
+    private void clearCommandCache() {
+        commandCacheSchemaVersion = schemaVersion;
+        ArrayList<CommandRemote> commands = new ArrayList<>(commandCache.values());
+        commandCache.clear();
+        for (CommandRemote command : commands) {
+            if (command.canReuse()) {
+                command.closeRemote();
+            }
+        }
+    }
+
+    /**
+     * Check whether the given command is cached, so that it should be kept
+     * prepared on the server when it is closed.
+     *
+     * @param command the command
+     * @return true if the command is cached
+     */
+    public boolean isCommandCached(CommandRemote command) {
+        SmallLRUCache<String, CommandRemote> cache = commandCache;
+        return cache != null && schemaVersion == commandCacheSchemaVersion && cache.get(command.getSQL()) == command;
+    }
+
+    /**
+     * Check whether commands and their meta data are cached by this session.
+     *
+     * @return true if they are cached
+     */
+    public boolean isCommandCacheEnabled() {
+        return commandCache != null;
+    }
+
+    /**
+     * Get the last known version of the database schema. The version is sent
+     * by the server when the schema was changed.
+     *
+     * @return the schema version
+     */
+    public long getSchemaVersion() {
+        return schemaVersion;
+    }
+
     /**
      * Automatically re-connect if necessary and if configured to do so.
      *
@@ -615,6 +724,10 @@ public int getCurrentId() {
     public void done(Transfer transfer) throws IOException {
         transfer.flush();
         int status = transfer.readInt();
+        if (status == STATUS_SCHEMA_CHANGED) {
+            schemaVersion = transfer.readLong();
+            status = transfer.readInt();
+        }
         switch (status) {
         case STATUS_ERROR:
             throw readException(transfer);
@@ -785,6 +898,9 @@ public int readLob(long lobId, byte[] hmac, long offset, byte[] buff, int off, i
                     transfer.writeLong(offset);
                     transfer.writeInt(length);
                     done(transfer);
+                    if (clientVersion >= Constants.TCP_PROTOCOL_VERSION_25) {
+                        return readLobSegments(transfer, buff, off, length);
+                    }
                     length = transfer.readInt();
                     if (length <= 0) {
                         return length;
@@ -801,6 +917,22 @@ public int readLob(long lobId, byte[] hmac, long offset, byte[] buff, int off, i
         }
     }
 
+    private int readLobSegments(Transfer transfer, byte[] buff, int off, int length) throws IOException {
+        int total = 0;
+        for (int len; (len = transfer.readInt()) != 0;) {
+            if (len < 0) {
+                // the server failed to read the LOB, the error follows
+                done(transfer);
+            }
+            if (len < 0 || len > length - total) {
+                throw DbException.get(ErrorCode.CONNECTION_BROKEN_1, "unexpected LOB segment length " + len);
+            }
+            transfer.readBytes(buff, off + total, len);
+            total += len;
+        }
+        return total;
+    }
+
     @Override
     public JavaObjectSerializer getJavaObjectSerializer() {
         if (dynamicSettings == null) {
@@ -49,7 +49,7 @@ public ConditionAndOr(int andOrType, Expression left, Expression right) {
         this.right = right;
     }
 
-    int getAndOrType() {
+    public int getAndOrType() {
         return this.andOrType;
     }
 
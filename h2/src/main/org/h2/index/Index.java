@@ -15,6 +15,8 @@
 import org.h2.engine.DbObject;
 import org.h2.engine.NullsDistinct;
 import org.h2.engine.SessionLocal;
+import org.h2.expression.Expression;
+import org.h2.expression.condition.Comparison;
 import org.h2.message.DbException;
 import org.h2.message.Trace;
 import org.h2.mode.DefaultNullOrdering;
@@ -142,7 +144,7 @@ public final int getType() {
     public void removeChildrenAndResources(SessionLocal session) {
         table.removeIndex(this);
         remove(session);
-        database.removeMeta(session, getId());
+        database.removeMeta(session, this);
     }
 
     @Override
@@ -170,13 +172,20 @@ public String getCreateSQLForCopy(Table targetTable, String quotedName) {
     private StringBuilder getColumnListSQL(StringBuilder builder, int sqlFlags) {
         builder.append('(');
         int length = indexColumns.length;
-        if (uniqueColumnColumn > 0 && uniqueColumnColumn < length) {
-            IndexColumn.writeColumns(builder, indexColumns, 0, uniqueColumnColumn, sqlFlags).append(") INCLUDE(");
-            IndexColumn.writeColumns(builder, indexColumns, uniqueColumnColumn, length, sqlFlags);
+        int keyColumnCount = uniqueColumnColumn > 0 ? uniqueColumnColumn
+                : length - indexType.getIncludedColumnCount();
+        if (keyColumnCount > 0 && keyColumnCount < length) {
+            IndexColumn.writeColumns(builder, indexColumns, 0, keyColumnCount, sqlFlags).append(") INCLUDE(");
+            IndexColumn.writeColumns(builder, indexColumns, keyColumnCount, length, sqlFlags);
         } else {
             IndexColumn.writeColumns(builder, indexColumns, 0, length, sqlFlags);
         }
-        return builder.append(')');
+        builder.append(')');
+        Expression condition = indexType.getCondition();
+        if (condition != null) {
+            condition.getUnenclosedSQL(builder.append(" WHERE "), sqlFlags);
+        }
+        return builder;
     }
 
     @Override
@@ -422,6 +431,169 @@ public int getColumnIndex(Column col) {
         return -1;
     }
 
+    /**
+     * Check whether the specified row satisfies the condition of this index.
+     * Rows that don't satisfy the condition of a partial index aren't stored in
+     * it.
+     *
+     * @param session the session
+     * @param row the row
+     * @return {@code true} if the row belongs to this index
+     */
+    public boolean isIndexed(SessionLocal session, Row row) {
+        ArrayList<IndexCondition> conditions = indexType.getConditionIndexConditions();
+        if (conditions == null) {
+            return true;
+        }
+        // the condition is completely represented by these index conditions
+        // with constant values
+        for (IndexCondition condition : conditions) {
+            if (!contains(session, condition, row.getValue(condition.getColumn().getColumnId()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Check whether all rows that may be selected by the specified table
+     * filter satisfy the condition of this index. Only constant index
+     * conditions of the filter are taken into account.
+     *
+     * @param session the session
+     * @param filter the table filter, or {@code null}
+     * @return {@code true} if this index isn't partial or if its condition is
+     *         implied by the index conditions of the filter
+     */
+    public boolean isConditionImplied(SessionLocal session, TableFilter filter) {
+        ArrayList<IndexCondition> conditions = indexType.getConditionIndexConditions();
+        if (conditions == null) {
+            return true;
+        }
+        if (filter == null) {
+            return false;
+        }
+        loop: for (IndexCondition required : conditions) {
+            Column column = required.getColumn();
+            for (IndexCondition given : filter.getIndexConditions()) {
+                if (!given.isCompoundColumns() && given.getColumn() == column && implies(session, given, required)) {
+                    continue loop;
+                }
+            }
+            return false;
+        }
+        return true;
+    }
+
+    private boolean implies(SessionLocal session, IndexCondition given, IndexCondition required) {
+        switch (given.getCompareType()) {
+        case Comparison.EQUAL:
+        case Comparison.EQUAL_NULL_SAFE: {
+            Expression e = given.getExpression();
+            return e.isConstant() && contains(session, required, e.getValue(session));
+        }
+        case Comparison.IN_LIST:
+            for (Expression e : given.getExpressionList()) {
+                if (!e.isConstant() || !contains(session, required, e.getValue(session))) {
+                    return false;
+                }
+            }
+            return true;
+        case Comparison.BIGGER_EQUAL:
+        case Comparison.BIGGER:
+        case Comparison.SMALLER_EQUAL:
+        case Comparison.SMALLER: {
+            Expression e = given.getExpression();
+            if (!e.isConstant()) {
+                return false;
+            }
+            Value v = e.getValue(session);
+            if (v == ValueNull.INSTANCE) {
+                // nothing may match
+                return true;
+            }
+            int requiredType = required.getCompareType();
+            boolean bigger = given.getCompareType() == Comparison.BIGGER_EQUAL
+                    || given.getCompareType() == Comparison.BIGGER;
+            if (bigger ? requiredType != Comparison.BIGGER_EQUAL && requiredType != Comparison.BIGGER
+                    : requiredType != Comparison.SMALLER_EQUAL && requiredType != Comparison.SMALLER) {
+                return false;
+            }
+            Value bound = required.getCurrentValue(session);
+            if (bound == ValueNull.INSTANCE) {
+                return false;
+            }
+            int comp = table.compareValues(session, v, bound);
+            if (!bigger) {
+                comp = -comp;
+            }
+            // v > bound, or v = bound unless only the required bound is exclusive
+            return comp > 0 || comp == 0 && (given.getCompareType() == Comparison.BIGGER
+                    || given.getCompareType() == Comparison.SMALLER || requiredType == Comparison.BIGGER_EQUAL
+                    || requiredType == Comparison.SMALLER_EQUAL);
+        }
+        default:
+            return false;
+        }
+    }
+
+    private boolean contains(SessionLocal session, IndexCondition required, Value v) {
+        int compareType = required.getCompareType();
+        if (v == ValueNull.INSTANCE) {
+            return compareType == Comparison.EQUAL_NULL_SAFE
+                    && required.getCurrentValue(session) == ValueNull.INSTANCE;
+        }
+        switch (compareType) {
+        case Comparison.IN_LIST:
+            for (Expression e : required.getExpressionList()) {
+                Value bound = e.getValue(session);
+                if (bound != ValueNull.INSTANCE && table.compareValues(session, v, bound) == 0) {
+                    return true;
+                }
+            }
+            return false;
+        case Comparison.EQUAL:
+        case Comparison.EQUAL_NULL_SAFE:
+        case Comparison.BIGGER_EQUAL:
+        case Comparison.BIGGER:
+        case Comparison.SMALLER_EQUAL:
+        case Comparison.SMALLER: {
+            Value bound = required.getCurrentValue(session);
+            if (bound == ValueNull.INSTANCE) {
+                return false;
+            }
+            int comp = table.compareValues(session, v, bound);
+            switch (compareType) {
+            case Comparison.BIGGER_EQUAL:
+                return comp >= 0;
+            case Comparison.BIGGER:
+                return comp > 0;
+            case Comparison.SMALLER_EQUAL:
+                return comp <= 0;
+            case Comparison.SMALLER:
+                return comp < 0;
+            default:
+                return comp == 0;
+            }
+        }
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * Checks if range conditions on the given column, that is not a column of
+     * this index, can still be used by {@code find()} to skip rows that can't
+     * match them, for example with a zone map. Such conditions are passed in
+     * the first and last search rows.
+     *
+     * @param column the column
+     * @return true if rows can be skipped by values of this column
+     */
+    public boolean canSkipRows(Column column) {
+        return false;
+    }
+
     /**
      * Checks if the given column is the first for this index. For scan indexes
      * of tables with row identifiers their {@code _ROWID_} column is considered
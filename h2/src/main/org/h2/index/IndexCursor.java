@@ -279,6 +279,8 @@ private SearchRow getSpatialSearchRow(SearchRow row, int columnId, Value v) {
     private SearchRow getSearchRow(SearchRow row, int columnId, Value v, boolean max) {
         if (row == null) {
             row = table.getTemplateRow();
+            // no restriction on row key unless there is a condition on it
+            row.setKey(max ? Long.MIN_VALUE : Long.MAX_VALUE);
         } else {
             v = getMax(row.getValue(columnId), v, max);
         }
@@ -5,9 +5,11 @@
  */
 package org.h2.index;
 
+import java.util.ArrayList;
 import java.util.Objects;
 
 import org.h2.engine.NullsDistinct;
+import org.h2.expression.Expression;
 
 /**
  * Represents information about the properties of an index
@@ -17,6 +19,9 @@ public class IndexType {
     private boolean primaryKey, persistent, hash, scan, spatial;
     private boolean belongsToConstraint;
     private NullsDistinct nullsDistinct;
+    private int includedColumnCount;
+    private Expression condition;
+    private ArrayList<IndexCondition> conditionIndexConditions;
 
     /**
      * Create a primary key index.
@@ -112,6 +117,59 @@ public boolean getBelongsToConstraint() {
         return belongsToConstraint;
     }
 
+    /**
+     * Sets the count of non-key columns included into the index. These columns
+     * are the last columns of the index.
+     *
+     * @param includedColumnCount count of included columns
+     */
+    public void setIncludedColumnCount(int includedColumnCount) {
+        this.includedColumnCount = includedColumnCount;
+    }
+
+    /**
+     * Returns the count of non-key columns included into the index with the
+     * INCLUDE clause. Such columns are the last columns of the index, they are
+     * stored only to avoid lookups of rows in the primary index.
+     *
+     * @return count of included columns
+     */
+    public int getIncludedColumnCount() {
+        return includedColumnCount;
+    }
+
+    /**
+     * Sets the condition of a partial index. Only rows that satisfy the
+     * condition are stored in such index.
+     *
+     * @param condition the condition
+     * @param conditionIndexConditions the index conditions created from the
+     *            condition, they must represent the condition completely
+     */
+    public void setCondition(Expression condition, ArrayList<IndexCondition> conditionIndexConditions) {
+        this.condition = condition;
+        this.conditionIndexConditions = conditionIndexConditions;
+    }
+
+    /**
+     * Returns the condition of a partial index.
+     *
+     * @return the condition, or {@code null} if all rows are indexed
+     */
+    public Expression getCondition() {
+        return condition;
+    }
+
+    /**
+     * Returns the index conditions created from the condition of a partial
+     * index. All of them have constant values.
+     *
+     * @return the index conditions, or {@code null} if all rows are indexed
+     */
+    public ArrayList<IndexCondition> getConditionIndexConditions() {
+        return conditionIndexConditions;
+    }
+
     /**
      * Is this a hash index?
      *
@@ -0,0 +1,439 @@
+/*
+ * Copyright 2004-2025 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (https://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.jdbc;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.h2.command.CommandInterface;
+import org.h2.engine.Session;
+import org.h2.expression.ParameterInterface;
+import org.h2.message.DbException;
+import org.h2.result.ResultInterface;
+import org.h2.util.Utils21;
+import org.h2.value.Value;
+import org.h2.value.ValueToObjectConverter;
+
+/**
+ * Asynchronous operations on a connection, for embedded and remote
+ * connections. The operations are queued and executed one after another, in
+ * the order they were submitted, so that any number of operations can be
+ * outstanding. The calling thread never waits for the database.
+ * <p>
+ * By default the operations are executed in virtual threads on Java 21 and
+ * later, and in daemon threads on older versions of Java. The connection
+ * should not be used by other threads while operations are pending.
+ * <p>
+ * Example:
+ * <pre>
+ * JdbcAsyncConnection async = new JdbcAsyncConnection(conn);
+ * async.executeUpdate("INSERT INTO TEST VALUES(?, ?)", 1, "Hello");
+ * async.executeQuery("SELECT * FROM TEST").thenAccept(rows -&gt; ...);
+ * </pre>
+ */
+public final class JdbcAsyncConnection {
+
+    private final JdbcConnection conn;
+
+    private final Executor executor;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final ArrayDeque<Runnable> queue = new ArrayDeque<>();
+
+    private boolean running;
+
+    /**
+     * Create asynchronous operations for the given connection that are
+     * executed in virtual threads if possible.
+     *
+     * @param conn the H2 connection
+     * @throws SQLException if the connection is not an H2 connection
+     */
+    public JdbcAsyncConnection(Connection conn) throws SQLException {
+        this(conn, task -> Utils21.newVirtualThread(task).start());
+    }
+
+    /**
+     * Create asynchronous operations for the given connection that are
+     * executed by the given executor. The executor is never used for more than
+     * one task of this connection at the same time.
+     *
+     * @param conn the H2 connection
+     * @param executor the executor
+     * @throws SQLException if the connection is not an H2 connection
+     */
+    public JdbcAsyncConnection(Connection conn, Executor executor) throws SQLException {
+        this.conn = conn.unwrap(JdbcConnection.class);
+        this.executor = executor;
+    }
+
+    /**
+     * Execute a statement that does not return a result set.
+     *
+     * @param sql the SQL statement
+     * @param parameters the values of the parameters
+     * @return the future update count
+     */
+    public CompletableFuture<Long> executeUpdate(String sql, Object... parameters) {
+        return submit(() -> {
+            Session session = getSession();
+            session.lock();
+            try {
+                CommandInterface command = prepare(session, sql, Integer.MAX_VALUE, parameters);
+                try {
+                    return command.executeUpdate(null).getUpdateCount();
+                } finally {
+                    command.close();
+                }
+            } finally {
+                session.unlock();
+            }
+        });
+    }
+
+    /**
+     * Execute a query and read all rows. The values are converted the same way
+     * as by {@link java.sql.ResultSet#getObject(int)}.
+     *
+     * @param sql the SQL statement
+     * @param parameters the values of the parameters
+     * @return the future list of rows
+     */
+    public CompletableFuture<List<Object[]>> executeQuery(String sql, Object... parameters) {
+        return submit(() -> {
+            Session session = getSession();
+            session.lock();
+            try {
+                CommandInterface command = prepare(session, sql, Integer.MAX_VALUE, parameters);
+                try {
+                    ResultInterface result = command.executeQuery(0, false);
+                    try {
+                        ArrayList<Object[]> rows = new ArrayList<>();
+                        while (result.next()) {
+                            rows.add(convertRow(result));
+                        }
+                        return rows;
+                    } finally {
+                        result.close();
+                    }
+                } finally {
+                    command.close();
+                }
+            } finally {
+                session.unlock();
+            }
+        });
+    }
+
+    /**
+     * Create a publisher of the rows of a query. The query is executed for
+     * each subscriber. The rows are read as they are requested, with the given
+     * fetch size, so that other operations of this connection can be executed
+     * in between.
+     *
+     * @param sql the SQL statement
+     * @param fetchSize the maximum number of rows to read at once
+     * @param parameters the values of the parameters
+     * @return the publisher
+     */
+    public Flow.Publisher<Object[]> query(String sql, int fetchSize, Object... parameters) {
+        if (fetchSize <= 0) {
+            throw new IllegalArgumentException("fetchSize: " + fetchSize);
+        }
+        return subscriber -> subscriber.onSubscribe(new QuerySubscription(subscriber, sql, fetchSize, parameters));
+    }
+
+    /**
+     * Commit the current transaction.
+     *
+     * @return the future that is completed after the commit
+     */
+    public CompletableFuture<Void> commit() {
+        return submit(() -> {
+            conn.commit();
+            return null;
+        });
+    }
+
+    /**
+     * Roll back the current transaction.
+     *
+     * @return the future that is completed after the rollback
+     */
+    public CompletableFuture<Void> rollback() {
+        return submit(() -> {
+            conn.rollback();
+            return null;
+        });
+    }
+
+    /**
+     * Get a future that is completed when all operations that were submitted
+     * before are finished.
+     *
+     * @return the future
+     */
+    public CompletableFuture<Void> flush() {
+        return submit(() -> null);
+    }
+
+    private Session getSession() {
+        conn.checkClosed();
+        return conn.getSession();
+    }
+
+    private CommandInterface prepare(Session session, String sql, int fetchSize, Object[] parameters) {
+        CommandInterface command = session.prepareCommand(JdbcConnection.translateSQL(sql, true), fetchSize);
+        try {
+            ArrayList<? extends ParameterInterface> params = command.getParameters();
+            int count = parameters == null ? 0 : parameters.length;
+            if (count != params.size()) {
+                throw DbException.getInvalidValueException("parameters", count);
+            }
+            for (int i = 0; i < count; i++) {
+                params.get(i).setValue(ValueToObjectConverter.objectToValue(session, parameters[i], Value.UNKNOWN),
+                        true);
+            }
+        } catch (RuntimeException e) {
+            command.close();
+            throw e;
+        }
+        return command;
+    }
+
+    private Object[] convertRow(ResultInterface result) {
+        Value[] values = result.currentRow();
+        int columnCount = result.getVisibleColumnCount();
+        Object[] row = new Object[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            row[i] = ValueToObjectConverter.valueToDefaultObject(values[i], conn, true);
+        }
+        return row;
+    }
+
+    private <T> CompletableFuture<T> submit(Callable<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        execute(() -> {
+            if (future.isDone()) {
+                // cancelled
+                return;
+            }
+            try {
+                future.complete(task.call());
+            } catch (Throwable e) {
+                future.completeExceptionally(DbException.toSQLException(e));
+            }
+        });
+        return future;
+    }
+
+    private void execute(Runnable task) {
+        lock.lock();
+        try {
+            queue.add(task);
+            if (running) {
+                return;
+            }
+            running = true;
+        } finally {
+            lock.unlock();
+        }
+        try {
+            executor.execute(this::runQueue);
+        } catch (RuntimeException e) {
+            lock.lock();
+            try {
+                queue.remove(task);
+                running = false;
+            } finally {
+                lock.unlock();
+            }
+            throw e;
+        }
+    }
+
+    private void runQueue() {
+        while (true) {
+            Runnable task;
+            lock.lock();
+            try {
+                task = queue.poll();
+                if (task == null) {
+                    running = false;
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+            try {
+                task.run();
+            } catch (Throwable e) {
+                // only a subscriber can throw an exception here, the
+                // remaining operations are still executed
+            }
+        }
+    }
+
+    /**
+     * A subscription to the rows of a query.
+     */
+    private final class QuerySubscription implements Flow.Subscription {
+
+        private final Flow.Subscriber<? super Object[]> subscriber;
+        private final String sql;
+        private final int fetchSize;
+        private final Object[] parameters;
+        private final ReentrantLock subscriptionLock = new ReentrantLock();
+        private CommandInterface command;
+        private ResultInterface result;
+        private long demand;
+        private boolean scheduled;
+        private boolean done;
+
+        QuerySubscription(Flow.Subscriber<? super Object[]> subscriber, String sql, int fetchSize,
+                Object[] parameters) {
+            this.subscriber = subscriber;
+            this.sql = sql;
+            this.fetchSize = fetchSize;
+            this.parameters = parameters;
+        }
+
+        @Override
+        public void request(long n) {
+            subscriptionLock.lock();
+            try {
+                if (done) {
+                    return;
+                }
+                if (n <= 0) {
+                    done = true;
+                } else {
+                    demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+                    if (scheduled) {
+                        return;
+                    }
+                }
+                scheduled = true;
+            } finally {
+                subscriptionLock.unlock();
+            }
+            if (n <= 0) {
+                execute(() -> {
+                    closeResult();
+                    subscriber.onError(new IllegalArgumentException("n: " + n));
+                });
+            } else {
+                execute(this::emit);
+            }
+        }
+
+        @Override
+        public void cancel() {
+            subscriptionLock.lock();
+            try {
+                if (done) {
+                    return;
+                }
+                done = true;
+            } finally {
+                subscriptionLock.unlock();
+            }
+            execute(this::closeResult);
+        }
+
+        private void emit() {
+            try {
+                int count = 0;
+                while (true) {
+                    subscriptionLock.lock();
+                    try {
+                        if (done) {
+                            scheduled = false;
+                            return;
+                        }
+                        if (demand == 0) {
+                            scheduled = false;
+                            return;
+                        }
+                        if (count == fetchSize) {
+                            // let other operations of the connection run
+                            break;
+                        }
+                        demand--;
+                    } finally {
+                        subscriptionLock.unlock();
+                    }
+                    Object[] row = next();
+                    if (row == null) {
+                        subscriptionLock.lock();
+                        try {
+                            done = true;
+                        } finally {
+                            subscriptionLock.unlock();
+                        }
+                        closeResult();
+                        subscriber.onComplete();
+                        return;
+                    }
+                    subscriber.onNext(row);
+                    count++;
+                }
+            } catch (Throwable e) {
+                subscriptionLock.lock();
+                try {
+                    done = true;
+                } finally {
+                    subscriptionLock.unlock();
+                }
+                closeResult();
+                subscriber.onError(DbException.toSQLException(e));
+                return;
+            }
+            execute(this::emit);
+        }
+
+        private Object[] next() {
+            Session session = getSession();
+            session.lock();
+            try {
+                if (result == null) {
+                    command = prepare(session, sql, fetchSize, parameters);
+                    result = command.executeQuery(0, false);
+                }
+                return result.next() ? convertRow(result) : null;
+            } finally {
+                session.unlock();
+            }
+        }
+
+        private void closeResult() {
+            try {
+                if (result != null) {
+                    result.close();
+                }
+                if (command != null) {
+                    command.close();
+                }
+            } catch (DbException e) {
+                // the connection is closed
+            } finally {
+                result = null;
+                command = null;
+            }
+        }
+
+    }
+
+}
@@ -20,20 +20,33 @@
 package org.h2.jdbcx;
 
 import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
 import java.sql.Connection;
 import java.sql.SQLException;
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.Deque;
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.Logger;
 
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 import javax.sql.ConnectionEvent;
 import javax.sql.ConnectionEventListener;
 import javax.sql.ConnectionPoolDataSource;
 import javax.sql.DataSource;
 import javax.sql.PooledConnection;
 
+import org.h2.jmx.DocumentedMBean;
 import org.h2.message.DbException;
 
 /**
@@ -58,24 +71,71 @@
  *     }
  * }
  * </pre>
+ * Threads that wait for a connection get one in the order they arrived.
+ * Optionally, a minimum number of idle connections is kept open, and
+ * connections are closed when they were idle or open for too long. The
+ * statistics of the pool can be published over JMX with
+ * {@link #registerMBean(String)}.
  *
  * @author Christian d'Heureuse
  *      (<a href="http://www.source-code.biz">www.source-code.biz</a>)
  * @author Thomas Mueller
  */
 public final class JdbcConnectionPool
-        implements DataSource, ConnectionEventListener, JdbcConnectionPoolBackwardsCompat {
+        implements DataSource, ConnectionEventListener, JdbcConnectionPoolBackwardsCompat, JdbcConnectionPoolMBean {
 
     private static final int DEFAULT_TIMEOUT = 30;
     private static final int DEFAULT_MAX_CONNECTIONS = 10;
 
+    /**
+     * The delay between two runs of the housekeeper, in milliseconds.
+     */
+    private static final long HOUSEKEEPING_INTERVAL = 500;
+
+    /**
+     * The upper bounds of the buckets of the wait time histogram, in
+     * microseconds. The last bucket has no upper bound.
+     */
+    private static final long[] WAIT_TIME_BOUNDS = { 10, 100, 1_000, 10_000, 100_000, 1_000_000 };
+
+    private static final int UTILIZATION_BUCKETS = 10;
+
     private final ConnectionPoolDataSource dataSource;
-    private final Queue<PooledConnection> recycledConnections = new ConcurrentLinkedQueue<>();
+
+    /**
+     * The idle connections. Connections are taken from and returned to the
+     * head, so that the connections at the tail are the ones idle for the
+     * longest time.
+     */
+    private final Deque<Entry> idleConnections = new ConcurrentLinkedDeque<>();
+
+    /**
+     * All open connections of this pool.
+     */
+    private final ConcurrentHashMap<PooledConnection, Entry> connections = new ConcurrentHashMap<>();
+
+    /**
+     * One permit for each connection that may be used. Waiting threads are
+     * served in FIFO order.
+     */
+    private final Permits permits = new Permits(DEFAULT_MAX_CONNECTIONS);
+
     private PrintWriter logWriter;
-    private volatile int maxConnections = DEFAULT_MAX_CONNECTIONS;
+    private final AtomicInteger maxConnections = new AtomicInteger(DEFAULT_MAX_CONNECTIONS);
     private volatile int timeout = DEFAULT_TIMEOUT;
+    private volatile int minIdle;
+    private volatile int maxLifetime;
+    private volatile int idleTimeout;
     private AtomicInteger activeConnections = new AtomicInteger();
     private AtomicBoolean isDisposed = new AtomicBoolean();
+    private final AtomicReference<ScheduledThreadPoolExecutor> housekeeper = new AtomicReference<>();
+    private final AtomicReference<ObjectName> mbeanName = new AtomicReference<>();
+
+    private final LongAdder connectionsCreated = new LongAdder();
+    private final LongAdder connectionsClosed = new LongAdder();
+    private final LongAdder connectionTimeouts = new LongAdder();
+    private final LongAdder[] waitTimeHistogram = newHistogram(WAIT_TIME_BOUNDS.length + 1);
+    private final LongAdder[] utilizationHistogram = newHistogram(UTILIZATION_BUCKETS);
 
     private JdbcConnectionPool(ConnectionPoolDataSource dataSource) {
         this.dataSource = dataSource;
@@ -115,17 +175,31 @@ public static JdbcConnectionPool create(String url, String user,
         return new JdbcConnectionPool(ds);
     }
 
+    private static LongAdder[] newHistogram(int buckets) {
+        LongAdder[] histogram = new LongAdder[buckets];
+        for (int i = 0; i < buckets; i++) {
+            histogram[i] = new LongAdder();
+        }
+        return histogram;
+    }
+
     /**
      * Sets the maximum number of connections to use from now on.
      * The default value is 10 connections.
      *
      * @param max the maximum number of connections
      */
+    @Override
     public void setMaxConnections(int max) {
         if (max < 1) {
             throw new IllegalArgumentException("Invalid maxConnections value: " + max);
         }
-        this.maxConnections = max;
+        int delta = max - maxConnections.getAndSet(max);
+        if (delta > 0) {
+            permits.release(delta);
+        } else if (delta < 0) {
+            permits.reducePermits(-delta);
+        }
     }
 
     /**
@@ -133,8 +207,79 @@ public void setMaxConnections(int max) {
      *
      * @return the max the maximum number of connections
      */
+    @Override
     public int getMaxConnections() {
-        return maxConnections;
+        return maxConnections.get();
+    }
+
+    /**
+     * Sets the number of idle connections to keep open. Missing connections
+     * are opened right away, and later by a background thread. The default
+     * is 0.
+     *
+     * @param minIdle the minimum number of idle connections
+     */
+    @Override
+    public void setMinIdle(int minIdle) {
+        if (minIdle < 0) {
+            throw new IllegalArgumentException("Invalid minIdle value: " + minIdle);
+        }
+        this.minIdle = minIdle;
+        if (minIdle > 0) {
+            startHousekeeper();
+            fill();
+        }
+    }
+
+    @Override
+    public int getMinIdle() {
+        return minIdle;
+    }
+
+    /**
+     * Sets the maximum time in seconds a connection is kept open. Older
+     * connections are closed when they are returned to the pool, or when they
+     * are idle. The default is 0, meaning no limit.
+     *
+     * @param seconds the maximum lifetime, 0 meaning no limit
+     */
+    @Override
+    public void setMaxLifetime(int seconds) {
+        if (seconds < 0) {
+            throw new IllegalArgumentException("Invalid maxLifetime value: " + seconds);
+        }
+        this.maxLifetime = seconds;
+        if (seconds > 0) {
+            startHousekeeper();
+        }
+    }
+
+    @Override
+    public int getMaxLifetime() {
+        return maxLifetime;
+    }
+
+    /**
+     * Sets the time in seconds after which an idle connection is closed, if
+     * there are more than the minimum number of idle connections. The default
+     * is 0, meaning idle connections are kept open.
+     *
+     * @param seconds the idle timeout, 0 meaning no timeout
+     */
+    @Override
+    public void setIdleTimeout(int seconds) {
+        if (seconds < 0) {
+            throw new IllegalArgumentException("Invalid idleTimeout value: " + seconds);
+        }
+        this.idleTimeout = seconds;
+        if (seconds > 0) {
+            startHousekeeper();
+        }
+    }
+
+    @Override
+    public int getIdleTimeout() {
+        return idleTimeout;
     }
 
     /**
@@ -168,10 +313,21 @@ public void setLoginTimeout(int seconds) {
      */
     public void dispose() {
         isDisposed.set(true);
-
-        PooledConnection pc;
-        while ((pc = recycledConnections.poll()) != null) {
-            closeConnection(pc);
+        ScheduledThreadPoolExecutor executor = housekeeper.getAndSet(null);
+        if (executor != null) {
+            executor.shutdown();
+        }
+        ObjectName name = mbeanName.getAndSet(null);
+        if (name != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+            } catch (JMException e) {
+                log(e);
+            }
+        }
+        Entry entry;
+        while ((entry = idleConnections.poll()) != null) {
+            closeConnection(entry);
         }
     }
 
@@ -190,30 +346,32 @@ public void dispose() {
      */
     @Override
     public Connection getConnection() throws SQLException {
-        long max = System.nanoTime() + timeout * 1_000_000_000L;
-        int spin = 0;
-        do {
-            if (activeConnections.incrementAndGet() <= maxConnections) {
-                try {
-                    return getConnectionNow();
-                } catch (Throwable t) {
-                    activeConnections.decrementAndGet();
-                    throw t;
-                }
-            } else {
-                activeConnections.decrementAndGet();
-            }
-            if (--spin >= 0) {
-                continue;
-            }
-            try {
-                spin = 3;
-                Thread.sleep(1);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(timeout, TimeUnit.SECONDS)) {
+                connectionTimeouts.increment();
+                throw new SQLException("Login timeout", "08001", 8001);
             }
-        } while (System.nanoTime() - max <= 0);
-        throw new SQLException("Login timeout", "08001", 8001);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Login interrupted", "08001", 8001);
+        }
+        long wait = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+        int bucket = 0;
+        while (bucket < WAIT_TIME_BOUNDS.length && wait >= WAIT_TIME_BOUNDS[bucket]) {
+            bucket++;
+        }
+        waitTimeHistogram[bucket].increment();
+        int active = activeConnections.incrementAndGet();
+        utilizationHistogram[Math.min(Math.max(active * UTILIZATION_BUCKETS - 1, 0) / maxConnections.get(),
+                UTILIZATION_BUCKETS - 1)].increment();
+        try {
+            return getConnectionNow();
+        } catch (Throwable t) {
+            activeConnections.decrementAndGet();
+            permits.release();
+            throw t;
+        }
     }
 
     /**
@@ -228,19 +386,50 @@ private Connection getConnectionNow() throws SQLException {
         if (isDisposed.get()) {
             throw new IllegalStateException("Connection pool has been disposed.");
         }
-        PooledConnection pc = recycledConnections.poll();
-        if (pc == null) {
-            pc = dataSource.getPooledConnection();
+        long now = System.nanoTime();
+        Entry entry;
+        while ((entry = idleConnections.pollFirst()) != null) {
+            if (!entry.isExpired(now, maxLifetime)) {
+                PooledConnection pc = entry.pooledConnection;
+                try {
+                    Connection conn = pc.getConnection();
+                    // check the state of the session, without a query
+                    if (!conn.isClosed()) {
+                        pc.addConnectionEventListener(this);
+                        return conn;
+                    }
+                } catch (SQLException e) {
+                    log(e);
+                }
+            }
+            closeConnection(entry);
+        }
+        entry = createConnection();
+        PooledConnection pc = entry.pooledConnection;
+        Connection conn;
+        try {
+            conn = pc.getConnection();
+        } catch (Throwable t) {
+            closeConnection(entry);
+            throw t;
         }
-        Connection conn = pc.getConnection();
         pc.addConnectionEventListener(this);
         return conn;
     }
 
+    private Entry createConnection() throws SQLException {
+        PooledConnection pc = dataSource.getPooledConnection();
+        Entry entry = new Entry(pc);
+        connections.put(pc, entry);
+        connectionsCreated.increment();
+        return entry;
+    }
+
     /**
      * This method usually puts the connection back into the pool. There are
      * some exceptions: if the pool is disposed, the connection is disposed as
-     * well. If the pool is full, the connection is closed.
+     * well. If the pool is full, or if the connection is broken or too old,
+     * the connection is closed.
      *
      * @param pc the pooled connection
      */
@@ -250,26 +439,130 @@ private void recycleConnection(PooledConnection pc) {
             activeConnections.incrementAndGet();
             throw new AssertionError();
         }
-        if (!isDisposed.get() && active < maxConnections) {
-            recycledConnections.add(pc);
-            if (isDisposed.get()) {
-                dispose();
+        try {
+            Entry entry = connections.get(pc);
+            long now = System.nanoTime();
+            if (entry == null) {
+                closeConnection(pc);
+            } else if (!isDisposed.get() && active < maxConnections.get() && !entry.broken
+                    && !entry.isExpired(now, maxLifetime)) {
+                entry.lastUsed = now;
+                idleConnections.offerFirst(entry);
+                if (isDisposed.get()) {
+                    dispose();
+                }
+            } else {
+                closeConnection(entry);
             }
-        } else {
-            closeConnection(pc);
+        } finally {
+            permits.release();
         }
     }
 
+    private void closeConnection(Entry entry) {
+        connections.remove(entry.pooledConnection);
+        connectionsClosed.increment();
+        closeConnection(entry.pooledConnection);
+    }
+
     private void closeConnection(PooledConnection pc) {
         try {
             pc.close();
         } catch (SQLException e) {
-            if (logWriter != null) {
-                e.printStackTrace(logWriter);
+            log(e);
+        }
+    }
+
+    private void log(Exception e) {
+        PrintWriter w = logWriter;
+        if (w != null) {
+            e.printStackTrace(w);
+        }
+    }
+
+    private void startHousekeeper() {
+        if (housekeeper.get() == null && !isDisposed.get()) {
+            ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, r -> {
+                Thread thread = new Thread(r, "H2 Connection Pool Housekeeper");
+                thread.setDaemon(true);
+                return thread;
+            });
+            if (housekeeper.compareAndSet(null, executor)) {
+                executor.scheduleWithFixedDelay(this::houseKeeping, HOUSEKEEPING_INTERVAL, HOUSEKEEPING_INTERVAL,
+                        TimeUnit.MILLISECONDS);
+                if (isDisposed.get()) {
+                    dispose();
+                }
+            } else {
+                executor.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Close the idle connections that are too old or were idle for too long,
+     * and open connections until there are enough idle connections.
+     */
+    private void houseKeeping() {
+        try {
+            long now = System.nanoTime();
+            int idle = idleTimeout;
+            for (Iterator<Entry> it = idleConnections.descendingIterator(); it.hasNext();) {
+                Entry entry = it.next();
+                if ((entry.isExpired(now, maxLifetime)
+                        || idle > 0 && now - entry.lastUsed > TimeUnit.SECONDS.toNanos(idle)
+                                && idleConnections.size() > minIdle)
+                        && idleConnections.remove(entry)) {
+                    closeConnection(entry);
+                }
+            }
+            fill();
+        } catch (Exception e) {
+            // keep the housekeeper running
+            log(e);
+        }
+    }
+
+    private void fill() {
+        while (!isDisposed.get() && idleConnections.size() < minIdle
+                && connections.size() < maxConnections.get()) {
+            Entry entry;
+            try {
+                entry = createConnection();
+            } catch (SQLException e) {
+                log(e);
+                break;
+            }
+            idleConnections.offerLast(entry);
+            if (isDisposed.get()) {
+                dispose();
             }
         }
     }
 
+    /**
+     * Publish the statistics of this pool over JMX, with the object name
+     * <code>org.h2:type=ConnectionPool,name=&lt;name&gt;</code>. The bean is
+     * removed when the pool is disposed.
+     *
+     * @param name the name of the pool
+     * @return the object name
+     * @throws JMException if the bean could not be registered
+     */
+    public ObjectName registerMBean(String name) throws JMException {
+        Hashtable<String, String> map = new Hashtable<>();
+        map.put("type", "ConnectionPool");
+        map.put("name", name.replace(':', '_').replace(',', '_').replace('=', '_'));
+        ObjectName objectName = new ObjectName("org.h2", map);
+        MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+        mbeanServer.registerMBean(new DocumentedMBean(this, JdbcConnectionPoolMBean.class), objectName);
+        ObjectName old = mbeanName.getAndSet(objectName);
+        if (old != null) {
+            mbeanServer.unregisterMBean(old);
+        }
+        return objectName;
+    }
+
     /**
      * INTERNAL
      */
@@ -285,7 +578,11 @@ public void connectionClosed(ConnectionEvent event) {
      */
     @Override
     public void connectionErrorOccurred(ConnectionEvent event) {
-        // not used
+        Entry entry = connections.get(event.getSource());
+        if (entry != null) {
+            // close the connection when it is returned
+            entry.broken = true;
+        }
     }
 
     /**
@@ -296,10 +593,55 @@ public void connectionErrorOccurred(ConnectionEvent event) {
      *
      * @return the number of active connections.
      */
+    @Override
     public int getActiveConnections() {
         return activeConnections.get();
     }
 
+    @Override
+    public int getIdleConnections() {
+        return idleConnections.size();
+    }
+
+    @Override
+    public int getWaitingThreads() {
+        return permits.getQueueLength();
+    }
+
+    @Override
+    public long getConnectionsCreated() {
+        return connectionsCreated.sum();
+    }
+
+    @Override
+    public long getConnectionsClosed() {
+        return connectionsClosed.sum();
+    }
+
+    @Override
+    public long getConnectionTimeouts() {
+        return connectionTimeouts.sum();
+    }
+
+    @Override
+    public long[] getWaitTimeHistogram() {
+        return sum(waitTimeHistogram);
+    }
+
+    @Override
+    public long[] getUtilizationHistogram() {
+        return sum(utilizationHistogram);
+    }
+
+    private static long[] sum(LongAdder[] histogram) {
+        int length = histogram.length;
+        long[] result = new long[length];
+        for (int i = 0; i < length; i++) {
+            result[i] = histogram[i].sum();
+        }
+        return result;
+    }
+
     /**
      * INTERNAL
      */
@@ -354,5 +696,45 @@ public Logger getParentLogger() {
         return null;
     }
 
+    /**
+     * A pooled connection with its timestamps.
+     */
+    private static final class Entry {
+
+        final PooledConnection pooledConnection;
+
+        final long created = System.nanoTime();
+
+        volatile long lastUsed = created;
+
+        volatile boolean broken;
+
+        Entry(PooledConnection pooledConnection) {
+            this.pooledConnection = pooledConnection;
+        }
+
+        boolean isExpired(long now, int maxLifetime) {
+            return maxLifetime > 0 && now - created > TimeUnit.SECONDS.toNanos(maxLifetime);
+        }
+
+    }
+
+    /**
+     * A fair semaphore whose number of permits can be reduced.
+     */
+    private static final class Permits extends Semaphore {
+
+        private static final long serialVersionUID = 1L;
+
+        Permits(int permits) {
+            super(permits, true);
+        }
+
+        @Override
+        protected void reducePermits(int reduction) {
+            super.reducePermits(reduction);
+        }
+
+    }
 
 }
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2004-2025 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (https://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.jdbcx;
+
+/**
+ * Settings and statistics of a connection pool.
+ */
+public interface JdbcConnectionPoolMBean {
+
+    /**
+     * The maximum number of connections in use at the same time.
+     *
+     * @return the maximum number of connections
+     */
+    int getMaxConnections();
+
+    /**
+     * Change the maximum number of connections in use at the same time.
+     *
+     * @param max the maximum number of connections
+     */
+    void setMaxConnections(int max);
+
+    /**
+     * The number of idle connections that are kept open.
+     *
+     * @return the minimum number of idle connections
+     */
+    int getMinIdle();
+
+    /**
+     * Change the number of idle connections that are kept open.
+     *
+     * @param minIdle the minimum number of idle connections
+     */
+    void setMinIdle(int minIdle);
+
+    /**
+     * The maximum time in seconds a connection is kept open, 0 for no limit.
+     *
+     * @return the maximum lifetime in seconds
+     */
+    int getMaxLifetime();
+
+    /**
+     * Change the maximum time in seconds a connection is kept open.
+     *
+     * @param seconds the maximum lifetime, 0 meaning no limit
+     */
+    void setMaxLifetime(int seconds);
+
+    /**
+     * The time in seconds after which an idle connection is closed, 0 for no
+     * timeout.
+     *
+     * @return the idle timeout in seconds
+     */
+    int getIdleTimeout();
+
+    /**
+     * Change the time in seconds after which an idle connection is closed.
+     *
+     * @param seconds the idle timeout, 0 meaning no timeout
+     */
+    void setIdleTimeout(int seconds);
+
+    /**
+     * The number of connections in use.
+     *
+     * @return the number of active connections
+     */
+    int getActiveConnections();
+
+    /**
+     * The number of open connections that are not in use.
+     *
+     * @return the number of idle connections
+     */
+    int getIdleConnections();
+
+    /**
+     * The approximate number of threads waiting for a connection.
+     *
+     * @return the number of waiting threads
+     */
+    int getWaitingThreads();
+
+    /**
+     * The number of connections opened by the pool.
+     *
+     * @return the number of opened connections
+     */
+    long getConnectionsCreated();
+
+    /**
+     * The number of connections closed by the pool.
+     *
+     * @return the number of closed connections
+     */
+    long getConnectionsClosed();
+
+    /**
+     * The number of requests that timed out while waiting for a connection.
+     *
+     * @return the number of timeouts
+     */
+    long getConnectionTimeouts();
+
+    /**
+     * The number of connection requests by the time they waited for a free
+     * connection: less than 10 microseconds, 100 microseconds, 1, 10, 100,
+     * 1000 milliseconds, and longer.
+     *
+     * @return the number of requests per bucket
+     */
+    long[] getWaitTimeHistogram();
+
+    /**
+     * The number of connection requests by the fraction of the maximum number
+     * of connections that was in use after the request: up to 10%, 20%, and so
+     * on up to 100%.
+     *
+     * @return the number of requests per bucket
+     */
+    long[] getUtilizationHistogram();
+
+}
@@ -8,6 +8,7 @@
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
 import java.sql.Statement;
 import java.util.ArrayList;
 
@@ -141,6 +142,20 @@ void closedHandle() {
         handleConn = null;
     }
 
+    /**
+     * INTERNAL
+     *
+     * @param e the exception
+     */
+    void fatalError(SQLException e) {
+        debugCodeCall("fatalError");
+        ConnectionEvent event = new ConnectionEvent(this, e);
+        for (int i = listeners.size() - 1; i >= 0; i--) {
+            ConnectionEventListener listener = listeners.get(i);
+            listener.connectionErrorOccurred(event);
+        }
+    }
+
     /**
      * Get the transaction timeout.
      *
@@ -455,7 +470,11 @@ public void close() throws SQLException {
                         rollback();
                         setAutoCommit(true);
                     } catch (SQLException e) {
-                        // ignore
+                        if (e instanceof SQLNonTransientConnectionException || super.isClosed()) {
+                            // the session was closed or the connection to the
+                            // server was lost, the pooled connection is unusable
+                            fatalError(e);
+                        }
                     }
                     closedHandle();
                     isClosed = true;
@@ -19,6 +19,7 @@
 import java.time.format.DateTimeFormatterBuilder;
 import java.util.Locale;
 import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.h2.api.ErrorCode;
 import org.h2.engine.Constants;
@@ -103,6 +104,7 @@ public class TraceSystem implements TraceWriter {
      */
     private int checkSize = -1;
     private boolean closed;
+    private final ReentrantLock lock = new ReentrantLock();
     private boolean writingErrorLogged;
     private TraceWriter writer = this;
     private PrintStream sysOut = System.out;
@@ -282,7 +284,10 @@ public void write(int level, String module, String s, Throwable t) {
         }
     }
 
-    private synchronized void writeFile(String s, Throwable t) {
+    private void writeFile(String s, Throwable t) {
+        // not synchronized, so that virtual threads are not pinned while
+        // writing
+        lock.lock();
         try {
             checkSize = (checkSize + 1) % CHECK_SIZE_EACH_WRITES;
             if (checkSize == 0) {
@@ -316,6 +321,8 @@ private synchronized void writeFile(String s, Throwable t) {
             }
         } catch (Exception e) {
             logWritingError(e);
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -352,19 +359,24 @@ private boolean openWriter() {
         return true;
     }
 
-    private synchronized void closeWriter() {
-        if (printWriter != null) {
-            printWriter.flush();
-            printWriter.close();
-            printWriter = null;
-        }
-        if (fileWriter != null) {
-            try {
-                fileWriter.close();
-            } catch (IOException e) {
-                // ignore
+    private void closeWriter() {
+        lock.lock();
+        try {
+            if (printWriter != null) {
+                printWriter.flush();
+                printWriter.close();
+                printWriter = null;
+            }
+            if (fileWriter != null) {
+                try {
+                    fileWriter.close();
+                } catch (IOException e) {
+                    // ignore
+                }
+                fileWriter = null;
             }
-            fileWriter = null;
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -0,0 +1,246 @@
+/*
+ * Copyright 2004-2025 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (https://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.mvstore;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * The list of chunks contained in a backup of a store file. The manifest is
+ * stored in the backup next to the data, and is used to create an incremental
+ * backup that only contains the chunks that are not in the previous backup,
+ * and to restore a chain of incremental backups.
+ * <p>
+ * A chunk is identified by its id, block and version, so that chunks that
+ * were moved by compaction are copied again.
+ */
+public final class BackupManifest {
+
+    /**
+     * The suffix of the manifest entry in a backup.
+     */
+    public static final String SUFFIX = ".chunks";
+
+    /**
+     * The suffix of the entry with the store header in an incremental backup.
+     */
+    public static final String HEADER_SUFFIX = ".header";
+
+    /**
+     * The suffix of a chunk entry in an incremental backup, followed by the
+     * chunk id in hexadecimal notation.
+     */
+    public static final String CHUNK_SUFFIX = ".chunk.";
+
+    private static final String ATTR_VERSION = "version";
+    private static final String ATTR_PREVIOUS = "previous";
+
+    /**
+     * A chunk in the manifest.
+     */
+    public static final class Entry {
+
+        /**
+         * The chunk id.
+         */
+        public final int id;
+
+        /**
+         * The first block of the chunk in the file.
+         */
+        public final long block;
+
+        /**
+         * The length of the chunk in blocks.
+         */
+        public final int len;
+
+        /**
+         * The version of the chunk.
+         */
+        public final long version;
+
+        Entry(int id, long block, int len, long version) {
+            this.id = id;
+            this.block = block;
+            this.len = len;
+            this.version = version;
+        }
+
+        String getKey() {
+            return id + ":" + block + ":" + version;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder buff = new StringBuilder();
+            DataUtils.appendMap(buff, "chunk", id);
+            DataUtils.appendMap(buff, "block", block);
+            DataUtils.appendMap(buff, "len", len);
+            DataUtils.appendMap(buff, "version", version);
+            return buff.toString();
+        }
+    }
+
+    private final long version;
+
+    private final long previousVersion;
+
+    private final ArrayList<Entry> entries;
+
+    private final HashSet<String> keys = new HashSet<>();
+
+    private final HashMap<Integer, Entry> entriesById = new HashMap<>();
+
+    BackupManifest(long version, long previousVersion, ArrayList<Entry> entries) {
+        this.version = version;
+        this.previousVersion = previousVersion;
+        this.entries = entries;
+        for (Entry e : entries) {
+            keys.add(e.getKey());
+            entriesById.put(e.id, e);
+        }
+    }
+
+    /**
+     * Get the version of the store contained in the backup.
+     *
+     * @return the version
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Get the version of the previous backup this incremental backup is based
+     * on.
+     *
+     * @return the version, or -1 for a full backup
+     */
+    public long getPreviousVersion() {
+        return previousVersion;
+    }
+
+    /**
+     * Get the chunks.
+     *
+     * @return the chunks
+     */
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * Check whether the backup contains the given chunk at the same location.
+     *
+     * @param entry the chunk
+     * @return true if it is contained
+     */
+    public boolean contains(Entry entry) {
+        return keys.contains(entry.getKey());
+    }
+
+    /**
+     * Get the chunk with the given id.
+     *
+     * @param id the chunk id
+     * @return the chunk, or null if not found
+     */
+    public Entry getEntry(int id) {
+        return entriesById.get(id);
+    }
+
+    /**
+     * Restore an entry of the incremental backup with this manifest by
+     * writing its data to the file.
+     *
+     * @param file the file to restore
+     * @param suffix the suffix of the entry name after the store file name,
+     *            either {@link #HEADER_SUFFIX} or {@link #CHUNK_SUFFIX}
+     *            followed by the chunk id
+     * @param in the data of the entry
+     * @throws IOException on failure
+     */
+    public void restore(FileChannel file, String suffix, InputStream in) throws IOException {
+        long pos;
+        if (suffix.equals(HEADER_SUFFIX)) {
+            pos = 0;
+        } else if (suffix.startsWith(CHUNK_SUFFIX)) {
+            Entry e = getEntry(DataUtils.parseHexInt(suffix.substring(CHUNK_SUFFIX.length())));
+            if (e == null) {
+                throw DataUtils.newMVStoreException(DataUtils.ERROR_FILE_CORRUPT,
+                        "Chunk {0} is not in the backup manifest", suffix);
+            }
+            pos = e.block * FileStore.BLOCK_SIZE;
+        } else {
+            throw DataUtils.newMVStoreException(DataUtils.ERROR_FILE_CORRUPT,
+                    "Unknown backup entry {0}", suffix);
+        }
+        byte[] buff = new byte[FileStore.BLOCK_SIZE * 16];
+        for (int len; (len = in.read(buff)) > 0; pos += len) {
+            DataUtils.writeFully(file, pos, ByteBuffer.wrap(buff, 0, len));
+        }
+    }
+
+    /**
+     * Write the manifest.
+     *
+     * @param out the output stream
+     * @throws IOException on failure
+     */
+    public void write(OutputStream out) throws IOException {
+        StringBuilder buff = new StringBuilder();
+        DataUtils.appendMap(buff, ATTR_VERSION, version);
+        if (previousVersion >= 0) {
+            DataUtils.appendMap(buff, ATTR_PREVIOUS, previousVersion);
+        }
+        buff.append('\n');
+        for (Entry e : entries) {
+            buff.append(e).append('\n');
+        }
+        out.write(buff.toString().getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    /**
+     * Read a manifest.
+     *
+     * @param in the input stream
+     * @return the manifest
+     * @throws IOException on failure
+     */
+    public static BackupManifest read(InputStream in) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.ISO_8859_1));
+        String line = reader.readLine();
+        if (line == null) {
+            throw DataUtils.newMVStoreException(DataUtils.ERROR_FILE_CORRUPT, "Backup manifest is empty");
+        }
+        HashMap<String, String> header = DataUtils.parseMap(line);
+        long version = DataUtils.readHexLong(header, ATTR_VERSION, -1);
+        long previousVersion = DataUtils.readHexLong(header, ATTR_PREVIOUS, -1);
+        ArrayList<Entry> entries = new ArrayList<>();
+        while ((line = reader.readLine()) != null) {
+            if (!line.isEmpty()) {
+                HashMap<String, String> map = DataUtils.parseMap(line);
+                entries.add(new Entry(DataUtils.readHexInt(map, "chunk", -1),
+                        DataUtils.readHexLong(map, "block", 0),
+                        DataUtils.readHexInt(map, "len", 0),
+                        DataUtils.readHexLong(map, "version", 0)));
+            }
+        }
+        return new BackupManifest(version, previousVersion, entries);
+    }
+
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright 2004-2025 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (https://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.mvstore;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import org.h2.store.fs.FileUtils;
+
+/**
+ * Ships the writes of a single file store to a directory, from where they are
+ * applied to a read-only replica by {@link MVStoreReplica}.
+ * <p>
+ * All writes and truncations of the file (chunks, moved chunks and store
+ * headers) are recorded in the order they are made. They are published as
+ * segment files after each chunk is written. Each segment continues where the
+ * previous one ended, and a replica that applied a sequence of segments has
+ * the same content as the original file at the time the last segment was
+ * published. When the store is opened, the whole file is shipped first, so
+ * that writes that were not published before a crash cannot get lost.
+ * <p>
+ * A copy of the whole file supersedes all older segments, they are deleted
+ * once the copy is published. The whole file is also shipped again when more
+ * data was shipped since the last copy than the size of the file, so that the
+ * directory stays within about twice the file size even if no replica consumes
+ * the segments.
+ * <p>
+ * The directory must only be read by one replica, as the replica deletes the
+ * segments it has applied.
+ */
+final class ChunkShipper {
+
+    /**
+     * The suffix of published segment files.
+     */
+    static final String SEGMENT_SUFFIX = ".seg";
+
+    /**
+     * The suffix of the segment file that is currently written.
+     */
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    /**
+     * Record type of a write.
+     */
+    static final int WRITE = 'W';
+
+    /**
+     * Record type of a truncation.
+     */
+    static final int TRUNCATE = 'T';
+
+    /**
+     * Record type that marks the end of a segment.
+     */
+    static final int END = 'E';
+
+    private static final int BASE_COPY_SIZE = 1024 * 1024;
+
+    private final String directory;
+
+    private final FileChannel file;
+
+    private long nextSegment;
+
+    /**
+     * The number of bytes written since the whole file was shipped.
+     */
+    private long shippedBytes;
+
+    private String currentFileName;
+
+    private DataOutputStream out;
+
+    ChunkShipper(String directory, FileChannel file) {
+        if (!FileUtils.isDirectory(directory)) {
+            throw DataUtils.newIllegalArgumentException(
+                    "Directory does not exist: {0}", directory);
+        }
+        this.directory = directory;
+        this.file = file;
+        long last = 0;
+        for (String name : FileUtils.newDirectoryStream(directory)) {
+            if (name.endsWith(TEMP_SUFFIX)) {
+                FileUtils.delete(name);
+            } else if (name.endsWith(SEGMENT_SUFFIX)) {
+                last = Math.max(last, getSegmentNumber(name));
+            }
+        }
+        nextSegment = last + 1;
+    }
+
+    /**
+     * Get the sequence number of a segment.
+     *
+     * @param fileName the file name of the segment
+     * @return the sequence number
+     */
+    static long getSegmentNumber(String fileName) {
+        String name = FileUtils.getName(fileName);
+        return DataUtils.parseHexLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    /**
+     * Ship the whole content of the file, so that a replica can start from
+     * scratch, and delete the segments that are superseded by it.
+     */
+    synchronized void shipBase() {
+        publishSegment();
+        long base = nextSegment;
+        try {
+            long size = file.size();
+            truncate(0);
+            ByteBuffer buff = ByteBuffer.allocate((int) Math.min(BASE_COPY_SIZE, Math.max(size, 1)));
+            for (long pos = 0; pos < size; pos += buff.limit()) {
+                buff.clear();
+                buff.limit((int) Math.min(buff.capacity(), size - pos));
+                DataUtils.readFully(file, pos, buff);
+                write(pos, buff);
+            }
+        } catch (IOException e) {
+            throw DataUtils.newMVStoreException(
+                    DataUtils.ERROR_READING_FAILED,
+                    "Could not ship the file to {0}", directory, e);
+        }
+        publishSegment();
+        shippedBytes = 0;
+        // a replica that is applying the older segments starts again from
+        // the base when it finds them missing
+        for (String name : FileUtils.newDirectoryStream(directory)) {
+            if (name.endsWith(SEGMENT_SUFFIX) && getSegmentNumber(name) < base) {
+                FileUtils.tryDelete(name);
+            }
+        }
+    }
+
+    /**
+     * Record a write.
+     *
+     * @param pos the position in the file
+     * @param src the written data, from the position to the limit
+     */
+    synchronized void write(long pos, ByteBuffer src) {
+        try {
+            DataOutputStream out = getOutput();
+            int len = src.remaining();
+            out.writeByte(WRITE);
+            out.writeLong(pos);
+            out.writeInt(len);
+            if (src.hasArray()) {
+                out.write(src.array(), src.arrayOffset() + src.position(), len);
+            } else {
+                byte[] bytes = new byte[len];
+                src.duplicate().get(bytes);
+                out.write(bytes);
+            }
+            shippedBytes += len;
+        } catch (IOException e) {
+            throw writingFailed(e);
+        }
+    }
+
+    /**
+     * Record a truncation.
+     *
+     * @param size the new size of the file
+     */
+    synchronized void truncate(long size) {
+        try {
+            DataOutputStream out = getOutput();
+            out.writeByte(TRUNCATE);
+            out.writeLong(size);
+        } catch (IOException e) {
+            throw writingFailed(e);
+        }
+    }
+
+    /**
+     * Publish the writes recorded since the last call as a new segment. If
+     * more data was shipped since the last copy of the whole file than the
+     * size of the file, the whole file is shipped again. The caller must make
+     * sure that no writes are in progress.
+     */
+    synchronized void publish() {
+        publishSegment();
+        long size;
+        try {
+            size = file.size();
+        } catch (IOException e) {
+            throw writingFailed(e);
+        }
+        if (shippedBytes > Math.max(size, BASE_COPY_SIZE)) {
+            shipBase();
+        }
+    }
+
+    private void publishSegment() {
+        DataOutputStream out = this.out;
+        if (out != null) {
+            this.out = null;
+            try {
+                out.writeByte(END);
+                out.close();
+            } catch (IOException e) {
+                throw writingFailed(e);
+            }
+            String fileName = currentFileName;
+            FileUtils.move(fileName, fileName.substring(0, fileName.length() - TEMP_SUFFIX.length())
+                    + SEGMENT_SUFFIX);
+        }
+    }
+
+    /**
+     * Publish the pending writes and stop shipping.
+     */
+    synchronized void close() {
+        publishSegment();
+    }
+
+    private DataOutputStream getOutput() throws IOException {
+        if (out == null) {
+            currentFileName = directory + '/' + String.format("%016x", nextSegment++) + TEMP_SUFFIX;
+            out = new DataOutputStream(new BufferedOutputStream(
+                    FileUtils.newOutputStream(currentFileName, false), BASE_COPY_SIZE / 16));
+        }
+        return out;
+    }
+
+    private MVStoreException writingFailed(IOException e) {
+        return DataUtils.newMVStoreException(
+                DataUtils.ERROR_WRITING_FAILED,
+                "Could not ship the changes to {0}", directory, e);
+    }
+
+}
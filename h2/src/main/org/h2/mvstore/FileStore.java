@@ -1347,6 +1347,61 @@ protected final MVStore getMvStore() {
 
     public abstract void backup(ZipOutputStream out) throws IOException;
 
+    /**
+     * Create a backup. If the previous backup is specified, only the chunks
+     * that are not contained in the previous backup are written.
+     *
+     * @param out the output stream
+     * @param previous the manifest of the previous backup, or null for a full
+     *            backup
+     * @throws IOException on failure
+     */
+    public void backup(ZipOutputStream out, BackupManifest previous) throws IOException {
+        if (previous != null) {
+            throw DataUtils.newUnsupportedOperationException("Incremental backup is not supported by " + this);
+        }
+        backup(out);
+    }
+
+    /**
+     * Create the manifest of the chunks of the last stored version.
+     *
+     * @param previousVersion the version of the previous backup, or -1
+     * @return the manifest
+     */
+    protected final BackupManifest createBackupManifest(long previousVersion) {
+        ArrayList<BackupManifest.Entry> entries = new ArrayList<>();
+        long version = -1;
+        saveChunkLock.lock();
+        try {
+            C last = lastChunk;
+            if (last != null) {
+                version = last.version;
+                MVMap<String, String> snapshot = layout.openReadOnly(last.layoutRootPos, version);
+                for (Iterator<String> it = snapshot.keyIterator(DataUtils.LAYOUT_CHUNK); it.hasNext();) {
+                    String key = it.next();
+                    if (!key.startsWith(DataUtils.LAYOUT_CHUNK)) {
+                        break;
+                    }
+                    int id = DataUtils.parseHexInt(key.substring(DataUtils.LAYOUT_CHUNK.length()));
+                    if (id != last.id) {
+                        // chunks may have been moved after the layout was stored
+                        C c = chunks.get(id);
+                        if (c == null) {
+                            c = createChunk(snapshot.get(key));
+                        }
+                        entries.add(new BackupManifest.Entry(c.id, c.block, c.len, c.version));
+                    }
+                }
+                // the layout does not contain the position of its own chunk
+                entries.add(new BackupManifest.Entry(last.id, last.block, last.len, last.version));
+            }
+        } finally {
+            saveChunkLock.unlock();
+        }
+        return new BackupManifest(version, previousVersion, entries);
+    }
+
     protected final ConcurrentMap<Integer, C> getChunks() {
         return chunks;
     }
@@ -993,7 +993,12 @@ public boolean isEmpty() {
         return sizeAsLong() == 0;
     }
 
-    final long getCreateVersion() {
+    /**
+     * Get version of the store, at the moment when map was created.
+     *
+     * @return version
+     */
+    public final long getCreateVersion() {
         return createVersion;
     }
 
@@ -1386,6 +1391,83 @@ public void append(K key, V value) {
         }
     }
 
+    /**
+     * Appends a new leaf page with the specified entries at the right edge of
+     * this map. Unlike {@link #append(Object, Object)} and put operations, the
+     * last leaf page is not copied, the new page is attached to its parent as
+     * is, and internal pages on the path are split when they become full, so
+     * a map filled this way is built bottom-up from full leaf pages. This
+     * method is NOT thread safe and can not be used concurrently with any
+     * other method that updates this map.
+     *
+     * @param keys the keys in ascending order, all of them must be larger than
+     *            the last key of this map; the array must be created by the
+     *            key type and is not copied
+     * @param values the values; the array must be created by the value type
+     *            and is not copied
+     */
+    public void appendLeaf(K[] keys, V[] values) {
+        assert keys.length == values.length;
+        if (keys.length == 0) {
+            return;
+        }
+        beforeWrite();
+        RootReference<K,V> rootReference = flushAppendBuffer(lockRoot(getRoot(), 1), true);
+        Page<K,V> rootPage = rootReference.root;
+        try {
+            long version = rootReference.version;
+            int keysPerPage = store.getKeysPerPage();
+            IntValueHolder unsavedMemoryHolder = new IntValueHolder();
+            Page<K,V> page = Page.createLeaf(this, keys, values, 0);
+            unsavedMemoryHolder.value += page.getMemory();
+            K key = keys[0];
+            CursorPos<K,V> tip = rootPage.getAppendCursorPos(null);
+            Page<K,V> p = tip.page;
+            assert p.getKeyCount() == 0 || compare(p.getKey(p.getKeyCount() - 1), key) < 0;
+            CursorPos<K,V> pos = tip.parent;
+            // the last leaf page is not copied
+            tip = pos;
+            while (true) {
+                if (pos == null) {
+                    if (p.getKeyCount() == 0) {
+                        p = page;
+                    } else {
+                        K[] k = p.createKeyStorage(1);
+                        k[0] = key;
+                        Page.PageReference<K,V>[] children = Page.createRefStorage(2);
+                        children[0] = new Page.PageReference<>(p);
+                        children[1] = new Page.PageReference<>(page);
+                        unsavedMemoryHolder.value += p.getMemory();
+                        p = Page.createNode(this, k, children, p.getTotalCount() + page.getTotalCount(), 0);
+                    }
+                    break;
+                }
+                Page<K,V> c = p;
+                p = pos.page;
+                int index = pos.index;
+                pos = pos.parent;
+                p = p.copy();
+                p.setChild(index, page);
+                p.insertNode(index, key, c);
+                int keyCount = p.getKeyCount();
+                int at = keyCount - 2;
+                if (keyCount <= keysPerPage && (p.getMemory() < store.getMaxPageSize() || at <= 0)) {
+                    break;
+                }
+                key = p.getKey(at);
+                page = p.split(at);
+                unsavedMemoryHolder.value += p.getMemory() + page.getMemory();
+            }
+            rootPage = replacePage(pos, p, unsavedMemoryHolder);
+            if (isPersistent()) {
+                registerUnsavedMemory(unsavedMemoryHolder.value
+                        + (tip != null ? tip.processRemovalInfo(version) : 0));
+            }
+        } finally {
+            unlockRoot(rootPage);
+        }
+    }
+
     /**
      * Removes last entry from this map. this method is NOT thread safe and can not be used
      * neither concurrently, nor in combination with any method that updates this map.
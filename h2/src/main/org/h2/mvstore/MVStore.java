@@ -162,6 +162,11 @@ public final class MVStore implements AutoCloseable {
      */
     private final AtomicBoolean storeOperationInProgress = new AtomicBoolean();
 
+    /**
+     * The action to run before changes are persisted, or null.
+     */
+    private volatile Runnable beforeStoreAction;
+
     private volatile int state;
 
     private final FileStore<?> fileStore;
@@ -836,10 +841,11 @@ void storeNow() {
 
     private void storeNow(boolean syncWrite) {
         try {
+            assert storeLock.isHeldByCurrentThread();
+            runBeforeStoreAction();
             int currentUnsavedMemory = unsavedMemory;
             long version = currentVersion;
 
-            assert storeLock.isHeldByCurrentThread();
             fileStore.storeIt(collectChangedMapRoots(version), version, syncWrite);
 
             // some pages might have been changed in the meantime (in the newest
@@ -854,6 +860,24 @@ private void storeNow(boolean syncWrite) {
         }
     }
 
+    /**
+     * Run the before-store action after the version was switched, so that its
+     * changes belong to the version being stored, and changes made later
+     * belong to the next one. Changes of the action must not start another
+     * store operation.
+     */
+    private void runBeforeStoreAction() {
+        Runnable action = beforeStoreAction;
+        if (action != null) {
+            boolean inProgress = storeOperationInProgress.getAndSet(true);
+            try {
+                action.run();
+            } finally {
+                storeOperationInProgress.set(inProgress);
+            }
+        }
+    }
+
     private ArrayList<Page<?,?>> collectChangedMapRoots(long version) {
         long lastStoredVersion = version - 2;
         ArrayList<Page<?,?>> changed = new ArrayList<>();
@@ -1584,6 +1608,19 @@ private boolean isOpenOrStopping() {
         return state <= STATE_STOPPING;
     }
 
+    /**
+     * Set the action to run each time before the changes are persisted. The
+     * action runs under the store lock, so no other store operation can run
+     * at this time. It runs after the version was switched, also when chunks
+     * are stored by compaction. It may change maps; these changes are
+     * persisted together with other changes of the stored version.
+     *
+     * @param action the action, or null
+     */
+    public void setBeforeStoreAction(Runnable action) {
+        beforeStoreAction = action;
+    }
+
     /**
      * Set the maximum delay in milliseconds to auto-commit changes.
      * <p>
@@ -1914,6 +1951,20 @@ public Builder readOnly() {
             return set("readOnly", 1);
         }
 
+        /**
+         * Ship all writes of the file to the given directory, so that they can
+         * be applied to a read-only replica with {@link MVStoreReplica}. The
+         * directory must already exist, and it must not be used by more than
+         * one replica. When the store is opened, the whole file is shipped
+         * first.
+         *
+         * @param directory the directory
+         * @return this
+         */
+        public Builder replicaDirectory(String directory) {
+            return set("replicaDirectory", directory);
+        }
+
         /**
          * Set the number of keys per page.
          *
@@ -0,0 +1,267 @@
+/*
+ * Copyright 2004-2025 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (https://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.mvstore;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import org.h2.store.fs.FileUtils;
+
+/**
+ * A read-only replica of a store that ships its changes to a directory, see
+ * {@link MVStore.Builder#replicaDirectory(String)}.
+ * <p>
+ * The replica applies the shipped segments to its own copy of the file and
+ * then opens the copy in read-only mode. Each refresh presents a consistent
+ * snapshot of the original store, as it was when the last applied segment was
+ * published. Readers access the snapshot within
+ * {@link #read(Function)}; a refresh waits until current readers are done.
+ * <p>
+ * The replica may run in a different process than the original store, as long
+ * as both can access the directory.
+ * <p>
+ * Limitations:
+ * <ul>
+ * <li>The replica is a plain {@link MVStore}, it is only accessible with
+ * {@link #read(Function)}. It can't be opened as a database through JDBC, as
+ * the copy of the file is rewritten in place on each refresh.</li>
+ * <li>Each time the original store is opened, its whole file is shipped and
+ * applied again, as writes that weren't published before a crash can't be
+ * detected otherwise.</li>
+ * <li>Segments stay in the directory until a replica applies them. The
+ * original store ships the whole file again and deletes the older segments
+ * when they grow larger than the file, so the directory stays within about
+ * twice the file size.</li>
+ * </ul>
+ */
+public final class MVStoreReplica implements AutoCloseable {
+
+    private final String fileName;
+
+    private final String directory;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private MVStore store;
+
+    private volatile boolean closed;
+
+    private volatile MVStoreException refreshException;
+
+    private final Thread refresher;
+
+    /**
+     * Open a replica.
+     *
+     * @param fileName the file name of the replica
+     * @param directory the directory the changes are shipped to
+     * @param refreshDelay the delay in milliseconds between automatic
+     *            refreshes, or 0 to only refresh when {@link #refresh()} is
+     *            called
+     */
+    public MVStoreReplica(String fileName, String directory, int refreshDelay) {
+        if (!FileUtils.isDirectory(directory)) {
+            throw DataUtils.newIllegalArgumentException(
+                    "Directory does not exist: {0}", directory);
+        }
+        this.fileName = fileName;
+        this.directory = directory;
+        if (!refresh() && FileUtils.size(fileName) > 0) {
+            store = openStore();
+        }
+        if (refreshDelay > 0) {
+            refresher = new Thread(() -> {
+                while (!closed) {
+                    try {
+                        Thread.sleep(refreshDelay);
+                        refresh();
+                    } catch (InterruptedException ignore) {
+                        // closed
+                    } catch (MVStoreException e) {
+                        refreshException = e;
+                        return;
+                    }
+                }
+            }, "H2 Replica Refresh " + fileName);
+            refresher.setDaemon(true);
+            refresher.start();
+        } else {
+            refresher = null;
+        }
+    }
+
+    /**
+     * Apply the segments that were shipped since the last refresh and open a
+     * new snapshot.
+     *
+     * @return whether any segments were applied
+     */
+    public boolean refresh() {
+        ArrayList<String> segments = listSegments();
+        if (segments.isEmpty()) {
+            return false;
+        }
+        lock.writeLock().lock();
+        try {
+            if (closed) {
+                return false;
+            }
+            if (store != null) {
+                store.close();
+                store = null;
+            }
+            try (FileChannel file = FileUtils.open(fileName, "rw")) {
+                while (!apply(file, segments)) {
+                    // the segments were superseded by a copy of the whole
+                    // file, which is published before they are deleted
+                    segments = listSegments();
+                }
+                file.force(true);
+            } catch (IOException e) {
+                throw DataUtils.newMVStoreException(
+                        DataUtils.ERROR_WRITING_FAILED,
+                        "Could not apply changes to {0}", fileName, e);
+            }
+            // a segment that is applied again after a crash leads to the same
+            // content, as all following segments are applied again as well
+            for (String segment : segments) {
+                FileUtils.delete(segment);
+            }
+            if (FileUtils.size(fileName) > 0) {
+                store = openStore();
+            }
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private ArrayList<String> listSegments() {
+        ArrayList<String> segments = new ArrayList<>();
+        for (String name : FileUtils.newDirectoryStream(directory)) {
+            if (name.endsWith(ChunkShipper.SEGMENT_SUFFIX)) {
+                segments.add(name);
+            }
+        }
+        segments.sort(Comparator.comparingLong(ChunkShipper::getSegmentNumber));
+        return segments;
+    }
+
+    private boolean apply(FileChannel file, ArrayList<String> segments) throws IOException {
+        for (String segment : segments) {
+            InputStream in;
+            try {
+                in = FileUtils.newInputStream(segment);
+            } catch (IOException e) {
+                if (FileUtils.exists(segment)) {
+                    throw e;
+                }
+                return false;
+            }
+            apply(file, segment, in);
+        }
+        return true;
+    }
+
+    private void apply(FileChannel file, String segment, InputStream input) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(input, 64 * 1024))) {
+            while (true) {
+                int type = in.readByte();
+                switch (type) {
+                case ChunkShipper.WRITE: {
+                    long pos = in.readLong();
+                    byte[] data = new byte[in.readInt()];
+                    in.readFully(data);
+                    DataUtils.writeFully(file, pos, ByteBuffer.wrap(data));
+                    break;
+                }
+                case ChunkShipper.TRUNCATE:
+                    file.truncate(in.readLong());
+                    break;
+                case ChunkShipper.END:
+                    return;
+                default:
+                    throw DataUtils.newMVStoreException(
+                            DataUtils.ERROR_FILE_CORRUPT,
+                            "Unknown record type {0} in {1}", type, segment);
+                }
+            }
+        } catch (EOFException e) {
+            throw DataUtils.newMVStoreException(
+                    DataUtils.ERROR_FILE_CORRUPT,
+                    "Segment {0} is incomplete", segment, e);
+        }
+    }
+
+    private MVStore openStore() {
+        return new MVStore.Builder().fileName(fileName).readOnly().open();
+    }
+
+    /**
+     * Read from the current snapshot. The snapshot is not refreshed while the
+     * reader runs.
+     *
+     * @param <R> the type of the result
+     * @param reader the reader
+     * @return the result of the reader
+     * @throws MVStoreException if nothing was shipped yet, or if the
+     *             automatic refresh failed
+     */
+    public <R> R read(Function<MVStore, R> reader) {
+        MVStoreException e = refreshException;
+        if (e != null) {
+            throw DataUtils.newMVStoreException(
+                    DataUtils.ERROR_READING_FAILED,
+                    "Refreshing the replica {0} failed", fileName, e);
+        }
+        lock.readLock().lock();
+        try {
+            MVStore s = store;
+            if (s == null) {
+                throw DataUtils.newMVStoreException(
+                        closed ? DataUtils.ERROR_CLOSED : DataUtils.ERROR_READING_FAILED,
+                        "No snapshot of {0} is available", fileName);
+            }
+            return reader.apply(s);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Stop refreshing and close the current snapshot.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        if (refresher != null) {
+            refresher.interrupt();
+        }
+        lock.writeLock().lock();
+        try {
+            if (store != null) {
+                store.close();
+                store = null;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return fileName;
+    }
+
+}
@@ -376,6 +376,13 @@ protected final void writeChunk(SFChunk chunk, WriteBuffer buffer) {
             // may only shrink after the store header was written
             shrinkStoreIfPossible(1);
         }
+        afterChunkWrite();
+    }
+
+    /**
+     * Called after a chunk and the store header, if needed, were written.
+     */
+    protected void afterChunkWrite() {
     }
 
     private boolean shouldWriteStoreHeader(SFChunk c, boolean storeAtEndOfFile) {
@@ -590,12 +597,22 @@ private void compactMoveChunks(Iterable<SFChunk> move) {
     }
 
     private void writeStoreHeader() {
-        StringBuilder buff = new StringBuilder(112);
         if (hasPersistentData()) {
             storeHeader.put(HDR_BLOCK, lastChunk.block);
             storeHeader.put(HDR_CHUNK, lastChunk.id);
             storeHeader.put(HDR_VERSION, lastChunk.version);
         }
+        writeFully(null, 0, createStoreHeader(storeHeader));
+    }
+
+    /**
+     * Create the two blocks of the store header.
+     *
+     * @param storeHeader the store header attributes
+     * @return the store header
+     */
+    static ByteBuffer createStoreHeader(HashMap<String, Object> storeHeader) {
+        StringBuilder buff = new StringBuilder(112);
         DataUtils.appendMap(buff, storeHeader);
         byte[] bytes = buff.toString().getBytes(StandardCharsets.ISO_8859_1);
         int checksum = DataUtils.getFletcher32(bytes, 0, bytes.length);
@@ -607,7 +624,7 @@ private void writeStoreHeader() {
         header.position(BLOCK_SIZE);
         header.put(bytes);
         header.rewind();
-        writeFully(null, 0, header);
+        return header;
     }
 
     private void store(long reservedLow, long reservedHigh) {
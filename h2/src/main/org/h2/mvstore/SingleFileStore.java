@@ -10,6 +10,7 @@
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileLock;
 import java.nio.channels.OverlappingFileLockException;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.function.Function;
 import java.util.zip.ZipEntry;
@@ -42,6 +43,11 @@ public class SingleFileStore extends RandomAccessStore {
      */
     private FileLock fileLock;
 
+    /**
+     * Ships the writes to a replica, or null.
+     */
+    private ChunkShipper shipper;
+
     private final Map<String, Object> config;
 
 
@@ -64,6 +70,10 @@ public ByteBuffer readFully(SFChunk chunk, long pos, int len) {
     protected void writeFully(SFChunk chunk, long pos, ByteBuffer src) {
         int len = src.remaining();
         setSize(Math.max(super.size(), pos + len));
+        ChunkShipper shipper = this.shipper;
+        if (shipper != null) {
+            shipper.write(pos, src);
+        }
         DataUtils.writeFully(fileChannel, pos, src);
         writeCount.incrementAndGet();
         writeBytes.addAndGet(len);
@@ -86,6 +96,9 @@ public void open(String fileName, boolean readOnly, char[] encryptionKey) {
 
     @Override
     public SingleFileStore open(String fileName, boolean readOnly) {
+        // changes of additional files, such as temporary results, are not shipped
+        Map<String, Object> config = new HashMap<>(this.config);
+        config.remove("replicaDirectory");
         SingleFileStore result = new SingleFileStore(config);
         result.open(fileName, readOnly, originalFileChannel == null ? null :
                 fileChannel -> new FileEncrypt(fileName, (FileEncrypt)this.fileChannel, fileChannel));
@@ -127,6 +140,25 @@ private void open(String fileName, boolean readOnly, Function<FileChannel,FileCh
                     DataUtils.ERROR_READING_FAILED,
                     "Could not open file {0}", fileName, e);
         }
+        String replicaDirectory = (String) config.get("replicaDirectory");
+        if (replicaDirectory != null) {
+            try {
+                if (readOnly || encryptionTransformer != null) {
+                    throw DataUtils.newIllegalArgumentException(
+                            "Shipping changes of read-only or encrypted files is not supported");
+                }
+                ChunkShipper shipper = new ChunkShipper(replicaDirectory, fileChannel);
+                shipper.shipBase();
+                this.shipper = shipper;
+            } catch (RuntimeException e) {
+                try {
+                    close();
+                } catch (Exception nested) {
+                    e.addSuppressed(nested);
+                }
+                throw e;
+            }
+        }
     }
 
     private FileLock lockFileChannel(FileChannel fileChannel, boolean readOnly, String fileName) throws IOException {
@@ -153,6 +185,10 @@ private FileLock lockFileChannel(FileChannel fileChannel, boolean readOnly, Stri
     @Override
     public void close() {
         try {
+            if (shipper != null) {
+                shipper.close();
+                shipper = null;
+            }
             if(fileChannel.isOpen()) {
                 if (fileLock != null) {
                     fileLock.release();
@@ -197,6 +233,9 @@ public void truncate(long size) {
         while (true) {
             try {
                 writeCount.incrementAndGet();
+                if (shipper != null) {
+                    shipper.truncate(size);
+                }
                 fileChannel.truncate(size);
                 setSize(Math.min(super.size(), size));
                 return;
@@ -213,6 +252,16 @@ public void truncate(long size) {
         }
     }
 
+    @Override
+    protected void afterChunkWrite() {
+        ChunkShipper shipper = this.shipper;
+        if (shipper != null) {
+            // all writes are made under the saveChunkLock, so the shipper can
+            // read a consistent copy of the file here
+            shipper.publish();
+        }
+    }
+
     /**
      * Calculates relative "priority" for chunk to be moved.
      *
@@ -231,19 +280,89 @@ protected long getAfterLastBlock_() {
 
     @Override
     public void backup(ZipOutputStream out) throws IOException {
+        backup(out, null);
+    }
+
+    /**
+     * Create a backup. Space is not reused while the backup is created, so
+     * chunks are neither overwritten nor moved meanwhile. A full backup
+     * contains the whole file. An incremental backup contains the store header
+     * and the chunks of the last stored version that are not in the previous
+     * backup. Both contain the manifest of the chunks of the last stored
+     * version.
+     *
+     * @param out the output stream
+     * @param previous the manifest of the previous backup, or null for a full
+     *            backup
+     * @throws IOException on failure
+     */
+    @Override
+    public void backup(ZipOutputStream out, BackupManifest previous) throws IOException {
+        if (previous != null && originalFileChannel != null) {
+            throw DataUtils.newUnsupportedOperationException("Incremental backup of encrypted files is not supported");
+        }
         boolean before = isSpaceReused();
         setReuseSpace(false);
         try {
-            backupFile(out, getFileName(), originalFileChannel != null ? originalFileChannel : fileChannel);
+            String name = correctFileName(FilePath.get(getFileName()).toRealPath().getName());
+            BackupManifest manifest;
+            HashMap<String, Object> header;
+            saveChunkLock.lock();
+            try {
+                manifest = createBackupManifest(previous == null ? -1 : previous.getVersion());
+                header = new HashMap<>(storeHeader);
+            } finally {
+                saveChunkLock.unlock();
+            }
+            if (previous == null) {
+                backupFile(out, name, originalFileChannel != null ? originalFileChannel : fileChannel);
+            } else {
+                // the store header in the file may point to an older chunk
+                BackupManifest.Entry last = null;
+                for (BackupManifest.Entry e : manifest.getEntries()) {
+                    if (last == null || e.version > last.version) {
+                        last = e;
+                    }
+                }
+                if (last != null) {
+                    header.put(HDR_BLOCK, last.block);
+                    header.put(HDR_CHUNK, last.id);
+                    header.put(HDR_VERSION, last.version);
+                }
+                header.remove(HDR_CLEAN);
+                out.putNextEntry(new ZipEntry(name + BackupManifest.HEADER_SUFFIX));
+                ByteBuffer buff = createStoreHeader(header);
+                out.write(buff.array(), 0, buff.limit());
+                out.closeEntry();
+                for (BackupManifest.Entry e : manifest.getEntries()) {
+                    if (!previous.contains(e)) {
+                        out.putNextEntry(new ZipEntry(name + BackupManifest.CHUNK_SUFFIX + Integer.toHexString(e.id)));
+                        backupBlocks(out, e.block, e.len);
+                    }
+                }
+            }
+            out.putNextEntry(new ZipEntry(name + BackupManifest.SUFFIX));
+            manifest.write(out);
+            out.closeEntry();
         } finally {
             setReuseSpace(before);
         }
     }
 
-    private static void backupFile(ZipOutputStream out, String fileName, FileChannel in) throws IOException {
-        String f = FilePath.get(fileName).toRealPath().getName();
-        f = correctFileName(f);
-        out.putNextEntry(new ZipEntry(f));
+    private void backupBlocks(ZipOutputStream out, long block, int len) throws IOException {
+        ByteBuffer buff = ByteBuffer.allocate(FileStore.BLOCK_SIZE * 64);
+        long pos = block * FileStore.BLOCK_SIZE;
+        for (long end = pos + (long) len * FileStore.BLOCK_SIZE; pos < end; pos += buff.limit()) {
+            buff.clear();
+            buff.limit((int) Math.min(buff.capacity(), end - pos));
+            DataUtils.readFully(fileChannel, pos, buff);
+            out.write(buff.array(), 0, buff.limit());
+        }
+        out.closeEntry();
+    }
+
+    private static void backupFile(ZipOutputStream out, String name, FileChannel in) throws IOException {
+        out.putNextEntry(new ZipEntry(name));
         IOUtils.copy(in, out);
         out.closeEntry();
     }
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2004-2025 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (https://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.mvstore.db;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A Bloom filter over 64-bit hash codes. It may report that a hash code was
+ * added when it wasn't, but never the other way around.
+ * <p>
+ * Hash codes can only be added. Once more hash codes were added than the
+ * filter was sized for, the false positive rate grows and the owner should
+ * replace the filter with a new one.
+ * </p>
+ */
+final class BloomFilter {
+
+    private final AtomicLongArray bits;
+
+    private final int mask;
+
+    private final int hashCount;
+
+    private final long capacity;
+
+    private final AtomicLong count = new AtomicLong();
+
+    /**
+     * Create a new filter.
+     *
+     * @param expectedCount the expected number of hash codes
+     * @param bitsPerEntry the number of bits per hash code
+     */
+    BloomFilter(long expectedCount, int bitsPerEntry) {
+        long bitCount = Math.max(expectedCount, 1_024L) * bitsPerEntry;
+        // power of two, between 2^16 and 2^28 bits
+        int words = (int) Math.min(Long.highestOneBit(Math.max(bitCount - 1, 1L << 15) << 1) >>> 6,
+                1 << 22);
+        bits = new AtomicLongArray(words);
+        mask = (words << 6) - 1;
+        hashCount = Math.max(1, Math.min(8, (int) Math.round(bitsPerEntry * Math.log(2))));
+        capacity = ((long) words << 6) / bitsPerEntry;
+    }
+
+    /**
+     * Add a hash code.
+     *
+     * @param hash the hash code
+     */
+    void add(long hash) {
+        int h1 = (int) hash, h2 = (int) (hash >>> 32) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            int bit = (h1 + i * h2) & mask;
+            long m = 1L << bit;
+            int index = bit >>> 6;
+            long word;
+            do {
+                word = bits.get(index);
+            } while ((word & m) == 0L && !bits.compareAndSet(index, word, word | m));
+        }
+        count.incrementAndGet();
+    }
+
+    /**
+     * Check whether the specified hash code may have been added.
+     *
+     * @param hash the hash code
+     * @return {@code false} if it definitely wasn't added, {@code true}
+     *         otherwise
+     */
+    boolean mightContain(long hash) {
+        int h1 = (int) hash, h2 = (int) (hash >>> 32) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            int bit = (h1 + i * h2) & mask;
+            if ((bits.get(bit >>> 6) & 1L << bit) == 0L) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Check whether considerably more hash codes were added than this filter
+     * was sized for.
+     *
+     * @return whether this filter should be replaced
+     */
+    boolean isSaturated() {
+        return count.get() > capacity << 1;
+    }
+
+}
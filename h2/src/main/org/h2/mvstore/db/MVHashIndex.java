@@ -0,0 +1,563 @@
+/*
+ * Copyright 2004-2025 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (https://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.mvstore.db;
+
+import java.util.Iterator;
+import java.util.List;
+
+import org.h2.api.ErrorCode;
+import org.h2.command.query.AllColumnsForPlan;
+import org.h2.engine.Database;
+import org.h2.engine.SessionLocal;
+import org.h2.expression.condition.Comparison;
+import org.h2.index.Cursor;
+import org.h2.index.IndexCondition;
+import org.h2.index.IndexCursor;
+import org.h2.index.IndexType;
+import org.h2.index.SingleRowCursor;
+import org.h2.message.DbException;
+import org.h2.mvstore.MVMap;
+import org.h2.mvstore.MVStore;
+import org.h2.mvstore.MVStoreException;
+import org.h2.mvstore.tx.Transaction;
+import org.h2.mvstore.tx.TransactionMap;
+import org.h2.mvstore.tx.TransactionMap.TMIterator;
+import org.h2.result.Row;
+import org.h2.result.RowFactory;
+import org.h2.result.SearchRow;
+import org.h2.result.SortOrder;
+import org.h2.table.Column;
+import org.h2.table.IndexColumn;
+import org.h2.table.TableFilter;
+import org.h2.value.CompareMode;
+import org.h2.value.TypeInfo;
+import org.h2.value.Value;
+import org.h2.value.ValueBigint;
+import org.h2.value.ValueDate;
+import org.h2.value.ValueEnumBase;
+import org.h2.value.ValueNull;
+import org.h2.value.ValueTime;
+import org.h2.value.ValueTimestamp;
+import org.h2.value.ValueUuid;
+import org.h2.value.VersionedValue;
+
+/**
+ * A non-unique hash index stored in a MVStore. Keys of the map are 64-bit
+ * hash codes of the indexed values followed by row keys, so lookups compare
+ * only long values and the rows with the same hash code are adjacent. Values
+ * of the indexed columns are checked in the rows of the table, this index
+ * doesn't contain them.
+ * <p>
+ * The index can only be used for lookups with equality conditions on all
+ * indexed columns.
+ * </p>
+ */
+public final class MVHashIndex extends MVIndex<SearchRow, Value> {
+
+    private static final long SEED = 0x9E3779B97F4A7C15L;
+
+    /**
+     * The multi-value table.
+     */
+    private final MVTable mvTable;
+
+    private final RowFactory keyFactory;
+
+    private final TransactionMap<SearchRow, Value> dataMap;
+
+    /**
+     * Check whether values of the specified columns can be hashed
+     * consistently with their comparison.
+     *
+     * @param db the database
+     * @param columns the columns
+     * @return whether a hash index may be created on these columns
+     */
+    public static boolean isSupported(Database db, IndexColumn[] columns) {
+        for (IndexColumn c : columns) {
+            switch (c.column.getType().getValueType()) {
+            case Value.BOOLEAN:
+            case Value.TINYINT:
+            case Value.SMALLINT:
+            case Value.INTEGER:
+            case Value.BIGINT:
+            case Value.ENUM:
+            case Value.DATE:
+            case Value.TIME:
+            case Value.TIMESTAMP:
+            case Value.UUID:
+            case Value.BINARY:
+            case Value.VARBINARY:
+                break;
+            case Value.VARCHAR:
+                // collators may treat different strings as equal
+                if (!CompareMode.OFF.equals(db.getCompareMode().getName())) {
+                    return false;
+                }
+                break;
+            default:
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Check whether the specified index was stored as a B-tree by an older
+     * version and wasn't migrated yet.
+     *
+     * @param db the database
+     * @param id the index id
+     * @return whether the index is stored as a B-tree
+     */
+    public static boolean isStoredAsBTree(Database db, int id) {
+        MVStore mvStore = db.getStore().getMvStore();
+        return mvStore.hasMap("index." + id) && !mvStore.hasMap("hash." + id);
+    }
+
+    public MVHashIndex(Database db, MVTable table, int id, String indexName, IndexColumn[] columns,
+            IndexType indexType) {
+        super(table, id, indexName, columns, 0, indexType);
+        this.mvTable = table;
+        if (!database.isStarting()) {
+            checkIndexColumnTypes(columns);
+        }
+        keyFactory = RowFactory.getDefaultRowFactory().createRowFactory(db, db.getCompareMode(), db,
+                new int[] { SortOrder.ASCENDING }, new int[] { 0 }, new TypeInfo[] { TypeInfo.TYPE_BIGINT }, 1,
+                true);
+        RowDataType keyType = keyFactory.getRowDataType();
+        MVStore mvStore = db.getStore().getMvStore();
+        String oldMapName = "index." + getId();
+        if (mvStore.hasMap(oldMapName)) {
+            // the index was stored as a B-tree by an older version, it is
+            // rebuilt, MVTable doesn't create this index in read-only databases
+            mvStore.removeMap(oldMapName);
+        }
+        Transaction t = mvTable.getTransactionBegin();
+        dataMap = t.openMap("hash." + getId(), keyType, NullValueDataType.INSTANCE);
+        dataMap.map.setVolatile(!table.isPersistData() || !indexType.isPersistent());
+        if (!db.isStarting()) {
+            dataMap.clear();
+        }
+        t.commit();
+        if (!keyType.equals(dataMap.getKeyType())) {
+            throw DbException.getInternalError(
+                    "Incompatible key type, expected " + keyType + " but got "
+                            + dataMap.getKeyType() + " for index " + indexName);
+        }
+    }
+
+    @Override
+    public void addRowsToBuffer(List<Row> rows, String bufferName) {
+        MVMap<SearchRow, Value> map = openMap(bufferName);
+        for (Row row : rows) {
+            map.put(convertToKey(row, row.getKey()), ValueNull.INSTANCE);
+        }
+    }
+
+    @Override
+    public void addBufferedRows(List<String> bufferNames) {
+        try {
+            for (String bufferName : bufferNames) {
+                for (Iterator<SearchRow> it = openMap(bufferName).keyIterator(null); it.hasNext();) {
+                    dataMap.putCommitted(it.next(), ValueNull.INSTANCE);
+                }
+            }
+        } finally {
+            MVStore mvStore = database.getStore().getMvStore();
+            for (String tempMapName : bufferNames) {
+                mvStore.removeMap(tempMapName);
+            }
+        }
+    }
+
+    private MVMap<SearchRow, Value> openMap(String mapName) {
+        RowDataType keyType = keyFactory.getRowDataType();
+        MVMap.Builder<SearchRow, Value> builder = new MVMap.Builder<SearchRow, Value>()
+                .singleWriter()
+                .keyType(keyType)
+                .valueType(NullValueDataType.INSTANCE);
+        MVMap<SearchRow, Value> map = database.getStore().getMvStore().openMap(mapName, builder);
+        if (!keyType.equals(map.getKeyType())) {
+            throw DbException.getInternalError(
+                    "Incompatible key type, expected " + keyType + " but got "
+                            + map.getKeyType() + " for map " + mapName);
+        }
+        return map;
+    }
+
+    @Override
+    public void close(SessionLocal session) {
+        // ok
+    }
+
+    @Override
+    public void add(SessionLocal session, Row row) {
+        try {
+            getMap(session).put(convertToKey(row, row.getKey()), ValueNull.INSTANCE);
+        } catch (MVStoreException e) {
+            throw mvTable.convertException(e);
+        }
+    }
+
+    @Override
+    public void remove(SessionLocal session, Row row) {
+        try {
+            if (getMap(session).remove(convertToKey(row, row.getKey())) == null) {
+                StringBuilder builder = new StringBuilder();
+                getSQL(builder, TRACE_SQL_FLAGS).append(": ").append(row.getKey());
+                throw DbException.get(ErrorCode.ROW_NOT_FOUND_WHEN_DELETING_1, builder.toString());
+            }
+        } catch (MVStoreException e) {
+            throw mvTable.convertException(e);
+        }
+    }
+
+    @Override
+    public void update(SessionLocal session, Row oldRow, Row newRow) {
+        if (hash(oldRow) != hash(newRow)) {
+            super.update(session, oldRow, newRow);
+        }
+    }
+
+    @Override
+    public Cursor find(SessionLocal session, SearchRow first, SearchRow last, boolean reverse) {
+        TransactionMap<SearchRow, Value> map = getMap(session);
+        TMIterator<SearchRow, Value, SearchRow> it;
+        if (isPoint(first, last)) {
+            SearchRow row = convertValues(session, first);
+            if (row == null) {
+                return SingleRowCursor.EMPTY;
+            }
+            long hash = hash(row);
+            it = map.keyIterator(convertToKey(hash, Long.MIN_VALUE), convertToKey(hash, Long.MAX_VALUE));
+        } else {
+            // the cost returned by this index excludes other lookups
+            throw DbException.getInternalError("not a point lookup in " + getName());
+        }
+        return new MVHashCursor(session, it, first, last);
+    }
+
+    private boolean isPoint(SearchRow first, SearchRow last) {
+        if (first == null || last == null) {
+            return false;
+        }
+        for (int columnId : columnIds) {
+            if (first.getValue(columnId) == null || last.getValue(columnId) == null) {
+                return false;
+            }
+        }
+        return compareRows(first, last) == 0;
+    }
+
+    /**
+     * Convert the search values to the data types of the columns, so that
+     * they have the same hash codes as equal values in the rows.
+     *
+     * @param session the session
+     * @param row the search row
+     * @return the converted row, or {@code null} if a value can't be
+     *         converted, no rows are equal to it then
+     */
+    private SearchRow convertValues(SessionLocal session, SearchRow row) {
+        SearchRow result = getRowFactory().createRow();
+        for (int i = 0, l = columns.length; i < l; i++) {
+            Column column = columns[i];
+            int columnId = column.getColumnId();
+            Value v = row.getValue(columnId);
+            try {
+                v = column.convert(session, v);
+            } catch (DbException e) {
+                return null;
+            }
+            result.setValue(columnId, v);
+        }
+        return result;
+    }
+
+    private SearchRow convertToKey(SearchRow row, long key) {
+        return convertToKey(hash(row), key);
+    }
+
+    private SearchRow convertToKey(long hash, long key) {
+        SearchRow r = keyFactory.createRow();
+        r.setValue(0, ValueBigint.get(hash));
+        r.setKey(key);
+        return r;
+    }
+
+    /**
+     * Calculate the 64-bit hash code of the indexed values of the specified
+     * row. The hash code is persisted, so it must not depend on identity hash
+     * codes or on anything else that may change between runs.
+     *
+     * @param row the row
+     * @return the hash code
+     */
+    private long hash(SearchRow row) {
+        long h = 0L;
+        for (int columnId : columnIds) {
+            h = (h + hash(row.getValue(columnId))) * SEED;
+        }
+        return mix(h);
+    }
+
+    /**
+     * Spread the bits of the specified hash code using the finalization step
+     * of MurmurHash3.
+     *
+     * @param h the hash code
+     * @return the mixed hash code
+     */
+    static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        return h ^ h >>> 33;
+    }
+
+    /**
+     * Calculate the stable 64-bit hash code of the specified value. The data
+     * type of the value must be supported by this index, see
+     * {@link #isSupported(Database, IndexColumn[])}.
+     *
+     * @param v the value
+     * @return the hash code
+     */
+    static long hash(Value v) {
+        switch (v.getValueType()) {
+        case Value.NULL:
+            return 0L;
+        case Value.BOOLEAN:
+            return v.getBoolean() ? 1L : 2L;
+        case Value.TINYINT:
+        case Value.SMALLINT:
+        case Value.INTEGER:
+        case Value.BIGINT:
+            return v.getLong();
+        case Value.ENUM:
+            return ((ValueEnumBase) v).getInt();
+        case Value.DATE:
+            return ((ValueDate) v).getDateValue();
+        case Value.TIME:
+            return ((ValueTime) v).getNanos();
+        case Value.TIMESTAMP: {
+            ValueTimestamp ts = (ValueTimestamp) v;
+            return ts.getDateValue() * SEED + ts.getTimeNanos();
+        }
+        case Value.UUID: {
+            ValueUuid uuid = (ValueUuid) v;
+            return uuid.getHigh() * SEED + uuid.getLow();
+        }
+        case Value.BINARY:
+        case Value.VARBINARY: {
+            long h = 0xCBF29CE484222325L;
+            for (byte b : v.getBytesNoCopy()) {
+                h = (h ^ (b & 0xff)) * 0x100000001B3L;
+            }
+            return h;
+        }
+        case Value.VARCHAR: {
+            String s = v.getString();
+            long h = 0xCBF29CE484222325L;
+            for (int i = 0, l = s.length(); i < l; i++) {
+                h = (h ^ s.charAt(i)) * 0x100000001B3L;
+            }
+            return h;
+        }
+        default:
+            throw DbException.getInternalError("type=" + v.getValueType());
+        }
+    }
+
+    @Override
+    public MVTable getTable() {
+        return mvTable;
+    }
+
+    @Override
+    public double getCost(SessionLocal session, int[] masks, TableFilter[] filters, int filter,
+            SortOrder sortOrder, AllColumnsForPlan allColumnsSet, boolean isSelectCommand) {
+        if (masks == null || !isConditionImplied(session, filters == null ? null : filters[filter])) {
+            return Double.POSITIVE_INFINITY;
+        }
+        for (Column column : columns) {
+            if ((masks[column.getColumnId()] & IndexCondition.EQUALITY) != IndexCondition.EQUALITY) {
+                return Double.POSITIVE_INFINITY;
+            }
+        }
+        if (filters != null && !isPointLookup(filters[filter])) {
+            return Double.POSITIVE_INFINITY;
+        }
+        try {
+            // rows are always read from the table, the index isn't sorted
+            return 10 * getCostRangeIndex(masks, dataMap.sizeAsLongMax(), filters, filter, null, false, null,
+                    isSelectCommand);
+        } catch (MVStoreException e) {
+            throw DbException.get(ErrorCode.OBJECT_CLOSED, e);
+        }
+    }
+
+    /**
+     * Check whether the index cursor will look up single hash values with
+     * the given conditions. The cursor uses only the first usable IN
+     * condition and drops the other conditions then, so a lookup sets all
+     * columns either with a compound IN condition over exactly the index
+     * columns, or with an IN condition of a single-column index, or with
+     * equality conditions only.
+     *
+     * @param filter the table filter
+     * @return whether each lookup sets all columns of this index
+     */
+    private boolean isPointLookup(TableFilter filter) {
+        boolean[] equal = new boolean[columns.length];
+        int equalCount = 0;
+        boolean in = false, compound = false, start = false;
+        for (IndexCondition condition : filter.getIndexConditions()) {
+            if (!condition.isEvaluatable()) {
+                continue;
+            }
+            if (condition.isCompoundColumns()) {
+                if (!in && !start && IndexCursor.canUseIndexForIn(this, condition.getColumns())) {
+                    in = compound = true;
+                }
+                continue;
+            }
+            int idx = getColumnIndex(condition.getColumn());
+            switch (condition.getCompareType()) {
+            case Comparison.IN_LIST:
+            case Comparison.IN_ARRAY:
+            case Comparison.IN_QUERY:
+                if (!in && !start && idx == 0) {
+                    in = true;
+                }
+                break;
+            case Comparison.EQUAL:
+            case Comparison.EQUAL_NULL_SAFE:
+                if (compound) {
+                    return false;
+                }
+                start = true;
+                if (idx >= 0 && !equal[idx]) {
+                    equal[idx] = true;
+                    equalCount++;
+                }
+                break;
+            default:
+                if (compound || idx >= 0) {
+                    return false;
+                }
+                start = true;
+            }
+        }
+        return in ? compound || columns.length == 1 : equalCount == columns.length;
+    }
+
+    @Override
+    public void remove(SessionLocal session) {
+        TransactionMap<SearchRow, Value> map = getMap(session);
+        if (!map.isClosed()) {
+            Transaction t = session.getTransaction();
+            t.removeMap(map);
+        }
+    }
+
+    @Override
+    public void truncate(SessionLocal session) {
+        getMap(session).clear();
+    }
+
+    @Override
+    public boolean needRebuild() {
+        try {
+            return dataMap.sizeAsLongMax() == 0;
+        } catch (MVStoreException e) {
+            throw DbException.get(ErrorCode.OBJECT_CLOSED, e);
+        }
+    }
+
+    @Override
+    public long getRowCount(SessionLocal session) {
+        return getMap(session).sizeAsLong();
+    }
+
+    @Override
+    public long getRowCountApproximation(SessionLocal session) {
+        try {
+            return dataMap.sizeAsLongMax();
+        } catch (MVStoreException e) {
+            throw DbException.get(ErrorCode.OBJECT_CLOSED, e);
+        }
+    }
+
+    @Override
+    public boolean canScan() {
+        return false;
+    }
+
+    private TransactionMap<SearchRow, Value> getMap(SessionLocal session) {
+        if (session == null) {
+            return dataMap;
+        }
+        return dataMap.getInstance(session.getTransaction());
+    }
+
+    @Override
+    public MVMap<SearchRow, VersionedValue<Value>> getMVMap() {
+        return dataMap.map;
+    }
+
+    /**
+     * A cursor over the rows with the specified hash code. Rows with other
+     * values of the indexed columns are skipped.
+     */
+    private final class MVHashCursor implements Cursor {
+
+        private final SessionLocal session;
+        private final TMIterator<SearchRow, Value, SearchRow> it;
+        private final SearchRow first, last;
+        private Row current;
+
+        MVHashCursor(SessionLocal session, TMIterator<SearchRow, Value, SearchRow> it, SearchRow first,
+                SearchRow last) {
+            this.session = session;
+            this.it = it;
+            this.first = first;
+            this.last = last;
+        }
+
+        @Override
+        public Row get() {
+            return current;
+        }
+
+        @Override
+        public SearchRow getSearchRow() {
+            return current;
+        }
+
+        @Override
+        public boolean next() {
+            for (SearchRow key; (key = it.fetchNext()) != null;) {
+                Row row = mvTable.getRow(session, key.getKey());
+                if ((first == null || compareRows(row, first) >= 0)
+                        && (last == null || compareRows(row, last) <= 0)) {
+                    current = row;
+                    return true;
+                }
+            }
+            current = null;
+            return false;
+        }
+
+        @Override
+        public boolean previous() {
+            throw DbException.getUnsupportedException("previous");
+        }
+    }
+
+}
@@ -6,6 +6,8 @@
 package org.h2.mvstore.db;
 
 import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map.Entry;
 import java.util.concurrent.atomic.AtomicLong;
@@ -43,8 +45,19 @@ public final class MVPrimaryIndex extends MVIndex<Long, SearchRow> {
     private final String mapName;
     private final TransactionMap<Long, SearchRow> dataMap;
     private final AtomicLong lastKey = new AtomicLong();
+    private final ZoneMap zoneMap;
     private int mainIndexColumn = SearchRow.ROWID_INDEX;
 
+    /**
+     * Keys and rows collected for the next leaf page during a direct-path
+     * load, or {@code null} if direct-path load isn't active.
+     */
+    private Long[] directLoadKeys;
+    private SearchRow[] directLoadRows;
+    private int directLoadCount;
+    private long directLoadMemory;
+    private long directLoadLastKey;
+
     public MVPrimaryIndex(Database db, MVTable table, int id, IndexColumn[] columns, IndexType indexType) {
         super(table, id, table.getName() + "_DATA", columns, 0, indexType);
         this.mvTable = table;
@@ -59,6 +72,7 @@ public MVPrimaryIndex(Database db, MVTable table, int id, IndexColumn[] columns,
         t.commit();
         Long k = dataMap.map.lastKey();    // include uncommitted keys as well
         lastKey.set(k == null ? 0 : k);
+        zoneMap = ZoneMap.create(table, db.getSettings().zoneMapSize);
     }
 
     @Override
@@ -86,6 +100,34 @@ public void close(SessionLocal session) {
 
     @Override
     public void add(SessionLocal session, Row row) {
+        prepareRow(session, row);
+        TransactionMap<Long,SearchRow> map = getMap(session);
+        long rowKey = row.getKey();
+        try {
+            Row old = (Row)map.putIfAbsent(rowKey, row);
+            if (old != null) {
+                int errorCode = ErrorCode.CONCURRENT_UPDATE_1;
+                if (map.getImmediate(rowKey) != null || map.getFromSnapshot(rowKey) != null) {
+                    // committed
+                    errorCode = ErrorCode.DUPLICATE_KEY_1;
+                }
+                DbException e = DbException.get(errorCode,
+                        getDuplicatePrimaryKeyMessage(mainIndexColumn).append(' ').append(old).toString());
+                e.setSource(this);
+                throw e;
+            }
+        } catch (MVStoreException e) {
+            throw mvTable.convertException(e);
+        }
+        if (zoneMap != null) {
+            zoneMap.add(rowKey, row);
+        }
+        // because it's possible to directly update the key using the _rowid_
+        // syntax
+        updateLastKey(rowKey);
+    }
+
+    private void prepareRow(SessionLocal session, Row row) {
         if (mainIndexColumn == SearchRow.ROWID_INDEX) {
             if (row.getKey() == 0) {
                 row.setKey(lastKey.incrementAndGet());
@@ -107,30 +149,94 @@ public void add(SessionLocal session, Row row) {
                 }
             }
         }
+    }
 
-        TransactionMap<Long,SearchRow> map = getMap(session);
+    private void updateLastKey(long rowKey) {
+        long last;
+        while (rowKey > (last = lastKey.get())) {
+            if(lastKey.compareAndSet(last, rowKey)) break;
+        }
+    }
+
+    /**
+     * Start a direct-path load. Rows added with
+     * {@link #addDirect(SessionLocal, Row)} are written as committed data
+     * without undo log entries; rows with ascending keys are collected into
+     * full leaf pages and appended at the right edge of the map.
+     */
+    void startDirectLoad() {
+        int keysPerPage = database.getStore().getMvStore().getKeysPerPage();
+        directLoadKeys = new Long[keysPerPage];
+        directLoadRows = new SearchRow[keysPerPage];
+        directLoadCount = 0;
+        directLoadMemory = 0L;
+        Long k = dataMap.map.lastKey();
+        directLoadLastKey = k == null ? Long.MIN_VALUE : k;
+    }
+
+    /**
+     * Add a row during a direct-path load.
+     *
+     * @param session the session
+     * @param row the row
+     */
+    void addDirect(SessionLocal session, Row row) {
+        prepareRow(session, row);
         long rowKey = row.getKey();
         try {
-            Row old = (Row)map.putIfAbsent(rowKey, row);
-            if (old != null) {
-                int errorCode = ErrorCode.CONCURRENT_UPDATE_1;
-                if (map.getImmediate(rowKey) != null || map.getFromSnapshot(rowKey) != null) {
-                    // committed
-                    errorCode = ErrorCode.DUPLICATE_KEY_1;
+            if (rowKey > directLoadLastKey) {
+                int count = directLoadCount;
+                directLoadKeys[count] = rowKey;
+                directLoadRows[count] = row;
+                directLoadCount = ++count;
+                directLoadLastKey = rowKey;
+                directLoadMemory += row.getMemory();
+                if (count == directLoadKeys.length
+                        || directLoadMemory >= database.getStore().getMvStore().getMaxPageSize()) {
+                    flushDirectLoad();
                 }
-                DbException e = DbException.get(errorCode,
-                        getDuplicatePrimaryKeyMessage(mainIndexColumn).append(' ').append(old).toString());
-                e.setSource(this);
-                throw e;
+            } else {
+                // keys from a primary key column may come in any order
+                flushDirectLoad();
+                Row old = (Row) dataMap.getImmediate(rowKey);
+                if (old != null) {
+                    DbException e = DbException.get(ErrorCode.DUPLICATE_KEY_1,
+                            getDuplicatePrimaryKeyMessage(mainIndexColumn).append(' ').append(old).toString());
+                    e.setSource(this);
+                    throw e;
+                }
+                dataMap.putCommitted(rowKey, row);
             }
         } catch (MVStoreException e) {
             throw mvTable.convertException(e);
         }
-        // because it's possible to directly update the key using the _rowid_
-        // syntax
-        long last;
-        while (rowKey > (last = lastKey.get())) {
-            if(lastKey.compareAndSet(last, rowKey)) break;
+        if (zoneMap != null) {
+            zoneMap.add(rowKey, row);
+        }
+        updateLastKey(rowKey);
+    }
+
+    /**
+     * Finish the direct-path load and write the remaining rows.
+     */
+    void endDirectLoad() {
+        try {
+            flushDirectLoad();
+        } catch (MVStoreException e) {
+            throw mvTable.convertException(e);
+        } finally {
+            directLoadKeys = null;
+            directLoadRows = null;
+        }
+    }
+
+    private void flushDirectLoad() {
+        int count = directLoadCount;
+        if (count > 0) {
+            dataMap.appendCommitted(directLoadKeys, directLoadRows, count);
+            Arrays.fill(directLoadRows, 0, count, null);
+            directLoadCount = 0;
+            directLoadMemory = 0L;
         }
     }
 
@@ -196,7 +302,9 @@ public void update(SessionLocal session, Row oldRow, Row newRow) {
         } catch (MVStoreException e) {
             throw mvTable.convertException(e);
         }
-
+        if (zoneMap != null) {
+            zoneMap.add(key, newRow);
+        }
 
         // because it's possible to directly update the key using the _rowid_
         // syntax
@@ -323,6 +431,11 @@ public Cursor find(SessionLocal session, SearchRow first, SearchRow last, boolea
         if (min != null && max != null && min.longValue() == max.longValue()) {
             return new SingleRowCursor(setRowKey((Row) map.getFromSnapshot(min), min));
         }
+        if (zoneMap != null && zoneMap.isRestricted(first, last)) {
+            zoneMap.build(dataMap.map);
+            return reverse ? new ZoneMapCursor(map, zoneMap, last, first, max, min, true)
+                    : new ZoneMapCursor(map, zoneMap, first, last, min, max, false);
+        }
         return new MVStoreCursor(map.entryIterator(min, max, reverse));
     }
 
@@ -359,6 +472,11 @@ public int getColumnIndex(Column col) {
         return -1;
     }
 
+    @Override
+    public boolean canSkipRows(Column column) {
+        return zoneMap != null && column.getTable() == table && zoneMap.isSummarized(column.getColumnId());
+    }
+
     @Override
     public boolean isFirstColumn(Column column) {
         return column.getColumnId() == SearchRow.ROWID_INDEX && column.getTable() == table;
@@ -379,6 +497,9 @@ public void truncate(SessionLocal session) {
             database.getLobStorage().removeAllForTable(table.getId());
         }
         getMap(session).clear();
+        if (zoneMap != null) {
+            zoneMap.clear();
+        }
     }
 
     @Override
@@ -506,4 +627,95 @@ public boolean previous() {
             throw DbException.getUnsupportedException("previous");
         }
     }
+
+    /**
+     * A cursor that skips zones of rows that can't match the search bounds.
+     */
+    static final class ZoneMapCursor implements Cursor {
+
+        private final TransactionMap<Long, SearchRow> map;
+        private final ZoneMap zoneMap;
+        private final SearchRow lower, upper;
+        private final Long min, max;
+        private final boolean reverse;
+        private final Iterator<ZoneMap.Zone> zones;
+        private ZoneMap.Zone nextZone;
+        private MVStoreCursor cursor;
+
+        ZoneMapCursor(TransactionMap<Long, SearchRow> map, ZoneMap zoneMap, SearchRow lower, SearchRow upper,
+                Long min, Long max, boolean reverse) {
+            this.map = map;
+            this.zoneMap = zoneMap;
+            this.lower = lower;
+            this.upper = upper;
+            this.min = min;
+            this.max = max;
+            this.reverse = reverse;
+            zones = zoneMap.zones(min, max, reverse);
+        }
+
+        @Override
+        public Row get() {
+            return cursor != null ? cursor.get() : null;
+        }
+
+        @Override
+        public SearchRow getSearchRow() {
+            return get();
+        }
+
+        @Override
+        public boolean next() {
+            while (cursor == null || !cursor.next()) {
+                if (!nextRange()) {
+                    cursor = null;
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Open the cursor for the next run of adjacent zones that may contain
+         * matching rows.
+         *
+         * @return {@code false} if there are no more such zones
+         */
+        private boolean nextRange() {
+            ZoneMap.Zone zone = nextZone;
+            nextZone = null;
+            while (zone == null || !zoneMap.mayContain(zone, lower, upper)) {
+                if (!zones.hasNext()) {
+                    return false;
+                }
+                zone = zones.next();
+            }
+            long from = zoneMap.getFirstKey(zone), to = zoneMap.getLastKey(zone);
+            while (zones.hasNext()) {
+                zone = zones.next();
+                if (!zoneMap.mayContain(zone, lower, upper)) {
+                    break;
+                }
+                if (reverse) {
+                    from = zoneMap.getFirstKey(zone);
+                } else {
+                    to = zoneMap.getLastKey(zone);
+                }
+            }
+            if (min != null && min > from) {
+                from = min;
+            }
+            if (max != null && max < to) {
+                to = max;
+            }
+            cursor = new MVStoreCursor(reverse ? map.entryIterator(to, from, true)
+                    : map.entryIterator(from, to, false));
+            return true;
+        }
+
+        @Override
+        public boolean previous() {
+            throw DbException.getUnsupportedException("previous");
+        }
+    }
 }
@@ -46,6 +46,31 @@ public final class MVSecondaryIndex extends MVIndex<SearchRow, Value> {
     private final MVTable                         mvTable;
     private final TransactionMap<SearchRow,Value> dataMap;
 
+    /**
+     * The number of bits per entry of the Bloom filter, or 0 if the filter is
+     * disabled.
+     */
+    private final int bloomFilterBits;
+
+    /**
+     * The Bloom filter over the hash codes of the values of the first column,
+     * or {@code null} if it wasn't built yet.
+     */
+    private volatile BloomFilter bloomFilter;
+
+    /**
+     * The Bloom filter that is being built to replace the current one, or
+     * {@code null}.
+     */
+    private volatile BloomFilter pendingBloomFilter;
+
+    /**
+     * The sequence number of the last transaction that was started before the
+     * current Bloom filter was built. Snapshots of such transactions may
+     * contain rows that were deleted before and are missing in the filter.
+     */
+    private volatile long bloomFilterSequenceNum = Long.MAX_VALUE;
+
     public MVSecondaryIndex(Database db, MVTable table, int id, String indexName,
                 IndexColumn[] columns, int uniqueColumnCount, IndexType indexType) {
         super(table, id, indexName, columns, uniqueColumnCount, indexType);
@@ -67,6 +92,8 @@ public MVSecondaryIndex(Database db, MVTable table, int id, String indexName,
                     "Incompatible key type, expected " + keyType + " but got "
                             + dataMap.getKeyType() + " for index " + indexName);
         }
+        int bits = db.getSettings().indexBloomFilterBits;
+        bloomFilterBits = bits > 0 && MVHashIndex.isSupported(db, new IndexColumn[] { columns[0] }) ? bits : 0;
     }
 
     @Override
@@ -140,6 +167,7 @@ public void addBufferedRows(List<String> bufferNames) {
                 }
 
                 dataMap.putCommitted(row, ValueNull.INSTANCE);
+                addToBloomFilter(row);
 
                 if (s.hasNext()) {
                     queue.offer(s);
@@ -189,6 +217,7 @@ public void add(SessionLocal session, Row row) {
         } catch (MVStoreException e) {
             throw mvTable.convertException(e);
         }
+        addToBloomFilter(key);
 
         if (checkRequired) {
             checkUnique(false, map, row, row.getKey());
@@ -271,11 +300,104 @@ public Cursor find(SessionLocal session, SearchRow first, SearchRow last, boolea
     }
 
     private Cursor find(SessionLocal session, SearchRow first, boolean bigger, SearchRow last, boolean reverse) {
+        if (bloomFilterBits > 0 && !mightContain(session, first, last)) {
+            return SingleRowCursor.EMPTY;
+        }
         SearchRow min = convertToKey(first, bigger ^ reverse);
         SearchRow max = convertToKey(last, !reverse);
         return new MVStoreCursor(session, getMap(session).keyIterator(min, max, reverse), mvTable);
     }
 
+    /**
+     * Add the value of the first column of the specified index row to the
+     * Bloom filter. Rows are added to both the current filter and the filter
+     * that is being built, if any. Removed rows are never taken out of the
+     * filter.
+     *
+     * @param row the index row
+     */
+    private void addToBloomFilter(SearchRow row) {
+        if (bloomFilterBits > 0) {
+            BloomFilter filter = bloomFilter, pending = pendingBloomFilter;
+            if (filter != null || pending != null) {
+                long hash = MVHashIndex.mix(MVHashIndex.hash(row.getValue(columnIds[0])));
+                if (filter != null) {
+                    filter.add(hash);
+                }
+                if (pending != null) {
+                    pending.add(hash);
+                }
+            }
+        }
+    }
+
+    /**
+     * Check whether rows within the specified bounds may exist. Only lookups
+     * with the same value of the first column in both bounds are checked with
+     * the Bloom filter, other lookups may always find rows.
+     *
+     * @param session the session
+     * @param first the first row, or {@code null}
+     * @param last the last row, or {@code null}
+     * @return {@code false} if there are definitely no such rows,
+     *         {@code true} otherwise
+     */
+    private boolean mightContain(SessionLocal session, SearchRow first, SearchRow last) {
+        if (first == null || last == null) {
+            return true;
+        }
+        int columnId = columnIds[0];
+        Value v = first.getValue(columnId), v2 = last.getValue(columnId);
+        if (v == null || v2 == null || v != v2 && table.compareValues(database, v, v2) != 0) {
+            return true;
+        }
+        try {
+            v = columns[0].convert(session, v);
+        } catch (DbException e) {
+            return true;
+        }
+        BloomFilter filter = bloomFilter;
+        if (filter == null || filter.isSaturated()) {
+            filter = buildBloomFilter();
+        }
+        if (session.getTransaction().getSequenceNum() <= bloomFilterSequenceNum) {
+            // the snapshot of the transaction may be older than the filter
+            return true;
+        }
+        return filter.mightContain(MVHashIndex.mix(MVHashIndex.hash(v)));
+    }
+
+    /**
+     * Build a new Bloom filter from all entries of the map, including
+     * uncommitted and deleted ones, unless another thread already did it.
+     * Entries added during the scan are added by
+     * {@link #addToBloomFilter(SearchRow)}. Entries that were removed before
+     * the scan may still be visible to older transactions, so the filter is
+     * only used by transactions started after the scan has begun.
+     *
+     * @return the current Bloom filter
+     */
+    private synchronized BloomFilter buildBloomFilter() {
+        BloomFilter filter = bloomFilter;
+        if (filter == null || filter.isSaturated()) {
+            MVMap<SearchRow, VersionedValue<Value>> map = dataMap.map;
+            BloomFilter pending = new BloomFilter(map.sizeAsLong(), bloomFilterBits);
+            pendingBloomFilter = pending;
+            int columnId = columnIds[0];
+            Iterator<SearchRow> it = map.keyIterator(null);
+            // snapshots of transactions started from now on are not older
+            // than the iterator
+            long sequenceNum = database.getStore().getTransactionStore().getLastSequenceNum();
+            while (it.hasNext()) {
+                pending.add(MVHashIndex.mix(MVHashIndex.hash(it.next().getValue(columnId))));
+            }
+            bloomFilterSequenceNum = sequenceNum;
+            bloomFilter = filter = pending;
+            pendingBloomFilter = null;
+        }
+        return filter;
+    }
+
     private SearchRow convertToKey(SearchRow r, Boolean minMax) {
         if (r == null) {
             return null;
@@ -298,6 +420,9 @@ public MVTable getTable() {
     public double getCost(SessionLocal session, int[] masks,
             TableFilter[] filters, int filter, SortOrder sortOrder,
             AllColumnsForPlan allColumnsSet, boolean isSelectCommand) {
+        if (!isConditionImplied(session, filters == null ? null : filters[filter])) {
+            return Double.POSITIVE_INFINITY;
+        }
         try {
             return 10 * getCostRangeIndex(masks, dataMap.sizeAsLongMax(),
                     filters, filter, sortOrder, false, allColumnsSet, isSelectCommand);
@@ -319,6 +444,7 @@ public void remove(SessionLocal session) {
     public void truncate(SessionLocal session) {
         TransactionMap<SearchRow,Value> map = getMap(session);
         map.clear();
+        bloomFilter = null;
     }
 
     @Override
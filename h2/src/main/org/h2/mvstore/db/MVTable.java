@@ -13,6 +13,7 @@
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
 import org.h2.api.DatabaseEventListener;
 import org.h2.api.ErrorCode;
 import org.h2.command.ddl.CreateTableData;
@@ -32,6 +33,7 @@
 import org.h2.mvstore.MVStoreException;
 import org.h2.mvstore.tx.Transaction;
 import org.h2.mvstore.tx.TransactionStore;
+import org.h2.mvstore.tx.TransactionStore.LockWaits;
 import org.h2.result.Row;
 import org.h2.result.SearchRow;
 import org.h2.result.SortOrder;
@@ -121,6 +123,11 @@ public String getEventText() {
     private Column rowIdColumn;
 
     private final MVPrimaryIndex primaryIndex;
+
+    /**
+     * Whether rows are added with a direct-path load.
+     */
+    private boolean directLoad;
     private final ArrayList<Index> indexes = Utils.newSmallArrayList();
     private final AtomicLong lastModificationId = new AtomicLong();
 
@@ -321,6 +328,30 @@ public void unlock(SessionLocal s) {
         }
     }
 
+    /**
+     * Populate information about waits for row locks in this table, if there
+     * were any.
+     *
+     * @param consumer the consumer of names and values
+     */
+    void populateLockWaitInfo(BiConsumer<String, String> consumer) {
+        long count = 0L, totalNanos = 0L, maxNanos = 0L;
+        for (Index index : indexes) {
+            if (index instanceof MVIndex && !(index instanceof MVDelegateIndex)) {
+                LockWaits waits = transactionStore.getLockWaits(((MVIndex<?,?>) index).getMVMap().getId());
+                if (waits != null) {
+                    count += waits.getCount();
+                    totalNanos += waits.getTotalNanos();
+                    maxNanos = Math.max(maxNanos, waits.getMaxNanos());
+                }
+            }
+        }
+        if (count > 0L) {
+            consumer.accept("info.ROW_LOCK_WAITS." + getSchema().getName() + '.' + getName(),
+                    count + " waits, " + totalNanos / 1_000_000L + " ms total, " + maxNanos / 1_000_000L + " ms max");
+        }
+    }
+
     @Override
     public void close(SessionLocal session) {
         // ignore
@@ -359,6 +390,12 @@ public Index addIndex(SessionLocal session, String indexName, int indexId, Index
         } else if (indexType.isSpatial()) {
             index = new MVSpatialIndex(session.getDatabase(), this, indexId,
                     indexName, cols, uniqueColumnCount, indexType);
+        } else if (indexType.isHash() && uniqueColumnCount == 0 && indexType.getIncludedColumnCount() == 0
+                && MVHashIndex.isSupported(database, cols)
+                // a read-only database can't migrate an index that was stored
+                // as a B-tree by an older version, it keeps using it
+                && !(database.isReadOnly() && MVHashIndex.isStoredAsBTree(database, indexId))) {
+            index = new MVHashIndex(session.getDatabase(), this, indexId, indexName, cols, indexType);
         } else {
             index = new MVSecondaryIndex(session.getDatabase(), this, indexId,
                     indexName, cols, uniqueColumnCount, indexType);
@@ -382,12 +419,7 @@ public Index addIndex(SessionLocal session, String indexName, int indexId, Index
 
     private void rebuildIndex(SessionLocal session, MVIndex<?,?> index, String indexName) {
         try {
-            if (!session.getDatabase().isPersistent() || index instanceof MVSpatialIndex) {
-                // in-memory
-                rebuildIndexBuffered(session, index);
-            } else {
-                rebuildIndexBlockMerge(session, index);
-            }
+            fillIndex(session, index);
         } catch (DbException e) {
             getSchema().freeUniqueName(indexName);
             try {
@@ -403,6 +435,15 @@ private void rebuildIndex(SessionLocal session, MVIndex<?,?> index, String index
         }
     }
 
+    private void fillIndex(SessionLocal session, MVIndex<?,?> index) {
+        if (!session.getDatabase().isPersistent() || index instanceof MVSpatialIndex) {
+            // in-memory
+            rebuildIndexBuffered(session, index);
+        } else {
+            rebuildIndexBlockMerge(session, index);
+        }
+    }
+
     private void rebuildIndexBlockMerge(SessionLocal session, MVIndex<?,?> index) {
         // Read entries in memory, sort them, write to a new map (in sorted
         // order); repeat (using a new map for every block of 1 MB) until all
@@ -424,7 +465,9 @@ private void rebuildIndexBlockMerge(SessionLocal session, MVIndex<?,?> index) {
         ArrayList<String> bufferNames = Utils.newSmallArrayList();
         while (cursor.next()) {
             Row row = cursor.get();
-            buffer.add(row);
+            if (index.isIndexed(session, row)) {
+                buffer.add(row);
+            }
             database.setProgress(DatabaseEventListener.STATE_CREATE_INDEX, n, i++, total);
             if (buffer.size() >= bufferSize) {
                 sortRows(buffer, index);
@@ -461,7 +504,9 @@ private void rebuildIndexBuffered(SessionLocal session, Index index) {
         String n = getName() + ':' + index.getName();
         while (cursor.next()) {
             Row row = cursor.get();
-            buffer.add(row);
+            if (index.isIndexed(session, row)) {
+                buffer.add(row);
+            }
             database.setProgress(DatabaseEventListener.STATE_CREATE_INDEX, n, i++, total);
             if (buffer.size() >= bufferSize) {
                 addRowsToIndex(session, buffer, index);
@@ -481,7 +526,9 @@ public void removeRow(SessionLocal session, Row row) {
         try {
             for (int i = indexes.size() - 1; i >= 0; i--) {
                 Index index = indexes.get(i);
-                index.remove(session, row);
+                if (index.isIndexed(session, row)) {
+                    index.remove(session, row);
+                }
             }
         } catch (Throwable e) {
             try {
@@ -515,7 +562,9 @@ public void addRow(SessionLocal session, Row row) {
         long savepoint = t.setSavepoint();
         try {
             for (Index index : indexes) {
-                index.add(session, row);
+                if (index.isIndexed(session, row)) {
+                    index.add(session, row);
+                }
             }
         } catch (Throwable e) {
             try {
@@ -529,6 +578,109 @@ public void addRow(SessionLocal session, Row row) {
         analyzeIfRequired(session);
     }
 
+    /**
+     * Add rows to the table and all indexes. Each index gets the rows sorted
+     * by its own key, so neighbouring keys are written one after another and
+     * the pages on their path stay in the cache. The primary index gets the
+     * rows in their original order, unless its key is a column of the table,
+     * because it assigns generated row keys.
+     *
+     * @param session the session
+     * @param rows the rows
+     */
+    @Override
+    public void addRows(SessionLocal session, List<Row> rows) {
+        int size = rows.size();
+        if (directLoad) {
+            for (Row row : rows) {
+                primaryIndex.addDirect(session, row);
+            }
+            syncLastModificationIdWithDatabase();
+            for (int i = 0; i < size; i++) {
+                analyzeIfRequired(session);
+            }
+            return;
+        }
+        if (size <= 1) {
+            if (size == 1) {
+                addRow(session, rows.get(0));
+            }
+            return;
+        }
+        Transaction t = session.getTransaction();
+        long savepoint = t.setSavepoint();
+        try {
+            ArrayList<Row> sorted = null;
+            for (Index index : indexes) {
+                List<Row> list = rows;
+                if (index == primaryIndex) {
+                    int mainIndexColumn = primaryIndex.getMainIndexColumn();
+                    if (mainIndexColumn != SearchRow.ROWID_INDEX) {
+                        sorted = new ArrayList<>(rows);
+                        sorted.sort((a, b) -> Long.compare(a.getValue(mainIndexColumn).getLong(),
+                                b.getValue(mainIndexColumn).getLong()));
+                        list = sorted;
+                    }
+                } else if (index instanceof MVSecondaryIndex) {
+                    if (sorted == null) {
+                        sorted = new ArrayList<>(rows);
+                    }
+                    sorted.sort((a, b) -> {
+                        int c = index.compareRows(a, b);
+                        return c != 0 ? c : Long.compare(a.getKey(), b.getKey());
+                    });
+                    list = sorted;
+                }
+                for (Row row : list) {
+                    if (index.isIndexed(session, row)) {
+                        index.add(session, row);
+                    }
+                }
+            }
+        } catch (Throwable e) {
+            try {
+                t.rollbackToSavepoint(savepoint);
+            } catch (Throwable nested) {
+                e.addSuppressed(nested);
+            }
+            throw DbException.convert(e);
+        }
+        syncLastModificationIdWithDatabase();
+        for (int i = 0; i < size; i++) {
+            analyzeIfRequired(session);
+        }
+    }
+
+    /**
+     * Start a direct-path load. Rows are written only to the primary index,
+     * as committed data, and full leaf pages are appended to its map when
+     * keys are ascending. Other indexes are built when the load is finished,
+     * using sorted blocks of rows like CREATE INDEX does.
+     */
+    @Override
+    public boolean startDirectLoad(SessionLocal session) {
+        if (lockExclusiveSession != session || primaryIndex.getRowCountMax() != 0) {
+            return false;
+        }
+        primaryIndex.startDirectLoad();
+        directLoad = true;
+        return true;
+    }
+
+    @Override
+    public void endDirectLoad(SessionLocal session) {
+        if (!directLoad) {
+            return;
+        }
+        directLoad = false;
+        primaryIndex.endDirectLoad();
+        for (Index index : indexes) {
+            if (index != primaryIndex && !(index instanceof MVDelegateIndex)) {
+                fillIndex(session, (MVIndex<?,?>) index);
+            }
+        }
+    }
+
     @Override
     public void updateRow(SessionLocal session, Row oldRow, Row newRow) {
         newRow.setKey(oldRow.getKey());
@@ -536,7 +688,11 @@ public void updateRow(SessionLocal session, Row oldRow, Row newRow) {
         long savepoint = t.setSavepoint();
         try {
             for (Index index : indexes) {
-                index.update(session, oldRow, newRow);
+                if (index.getIndexType().getCondition() == null) {
+                    index.update(session, oldRow, newRow);
+                } else {
+                    updatePartialIndex(session, index, oldRow, newRow);
+                }
             }
         } catch (Throwable e) {
             try {
@@ -550,6 +706,19 @@ public void updateRow(SessionLocal session, Row oldRow, Row newRow) {
         analyzeIfRequired(session);
     }
 
+    private static void updatePartialIndex(SessionLocal session, Index index, Row oldRow, Row newRow) {
+        boolean oldIndexed = index.isIndexed(session, oldRow), newIndexed = index.isIndexed(session, newRow);
+        if (oldIndexed) {
+            if (newIndexed) {
+                index.update(session, oldRow, newRow);
+            } else {
+                index.remove(session, oldRow);
+            }
+        } else if (newIndexed) {
+            index.add(session, newRow);
+        }
+    }
+
     @Override
     public Row lockRow(SessionLocal session, Row row, int timeoutMillis) {
         Row lockedRow = primaryIndex.lockRow(session, row, timeoutMillis);
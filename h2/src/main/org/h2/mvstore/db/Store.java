@@ -11,6 +11,7 @@
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
 
 import org.h2.api.ErrorCode;
 import org.h2.command.ddl.CreateTableData;
@@ -138,6 +139,11 @@ public Store(Database db, byte[] key) {
             this.transactionStore = new TransactionStore(mvStore,
                     new MetaType<>(db, mvStore.backgroundExceptionHandler), new ValueDataType(db, null),
                     db.getLockTimeout());
+            int redoLogSize = db.getSettings().redoLogSize;
+            // the redo log is not encrypted
+            if (redoLogSize > 0 && dbPath != null && !encrypted && !mvStore.isReadOnly()) {
+                transactionStore.openRedoLog(dbPath + Constants.SUFFIX_REDO_FILE, redoLogSize * 1024L);
+            }
         } catch (MVStoreException e) {
             throw convertMVStoreException(e);
         }
@@ -234,6 +240,19 @@ public void removeTable(MVTable table) {
         }
     }
 
+    /**
+     * Populate information about the store and about waits for row locks in
+     * tables.
+     *
+     * @param consumer the consumer of names and values
+     */
+    public void populateInfo(BiConsumer<String, String> consumer) {
+        mvStore.populateInfo(consumer);
+        for (MVTable table : tableMap.values()) {
+            table.populateLockWaitInfo(consumer);
+        }
+    }
+
     /**
      * Store all pending changes.
      */
@@ -247,7 +266,11 @@ public void flush() {
      * Close the store, without persisting changes.
      */
     public void closeImmediately() {
-        mvStore.closeImmediately();
+        try {
+            mvStore.closeImmediately();
+        } finally {
+            transactionStore.closeImmediately();
+        }
     }
 
     /**
@@ -259,7 +282,7 @@ public void removeTemporaryMaps(BitSet objectIds) {
         for (String mapName : mvStore.getMapNames()) {
             if (mapName.startsWith("temp.")) {
                 mvStore.removeMap(mapName);
-            } else if (mapName.startsWith("table.") || mapName.startsWith("index.")) {
+            } else if (mapName.startsWith("table.") || mapName.startsWith("index.") || mapName.startsWith("hash.")) {
                 int id = StringUtils.parseUInt31(mapName, mapName.indexOf('.') + 1, mapName.length());
                 if (!objectIds.get(id)) {
                     mvStore.removeMap(mapName);
@@ -348,7 +371,7 @@ public void close(int allowedCompactionTime) {
                 mvStore.close(allowedCompactionTime);
             }
         } catch (MVStoreException e) {
-            mvStore.closeImmediately();
+            closeImmediately();
             throw DbException.get(ErrorCode.IO_EXCEPTION_1, e, "Closing");
         }
     }
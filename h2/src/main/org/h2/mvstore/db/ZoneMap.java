@@ -0,0 +1,286 @@
+/*
+ * Copyright 2004-2025 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (https://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.mvstore.db;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import org.h2.mvstore.Cursor;
+import org.h2.mvstore.MVMap;
+import org.h2.result.SearchRow;
+import org.h2.table.Column;
+import org.h2.value.DataType;
+import org.h2.value.Value;
+import org.h2.value.ValueNull;
+import org.h2.value.VersionedValue;
+
+/**
+ * Column summaries (minimum value, maximum value, and count of nulls) for
+ * zones of a primary index. A zone covers a fixed number of consecutive row
+ * keys, so on append-mostly tables a zone corresponds to a few adjacent leaf
+ * pages of the data map.
+ * <p>
+ * Summaries are only ever widened: removed rows and rolled back changes leave
+ * them as they are. This keeps them valid for every snapshot, so a scan can
+ * skip a whole zone if its summary can't match the search bounds.
+ * </p>
+ */
+final class ZoneMap {
+
+    private final MVTable table;
+
+    private final long zoneSize;
+
+    private final int[] columnIds;
+
+    private final ConcurrentSkipListMap<Long, Zone> zones = new ConcurrentSkipListMap<>();
+
+    /**
+     * Whether rows that existed before this zone map was created are
+     * summarized. Rows added afterwards are summarized by the index itself.
+     */
+    private volatile boolean built;
+
+    private ZoneMap(MVTable table, int zoneSize, int[] columnIds) {
+        this.table = table;
+        this.zoneSize = zoneSize;
+        this.columnIds = columnIds;
+    }
+
+    /**
+     * Create a zone map for the given table, if summaries are enabled and the
+     * table has at least one column of a suitable data type.
+     *
+     * @param table the table
+     * @param zoneSize the number of row keys per zone, {@code 0} to disable
+     * @return the zone map, or {@code null}
+     */
+    static ZoneMap create(MVTable table, int zoneSize) {
+        if (zoneSize <= 0) {
+            return null;
+        }
+        Column[] columns = table.getColumns();
+        int[] columnIds = new int[columns.length];
+        int count = 0;
+        for (Column column : columns) {
+            int valueType = column.getType().getValueType();
+            if (DataType.isNumericType(valueType) || DataType.isDateTimeType(valueType)) {
+                columnIds[count++] = column.getColumnId();
+            }
+        }
+        return count == 0 ? null : new ZoneMap(table, zoneSize, Arrays.copyOf(columnIds, count));
+    }
+
+    /**
+     * Check whether the specified column is summarized.
+     *
+     * @param columnId the column id
+     * @return whether the column is summarized
+     */
+    boolean isSummarized(int columnId) {
+        for (int id : columnIds) {
+            if (id == columnId) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Summarize the specified row.
+     *
+     * @param key the row key
+     * @param row the row
+     */
+    void add(long key, SearchRow row) {
+        Long zoneKey = Math.floorDiv(key, zoneSize);
+        Zone zone = zones.get(zoneKey);
+        if (zone == null) {
+            Zone newZone = new Zone(zoneKey, columnIds.length);
+            if ((zone = zones.putIfAbsent(zoneKey, newZone)) == null) {
+                zone = newZone;
+            }
+        }
+        zone.add(row);
+    }
+
+    /**
+     * Remove all summaries. The table must be locked exclusively.
+     */
+    void clear() {
+        zones.clear();
+    }
+
+    /**
+     * Summarize the rows that were stored in the specified map before this
+     * zone map was created, if this wasn't done yet. Both committed and
+     * uncommitted versions are summarized.
+     *
+     * @param map the data map of the primary index
+     */
+    void build(MVMap<Long, VersionedValue<SearchRow>> map) {
+        if (!built) {
+            synchronized (this) {
+                if (!built) {
+                    for (Cursor<Long, VersionedValue<SearchRow>> cursor = map.cursor(null); cursor.hasNext();) {
+                        long key = cursor.next();
+                        VersionedValue<SearchRow> value = cursor.getValue();
+                        SearchRow row = value.getCurrentValue();
+                        if (row != null) {
+                            add(key, row);
+                        }
+                        if (value.getOperationId() != 0L && (row = value.getCommittedValue()) != null) {
+                            add(key, row);
+                        }
+                    }
+                    built = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Check whether the specified search bounds restrict any summarized
+     * column.
+     *
+     * @param first the first row, or {@code null}
+     * @param last the last row, or {@code null}
+     * @return whether zones may be skipped with these bounds
+     */
+    boolean isRestricted(SearchRow first, SearchRow last) {
+        for (int columnId : columnIds) {
+            if (first != null && first.getValue(columnId) != null
+                    || last != null && last.getValue(columnId) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the zones that intersect with the specified range of row keys.
+     *
+     * @param min the lowest row key, or {@code null}
+     * @param max the highest row key, or {@code null}
+     * @param reverse whether zones should be returned in descending order
+     * @return iterator over the zones
+     */
+    Iterator<Zone> zones(Long min, Long max, boolean reverse) {
+        NavigableMap<Long, Zone> map = zones;
+        if (min != null) {
+            map = map.tailMap(Math.floorDiv(min, zoneSize), true);
+        }
+        if (max != null) {
+            map = map.headMap(Math.floorDiv(max, zoneSize), true);
+        }
+        if (reverse) {
+            map = map.descendingMap();
+        }
+        return map.values().iterator();
+    }
+
+    /**
+     * Returns the lowest row key of the specified zone.
+     *
+     * @param zone the zone
+     * @return the lowest row key
+     */
+    long getFirstKey(Zone zone) {
+        return zone.zoneKey * zoneSize;
+    }
+
+    /**
+     * Returns the highest row key of the specified zone.
+     *
+     * @param zone the zone
+     * @return the highest row key
+     */
+    long getLastKey(Zone zone) {
+        long first = zone.zoneKey * zoneSize;
+        long last = first + (zoneSize - 1);
+        return last < first ? Long.MAX_VALUE : last;
+    }
+
+    /**
+     * Check whether the specified zone may contain rows within the specified
+     * bounds.
+     *
+     * @param zone the zone
+     * @param first the first row, or {@code null}
+     * @param last the last row, or {@code null}
+     * @return {@code false} if the zone can be skipped, {@code true} otherwise
+     */
+    boolean mayContain(Zone zone, SearchRow first, SearchRow last) {
+        synchronized (zone) {
+            for (int i = 0, l = columnIds.length; i < l; i++) {
+                int columnId = columnIds[i];
+                Value from = first != null ? first.getValue(columnId) : null;
+                Value to = last != null ? last.getValue(columnId) : null;
+                if (from == null && to == null) {
+                    continue;
+                }
+                if (from == ValueNull.INSTANCE || to == ValueNull.INSTANCE) {
+                    // IS NULL condition, only null values may match
+                    if (zone.nulls[i] == 0L) {
+                        return false;
+                    }
+                    continue;
+                }
+                Value min = zone.min[i];
+                if (min == null) {
+                    // only nulls
+                    return false;
+                }
+                if (from != null && table.compareValues(table.getDatabase(), zone.max[i], from) < 0
+                        || to != null && table.compareValues(table.getDatabase(), min, to) > 0) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Summary of a zone.
+     */
+    final class Zone {
+
+        final long zoneKey;
+
+        final Value[] min, max;
+
+        final long[] nulls;
+
+        Zone(long zoneKey, int columnCount) {
+            this.zoneKey = zoneKey;
+            min = new Value[columnCount];
+            max = new Value[columnCount];
+            nulls = new long[columnCount];
+        }
+
+        synchronized void add(SearchRow row) {
+            for (int i = 0, l = columnIds.length; i < l; i++) {
+                Value v = row.getValue(columnIds[i]);
+                if (v == ValueNull.INSTANCE) {
+                    nulls[i]++;
+                } else if (v != null) {
+                    Value m = min[i];
+                    if (m == null) {
+                        min[i] = max[i] = v;
+                    } else if (table.compareValues(table.getDatabase(), v, m) < 0) {
+                        min[i] = v;
+                    } else if (table.compareValues(table.getDatabase(), v, max[i]) > 0) {
+                        max[i] = v;
+                    }
+                }
+            }
+        }
+
+    }
+
+}
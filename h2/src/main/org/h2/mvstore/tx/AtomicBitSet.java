@@ -0,0 +1,180 @@
+/*
+ * Copyright 2004-2025 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (https://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.mvstore.tx;
+
+import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed size bit set with atomic updates of individual bits. Unlike a
+ * copy-on-write BitSet, a change of a bit only updates the word that contains
+ * it, so concurrent changes of different bits don't conflict with each other
+ * and don't create garbage.
+ * <p>
+ * Each change also increments a modification counter (epoch). Readers that
+ * need a stable picture use {@link #snapshot()}, which returns the same
+ * immutable copy for as long as the epoch stays the same, and a different
+ * one after any change.
+ * </p>
+ */
+final class AtomicBitSet {
+
+    private final AtomicLongArray words;
+
+    /**
+     * The number of words that had at least one bit set at some point.
+     */
+    private final AtomicInteger wordsInUse = new AtomicInteger();
+
+    private final AtomicLong epoch = new AtomicLong();
+
+    private volatile Copy lastCopy = new Copy(0L, new BitSet());
+
+    /**
+     * Create a new bit set.
+     *
+     * @param size the number of bits
+     */
+    AtomicBitSet(int size) {
+        words = new AtomicLongArray((size + 63) >>> 6);
+    }
+
+    /**
+     * Get the current value of a bit.
+     *
+     * @param bitIndex the bit index
+     * @return the value of the bit
+     */
+    boolean get(int bitIndex) {
+        return (words.get(bitIndex >>> 6) & 1L << bitIndex) != 0L;
+    }
+
+    /**
+     * Set a bit to the specified value.
+     *
+     * @param bitIndex the bit index
+     * @param value the new value
+     * @return whether the bit was changed
+     */
+    boolean set(int bitIndex, boolean value) {
+        int index = bitIndex >>> 6;
+        long mask = 1L << bitIndex;
+        long word;
+        do {
+            word = words.get(index);
+            if ((word & mask) != 0L == value) {
+                return false;
+            }
+        } while (!words.compareAndSet(index, word, word ^ mask));
+        if (value && index >= wordsInUse.get()) {
+            wordsInUse.accumulateAndGet(index + 1, Math::max);
+        }
+        epoch.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Find the first clear bit within the specified range and set it.
+     *
+     * @param fromIndex the first bit index to check
+     * @param toIndex the last bit index to check (inclusive)
+     * @return the index of the bit that was set, or -1 if all bits in the
+     *         range are set
+     */
+    int setNextClearBit(int fromIndex, int toIndex) {
+        int index = fromIndex >>> 6, last = Math.min(toIndex >>> 6, words.length() - 1);
+        long firstMask = -1L << fromIndex;
+        for (; index <= last; index++, firstMask = -1L) {
+            long word;
+            while ((word = ~words.get(index) & firstMask) != 0L) {
+                int bitIndex = (index << 6) + Long.numberOfTrailingZeros(word);
+                if (bitIndex > toIndex) {
+                    return -1;
+                }
+                if (set(bitIndex, true)) {
+                    return bitIndex;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the index of the first bit that is currently set, starting at
+     * the specified index.
+     *
+     * @param fromIndex the index to start from
+     * @return the index of the set bit, or -1 if there is no such bit
+     */
+    int nextSetBit(int fromIndex) {
+        int index = fromIndex >>> 6, length = wordsInUse.get();
+        if (index >= length) {
+            return -1;
+        }
+        long word = words.get(index) & -1L << fromIndex;
+        while (word == 0L) {
+            if (++index == length) {
+                return -1;
+            }
+            word = words.get(index);
+        }
+        return (index << 6) + Long.numberOfTrailingZeros(word);
+    }
+
+    /**
+     * Returns the index of the highest bit that is currently set plus one.
+     *
+     * @return the logical size of this bit set
+     */
+    int length() {
+        for (int index = wordsInUse.get() - 1; index >= 0; index--) {
+            long word = words.get(index);
+            if (word != 0L) {
+                return (index << 6) + 64 - Long.numberOfLeadingZeros(word);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns an immutable copy of this bit set. The same copy is returned
+     * until a bit is changed, so identity of returned copies may be used to
+     * detect concurrent changes.
+     *
+     * @return the copy, must not be modified
+     */
+    BitSet snapshot() {
+        Copy copy = lastCopy;
+        long e = epoch.get();
+        if (copy.epoch != e) {
+            long[] array = new long[wordsInUse.get()];
+            for (int i = 0; i < array.length; i++) {
+                array[i] = words.get(i);
+            }
+            lastCopy = copy = new Copy(e, BitSet.valueOf(array));
+        }
+        return copy.bits;
+    }
+
+    /**
+     * A copy of the bits together with the epoch it was taken at.
+     */
+    private static final class Copy {
+
+        final long epoch;
+
+        final BitSet bits;
+
+        Copy(long epoch, BitSet bits) {
+            this.epoch = epoch;
+            this.bits = bits;
+        }
+
+    }
+
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2004-2025 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (https://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.mvstore.tx;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.h2.mvstore.DataUtils;
+import org.h2.store.fs.FileUtils;
+
+/**
+ * Append-only log of committed changes (redo log). Each record holds all
+ * changes of one transaction and is written with a single sequential write
+ * followed by a sync of the file. Concurrent committers share syncs: a
+ * committer whose record was already synced by another one doesn't sync
+ * again.
+ * <p>
+ * Record format: length of the data (int), Fletcher32 checksum of the data
+ * (int), data. A torn record at the end of the file, left after abrupt
+ * termination during a write, is ignored.
+ * </p>
+ */
+final class RedoLog {
+
+    private static final int HEADER_LENGTH = 8;
+
+    private final String fileName;
+
+    private final FileChannel file;
+
+    private volatile long size;
+
+    private volatile long syncedSize;
+
+    private final Object syncLock = new Object();
+
+    /**
+     * Open the redo log.
+     *
+     * @param fileName the file name
+     */
+    RedoLog(String fileName) {
+        this.fileName = fileName;
+        try {
+            file = FileUtils.open(fileName, "rw");
+            size = syncedSize = file.size();
+        } catch (IOException e) {
+            throw DataUtils.newMVStoreException(DataUtils.ERROR_READING_FAILED,
+                    "Could not open redo log {0}", fileName, e);
+        }
+    }
+
+    /**
+     * Returns the current size of the log in bytes.
+     *
+     * @return the size
+     */
+    long size() {
+        return size;
+    }
+
+    /**
+     * Append a record and wait until it is synced to the storage.
+     *
+     * @param data the data of the record, from position 0 to the limit
+     */
+    void append(ByteBuffer data) {
+        int length = data.limit();
+        ByteBuffer buff = ByteBuffer.allocate(HEADER_LENGTH + length);
+        buff.putInt(length);
+        buff.putInt(DataUtils.getFletcher32(data.array(), data.arrayOffset(), length));
+        buff.put(data.array(), data.arrayOffset(), length);
+        buff.flip();
+        long end;
+        synchronized (this) {
+            long pos = size;
+            DataUtils.writeFully(file, pos, buff);
+            size = end = pos + buff.limit();
+        }
+        sync(end);
+    }
+
+    private void sync(long end) {
+        if (syncedSize < end) {
+            synchronized (syncLock) {
+                if (syncedSize < end) {
+                    // everything written so far is synced by this call
+                    long s = size;
+                    try {
+                        file.force(false);
+                    } catch (IOException e) {
+                        throw DataUtils.newMVStoreException(DataUtils.ERROR_WRITING_FAILED,
+                                "Could not sync redo log {0}", fileName, e);
+                    }
+                    syncedSize = s;
+                }
+            }
+        }
+    }
+
+    /**
+     * Read the data of all complete records.
+     *
+     * @return the list of record data buffers
+     */
+    List<ByteBuffer> read() {
+        ArrayList<ByteBuffer> list = new ArrayList<>();
+        long length = size;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+        for (long pos = 0; pos + HEADER_LENGTH <= length;) {
+            header.clear();
+            DataUtils.readFully(file, pos, header);
+            int dataLength = header.getInt();
+            int check = header.getInt();
+            pos += HEADER_LENGTH;
+            if (dataLength < 0 || pos + dataLength > length) {
+                break;
+            }
+            ByteBuffer data = ByteBuffer.allocate(dataLength);
+            if (dataLength > 0) {
+                DataUtils.readFully(file, pos, data);
+            }
+            if (DataUtils.getFletcher32(data.array(), 0, dataLength) != check) {
+                break;
+            }
+            list.add(data);
+            pos += dataLength;
+        }
+        return list;
+    }
+
+    /**
+     * Remove all records. Must not be called concurrently with
+     * {@link #append(ByteBuffer)}.
+     */
+    void truncate() {
+        synchronized (this) {
+            try {
+                file.truncate(0L);
+                file.force(false);
+            } catch (IOException e) {
+                throw DataUtils.newMVStoreException(DataUtils.ERROR_WRITING_FAILED,
+                        "Could not truncate redo log {0}", fileName, e);
+            }
+            size = syncedSize = 0L;
+        }
+    }
+
+    /**
+     * Close the log file.
+     */
+    void close() {
+        try {
+            file.close();
+        } catch (IOException e) {
+            throw DataUtils.newMVStoreException(DataUtils.ERROR_WRITING_FAILED,
+                    "Could not close redo log {0}", fileName, e);
+        }
+    }
+
+}
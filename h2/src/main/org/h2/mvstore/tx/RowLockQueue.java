@@ -0,0 +1,106 @@
+/*
+ * Copyright 2004-2025 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (https://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.mvstore.tx;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Queue of transactions waiting for the same locked entry of a map. Only the
+ * first transaction in the queue waits for the transaction that holds the
+ * lock, so when that transaction ends, only one waiter per entry is woken up
+ * to retry. The next waiter gets its turn when the previous one leaves the
+ * queue, usually after it has acquired the lock, so waiters are served in
+ * order of arrival. Deadlock detection treats a queued waiter as blocked by
+ * the previous one.
+ */
+final class RowLockQueue {
+
+    private final ConcurrentMap<Object, RowLockQueue> queues;
+
+    private final Object key;
+
+    private final ArrayDeque<Transaction> waiters = new ArrayDeque<>();
+
+    /**
+     * Whether this queue became empty and was removed from the map of queues.
+     */
+    private boolean removed;
+
+    private RowLockQueue(ConcurrentMap<Object, RowLockQueue> queues, Object key) {
+        this.queues = queues;
+        this.key = key;
+    }
+
+    /**
+     * Add a transaction to the end of the queue for the specified key.
+     *
+     * @param queues the queues of the map, by key
+     * @param key the key of the locked entry
+     * @param transaction the waiting transaction
+     * @return the queue
+     */
+    static RowLockQueue enter(ConcurrentMap<Object, RowLockQueue> queues, Object key, Transaction transaction) {
+        while (true) {
+            RowLockQueue queue = queues.computeIfAbsent(key, k -> new RowLockQueue(queues, k));
+            synchronized (queue) {
+                if (!queue.removed) {
+                    queue.waiters.addLast(transaction);
+                    return queue;
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the transaction before the specified one in the queue.
+     *
+     * @param transaction the transaction in the queue
+     * @return the previous transaction, or {@code null} if the specified one
+     *         is the first
+     */
+    synchronized Transaction getPrevious(Transaction transaction) {
+        Transaction previous = null;
+        for (Transaction t : waiters) {
+            if (t == transaction) {
+                break;
+            }
+            previous = t;
+        }
+        return previous;
+    }
+
+    /**
+     * Remove the transaction from the queue and wake up the next one, because
+     * it is the first one now, or it waits for another transaction.
+     *
+     * @param transaction the transaction to remove
+     */
+    void leave(Transaction transaction) {
+        Transaction next = null;
+        synchronized (this) {
+            for (Iterator<Transaction> it = waiters.iterator(); it.hasNext();) {
+                if (it.next() == transaction) {
+                    it.remove();
+                    if (it.hasNext()) {
+                        next = it.next();
+                    }
+                    break;
+                }
+            }
+            if (waiters.isEmpty()) {
+                removed = true;
+                queues.remove(key, this);
+                return;
+            }
+        }
+        if (next != null) {
+            next.wakeUp();
+        }
+    }
+
+}
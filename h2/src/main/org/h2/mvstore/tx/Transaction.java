@@ -160,6 +160,17 @@ public final class Transaction {
      */
     private volatile boolean notificationRequested;
 
+    /**
+     * Queue of transactions waiting for the same map entry as this one, or
+     * {@code null}.
+     */
+    private RowLockQueue lockQueue;
+
+    /**
+     * Monitor to wait on for the turn in the lock queue.
+     */
+    private final Object lockQueueMonitor = new Object();
+
     /**
      * RootReferences for undo log snapshots
      */
@@ -340,7 +351,7 @@ public void markStatementStart(HashSet<MVMap<Object,VersionedValue<Object>>> map
             // when no new transaction were committed / closed.
             BitSet committingTransactions;
             do {
-                committingTransactions = store.committingTransactions.get();
+                committingTransactions = store.committingTransactions.snapshot();
                 for (MVMap<Object,VersionedValue<Object>> map : maps) {
                     TransactionMap<?,?> txMap = openMapX(map);
                     txMap.setStatementSnapshot(new Snapshot(map.flushAndGetRoot(), committingTransactions));
@@ -348,7 +359,7 @@ public void markStatementStart(HashSet<MVMap<Object,VersionedValue<Object>>> map
                 if (isReadCommitted()) {
                     undoLogRootReferences = store.collectUndoLogRootReferences();
                 }
-            } while (committingTransactions != store.committingTransactions.get());
+            } while (committingTransactions != store.committingTransactions.snapshot());
             // Now we have a snapshot, where each map RootReference point to state of the map,
             // undoLogRootReferences captures the state of undo logs
             // and committingTransactions mask tells us which of seemingly uncommitted changes
@@ -490,7 +501,7 @@ public void prepare() {
      * Commit the transaction. Afterwards, this transaction is closed.
      */
     public void commit() {
-        assert store.openTransactions.get().get(transactionId);
+        assert store.openTransactions.get(transactionId);
         markTransactionEnd();
         Throwable ex = null;
         boolean hasChanges = false;
@@ -659,26 +670,98 @@ private void notifyAllWaitingTransactions() {
 
     /**
      * Make this transaction to wait for the specified transaction to be closed,
-     * because both of them try to modify the same map entry.
+     * because both of them try to modify the same map entry. Transactions
+     * waiting for the same entry are queued, and only the first one in the
+     * queue waits for the specified transaction, others wait for their turn.
+     * For deadlock detection, a queued transaction waits for the previous one
+     * in the queue, which gets the entry before it. The transaction stays in
+     * the queue until {@link #leaveLockQueue()} is called.
      *
      * @param toWaitFor transaction to wait for
-     * @param mapName name of the map containing blocking entry
+     * @param map the map containing blocking entry
      * @param key of the blocking entry
      * @param timeoutMillis timeout in milliseconds, {@code -1} for default
-     * @return true if other transaction was closed and this one can proceed, false if timed out
+     * @return true if other transaction was closed or the turn of this one has
+     *         come and it can proceed, false if timed out
      */
-    public boolean waitFor(Transaction toWaitFor, String mapName, Object key, int timeoutMillis) {
-        blockingTransaction = toWaitFor;
-        blockingMapName = mapName;
+    public boolean waitFor(Transaction toWaitFor, MVMap<?,?> map, Object key, int timeoutMillis) {
+        blockingMapName = map.getName();
         blockingKey = key;
-        if (isDeadlocked(toWaitFor)) {
-            tryThrowDeadLockException(false);
+        long start = System.nanoTime();
+        try {
+            if (lockQueue == null) {
+                lockQueue = store.enterLockQueue(map, key, this);
+            }
+            int millis = timeoutMillis == -1 ? this.timeoutMillis : timeoutMillis;
+            if (lockQueue.getPrevious(this) != null) {
+                return waitForTurn(millis);
+            }
+            blockingTransaction = toWaitFor;
+            if (isDeadlocked(toWaitFor)) {
+                tryThrowDeadLockException(false);
+            }
+            return toWaitFor.waitForThisToEnd(millis, this);
+        } finally {
+            store.recordLockWait(map.getId(), System.nanoTime() - start);
+            blockingMapName = null;
+            blockingKey = null;
+            blockingTransaction = null;
+        }
+    }
+
+    /**
+     * Leave the lock queue this transaction has entered in
+     * {@link #waitFor(Transaction, MVMap, Object, int)}, if any.
+     */
+    public void leaveLockQueue() {
+        RowLockQueue queue = lockQueue;
+        if (queue != null) {
+            lockQueue = null;
+            queue.leave(this);
+        }
+    }
+
+    private boolean waitForTurn(int millis) {
+        long time = System.nanoTime();
+        RowLockQueue queue = lockQueue;
+        Transaction previous;
+        while ((previous = queue.getPrevious(this)) != null) {
+            if (previous != blockingTransaction) {
+                // the previous transaction may have started to wait for
+                // another one, so the check is repeated with each change
+                blockingTransaction = previous;
+                if (isDeadlocked(previous)) {
+                    tryThrowDeadLockException(false);
+                }
+            }
+            synchronized (lockQueueMonitor) {
+                if (getStatus() != STATUS_OPEN) {
+                    tryThrowDeadLockException(true);
+                }
+                if (queue.getPrevious(this) != previous) {
+                    continue;
+                }
+                int remaining = millis - (int) ((System.nanoTime() - time) / 1_000_000L);
+                if (remaining <= 0) {
+                    return false;
+                }
+                try {
+                    lockQueueMonitor.wait(remaining);
+                } catch (InterruptedException ex) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Wake up this transaction if it waits for its turn in a lock queue.
+     */
+    void wakeUp() {
+        synchronized (lockQueueMonitor) {
+            lockQueueMonitor.notifyAll();
         }
-        boolean result = toWaitFor.waitForThisToEnd(timeoutMillis == -1 ? this.timeoutMillis : timeoutMillis, this);
-        blockingMapName = null;
-        blockingKey = null;
-        blockingTransaction = null;
-        return result;
     }
 
     private boolean isDeadlocked(Transaction toWaitFor) {
@@ -702,6 +785,7 @@ private boolean isDeadlocked(Transaction toWaitFor) {
                 if (btx != null) {
                     youngest.setStatus(STATUS_ROLLING_BACK);
                     btx.notifyAllWaitingTransactions();
+                    youngest.wakeUp();
                     return false;
                 }
             }
@@ -12,7 +12,6 @@
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
-import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiFunction;
 
 import org.h2.engine.IsolationLevel;
@@ -340,11 +339,34 @@ public V lock(K key, int timeoutMillis) {
     public V putCommitted(K key, V value) {
         DataUtils.checkArgument(value != null, "The value may not be null");
         VersionedValue<V> newValue = VersionedValueCommitted.getInstance(value);
+        transaction.store.markUnloggedChanges();
         VersionedValue<V> oldValue = map.put(key, newValue);
         V result = oldValue == null ? null : oldValue.getCurrentValue();
         return result;
     }
 
+    /**
+     * Append the given entries as a new leaf page, without adding undo log
+     * entries. The keys must be in ascending order and larger than all keys of
+     * this map, and the map must not be changed concurrently.
+     *
+     * @param keys the keys
+     * @param values the values
+     * @param count the number of entries to append
+     */
+    public void appendCommitted(K[] keys, V[] values, int count) {
+        K[] newKeys = map.getKeyType().createStorage(count);
+        VersionedValue<V>[] newValues = map.getValueType().createStorage(count);
+        System.arraycopy(keys, 0, newKeys, 0, count);
+        for (int i = 0; i < count; i++) {
+            V value = values[i];
+            DataUtils.checkArgument(value != null, "The value may not be null");
+            newValues[i] = VersionedValueCommitted.getInstance(value);
+        }
+        transaction.store.markUnloggedChanges();
+        map.appendLeaf(newKeys, newValues);
+    }
+
     private V set(K key, V value) {
         txDecisionMaker.initialize(key, value);
         return set(key, txDecisionMaker, -1);
@@ -353,37 +375,41 @@ private V set(K key, V value) {
     private V set(Object key, TxDecisionMaker<K,V> decisionMaker, int timeoutMillis) {
         Transaction blockingTransaction;
         VersionedValue<V> result;
-        String mapName = null;
-        do {
-            assert transaction.getBlockerId() == 0;
-            @SuppressWarnings("unchecked")
-            K k = (K) key;
-            // second parameter (value) is not really used,
-            // since TxDecisionMaker has it embedded
-            result = map.operate(k, null, decisionMaker);
-
-            MVMap.Decision decision = decisionMaker.getDecision();
-            assert decision != null;
-            assert decision != MVMap.Decision.REPEAT;
-            blockingTransaction = decisionMaker.getBlockingTransaction();
-            if (decision != MVMap.Decision.ABORT || blockingTransaction == null) {
-                hasChanges |= decision != MVMap.Decision.ABORT;
-                V res = result == null ? null : result.getCurrentValue();
-                return res;
-            }
-            decisionMaker.reset();
-            if (timeoutMillis == -2) {
-                return null;
-            }
-            if (mapName == null) {
-                mapName = map.getName();
+        boolean waited = false;
+        try {
+            do {
+                assert transaction.getBlockerId() == 0;
+                @SuppressWarnings("unchecked")
+                K k = (K) key;
+                // second parameter (value) is not really used,
+                // since TxDecisionMaker has it embedded
+                result = map.operate(k, null, decisionMaker);
+
+                MVMap.Decision decision = decisionMaker.getDecision();
+                assert decision != null;
+                assert decision != MVMap.Decision.REPEAT;
+                blockingTransaction = decisionMaker.getBlockingTransaction();
+                if (decision != MVMap.Decision.ABORT || blockingTransaction == null) {
+                    hasChanges |= decision != MVMap.Decision.ABORT;
+                    V res = result == null ? null : result.getCurrentValue();
+                    return res;
+                }
+                decisionMaker.reset();
+                if (timeoutMillis == -2) {
+                    return null;
+                }
+                waited = true;
+            } while (timeoutMillis != 0 && transaction.waitFor(blockingTransaction, map, key, timeoutMillis));
+        } finally {
+            if (waited) {
+                transaction.leaveLockQueue();
             }
-        } while (timeoutMillis != 0 && transaction.waitFor(blockingTransaction, mapName, key, timeoutMillis));
+        }
 
         throw DataUtils.newMVStoreException(DataUtils.ERROR_TRANSACTION_LOCKED,
                 "Map entry <{0}> with key <{1}> and value {2} is locked by tx {3} and can not be updated by tx {4}"
                         + " within allocated time interval {5} ms.",
-                mapName, key, result, blockingTransaction.transactionId, transaction.transactionId,
+                map.getName(), key, result, blockingTransaction.transactionId, transaction.transactionId,
                 timeoutMillis == -1 ? transaction.timeoutMillis : timeoutMillis);
     }
 
@@ -561,12 +587,12 @@ <R> R useSnapshot(BiFunction<RootReference<K,VersionedValue<V>>, BitSet, R> snap
         // which they had at some recent moment in time.
         // In order to get such a "snapshot", we wait for a moment of silence,
         // when neither of the variables concurrently changes it's value.
-        AtomicReference<BitSet> holder = transaction.store.committingTransactions;
-        BitSet committingTransactions = holder.get();
+        AtomicBitSet holder = transaction.store.committingTransactions;
+        BitSet committingTransactions = holder.snapshot();
         while (true) {
             BitSet prevCommittingTransactions = committingTransactions;
             RootReference<K,VersionedValue<V>> root = map.getRoot();
-            committingTransactions = holder.get();
+            committingTransactions = holder.snapshot();
             if (committingTransactions == prevCommittingTransactions) {
                 return snapshotConsumer.apply(root, committingTransactions);
             }
@@ -634,6 +660,7 @@ public boolean isClosed() {
     @Override
     public void clear() {
         // TODO truncate transactionally?
+        transaction.store.markUnloggedChanges();
         map.clear();
         hasChanges = true;
     }
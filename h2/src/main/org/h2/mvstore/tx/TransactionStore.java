@@ -5,20 +5,26 @@
  */
 package org.h2.mvstore.tx;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.BitSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import org.h2.engine.IsolationLevel;
-import org.h2.mvstore.Cursor;
 import org.h2.mvstore.DataUtils;
 import org.h2.mvstore.MVMap;
 import org.h2.mvstore.MVStore;
 import org.h2.mvstore.RootReference;
+import org.h2.mvstore.WriteBuffer;
 import org.h2.mvstore.rtree.MVRTreeMap;
 import org.h2.mvstore.rtree.SpatialDataType;
 import org.h2.mvstore.type.DataType;
@@ -64,16 +70,27 @@ public class TransactionStore {
      */
     @SuppressWarnings("unchecked")
     final MVMap<Long,Record<?,?>>[] undoLogs = new MVMap[MAX_OPEN_TRANSACTIONS];
+
+    /**
+     * The latest undo log records of the transactions, that were not moved
+     * to the undo log maps yet.
+     */
+    final UndoLogBuffer[] undoLogBuffers = new UndoLogBuffer[MAX_OPEN_TRANSACTIONS];
     private final MVMap.Builder<Long, Record<?,?>> undoLogBuilder;
 
     private final DataType<?> dataType;
 
     /**
-     * This BitSet is used as vacancy indicator for transaction slots in transactions[].
-     * It provides easy way to find first unoccupied slot, and also allows for copy-on-write
-     * non-blocking updates.
+     * This bit set is used as vacancy indicator for transaction slots in transactions[].
+     * It provides easy way to find first unoccupied slot, and allows for non-blocking
+     * updates of individual slots.
+     */
+    final AtomicBitSet openTransactions = new AtomicBitSet(MAX_OPEN_TRANSACTIONS + 1);
+
+    /**
+     * The sequence number of the last started transaction.
      */
-    final AtomicReference<VersionedBitSet> openTransactions = new AtomicReference<>(new VersionedBitSet());
+    private final AtomicLong lastSequenceNum = new AtomicLong();
 
     /**
      * This is intended to be the source of ultimate truth about transaction being committed.
@@ -81,8 +98,9 @@ public class TransactionStore {
      * although it might be plenty of "uncommitted" entries in various maps
      * and undo record are still around.
      * Nevertheless, all of those should be considered by other transactions as committed.
+     * Readers that need to combine it with map roots should use its snapshots.
      */
-    final AtomicReference<BitSet> committingTransactions = new AtomicReference<>(new BitSet());
+    final AtomicBitSet committingTransactions = new AtomicBitSet(MAX_OPEN_TRANSACTIONS + 1);
 
     private boolean init;
 
@@ -100,6 +118,52 @@ public class TransactionStore {
     private final AtomicReferenceArray<Transaction> transactions =
                                                         new AtomicReferenceArray<>(MAX_OPEN_TRANSACTIONS + 1);
 
+    /**
+     * The redo log, or null if commits are made durable by storing the
+     * changes in the MVStore only.
+     */
+    private RedoLog redoLog;
+
+    /**
+     * The size of the redo log in bytes, after which a checkpoint is made.
+     */
+    private long maxRedoLogSize;
+
+    /**
+     * Commits that are written to the redo log hold the read lock, checkpoints
+     * hold the write lock.
+     */
+    private final ReentrantReadWriteLock checkpointLock = new ReentrantReadWriteLock();
+
+    /**
+     * The version of the store that was current when the last checkpoint
+     * started. Maps created before it are known to be persisted.
+     */
+    private volatile long checkpointVersion;
+
+    /**
+     * Whether there are changes that can't be written to the redo log since
+     * the last checkpoint, such as cleared maps.
+     */
+    private volatile boolean unloggedChanges;
+
+    /**
+     * Non-transactional maps opened through this store. Their changes can't
+     * be written to the redo log.
+     */
+    private final List<MVMap<?, ?>> unloggedMaps = new CopyOnWriteArrayList<>();
+
+    /**
+     * Queues of transactions waiting for locked entries, by map id and key.
+     */
+    private final ConcurrentHashMap<Integer, ConcurrentSkipListMap<Object, RowLockQueue>> lockQueues =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Statistics of waits for locked entries, by map id.
+     */
+    private final ConcurrentHashMap<Integer, LockWaits> lockWaits = new ConcurrentHashMap<>();
+
     private static final String TYPE_REGISTRY_NAME = "_";
 
     /**
@@ -175,6 +239,22 @@ private static MVMap<String, DataType<?>> openTypeRegistry(MVStore store, MetaTy
         return store.openMap(TYPE_REGISTRY_NAME, typeRegistryBuilder);
     }
 
+    /**
+     * Enable the redo log. Changes of committed transactions will be appended
+     * to this log and synced, instead of being made durable by storing the
+     * whole store. Must be called before {@link #init(RollbackListener)},
+     * where changes from the existing log, if any, are applied.
+     *
+     * @param fileName the name of the log file
+     * @param maxSize the size of the log in bytes, after which the store is
+     *            committed and the log is truncated
+     */
+    public void openRedoLog(String fileName, long maxSize) {
+        DataUtils.checkArgument(!init, "Transaction store is already initialized");
+        redoLog = new RedoLog(fileName);
+        maxRedoLogSize = maxSize;
+    }
+
     /**
      * Initialize the store without any RollbackListener.
      * @see #init(RollbackListener)
@@ -203,8 +283,7 @@ public void init(RollbackListener listener) {
                         if (store.hasData(mapName)) {
                             int transactionId = StringUtils.parseUInt31(mapName, UNDO_LOG_NAME_PREFIX.length() + 1,
                                     mapName.length());
-                            VersionedBitSet openTxBitSet = openTransactions.get();
-                            if (!openTxBitSet.get(transactionId)) {
+                            if (!openTransactions.get(transactionId)) {
                                 Object[] data = preparedTransactions.get(transactionId);
                                 int status;
                                 String name;
@@ -217,6 +296,7 @@ public void init(RollbackListener listener) {
                                 }
                                 MVMap<Long, Record<?,?>> undoLog = store.openMap(mapName, undoLogBuilder);
                                 undoLogs[transactionId] = undoLog;
+                                undoLogBuffers[transactionId] = new UndoLogBuffer(transactionId, undoLog);
                                 Long lastUndoKey = undoLog.lastKey();
                                 assert lastUndoKey != null;
                                 assert getTransactionId(lastUndoKey) == transactionId;
@@ -246,12 +326,163 @@ public void init(RollbackListener listener) {
                     }
                 }
             }
+            if (redoLog != null) {
+                applyRedoLog();
+            }
+            if (!store.isReadOnly()) {
+                store.setBeforeStoreAction(this::spillUndoLogBuffers);
+            }
             init = true;
         }
     }
 
+    /**
+     * Apply the changes from the redo log. Transactions that were open when
+     * the store was persisted last time are rolled back first, because some
+     * of them may have been committed later, and their changes are in the log.
+     */
+    private void applyRedoLog() {
+        List<ByteBuffer> records = redoLog.read();
+        if (!records.isEmpty()) {
+            for (int i = openTransactions.nextSetBit(1); i >= 0; i = openTransactions.nextSetBit(i + 1)) {
+                Transaction t = getTransaction(i);
+                if (t != null && t.getStatus() == Transaction.STATUS_OPEN) {
+                    t.rollback();
+                }
+            }
+            for (ByteBuffer buff : records) {
+                for (int count = buff.getInt(); count > 0; count--) {
+                    int mapId = DataUtils.readVarInt(buff);
+                    int length = DataUtils.readVarInt(buff);
+                    int end = buff.position() + length;
+                    MVMap<Object, VersionedValue<Object>> map = openMap(mapId);
+                    if (map != null) {
+                        boolean remove = buff.get() == 0;
+                        Object key = map.getKeyType().read(buff);
+                        if (remove) {
+                            map.remove(key);
+                        } else {
+                            map.put(key, map.getValueType().read(buff));
+                        }
+                    }
+                    // the map may have been removed
+                    buff.position(end);
+                }
+            }
+        }
+        if (!store.isReadOnly()) {
+            checkpoint();
+        }
+    }
+
+    /**
+     * Create a record for the redo log with the changes of the specified
+     * transaction, that is about to be committed.
+     *
+     * @param t the transaction
+     * @return the record, or null if changes of the transaction can't be
+     *         logged and the store needs to be persisted instead
+     */
+    private ByteBuffer getRedoRecord(Transaction t) {
+        if (unloggedChanges || t.wasStored) {
+            return null;
+        }
+        long version = checkpointVersion;
+        for (MVMap<?, ?> map : unloggedMaps) {
+            if (!map.isClosed() && map.getVersion() >= version) {
+                return null;
+            }
+        }
+        int transactionId = t.transactionId;
+        WriteBuffer buff = new WriteBuffer();
+        // placeholder for the count of changes
+        buff.putInt(0);
+        int count = 0;
+        WriteBuffer change = new WriteBuffer();
+        for (UndoLogBuffer.UndoLogCursor cursor = undoLogBuffers[transactionId].cursor(false); cursor.hasNext();) {
+            cursor.next();
+            Record<?, ?> op = cursor.getValue();
+            MVMap<Object, VersionedValue<Object>> map = openMap(op.mapId);
+            if (map == null || map.isClosed()) {
+                continue;
+            }
+            if (map.getCreateVersion() >= version) {
+                // the map itself isn't persisted yet
+                return null;
+            }
+            Object key = op.key;
+            VersionedValue<Object> value = map.get(key);
+            if (value != null) {
+                long operationId = value.getOperationId();
+                if (operationId == 0L || getTransactionId(operationId) != transactionId) {
+                    continue;
+                }
+            }
+            Object currentValue = value == null ? null : value.getCurrentValue();
+            change.clear();
+            change.put((byte) (currentValue == null ? 0 : 1));
+            map.getKeyType().write(change, key);
+            if (currentValue != null) {
+                map.getValueType().write(change, VersionedValueCommitted.getInstance(currentValue));
+            }
+            ByteBuffer changeBuffer = change.getBuffer();
+            changeBuffer.flip();
+            buff.putVarInt(op.mapId).putVarInt(changeBuffer.limit()).put(changeBuffer);
+            count++;
+        }
+        buff.putInt(0, count);
+        ByteBuffer result = buff.getBuffer();
+        result.flip();
+        return result;
+    }
+
+    /**
+     * Persist all changes of the store and truncate the redo log.
+     */
+    private void checkpoint() {
+        Lock lock = checkpointLock.writeLock();
+        lock.lock();
+        try {
+            checkpointNow();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void checkpointNow() {
+        assert checkpointLock.isWriteLockedByCurrentThread();
+        unloggedChanges = false;
+        long version = store.getCurrentVersion();
+        store.commit();
+        store.sync();
+        redoLog.truncate();
+        checkpointVersion = version;
+    }
+
+    /**
+     * Remember that there are changes that can't be written to the redo log,
+     * so the next commit needs to persist the whole store.
+     */
+    void markUnloggedChanges() {
+        unloggedChanges = true;
+    }
+
     private void markUndoLogAsCommitted(int transactionId) {
-        addUndoLogRecord(transactionId, LOG_ID_MASK, Record.COMMIT_MARKER);
+        undoLogs[transactionId].append(getOperationId(transactionId, LOG_ID_MASK), Record.COMMIT_MARKER);
+    }
+
+    /**
+     * Move the undo log records of all open transactions from memory to the
+     * undo log maps, so they are persisted together with the changes they
+     * describe.
+     */
+    private void spillUndoLogBuffers() {
+        for (int i = openTransactions.nextSetBit(1); i >= 0; i = openTransactions.nextSetBit(i + 1)) {
+            UndoLogBuffer buffer = undoLogBuffers[i];
+            if (buffer != null && buffer.hasBufferedRecords()) {
+                buffer.spill();
+            }
+        }
     }
 
     /**
@@ -274,6 +505,16 @@ int getMaxTransactionId() {
         return maxTransactionId;
     }
 
+    /**
+     * Get the sequence number of the last started transaction. Transactions
+     * started later have larger sequence numbers.
+     *
+     * @return the sequence number
+     */
+    public long getLastSequenceNum() {
+        return lastSequenceNum.get();
+    }
+
     /**
      * Set the maximum transaction id, after which ids are re-used. If the old
      * transaction is still in use when re-using an old id, the new transaction
@@ -298,7 +539,7 @@ public boolean hasMap(String name) {
     }
 
     private static final int LOG_ID_BITS = Transaction.LOG_ID_BITS;
-    private static final long LOG_ID_MASK = (1L << LOG_ID_BITS) - 1;
+    static final long LOG_ID_MASK = (1L << LOG_ID_BITS) - 1;
 
     /**
      * Combine the transaction id and the log id to an operation id.
@@ -346,8 +587,7 @@ public List<Transaction> getOpenTransactions() {
         }
         ArrayList<Transaction> list = new ArrayList<>();
         int transactionId = 0;
-        BitSet bitSet = openTransactions.get();
-        while((transactionId = bitSet.nextSetBit(transactionId + 1)) > 0) {
+        while((transactionId = openTransactions.nextSetBit(transactionId + 1)) > 0) {
             Transaction transaction = getTransaction(transactionId);
             if(transaction != null) {
                 if(transaction.getStatus() != Transaction.STATUS_CLOSED) {
@@ -363,6 +603,25 @@ public List<Transaction> getOpenTransactions() {
      */
     public synchronized void close() {
         store.commit();
+        if (redoLog != null) {
+            if (!store.isReadOnly()) {
+                checkpoint();
+            }
+            redoLog.close();
+            redoLog = null;
+        }
+    }
+
+    /**
+     * Close the redo log, if any, without persisting changes of the store.
+     * Changes from the log will be applied when the store is opened next
+     * time.
+     */
+    public void closeImmediately() {
+        RedoLog log = redoLog;
+        if (log != null) {
+            log.close();
+        }
     }
 
     /**
@@ -393,28 +652,20 @@ private Transaction registerTransaction(int txId, int status, String name, long
                                             int timeoutMillis, int ownerId,
                                             IsolationLevel isolationLevel, RollbackListener listener) {
         int transactionId;
-        long sequenceNo;
-        boolean success;
-        do {
-            VersionedBitSet original = openTransactions.get();
-            if (txId == 0) {
-                transactionId = original.nextClearBit(1);
-            } else {
-                transactionId = txId;
-                assert !original.get(transactionId);
-            }
-            if (transactionId > maxTransactionId) {
+        if (txId == 0) {
+            transactionId = openTransactions.setNextClearBit(1, maxTransactionId);
+            if (transactionId < 0) {
                 throw DataUtils.newMVStoreException(
                         DataUtils.ERROR_TOO_MANY_OPEN_TRANSACTIONS,
                         "There are {0} open transactions",
-                        transactionId - 1);
+                        maxTransactionId);
             }
-            VersionedBitSet clone = original.clone();
-            clone.set(transactionId);
-            sequenceNo = clone.getVersion() + 1;
-            clone.setVersion(sequenceNo);
-            success = openTransactions.compareAndSet(original, clone);
-        } while(!success);
+        } else {
+            transactionId = txId;
+            boolean success = openTransactions.set(transactionId, true);
+            assert success;
+        }
+        long sequenceNo = lastSequenceNum.incrementAndGet();
 
         Transaction transaction = new Transaction(this, transactionId, sequenceNo, status, name, logId,
                 timeoutMillis, ownerId, isolationLevel, listener);
@@ -426,6 +677,7 @@ private Transaction registerTransaction(int txId, int status, String name, long
             String undoName = getUndoLogName(transactionId);
             MVMap<Long,Record<?,?>> undoLog = store.openMap(undoName, undoLogBuilder);
             undoLogs[transactionId] = undoLog;
+            undoLogBuffers[transactionId] = new UndoLogBuffer(transactionId, undoLog);
         }
         return transaction;
     }
@@ -453,16 +705,16 @@ void storeTransaction(Transaction t) {
      * @return key for the added record
      */
     long addUndoLogRecord(int transactionId, long logId, Record<?,?> record) {
-        MVMap<Long, Record<?,?>> undoLog = undoLogs[transactionId];
+        UndoLogBuffer undoLogBuffer = undoLogBuffers[transactionId];
         long undoKey = getOperationId(transactionId, logId);
-        if (logId == 0 && !undoLog.isEmpty()) {
+        if (logId == 0 && !undoLogBuffer.isEmpty()) {
             throw DataUtils.newMVStoreException(
                     DataUtils.ERROR_TOO_MANY_OPEN_TRANSACTIONS,
                     "An old transaction with the same id " +
                     "is still open: {0}",
                     transactionId);
         }
-        undoLog.append(undoKey, record);
+        undoLogBuffer.add(logId, record);
         return undoKey;
     }
 
@@ -471,7 +723,7 @@ long addUndoLogRecord(int transactionId, long logId, Record<?,?> record) {
      * @param transactionId id of the transaction
      */
     void removeUndoLogRecord(int transactionId) {
-        undoLogs[transactionId].trimLast();
+        undoLogBuffers[transactionId].removeLast();
     }
 
     /**
@@ -480,9 +732,56 @@ void removeUndoLogRecord(int transactionId) {
      * @param map the map
      */
     void removeMap(TransactionMap<?,?> map) {
+        markUnloggedChanges();
+        int id = map.map.getId();
+        lockQueues.remove(id);
+        lockWaits.remove(id);
         store.removeMap(map.map);
     }
 
+    /**
+     * Add a transaction to the queue of transactions waiting for the
+     * specified entry. Keys are compared with the key type of the map.
+     *
+     * @param map the map
+     * @param key the key of the locked entry
+     * @param transaction the waiting transaction
+     * @return the queue
+     */
+    RowLockQueue enterLockQueue(MVMap<?,?> map, Object key, Transaction transaction) {
+        ConcurrentSkipListMap<Object, RowLockQueue> queues = lockQueues.get(map.getId());
+        if (queues == null) {
+            @SuppressWarnings("unchecked")
+            DataType<Object> keyType = (DataType<Object>) map.getKeyType();
+            queues = lockQueues.computeIfAbsent(map.getId(), id -> new ConcurrentSkipListMap<>(keyType));
+        }
+        return RowLockQueue.enter(queues, key, transaction);
+    }
+
+    /**
+     * Record a wait for a locked entry.
+     *
+     * @param mapId the id of the map
+     * @param nanos the wait time in nanoseconds
+     */
+    void recordLockWait(int mapId, long nanos) {
+        LockWaits waits = lockWaits.get(mapId);
+        if (waits == null) {
+            waits = lockWaits.computeIfAbsent(mapId, id -> new LockWaits());
+        }
+        waits.add(nanos);
+    }
+
+    /**
+     * Get the statistics of waits for locked entries of the specified map.
+     *
+     * @param mapId the id of the map
+     * @return the statistics, or {@code null} if there were no waits
+     */
+    public LockWaits getLockWaits(int mapId) {
+        return lockWaits.get(mapId);
+    }
+
     /**
      * Commit a transaction.
      *  @param t transaction to commit
@@ -490,19 +789,52 @@ void removeMap(TransactionMap<?,?> map) {
      *                  therefore undo log is stored under "committed" name already
      */
     void commit(Transaction t, boolean recovery) {
+        if (redoLog == null || recovery || store.isClosed()) {
+            commitNow(t, recovery);
+            return;
+        }
+        ByteBuffer record = getRedoRecord(t);
+        if (record != null) {
+            Lock lock = checkpointLock.readLock();
+            lock.lock();
+            try {
+                redoLog.append(record);
+                commitNow(t, false);
+            } finally {
+                lock.unlock();
+            }
+            if (redoLog.size() > maxRedoLogSize) {
+                checkpoint();
+            }
+        } else {
+            // changes are made durable by a checkpoint, other commits have
+            // to wait for it, because they may depend on these changes
+            Lock lock = checkpointLock.writeLock();
+            lock.lock();
+            try {
+                commitNow(t, false);
+                checkpointNow();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void commitNow(Transaction t, boolean recovery) {
         if (!store.isClosed()) {
             int transactionId = t.transactionId;
             // First, mark log as "committed".
             // It does not change the way this transaction is treated by others,
             // but preserves fact of commit in case of abrupt termination.
-            MVMap<Long,Record<?,?>> undoLog = undoLogs[transactionId];
-            Cursor<Long,Record<?,?>> cursor;
+            // Records in memory are persisted together with the marker if
+            // the store is persisted before the commit is finished.
+            UndoLogBuffer undoLogBuffer = undoLogBuffers[transactionId];
+            UndoLogBuffer.UndoLogCursor cursor;
             if(recovery) {
                 removeUndoLogRecord(transactionId);
-                cursor = undoLog.cursor(null);
+                cursor = undoLogBuffer.cursor(false);
             } else {
-                cursor = undoLog.cursor(null);
-                markUndoLogAsCommitted(transactionId);
+                cursor = undoLogBuffer.cursor(true);
             }
 
             // this is an atomic action that causes all changes
@@ -512,7 +844,7 @@ void commit(Transaction t, boolean recovery) {
             CommitDecisionMaker<Object> commitDecisionMaker = new CommitDecisionMaker<>();
             try {
                 while (cursor.hasNext()) {
-                    Long undoKey = cursor.next();
+                    long undoKey = cursor.next();
                     Record<?,?> op = cursor.getValue();
                     int mapId = op.mapId;
                     MVMap<Object, VersionedValue<Object>> map = openMap(mapId);
@@ -526,7 +858,7 @@ void commit(Transaction t, boolean recovery) {
                 }
             } finally {
                 try {
-                    undoLog.clear();
+                    undoLogBuffer.clear();
                 } finally {
                     flipCommittingTransactionsBit(transactionId, false);
                 }
@@ -535,14 +867,8 @@ void commit(Transaction t, boolean recovery) {
     }
 
     private void flipCommittingTransactionsBit(int transactionId, boolean flag) {
-        boolean success;
-        do {
-            BitSet original = committingTransactions.get();
-            assert original.get(transactionId) != flag : flag ? "Double commit" : "Mysterious bit's disappearance";
-            BitSet clone = (BitSet) original.clone();
-            clone.set(transactionId, flag);
-            success = committingTransactions.compareAndSet(original, clone);
-        } while(!success);
+        boolean success = committingTransactions.set(transactionId, flag);
+        assert success : flag ? "Double commit" : "Mysterious bit's disappearance";
     }
 
     <K,V> MVMap<K, VersionedValue<V>> openVersionedMap(String name, DataType<K> keyType, DataType<V> valueType) {
@@ -561,8 +887,12 @@ <K,V> MVMap<K, VersionedValue<V>> openVersionedMap(String name, DataType<K> keyT
      * @return the map
      */
     public <K,V> MVMap<K, V> openMap(String name, DataType<K> keyType, DataType<V> valueType) {
-        return store.openMap(name, new TxMapBuilder<K, V>(typeRegistry, dataType)
+        MVMap<K, V> map = store.openMap(name, new TxMapBuilder<K, V>(typeRegistry, dataType)
                                             .keyType(keyType).valueType(valueType));
+        if (redoLog != null && !(valueType instanceof VersionedValueType) && !unloggedMaps.contains(map)) {
+            unloggedMaps.add(map);
+        }
+        return map;
     }
 
     /**
@@ -613,14 +943,8 @@ void endTransaction(Transaction t, boolean hasChanges) {
         int txId = t.transactionId;
         transactions.set(txId, null);
 
-        boolean success;
-        do {
-            VersionedBitSet original = openTransactions.get();
-            assert original.get(txId);
-            VersionedBitSet clone = original.clone();
-            clone.clear(txId);
-            success = openTransactions.compareAndSet(original, clone);
-        } while(!success);
+        boolean success = openTransactions.set(txId, false);
+        assert success;
 
         if (hasChanges) {
             boolean wasStored = t.wasStored;
@@ -629,7 +953,7 @@ void endTransaction(Transaction t, boolean hasChanges) {
             }
 
             if (store.isVersioningRequired()) {
-                if (wasStored || store.getAutoCommitDelay() == 0) {
+                if (wasStored || redoLog == null && store.getAutoCommitDelay() == 0) {
                     store.commit();
                 } else {
                     if (isUndoEmpty()) {
@@ -655,16 +979,18 @@ void endTransaction(Transaction t, boolean hasChanges) {
      * @return the array of root references or null if snapshotting is not possible
      */
     RootReference<Long,Record<?,?>>[] collectUndoLogRootReferences() {
-        BitSet opentransactions = openTransactions.get();
+        int length = openTransactions.length();
         @SuppressWarnings("unchecked")
-        RootReference<Long,Record<?,?>>[] undoLogRootReferences = new RootReference[opentransactions.length()];
-        for (int i = opentransactions.nextSetBit(0); i >= 0; i = opentransactions.nextSetBit(i+1)) {
+        RootReference<Long,Record<?,?>>[] undoLogRootReferences = new RootReference[length];
+        // transactions started after the length was determined have no changes in this snapshot
+        for (int i = openTransactions.nextSetBit(0); i >= 0 && i < length; i = openTransactions.nextSetBit(i+1)) {
             MVMap<Long,Record<?,?>> undoLog = undoLogs[i];
             if (undoLog != null) {
                 RootReference<Long,Record<?,?>> rootReference = undoLog.getRoot();
-                if (rootReference.needFlush()) {
+                if (rootReference.needFlush() || undoLogBuffers[i].hasBufferedRecords()) {
                     // abort attempt to collect snapshots for all undo logs
-                    // because map's append buffer can't be flushed from a non-owning thread
+                    // because map's append buffer can't be flushed from a non-owning thread,
+                    // and records in memory have no snapshots
                     return null;
                 }
                 undoLogRootReferences[i] = rootReference;
@@ -690,10 +1016,9 @@ static long calculateUndoLogsTotalSize(RootReference<Long,Record<?,?>>[] undoLog
     }
 
     private boolean isUndoEmpty() {
-        BitSet openTrans = openTransactions.get();
-        for (int i = openTrans.nextSetBit(0); i >= 0; i = openTrans.nextSetBit(i + 1)) {
-            MVMap<Long,Record<?,?>> undoLog = undoLogs[i];
-            if (undoLog != null && !undoLog.isEmpty()) {
+        for (int i = openTransactions.nextSetBit(0); i >= 0; i = openTransactions.nextSetBit(i + 1)) {
+            UndoLogBuffer undoLogBuffer = undoLogBuffers[i];
+            if (undoLogBuffer != null && !undoLogBuffer.isEmpty()) {
                 return false;
             }
         }
@@ -720,10 +1045,25 @@ Transaction getTransaction(int transactionId) {
     void rollbackTo(Transaction t, long maxLogId, long toLogId) {
         int transactionId = t.getId();
         MVMap<Long,Record<?,?>> undoLog = undoLogs[transactionId];
+        UndoLogBuffer undoLogBuffer = undoLogBuffers[transactionId];
         RollbackDecisionMaker decisionMaker = new RollbackDecisionMaker(this, transactionId, toLogId, t.listener);
         for (long logId = maxLogId - 1; logId >= toLogId; logId--) {
+            // the latest records are in memory, older ones in the undo log map
+            Record<?,?> record = undoLogBuffer.get(logId);
             Long undoKey = getOperationId(transactionId, logId);
-            undoLog.operate(undoKey, null, decisionMaker);
+            if (record != null) {
+                // restore the entry first and remove the undo record after
+                // that, like operate() on the undo log map does, so that a
+                // store in between never persists the uncommitted change
+                // without its undo record
+                decisionMaker.decide(record, null);
+                if (undoLogBuffer.removeLast(logId) == null) {
+                    // the record was spilled to the undo log map meanwhile
+                    undoLog.remove(undoKey);
+                }
+            } else {
+                undoLog.operate(undoKey, null, decisionMaker);
+            }
             decisionMaker.reset();
         }
     }
@@ -741,6 +1081,7 @@ Iterator<Change> getChanges(final Transaction t, final long maxLogId,
             final long toLogId) {
 
         final MVMap<Long,Record<?,?>> undoLog = undoLogs[t.getId()];
+        final UndoLogBuffer undoLogBuffer = undoLogBuffers[t.getId()];
         return new Iterator<>() {
 
             private long logId = maxLogId - 1;
@@ -750,15 +1091,22 @@ private void fetchNext() {
                 int transactionId = t.getId();
                 while (logId >= toLogId) {
                     Long undoKey = getOperationId(transactionId, logId);
-                    Record<?,?> op = undoLog.get(undoKey);
+                    Record<?,?> op = undoLogBuffer.get(logId);
+                    if (op == null) {
+                        op = undoLog.get(undoKey);
+                    }
                     logId--;
                     if (op == null) {
                         // partially rolled back: load previous
-                        undoKey = undoLog.floorKey(undoKey);
-                        if (undoKey == null || getTransactionId(undoKey) != transactionId) {
-                            break;
+                        long previousLogId = undoLogBuffer.floorLogId(logId);
+                        if (previousLogId < 0) {
+                            undoKey = undoLog.floorKey(undoKey);
+                            if (undoKey == null || getTransactionId(undoKey) != transactionId) {
+                                break;
+                            }
+                            previousLogId = getLogId(undoKey);
                         }
-                        logId = getLogId(undoKey);
+                        logId = previousLogId;
                         continue;
                     }
                     int mapId = op.mapId;
@@ -821,6 +1169,54 @@ public Change(String mapName, Object key, Object value) {
         }
     }
 
+    /**
+     * Statistics of waits for locked entries of a map.
+     */
+    public static final class LockWaits {
+
+        private final LongAdder count = new LongAdder();
+
+        private final LongAdder totalNanos = new LongAdder();
+
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        void add(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+            if (nanos > maxNanos.get()) {
+                maxNanos.accumulateAndGet(nanos, Math::max);
+            }
+        }
+
+        /**
+         * Returns the number of waits.
+         *
+         * @return the number of waits
+         */
+        public long getCount() {
+            return count.sum();
+        }
+
+        /**
+         * Returns the total wait time.
+         *
+         * @return the total wait time in nanoseconds
+         */
+        public long getTotalNanos() {
+            return totalNanos.sum();
+        }
+
+        /**
+         * Returns the longest wait time.
+         *
+         * @return the longest wait time in nanoseconds
+         */
+        public long getMaxNanos() {
+            return maxNanos.get();
+        }
+
+    }
+
     /**
      * This listener can be registered with the transaction to be notified of
      * every compensating change during transaction rollback.
@@ -206,7 +206,7 @@ final boolean isCommitted(int transactionId) {
         TransactionStore store = transaction.store;
         do {
             blockingTx = store.getTransaction(transactionId);
-            result = store.committingTransactions.get().get(transactionId);
+            result = store.committingTransactions.get(transactionId);
         } while (blockingTx != store.getTransaction(transactionId));
 
         if (!result) {
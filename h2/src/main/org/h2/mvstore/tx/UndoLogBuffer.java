@@ -0,0 +1,282 @@
+/*
+ * Copyright 2004-2025 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (https://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.mvstore.tx;
+
+import java.util.Arrays;
+
+import org.h2.mvstore.Cursor;
+import org.h2.mvstore.MVMap;
+
+/**
+ * In-memory part of the undo log of a transaction slot. The latest undo log
+ * records are kept in an array, and are moved to the undo log map (spilled)
+ * only when there are too many of them, or when the store is about to be
+ * persisted, so short transactions usually don't touch the undo log map at
+ * all.
+ * <p>
+ * The buffer always holds a contiguous range of the latest log ids, all older
+ * records of the transaction are in the undo log map. Records are moved under
+ * the lock of this buffer, so a consistent view of both parts can be taken
+ * under the same lock.
+ * </p>
+ */
+final class UndoLogBuffer {
+
+    /**
+     * The maximum number of records kept in memory.
+     */
+    static final int MAX_SIZE = 128;
+
+    private final int transactionId;
+
+    private final MVMap<Long, Record<?,?>> undoLog;
+
+    private Record<?,?>[] records = new Record<?,?>[8];
+
+    private long firstLogId;
+
+    private volatile int size;
+
+    /**
+     * Whether the transaction is being committed and the commit marker wasn't
+     * moved to the undo log map yet.
+     */
+    private boolean committed;
+
+    /**
+     * Whether the records are being moved or read by the current thread, used
+     * to prevent re-entrant spills from a store operation started by the
+     * undo log map itself.
+     */
+    private boolean busy;
+
+    UndoLogBuffer(int transactionId, MVMap<Long, Record<?,?>> undoLog) {
+        this.transactionId = transactionId;
+        this.undoLog = undoLog;
+    }
+
+    /**
+     * Check whether both the buffer and the undo log map are empty.
+     *
+     * @return whether there are no undo log records
+     */
+    boolean isEmpty() {
+        return size == 0 && undoLog.isEmpty();
+    }
+
+    /**
+     * Check whether there are records in memory.
+     *
+     * @return whether there are records not moved to the undo log map
+     */
+    boolean hasBufferedRecords() {
+        return size != 0;
+    }
+
+    /**
+     * Add a record.
+     *
+     * @param logId the log id, must be the next one after the last added
+     * @param record the record
+     */
+    synchronized void add(long logId, Record<?,?> record) {
+        int s = size;
+        if (s == MAX_SIZE) {
+            spill();
+            s = size;
+        }
+        if (s == 0) {
+            firstLogId = logId;
+        } else {
+            assert logId == firstLogId + s : logId + " != " + firstLogId + " + " + s;
+        }
+        if (s == records.length) {
+            records = Arrays.copyOf(records, s << 1);
+        }
+        records[s] = record;
+        size = s + 1;
+    }
+
+    /**
+     * Remove the latest record.
+     */
+    synchronized void removeLast() {
+        int s = size;
+        if (s > 0) {
+            records[--s] = null;
+            size = s;
+        } else {
+            undoLog.trimLast();
+        }
+    }
+
+    /**
+     * Remove the record with the specified log id if it is the latest record
+     * in memory.
+     *
+     * @param logId the log id
+     * @return the removed record, or {@code null} if the record isn't in memory
+     */
+    synchronized Record<?,?> removeLast(long logId) {
+        int s = size;
+        if (s == 0 || firstLogId + s - 1 != logId) {
+            return null;
+        }
+        Record<?,?> record = records[--s];
+        records[s] = null;
+        size = s;
+        return record;
+    }
+
+    /**
+     * Get the record with the specified log id if it is in memory.
+     *
+     * @param logId the log id
+     * @return the record, or {@code null} if the record isn't in memory
+     */
+    synchronized Record<?,?> get(long logId) {
+        long index = logId - firstLogId;
+        return index >= 0 && index < size ? records[(int) index] : null;
+    }
+
+    /**
+     * Get the highest log id of a record in memory that is not larger than the
+     * specified one.
+     *
+     * @param logId the log id
+     * @return the found log id, or -1 if there is no such record in memory
+     */
+    synchronized long floorLogId(long logId) {
+        int s = size;
+        if (s == 0 || logId < firstLogId) {
+            return -1;
+        }
+        return Math.min(logId, firstLogId + s - 1);
+    }
+
+    /**
+     * Move all records from memory to the undo log map. If the transaction is
+     * being committed, the commit marker is moved too.
+     */
+    synchronized void spill() {
+        if (busy) {
+            return;
+        }
+        busy = true;
+        try {
+            int s = size;
+            for (int i = 0; i < s; i++) {
+                undoLog.append(TransactionStore.getOperationId(transactionId, firstLogId + i), records[i]);
+                records[i] = null;
+            }
+            size = 0;
+            if (committed) {
+                undoLog.append(TransactionStore.getOperationId(transactionId, TransactionStore.LOG_ID_MASK),
+                        Record.COMMIT_MARKER);
+                committed = false;
+            }
+        } finally {
+            busy = false;
+        }
+    }
+
+    /**
+     * Returns a cursor over all records, both in the undo log map and in
+     * memory.
+     *
+     * @param commit whether the transaction is being committed; if so, the
+     *            commit marker will be written together with the records if
+     *            they are moved to the undo log map
+     * @return the cursor
+     */
+    synchronized UndoLogCursor cursor(boolean commit) {
+        busy = true;
+        try {
+            Cursor<Long, Record<?,?>> cursor = undoLog.isEmpty() ? null : undoLog.cursor(null);
+            UndoLogCursor result = new UndoLogCursor(cursor, Arrays.copyOf(records, size), firstLogId);
+            if (commit) {
+                if (size != 0) {
+                    committed = true;
+                } else if (cursor != null) {
+                    undoLog.append(TransactionStore.getOperationId(transactionId, TransactionStore.LOG_ID_MASK),
+                            Record.COMMIT_MARKER);
+                }
+            }
+            return result;
+        } finally {
+            busy = false;
+        }
+    }
+
+    /**
+     * Remove all records.
+     */
+    synchronized void clear() {
+        if (!undoLog.isEmpty()) {
+            undoLog.clear();
+        }
+        Arrays.fill(records, 0, size, null);
+        size = 0;
+        committed = false;
+    }
+
+    /**
+     * A cursor over records of the undo log map followed by records in memory.
+     */
+    final class UndoLogCursor {
+
+        private final Cursor<Long, Record<?,?>> cursor;
+
+        private final Record<?,?>[] buffered;
+
+        private final long firstBufferedLogId;
+
+        private int index = -1;
+
+        private Record<?,?> current;
+
+        UndoLogCursor(Cursor<Long, Record<?,?>> cursor, Record<?,?>[] buffered, long firstBufferedLogId) {
+            this.cursor = cursor;
+            this.buffered = buffered;
+            this.firstBufferedLogId = firstBufferedLogId;
+        }
+
+        /**
+         * Check whether there are more records.
+         *
+         * @return whether there are more records
+         */
+        boolean hasNext() {
+            return index < 0 && cursor != null && cursor.hasNext() || index + 1 < buffered.length;
+        }
+
+        /**
+         * Move to the next record.
+         *
+         * @return the key of the record
+         */
+        long next() {
+            if (index < 0 && cursor != null && cursor.hasNext()) {
+                long key = cursor.next();
+                current = cursor.getValue();
+                return key;
+            }
+            current = buffered[++index];
+            return TransactionStore.getOperationId(transactionId, firstBufferedLogId + index);
+        }
+
+        /**
+         * Get the current record.
+         *
+         * @return the record
+         */
+        Record<?,?> getValue() {
+            return current;
+        }
+
+    }
+
+}
@@ -5,6 +5,8 @@
  */
 package org.h2.schema;
 
+import java.util.concurrent.atomic.AtomicReference;
+
 import org.h2.api.ErrorCode;
 import org.h2.command.ddl.SequenceOptions;
 import org.h2.engine.DbObject;
@@ -58,7 +60,11 @@ public boolean isCycle() {
      */
     public static final int DEFAULT_CACHE_SIZE = 32;
 
-    private long baseValue;
+    /**
+     * The next value to return, together with the values that may be returned
+     * without locking.
+     */
+    private final AtomicReference<State> state = new AtomicReference<>();
     private long margin;
 
     private TypeInfo dataType;
@@ -125,7 +131,8 @@ public Sequence(SessionLocal session, Schema schema, int id, String name, Sequen
         } else if (cycle == Cycle.EXHAUSTED) {
             baseValue = startValue;
         }
-        this.margin = this.baseValue = baseValue;
+        state.set(new State(baseValue, null));
+        this.margin = baseValue;
         this.increment = increment;
         this.cacheSize = cacheSize;
         this.startValue = startValue;
@@ -158,7 +165,8 @@ public Sequence(SessionLocal session, Schema schema, int id, String name, Sequen
      */
     public synchronized void modify(Long baseValue, Long startValue, Long minValue, Long maxValue, Long increment,
             Cycle cycle, Long cacheSize) {
-        long baseValueAsLong = baseValue != null ? baseValue : this.baseValue;
+        long currentBaseValue = lockState();
+        long baseValueAsLong = baseValue != null ? baseValue : currentBaseValue;
         long startValueAsLong = startValue != null ? startValue : this.startValue;
         long minValueAsLong = minValue != null ? minValue : this.minValue;
         long maxValueAsLong = maxValue != null ? maxValue : this.maxValue;
@@ -182,7 +190,8 @@ public synchronized void modify(Long baseValue, Long startValue, Long minValue,
         } else if (cycle == Cycle.EXHAUSTED) {
             baseValueAsLong = startValueAsLong;
         }
-        this.margin = this.baseValue = baseValueAsLong;
+        this.margin = baseValueAsLong;
+        state.set(new State(baseValueAsLong, null));
         this.startValue = startValueAsLong;
         this.minValue = minValueAsLong;
         this.maxValue = maxValueAsLong;
@@ -357,7 +366,7 @@ public String getCreateSQL() {
         }
         builder.append(' ');
         synchronized (this) {
-            getSequenceOptionsSQL(builder, writeWithMargin ? margin : baseValue);
+            getSequenceOptionsSQL(builder, writeWithMargin ? margin : state.get().base);
         }
         if (belongsToTable) {
             builder.append(" BELONGS_TO_TABLE");
@@ -372,7 +381,7 @@ public String getCreateSQL() {
      * @return the builder
      */
     public synchronized StringBuilder getSequenceOptionsSQL(StringBuilder builder) {
-        return getSequenceOptionsSQL(builder, baseValue);
+        return getSequenceOptionsSQL(builder, state.get().base);
     }
 
     private StringBuilder getSequenceOptionsSQL(StringBuilder builder, long value) {
@@ -409,20 +418,36 @@ private StringBuilder getSequenceOptionsSQL(StringBuilder builder, long value) {
     /**
      * Get the next value for this sequence. Should not be called directly, use
      * {@link SessionLocal#getNextValueFor(Sequence, org.h2.command.Prepared)} instead.
+     * <p>
+     * Values within the already persisted margin are returned without locking.
+     * </p>
      *
      * @param session the session
      * @return the next value
      */
     public Value getNext(SessionLocal session) {
+        State s;
+        while ((s = state.get()).range != null) {
+            long newBase = s.range.next(s.base);
+            if (newBase == s.base) {
+                break;
+            }
+            if (state.compareAndSet(s, new State(newBase, s.range))) {
+                return ValueBigint.get(s.base).castTo(dataType, session);
+            }
+        }
         long result;
         boolean needsFlush;
         synchronized (this) {
+            result = lockState();
             if (cycle == Cycle.EXHAUSTED) {
                 throw DbException.get(ErrorCode.SEQUENCE_EXHAUSTED, getName());
             }
-            result = baseValue;
-            long newBase = result + increment;
-            needsFlush = increment > 0 ? increment(result, newBase) : decrement(result, newBase);
+            long oldMargin = margin;
+            long newBase = increment > 0 ? increment(result) : decrement(result);
+            needsFlush = margin != oldMargin || newBase != result + increment;
+            state.set(new State(newBase,
+                    cycle != Cycle.EXHAUSTED && margin != newBase ? new CachedRange(increment, margin) : null));
         }
         if (needsFlush) {
             flush(session);
@@ -430,74 +455,92 @@ public Value getNext(SessionLocal session) {
         return ValueBigint.get(result).castTo(dataType, session);
     }
 
-    private boolean increment(long oldBase, long newBase) {
-        boolean needsFlush = false;
+    /**
+     * Removes the range of values that may be returned without locking. The
+     * caller must hold the lock of this sequence; the base value can't change
+     * until the caller publishes a new state then.
+     *
+     * @return the current base value
+     */
+    private long lockState() {
+        for (;;) {
+            State s = state.get();
+            if (s.range == null || state.compareAndSet(s, new State(s.base, null))) {
+                return s.base;
+            }
+        }
+    }
+
+    private long increment(long oldBase) {
+        long newBase = oldBase + increment;
         /*
          * If old base is not negative and new base is negative there is an
          * overflow.
          */
         if (newBase > maxValue || (~oldBase & newBase) < 0) {
             newBase = minValue;
-            needsFlush = true;
             if (cycle == Cycle.CYCLE) {
-                margin = newBase + increment * (cacheSize - 1);
+                margin = getMargin(newBase);
             } else {
                 margin = newBase;
                 cycle = Cycle.EXHAUSTED;
             }
         } else if (newBase > margin) {
-            long newMargin = newBase + increment * (cacheSize - 1);
-            if (newMargin > maxValue || (~newBase & newMargin) < 0) {
-                /*
-                 * Don't cache values near the end of the sequence for
-                 * simplicity.
-                 */
-                newMargin = newBase;
-            }
-            margin = newMargin;
-            needsFlush = true;
+            margin = getMargin(newBase);
         }
-        baseValue = newBase;
-        return needsFlush;
+        return newBase;
     }
 
-    private boolean decrement(long oldBase, long newBase) {
-        boolean needsFlush = false;
+    private long decrement(long oldBase) {
+        long newBase = oldBase + increment;
         /*
          * If old base is negative and new base is not negative there is an
          * overflow.
          */
         if (newBase < minValue || (oldBase & ~newBase) < 0) {
             newBase = maxValue;
-            needsFlush = true;
             if (cycle == Cycle.CYCLE) {
-                margin = newBase + increment * (cacheSize - 1);
+                margin = getMargin(newBase);
             } else {
                 margin = newBase;
                 cycle = Cycle.EXHAUSTED;
             }
         } else if (newBase < margin) {
-            long newMargin = newBase + increment * (cacheSize - 1);
-            if (newMargin < minValue || (newBase & ~newMargin) < 0) {
-                /*
-                 * Don't cache values near the end of the sequence for
-                 * simplicity.
-                 */
-                newMargin = newBase;
-            }
-            margin = newMargin;
-            needsFlush = true;
+            margin = getMargin(newBase);
+        }
+        return newBase;
+    }
+
+    /**
+     * Returns the last value to cache. Near the end of the sequence the cache
+     * is limited by the last value of the sequence, so large caches remain
+     * usable.
+     *
+     * @param newBase the next value
+     * @return the new margin
+     */
+    private long getMargin(long newBase) {
+        // the difference and the negated increment are treated as unsigned
+        long remaining = increment > 0 ? Long.divideUnsigned(maxValue - newBase, increment)
+                : Long.divideUnsigned(newBase - minValue, -increment);
+        long steps = cacheSize - 1;
+        if (Long.compareUnsigned(remaining, steps) < 0) {
+            steps = remaining;
         }
-        baseValue = newBase;
-        return needsFlush;
+        return newBase + increment * steps;
     }
 
     /**
      * Flush the current value to disk.
      */
     public void flushWithoutMargin() {
-        if (margin != baseValue) {
-            margin = baseValue;
+        boolean needsFlush;
+        synchronized (this) {
+            long base = lockState();
+            needsFlush = margin != base;
+            margin = base;
+        }
+        if (needsFlush) {
             flush(null);
         }
     }
@@ -565,13 +608,12 @@ public void removeChildrenAndResources(SessionLocal session) {
         invalidate();
     }
 
-    public synchronized long getBaseValue() {
-        // Use synchronized because baseValue is not volatile
-        return baseValue;
+    public long getBaseValue() {
+        return state.get().base;
     }
 
     public synchronized long getCurrentValue() {
-        return baseValue - increment;
+        return state.get().base - increment;
     }
 
     public void setBelongsToTable(boolean b) {
@@ -582,4 +624,61 @@ public long getCacheSize() {
         return cacheSize;
     }
 
+    /**
+     * The next value of the sequence and the range of values usable without
+     * locking, published together, so that a value from an old range can't be
+     * allocated after the base value was changed under the lock.
+     */
+    private static final class State {
+
+        /**
+         * The next value to return.
+         */
+        final long base;
+
+        /**
+         * The values up to the margin that may be returned without locking, or
+         * {@code null} if the next value needs to be allocated under the lock.
+         */
+        final CachedRange range;
+
+        State(long base, CachedRange range) {
+            this.base = base;
+            this.range = range;
+        }
+
+    }
+
+    /**
+     * Values that were already persisted as the margin and may be allocated
+     * with a compare-and-set of the state.
+     */
+    private static final class CachedRange {
+
+        private final long increment;
+
+        private final long margin;
+
+        CachedRange(long increment, long margin) {
+            this.increment = increment;
+            this.margin = margin;
+        }
+
+        /**
+         * Returns the base value that follows the specified one.
+         *
+         * @param base the current base value
+         * @return the next base value, or the same value if the next value
+         *         is outside of this range
+         */
+        long next(long base) {
+            long newBase = base + increment;
+            if (increment > 0 ? newBase > margin || newBase < base : newBase < margin || newBase > base) {
+                return base;
+            }
+            return newBase;
+        }
+
+    }
+
 }
@@ -17,6 +17,11 @@
 import java.util.HashSet;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.h2.api.ErrorCode;
 import org.h2.engine.Constants;
@@ -37,6 +42,10 @@
  * Also supported is the mixed mode: opening databases in embedded mode,
  * and at the same time start a TCP server to allow clients to connect to
  * the same database over the network.
+ * <p>
+ * By default, one thread is used per client connection. If selectors are
+ * enabled, idle connections are watched by a few selector threads, and the
+ * requests are processed by a pool of worker threads instead.
  */
 public class TcpServer implements Service {
 
@@ -65,6 +74,10 @@ public class TcpServer implements Service {
     private boolean isDaemon;
     private boolean ifExists = true;
     private boolean virtualThreads;
+    private int selectorCount;
+    private int workerCount;
+    private TcpServerSelector[] selectors;
+    private ThreadPoolExecutor workers;
     private JdbcConnection managementDb;
     private PreparedStatement managementDbAdd;
     private PreparedStatement managementDbRemove;
@@ -72,6 +85,7 @@ public class TcpServer implements Service {
     private Thread listenerThread;
     private int nextThreadId;
     private String key, keyDatabase;
+    private final LongAdder bytesReceived = new LongAdder(), bytesSent = new LongAdder();
 
     /**
      * Get the database name of the management database.
@@ -187,6 +201,10 @@ public void init(String... args) {
                 isDaemon = true;
             } else if (Tool.isOption(a,  "-tcpVirtualThreads")) {
                 virtualThreads = Utils.parseBoolean(args[++i], virtualThreads, true);
+            } else if (Tool.isOption(a, "-tcpSelectors")) {
+                selectorCount = Integer.decode(args[++i]);
+            } else if (Tool.isOption(a, "-tcpWorkers")) {
+                workerCount = Integer.decode(args[++i]);
             } else if (Tool.isOption(a, "-ifExists")) {
                 ifExists = true;
             } else if (Tool.isOption(a, "-ifNotExists")) {
@@ -237,11 +255,14 @@ boolean allow(Socket socket) {
     @Override
     public synchronized void start() throws SQLException {
         stop = false;
+        if (selectorCount > 0 && ssl) {
+            throw DbException.getUnsupportedException("-tcpSelectors with -tcpSSL");
+        }
         try {
-            serverSocket = NetUtils.createServerSocket(port, ssl);
+            serverSocket = createServerSocket(port);
         } catch (DbException e) {
             if (!portIsSet) {
-                serverSocket = NetUtils.createServerSocket(0, ssl);
+                serverSocket = createServerSocket(0);
             } else {
                 throw e;
             }
@@ -250,11 +271,19 @@ public synchronized void start() throws SQLException {
         initManagementDb();
     }
 
+    private ServerSocket createServerSocket(int port) {
+        return selectorCount > 0 ? NetUtils.createServerSocketWithChannel(port)
+                : NetUtils.createServerSocket(port, ssl);
+    }
+
     @Override
     public void listen() {
         listenerThread = Thread.currentThread();
         String threadName = listenerThread.getName();
         try {
+            if (selectorCount > 0) {
+                startSelectors(threadName);
+            }
             while (!stop) {
                 Socket s = serverSocket.accept();
                 Utils10.setTcpQuickack(s, true);
@@ -262,11 +291,18 @@ public void listen() {
                 TcpServerThread c = new TcpServerThread(s, this, id);
                 running.add(c);
                 Thread thread;
-                if (virtualThreads) {
-                    thread = Utils21.newVirtualThread(c);
+                if (selectors != null) {
+                    // the handshake may open a database and is not processed
+                    // by a worker, the connection is handed to a selector
+                    // afterwards
+                    TcpServerSelector selector = selectors[(id & Integer.MAX_VALUE) % selectors.length];
+                    thread = newThread(() -> {
+                        if (c.processPendingRequests()) {
+                            selector.register(c);
+                        }
+                    });
                 } else {
-                    thread = new Thread(c);
-                    thread.setDaemon(isDaemon);
+                    thread = newThread(c);
                 }
                 thread.setName(threadName + " thread-" + id);
                 c.setThread(thread);
@@ -281,6 +317,52 @@ public void listen() {
         stopManagementDb();
     }
 
+    private Thread newThread(Runnable r) {
+        Thread thread;
+        if (virtualThreads) {
+            thread = Utils21.newVirtualThread(r);
+        } else {
+            thread = new Thread(r);
+            thread.setDaemon(isDaemon);
+        }
+        return thread;
+    }
+
+    private synchronized void startSelectors(String threadName) throws IOException {
+        /*
+         * Requests may block for a long time, for example while waiting for a
+         * row lock, so the number of workers is not limited: otherwise the
+         * requests that would end the wait, such as the COMMIT of the lock
+         * owner, could be queued behind them. Virtual threads are not kept.
+         */
+        int count = virtualThreads ? 0
+                : workerCount > 0 ? workerCount : Math.max(16, 8 * Runtime.getRuntime().availableProcessors());
+        AtomicInteger nextWorkerId = new AtomicInteger();
+        workers = new ThreadPoolExecutor(count, Integer.MAX_VALUE, 60L, TimeUnit.SECONDS, new SynchronousQueue<>(),
+                r -> {
+                    Thread thread = newThread(r);
+                    thread.setName(threadName + " worker-" + nextWorkerId.getAndIncrement());
+                    return thread;
+                });
+        TcpServerSelector[] array = new TcpServerSelector[selectorCount];
+        for (int i = 0; i < selectorCount; i++) {
+            array[i] = new TcpServerSelector(this, workers);
+            array[i].start(threadName + " selector-" + i, isDaemon);
+        }
+        selectors = array;
+    }
+
+    private synchronized void stopSelectors() {
+        if (selectors != null) {
+            for (TcpServerSelector selector : selectors) {
+                selector.stop();
+            }
+            selectors = null;
+            workers.shutdown();
+            workers = null;
+        }
+    }
+
     @Override
     public synchronized boolean isRunning(boolean traceError) {
         if (serverSocket == null) {
@@ -329,13 +411,17 @@ public void stop() {
         for (TcpServerThread c : new ArrayList<>(running)) {
             if (c != null) {
                 c.close();
-                try {
-                    c.getThread().join(100);
-                } catch (Exception e) {
-                    DbException.traceThrowable(e);
+                Thread thread = c.getThread();
+                if (thread != null) {
+                    try {
+                        thread.join(100);
+                    } catch (Exception e) {
+                        DbException.traceThrowable(e);
+                    }
                 }
             }
         }
+        stopSelectors();
     }
 
     /**
@@ -384,6 +470,39 @@ public static void stopServer(int port, String password, int shutdownMode) {
      */
     void remove(TcpServerThread t) {
         running.remove(t);
+        if (stop && running.isEmpty()) {
+            stopSelectors();
+        }
+    }
+
+    /**
+     * Get the number of bytes received from the clients, including protocol
+     * overhead. If the network compression is used, this is the compressed
+     * size.
+     *
+     * @return the number of bytes
+     */
+    public long getBytesReceived() {
+        return bytesReceived.sum();
+    }
+
+    /**
+     * Get the number of bytes sent to the clients, including protocol
+     * overhead. If the network compression is used, this is the compressed
+     * size.
+     *
+     * @return the number of bytes
+     */
+    public long getBytesSent() {
+        return bytesSent.sum();
+    }
+
+    LongAdder getBytesReceivedCounter() {
+        return bytesReceived;
+    }
+
+    LongAdder getBytesSentCounter() {
+        return bytesSent;
     }
 
     /**
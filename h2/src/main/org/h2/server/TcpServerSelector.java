@@ -0,0 +1,155 @@
+/*
+ * Copyright 2004-2025 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (https://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.server;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.h2.util.IOUtils;
+
+/**
+ * Waits for requests on the idle connections of a TCP server, and hands each
+ * connection with a pending request to a worker thread. The worker processes
+ * the requests the client has sent and then returns the connection to the
+ * selector. This way, idle connections do not need a thread.
+ * <p>
+ * While a worker processes a request, the channel of the connection is in
+ * blocking mode and is not registered with the selector, so that the request
+ * can be read and the response written with the usual streams.
+ */
+final class TcpServerSelector implements Runnable {
+
+    private final TcpServer server;
+
+    private final Executor workers;
+
+    private final Selector selector;
+
+    private final ConcurrentLinkedQueue<TcpServerThread> waiting = new ConcurrentLinkedQueue<>();
+
+    private volatile boolean stop;
+
+    private Thread thread;
+
+    TcpServerSelector(TcpServer server, Executor workers) throws IOException {
+        this.server = server;
+        this.workers = workers;
+        selector = Selector.open();
+    }
+
+    /**
+     * Start the selector thread.
+     *
+     * @param name the thread name
+     * @param daemon whether the thread is a daemon thread
+     */
+    void start(String name, boolean daemon) {
+        thread = new Thread(this, name);
+        thread.setDaemon(daemon);
+        thread.start();
+    }
+
+    /**
+     * Wait for the next request of a connection.
+     *
+     * @param connection the connection
+     */
+    void register(TcpServerThread connection) {
+        waiting.add(connection);
+        selector.wakeup();
+    }
+
+    /**
+     * Stop the selector thread. The connections are not closed.
+     */
+    void stop() {
+        stop = true;
+        selector.wakeup();
+        Thread t = thread;
+        if (t != null && t != Thread.currentThread()) {
+            try {
+                t.join(1000);
+            } catch (InterruptedException e) {
+                server.traceError(e);
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        ArrayList<SelectionKey> ready = new ArrayList<>();
+        try {
+            while (!stop) {
+                selector.select();
+                for (TcpServerThread connection; (connection = waiting.poll()) != null;) {
+                    Socket socket = connection.transfer.getSocket();
+                    try {
+                        if (socket == null) {
+                            continue;
+                        }
+                        SocketChannel channel = socket.getChannel();
+                        channel.configureBlocking(false);
+                        channel.register(selector, SelectionKey.OP_READ, connection);
+                    } catch (IOException e) {
+                        server.traceError(e);
+                        connection.close();
+                    }
+                }
+                Set<SelectionKey> selected = selector.selectedKeys();
+                if (selected.isEmpty()) {
+                    continue;
+                }
+                ready.addAll(selected);
+                selected.clear();
+                for (SelectionKey key : ready) {
+                    key.cancel();
+                }
+                // a channel can only be switched to blocking mode after it was
+                // deregistered, which happens on the next selection operation
+                selector.selectNow();
+                for (SelectionKey key : ready) {
+                    dispatch((TcpServerThread) key.attachment(), (SocketChannel) key.channel());
+                }
+                ready.clear();
+            }
+        } catch (IOException e) {
+            if (!stop) {
+                server.traceError(e);
+            }
+        } finally {
+            IOUtils.closeSilently(selector);
+        }
+    }
+
+    private void dispatch(TcpServerThread connection, SocketChannel channel) {
+        try {
+            workers.execute(() -> {
+                try {
+                    channel.configureBlocking(true);
+                } catch (IOException e) {
+                    server.traceError(e);
+                    connection.close();
+                    return;
+                }
+                if (connection.processPendingRequests()) {
+                    register(connection);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // the server is stopped
+            connection.close();
+        }
+    }
+
+}
@@ -49,7 +49,9 @@
 import org.h2.value.ValueLob;
 
 /**
- * One server thread is opened per client connection.
+ * Handles one client connection. Either one server thread is opened per client
+ * connection, or the requests of the connection are processed by the worker
+ * threads of the server, see {@link TcpServerSelector}.
  */
 public class TcpServerThread implements Runnable {
 
@@ -57,6 +59,7 @@ public class TcpServerThread implements Runnable {
     private final TcpServer server;
     private SessionLocal session;
     private boolean stop;
+    private boolean connected;
     private Thread thread;
     private Command commit;
     private final SmallMap cache =
@@ -69,11 +72,14 @@ public class TcpServerThread implements Runnable {
     private int clientVersion;
     private String sessionId;
     private long lastRemoteSettingsId;
+    private long lastSchemaVersion;
+    private byte[] lobBuffer;
 
     TcpServerThread(Socket socket, TcpServer server, int id) {
         this.server = server;
         this.threadId = id;
         transfer = new Transfer(null, socket);
+        transfer.setTrafficCounters(server.getBytesReceivedCounter(), server.getBytesSentCounter());
     }
 
     private void trace(String s) {
@@ -83,117 +89,9 @@ private void trace(String s) {
     @Override
     public void run() {
         try {
-            transfer.init();
-            trace("Connect");
-            // TODO server: should support a list of allowed databases
-            // and a list of allowed clients
-            try {
-                Socket socket = transfer.getSocket();
-                if (socket == null) {
-                    // the transfer is already closed, prevent NPE in TcpServer#allow(Socket)
-                    return;
-                }
-                if (!server.allow(transfer.getSocket())) {
-                    throw DbException.get(ErrorCode.REMOTE_CONNECTION_NOT_ALLOWED);
-                }
-                int minClientVersion = transfer.readInt();
-                if (minClientVersion < 6) {
-                    throw DbException.get(ErrorCode.DRIVER_VERSION_ERROR_2,
-                            Integer.toString(minClientVersion), "" + Constants.TCP_PROTOCOL_VERSION_MIN_SUPPORTED);
-                }
-                int maxClientVersion = transfer.readInt();
-                if (maxClientVersion < Constants.TCP_PROTOCOL_VERSION_MIN_SUPPORTED) {
-                    throw DbException.get(ErrorCode.DRIVER_VERSION_ERROR_2,
-                            Integer.toString(maxClientVersion), "" + Constants.TCP_PROTOCOL_VERSION_MIN_SUPPORTED);
-                } else if (minClientVersion > Constants.TCP_PROTOCOL_VERSION_MAX_SUPPORTED) {
-                    throw DbException.get(ErrorCode.DRIVER_VERSION_ERROR_2,
-                            Integer.toString(minClientVersion), "" + Constants.TCP_PROTOCOL_VERSION_MAX_SUPPORTED);
-                }
-                if (maxClientVersion >= Constants.TCP_PROTOCOL_VERSION_MAX_SUPPORTED) {
-                    clientVersion = Constants.TCP_PROTOCOL_VERSION_MAX_SUPPORTED;
-                } else {
-                    clientVersion = maxClientVersion;
-                }
-                transfer.setVersion(clientVersion);
-                String db = transfer.readString();
-                String originalURL = transfer.readString();
-                if (db == null && originalURL == null) {
-                    String targetSessionId = transfer.readString();
-                    int command = transfer.readInt();
-                    stop = true;
-                    if (command == SessionRemote.SESSION_CANCEL_STATEMENT) {
-                        // cancel a running statement
-                        int statementId = transfer.readInt();
-                        server.cancelStatement(targetSessionId, statementId);
-                    } else if (command == SessionRemote.SESSION_CHECK_KEY) {
-                        // check if this is the correct server
-                        db = server.checkKeyAndGetDatabaseName(targetSessionId);
-                        if (!targetSessionId.equals(db)) {
-                            transfer.writeInt(SessionRemote.STATUS_OK);
-                        } else {
-                            transfer.writeInt(SessionRemote.STATUS_ERROR);
-                        }
-                    }
-                }
-                String baseDir = server.getBaseDir();
-                if (baseDir == null) {
-                    baseDir = SysProperties.getBaseDir();
-                }
-                db = server.checkKeyAndGetDatabaseName(db);
-                ConnectionInfo ci = new ConnectionInfo(db);
-                ci.setOriginalURL(originalURL);
-                ci.setUserName(transfer.readString());
-                ci.setUserPasswordHash(transfer.readBytes());
-                ci.setFilePasswordHash(transfer.readBytes());
-                int len = transfer.readInt();
-                for (int i = 0; i < len; i++) {
-                    ci.setProperty(transfer.readString(), transfer.readString());
-                }
-                // override client's requested properties with server settings
-                if (baseDir != null) {
-                    ci.setBaseDir(baseDir);
-                }
-                if (server.getIfExists()) {
-                    ci.setProperty("FORBID_CREATION", "TRUE");
-                }
-                transfer.writeInt(SessionRemote.STATUS_OK);
-                transfer.writeInt(clientVersion);
-                transfer.flush();
-                if (ci.getFilePasswordHash() != null) {
-                    ci.setFileEncryptionKey(transfer.readBytes());
-                }
-                ci.setNetworkConnectionInfo(new NetworkConnectionInfo(
-                        NetUtils.ipToShortForm(new StringBuilder(server.getSSL() ? "ssl://" : "tcp://"),
-                                socket.getLocalAddress().getAddress(), true) //
-                                .append(':').append(socket.getLocalPort()).toString(), //
-                        socket.getInetAddress().getAddress(), socket.getPort(),
-                        new StringBuilder().append('P').append(clientVersion).toString()));
-                if (clientVersion < Constants.TCP_PROTOCOL_VERSION_20) {
-                    // For DatabaseMetaData
-                    ci.setProperty("OLD_INFORMATION_SCHEMA", "TRUE");
-                    // For H2 Console
-                    ci.setProperty("NON_KEYWORDS", "VALUE");
-                }
-                session = Engine.createSession(ci);
-                transfer.setSession(session);
-                server.addConnection(threadId, originalURL, ci.getUserName());
-                trace("Connected");
-                lastRemoteSettingsId = session.getDatabase().getRemoteSettingsId();
-            } catch (OutOfMemoryError e) {
-                // catch this separately otherwise such errors will never hit the console
-                server.traceError(e);
-                sendError(e, true);
-                stop = true;
-            } catch (Throwable e) {
-                sendError(e,true);
-                stop = true;
-            }
+            connect();
             while (!stop) {
-                try {
-                    process();
-                } catch (Throwable e) {
-                    sendError(e, true);
-                }
+                processRequest();
             }
             trace("Disconnect");
         } catch (Throwable e) {
@@ -203,6 +101,158 @@ public void run() {
         }
     }
 
+    /**
+     * Process the requests that the client has already sent, without waiting
+     * for further requests. The first call reads the connection handshake.
+     * This method is used instead of {@link #run()} when the server hands the
+     * connection to a worker thread only while a request is pending.
+     *
+     * @return {@code true} if the connection is still open, {@code false} if
+     *         it was closed
+     */
+    boolean processPendingRequests() {
+        try {
+            if (!connected) {
+                connect();
+            } else {
+                processRequest();
+            }
+            while (!stop && transfer.isInputAvailable()) {
+                processRequest();
+            }
+            if (!stop) {
+                return true;
+            }
+            trace("Disconnect");
+        } catch (Throwable e) {
+            server.traceError(e);
+        }
+        close();
+        return false;
+    }
+
+    private void connect() throws IOException {
+        connected = true;
+        transfer.init();
+        trace("Connect");
+        // TODO server: should support a list of allowed databases
+        // and a list of allowed clients
+        try {
+            Socket socket = transfer.getSocket();
+            if (socket == null) {
+                // the transfer is already closed, prevent NPE in TcpServer#allow(Socket)
+                stop = true;
+                return;
+            }
+            if (!server.allow(transfer.getSocket())) {
+                throw DbException.get(ErrorCode.REMOTE_CONNECTION_NOT_ALLOWED);
+            }
+            int minClientVersion = transfer.readInt();
+            if (minClientVersion < 6) {
+                throw DbException.get(ErrorCode.DRIVER_VERSION_ERROR_2,
+                        Integer.toString(minClientVersion), "" + Constants.TCP_PROTOCOL_VERSION_MIN_SUPPORTED);
+            }
+            int maxClientVersion = transfer.readInt();
+            if (maxClientVersion < Constants.TCP_PROTOCOL_VERSION_MIN_SUPPORTED) {
+                throw DbException.get(ErrorCode.DRIVER_VERSION_ERROR_2,
+                        Integer.toString(maxClientVersion), "" + Constants.TCP_PROTOCOL_VERSION_MIN_SUPPORTED);
+            } else if (minClientVersion > Constants.TCP_PROTOCOL_VERSION_MAX_SUPPORTED) {
+                throw DbException.get(ErrorCode.DRIVER_VERSION_ERROR_2,
+                        Integer.toString(minClientVersion), "" + Constants.TCP_PROTOCOL_VERSION_MAX_SUPPORTED);
+            }
+            if (maxClientVersion >= Constants.TCP_PROTOCOL_VERSION_MAX_SUPPORTED) {
+                clientVersion = Constants.TCP_PROTOCOL_VERSION_MAX_SUPPORTED;
+            } else {
+                clientVersion = maxClientVersion;
+            }
+            transfer.setVersion(clientVersion);
+            String db = transfer.readString();
+            String originalURL = transfer.readString();
+            if (db == null && originalURL == null) {
+                String targetSessionId = transfer.readString();
+                int command = transfer.readInt();
+                stop = true;
+                if (command == SessionRemote.SESSION_CANCEL_STATEMENT) {
+                    // cancel a running statement
+                    int statementId = transfer.readInt();
+                    server.cancelStatement(targetSessionId, statementId);
+                } else if (command == SessionRemote.SESSION_CHECK_KEY) {
+                    // check if this is the correct server
+                    db = server.checkKeyAndGetDatabaseName(targetSessionId);
+                    if (!targetSessionId.equals(db)) {
+                        transfer.writeInt(SessionRemote.STATUS_OK);
+                    } else {
+                        transfer.writeInt(SessionRemote.STATUS_ERROR);
+                    }
+                }
+            }
+            String baseDir = server.getBaseDir();
+            if (baseDir == null) {
+                baseDir = SysProperties.getBaseDir();
+            }
+            db = server.checkKeyAndGetDatabaseName(db);
+            ConnectionInfo ci = new ConnectionInfo(db);
+            ci.setOriginalURL(originalURL);
+            ci.setUserName(transfer.readString());
+            ci.setUserPasswordHash(transfer.readBytes());
+            ci.setFilePasswordHash(transfer.readBytes());
+            int len = transfer.readInt();
+            for (int i = 0; i < len; i++) {
+                ci.setProperty(transfer.readString(), transfer.readString());
+            }
+            // override client's requested properties with server settings
+            if (baseDir != null) {
+                ci.setBaseDir(baseDir);
+            }
+            if (server.getIfExists()) {
+                ci.setProperty("FORBID_CREATION", "TRUE");
+            }
+            transfer.writeInt(SessionRemote.STATUS_OK);
+            transfer.writeInt(clientVersion);
+            transfer.flush();
+            if (ci.getFilePasswordHash() != null) {
+                ci.setFileEncryptionKey(transfer.readBytes());
+            }
+            if (clientVersion >= Constants.TCP_PROTOCOL_VERSION_22) {
+                transfer.setCompression(transfer.readInt());
+            }
+            ci.setNetworkConnectionInfo(new NetworkConnectionInfo(
+                    NetUtils.ipToShortForm(new StringBuilder(server.getSSL() ? "ssl://" : "tcp://"),
+                            socket.getLocalAddress().getAddress(), true) //
+                            .append(':').append(socket.getLocalPort()).toString(), //
+                    socket.getInetAddress().getAddress(), socket.getPort(),
+                    new StringBuilder().append('P').append(clientVersion).toString()));
+            if (clientVersion < Constants.TCP_PROTOCOL_VERSION_20) {
+                // For DatabaseMetaData
+                ci.setProperty("OLD_INFORMATION_SCHEMA", "TRUE");
+                // For H2 Console
+                ci.setProperty("NON_KEYWORDS", "VALUE");
+            }
+            session = Engine.createSession(ci);
+            transfer.setSession(session);
+            server.addConnection(threadId, originalURL, ci.getUserName());
+            trace("Connected");
+            lastRemoteSettingsId = session.getDatabase().getRemoteSettingsId();
+            lastSchemaVersion = session.getDatabase().getModificationMetaId();
+        } catch (OutOfMemoryError e) {
+            // catch this separately otherwise such errors will never hit the console
+            server.traceError(e);
+            sendError(e, true);
+            stop = true;
+        } catch (Throwable e) {
+            sendError(e,true);
+            stop = true;
+        }
+    }
+
+    private void processRequest() {
+        try {
+            process();
+        } catch (Throwable e) {
+            sendError(e, true);
+        }
+    }
+
     private void closeSession() {
         if (session != null) {
             RuntimeException closeError = null;
@@ -273,6 +323,41 @@ private void sendSQLException(SQLException e) throws IOException {
                 .writeString(trace);
     }
 
+    /**
+     * Send the requested part of a LOB in segments, so that the client can
+     * read the first segment while the next one is read from the LOB. Each
+     * segment starts with its length, and a segment of length 0 marks the end.
+     * If reading the LOB fails after the first segment, the length -1 and the
+     * error are sent instead.
+     *
+     * @param in the LOB data
+     * @param length the number of bytes to send
+     * @throws IOException on failure
+     */
+    private void sendLob(InputStream in, int length) throws IOException {
+        byte[] buff = lobBuffer;
+        if (buff == null) {
+            lobBuffer = buff = new byte[16 * Constants.IO_BUFFER_SIZE];
+        }
+        int len = IOUtils.readFully(in, buff, Math.min(buff.length, length));
+        transfer.writeInt(SessionRemote.STATUS_OK);
+        while (len > 0) {
+            transfer.writeInt(len).writeBytes(buff, 0, len);
+            length -= len;
+            if (length == 0) {
+                break;
+            }
+            try {
+                len = IOUtils.readFully(in, buff, Math.min(buff.length, length));
+            } catch (Exception e) {
+                transfer.writeInt(-1);
+                sendError(e, true);
+                return;
+            }
+        }
+        transfer.writeInt(0).flush();
+    }
+
     private void setParameters(Command command) throws IOException {
         int len = transfer.readInt();
         ArrayList<? extends ParameterInterface> params = command.getParameters();
@@ -296,11 +381,14 @@ private void process() throws IOException {
             cache.addObject(id, command);
             boolean isQuery = command.isQuery();
 
-            transfer.writeInt(getState(old)).writeBoolean(isQuery).
+            writeStatus(getState(old)).writeBoolean(isQuery).
                     writeBoolean(readonly);
 
             if (operation != SessionRemote.SESSION_PREPARE) {
                 transfer.writeInt(command.getCommandType());
+                if (clientVersion >= Constants.TCP_PROTOCOL_VERSION_24) {
+                    transfer.writeBoolean(command.isCacheable());
+                }
             }
 
             ArrayList<? extends ParameterInterface> params = command.getParameters();
@@ -328,7 +416,7 @@ private void process() throws IOException {
             }
             int old = session.getModificationId();
             commit.executeUpdate(null);
-            transfer.writeInt(getState(old)).flush();
+            writeStatus(getState(old)).flush();
             break;
         }
         case SessionRemote.COMMAND_GET_META_DATA: {
@@ -338,7 +426,7 @@ private void process() throws IOException {
             ResultInterface result = command.getMetaData();
             cache.addObject(objectId, result);
             int columnCount = result.getVisibleColumnCount();
-            transfer.writeInt(SessionRemote.STATUS_OK).
+            writeStatus(SessionRemote.STATUS_OK).
                     writeInt(columnCount).writeRowCount(0L);
             for (int i = 0; i < columnCount; i++) {
                 ResultColumn.writeColumn(transfer, result, i);
@@ -364,7 +452,7 @@ private void process() throws IOException {
             cache.addObject(objectId, result);
             int columnCount = result.getVisibleColumnCount();
             int state = getState(old);
-            transfer.writeInt(state).writeInt(columnCount);
+            writeStatus(state).writeInt(columnCount);
             long rowCount = result.isLazy() ? -1L : result.getRowCount();
             transfer.writeRowCount(rowCount);
             for (int i = 0; i < columnCount; i++) {
@@ -394,7 +482,7 @@ private void process() throws IOException {
             } else {
                 status = getState(old);
             }
-            transfer.writeInt(status);
+            writeStatus(status);
             transfer.writeRowCount(result.getUpdateCount());
             transfer.writeBoolean(session.getAutoCommit());
             if (generatedKeysRequest != Boolean.FALSE) {
@@ -478,7 +566,13 @@ private void process() throws IOException {
                 InputStream lobIn = lobStorage.getInputStream(lobId, -1);
                 in = new CachedInputStream(lobIn);
                 lobs.put(lobId, in);
-                lobIn.skip(offset);
+                while (in.getPos() < offset && in.skip(offset - in.getPos()) > 0) {
+                    // skip to the requested position
+                }
+            }
+            if (clientVersion >= Constants.TCP_PROTOCOL_VERSION_25) {
+                sendLob(in, Math.min(Constants.LOB_READ_MAX_LENGTH, length));
+                break;
             }
             // limit the buffer size
             length = Math.min(16 * Constants.IO_BUFFER_SIZE, length);
@@ -507,7 +601,7 @@ private void process() throws IOException {
             }
             int columnCount = result.getVisibleColumnCount();
             int state = getState(old);
-            transfer.writeInt(state).writeInt(columnCount);
+            writeStatus(state).writeInt(columnCount);
             long rowCount = result.getRowCount();
             transfer.writeRowCount(rowCount);
             for (int i = 0; i < columnCount; i++) {
@@ -522,13 +616,27 @@ private void process() throws IOException {
             Command command = (Command) cache.getObject(id, false);
             int size = transfer.readInt();
             ArrayList<Value[]> batchParameters = new ArrayList<>(size);
-            for (int i = 0; i < size; i++) {
+            if (clientVersion >= Constants.TCP_PROTOCOL_VERSION_23) {
+                // the values are sent column by column
                 int len = transfer.readInt();
-                Value[] parameters = new Value[len];
+                for (int i = 0; i < size; i++) {
+                    batchParameters.add(new Value[len]);
+                }
                 for (int j = 0; j < len; j++) {
-                    parameters[j] = transfer.readValue(null);
+                    Value[] column = transfer.readValueColumn(size);
+                    for (int i = 0; i < size; i++) {
+                        batchParameters.get(i)[j] = column[i];
+                    }
+                }
+            } else {
+                for (int i = 0; i < size; i++) {
+                    int len = transfer.readInt();
+                    Value[] parameters = new Value[len];
+                    for (int j = 0; j < len; j++) {
+                        parameters[j] = transfer.readValue(null);
+                    }
+                    batchParameters.add(parameters);
                 }
-                batchParameters.add(parameters);
             }
             Object generatedKeysRequest = readGeneratedKeysRequest();
             int old = session.getModificationId();
@@ -546,7 +654,7 @@ private void process() throws IOException {
             } else {
                 status = getState(old);
             }
-            transfer.writeInt(status);
+            writeStatus(status);
             for (long updateCount : result.getUpdateCounts()) {
                 transfer.writeLong(updateCount);
             }
@@ -609,6 +717,26 @@ private void sendGeneratedKeys(ResultInterface generatedKeys) throws IOException
         generatedKeys.close();
     }
 
+    /**
+     * Write the status of an executed operation. If the schema of the database
+     * was changed since the last status, newer clients also get the new schema
+     * version, so that they can drop their cached commands.
+     *
+     * @param status the status
+     * @return the transfer object
+     * @throws IOException on failure
+     */
+    private Transfer writeStatus(int status) throws IOException {
+        if (clientVersion >= Constants.TCP_PROTOCOL_VERSION_24 && status != SessionRemote.STATUS_CLOSED) {
+            long schemaVersion = session.getDatabase().getModificationMetaId();
+            if (schemaVersion != lastSchemaVersion) {
+                lastSchemaVersion = schemaVersion;
+                transfer.writeInt(SessionRemote.STATUS_SCHEMA_CHANGED).writeLong(schemaVersion);
+            }
+        }
+        return transfer.writeInt(status);
+    }
+
     private int getState(int oldModificationId) {
         if (session == null) {
             return SessionRemote.STATUS_CLOSED;
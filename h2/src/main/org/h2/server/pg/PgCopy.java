@@ -0,0 +1,1060 @@
+/*
+ * Copyright 2004-2025 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (https://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.server.pg;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.h2.api.ErrorCode;
+import org.h2.message.DbException;
+import org.h2.util.StringUtils;
+import org.h2.util.Utils;
+
+/**
+ * A COPY FROM STDIN or COPY TO STDOUT statement of the PostgreSQL protocol.
+ * This class parses the statement, and reads and writes the rows in the text
+ * and CSV formats. The binary format uses the same encoding of the values as
+ * the binary format of the protocol, and is handled by the server thread.
+ */
+final class PgCopy {
+
+    /**
+     * The text format.
+     */
+    static final int FORMAT_TEXT = 0;
+
+    /**
+     * The CSV format.
+     */
+    static final int FORMAT_CSV = 1;
+
+    /**
+     * The binary format.
+     */
+    static final int FORMAT_BINARY = 2;
+
+    /**
+     * The signature at the start of the binary format.
+     */
+    static final byte[] BINARY_SIGNATURE = { 'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xff, '\r', '\n', 0 };
+
+    private static final int END = 0, IDENTIFIER = 1, QUOTED_IDENTIFIER = 2, STRING = 3, SYMBOL = 4;
+
+    private final String sql;
+
+    private int pos;
+
+    private int tokenStart;
+
+    private int tokenType;
+
+    private String token;
+
+    /**
+     * The qualified table name, or null if a query is copied.
+     */
+    String tableName;
+
+    /**
+     * The columns, or null for all columns.
+     */
+    ArrayList<String> columns;
+
+    /**
+     * The query, or null if a table is copied.
+     */
+    String query;
+
+    /**
+     * Whether the data is copied from the client to the table.
+     */
+    boolean from;
+
+    /**
+     * The format.
+     */
+    int format = FORMAT_TEXT;
+
+    /**
+     * The character encoding, or null for the client encoding.
+     */
+    String encoding;
+
+    private boolean header;
+
+    private int delimiter = -1;
+
+    private String nullString;
+
+    private int quote = -1;
+
+    private int escape = -1;
+
+    private boolean forceQuoteAll;
+
+    private HashSet<String> forceQuote;
+
+    private byte[] nullBytes;
+
+    private byte[] field = new byte[256];
+
+    private int length;
+
+    private boolean afterCr;
+
+    private PgCopy(String sql) {
+        this.sql = sql;
+    }
+
+    /**
+     * Check whether the statement is a COPY statement.
+     *
+     * @param sql the statement
+     * @return true if it is
+     */
+    static boolean isCopy(String sql) {
+        int i = 0, l = sql.length();
+        while (i < l && Character.isWhitespace(sql.charAt(i))) {
+            i++;
+        }
+        return sql.regionMatches(true, i, "COPY", 0, 4)
+                && (i + 4 == l || !Character.isJavaIdentifierPart(sql.charAt(i + 4)));
+    }
+
+    /**
+     * Parse a COPY statement. Both the current syntax with a parenthesized
+     * option list and the syntax of PostgreSQL 9.0 and older are supported.
+     *
+     * @param sql the statement
+     * @return the parsed statement
+     * @throws DbException if the statement can not be parsed, or copies from
+     *             or to a file or program
+     */
+    static PgCopy parse(String sql) {
+        PgCopy copy = new PgCopy(sql);
+        copy.parse();
+        return copy;
+    }
+
+    private void parse() {
+        read();
+        readKeyword("copy");
+        if (tokenType == SYMBOL && token.equals("(")) {
+            int start = pos;
+            read();
+            query = readParenthesized(start);
+        } else {
+            StringBuilder buff = new StringBuilder();
+            StringUtils.quoteIdentifier(buff, readIdentifier());
+            while (readIf(".")) {
+                StringUtils.quoteIdentifier(buff.append('.'), readIdentifier());
+            }
+            tableName = buff.toString();
+            if (readIf("(")) {
+                columns = new ArrayList<>();
+                do {
+                    columns.add(readIdentifier());
+                } while (readIf(","));
+                readSymbol(")");
+            }
+        }
+        if (readIfKeyword("from")) {
+            if (query != null) {
+                throw syntaxError("TO");
+            }
+            from = true;
+            readTarget("stdin");
+        } else {
+            readKeyword("to");
+            readTarget("stdout");
+        }
+        readIfKeyword("with");
+        if (readIf("(")) {
+            do {
+                readOption();
+            } while (readIf(","));
+            readSymbol(")");
+        } else {
+            readLegacyOptions();
+        }
+        readIf(";");
+        if (tokenType != END) {
+            throw syntaxError(null);
+        }
+        switch (format) {
+        case FORMAT_TEXT:
+            setDefaults('\t', "\\N", -1);
+            break;
+        case FORMAT_CSV:
+            setDefaults(',', "", '"');
+            if (escape < 0) {
+                escape = quote;
+            }
+            break;
+        default:
+            if (delimiter >= 0 || nullString != null || header) {
+                throw DbException.getUnsupportedException("COPY options DELIMITER, NULL or HEADER in binary format");
+            }
+        }
+        if (format != FORMAT_CSV && (quote >= 0 || escape >= 0 || forceQuoteAll || forceQuote != null)) {
+            throw DbException.getUnsupportedException("COPY options QUOTE, ESCAPE or FORCE_QUOTE without CSV format");
+        }
+    }
+
+    private void setDefaults(int defaultDelimiter, String defaultNull, int defaultQuote) {
+        if (delimiter < 0) {
+            delimiter = defaultDelimiter;
+        }
+        if (nullString == null) {
+            nullString = defaultNull;
+        }
+        if (quote < 0) {
+            quote = defaultQuote;
+        }
+        if (delimiter == '\n' || delimiter == '\r' || delimiter == quote
+                || format == FORMAT_TEXT && delimiter == '\\') {
+            throw DbException.getInvalidValueException("DELIMITER", (char) delimiter);
+        }
+    }
+
+    private void readTarget(String target) {
+        if (tokenType != IDENTIFIER || !token.equals(target)) {
+            throw DbException.getUnsupportedException("COPY " + (from ? "FROM " : "TO ") + token);
+        }
+        read();
+    }
+
+    private void readOption() {
+        String name = readIdentifier();
+        switch (name) {
+        case "format": {
+            String f = readIdentifier();
+            switch (f) {
+            case "text":
+                format = FORMAT_TEXT;
+                break;
+            case "csv":
+                format = FORMAT_CSV;
+                break;
+            case "binary":
+                format = FORMAT_BINARY;
+                break;
+            default:
+                throw DbException.getInvalidValueException("FORMAT", f);
+            }
+            break;
+        }
+        case "delimiter":
+            delimiter = readCharacter("DELIMITER");
+            break;
+        case "null":
+            nullString = readString();
+            break;
+        case "header":
+            header = readIfBoolean();
+            break;
+        case "quote":
+            quote = readCharacter("QUOTE");
+            break;
+        case "escape":
+            escape = readCharacter("ESCAPE");
+            break;
+        case "encoding":
+            encoding = readString();
+            break;
+        case "freeze":
+            // there is no need to freeze rows
+            readIfBoolean();
+            break;
+        case "force_quote":
+            readForceQuote();
+            break;
+        default:
+            throw DbException.getUnsupportedException("COPY option " + name);
+        }
+    }
+
+    private void readLegacyOptions() {
+        while (tokenType == IDENTIFIER) {
+            String name = token;
+            read();
+            switch (name) {
+            case "binary":
+                format = FORMAT_BINARY;
+                break;
+            case "csv":
+                format = FORMAT_CSV;
+                break;
+            case "header":
+                header = true;
+                break;
+            case "delimiter":
+                readIfKeyword("as");
+                delimiter = readCharacter("DELIMITER");
+                break;
+            case "null":
+                readIfKeyword("as");
+                nullString = readString();
+                break;
+            case "quote":
+                readIfKeyword("as");
+                quote = readCharacter("QUOTE");
+                break;
+            case "escape":
+                readIfKeyword("as");
+                escape = readCharacter("ESCAPE");
+                break;
+            case "force":
+                readKeyword("quote");
+                if (readIf("*")) {
+                    forceQuoteAll = true;
+                } else {
+                    forceQuote = new HashSet<>();
+                    do {
+                        forceQuote.add(readIdentifier());
+                    } while (readIf(","));
+                }
+                break;
+            default:
+                throw DbException.getUnsupportedException("COPY option " + name);
+            }
+        }
+    }
+
+    private void readForceQuote() {
+        if (readIf("*")) {
+            forceQuoteAll = true;
+        } else {
+            readSymbol("(");
+            forceQuote = new HashSet<>();
+            do {
+                forceQuote.add(readIdentifier());
+            } while (readIf(","));
+            readSymbol(")");
+        }
+    }
+
+    private boolean readIfBoolean() {
+        if (tokenType == IDENTIFIER || tokenType == STRING) {
+            switch (StringUtils.toLowerEnglish(token)) {
+            case "true":
+            case "on":
+            case "1":
+            case "match":
+                read();
+                return true;
+            case "false":
+            case "off":
+            case "0":
+                read();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int readCharacter(String option) {
+        String s = readString();
+        if (s.length() != 1 || s.charAt(0) > 127) {
+            throw DbException.getInvalidValueException(option, s);
+        }
+        return s.charAt(0);
+    }
+
+    private String readString() {
+        if (tokenType != STRING) {
+            throw syntaxError("string");
+        }
+        String s = token;
+        read();
+        return s;
+    }
+
+    private String readIdentifier() {
+        if (tokenType != IDENTIFIER && tokenType != QUOTED_IDENTIFIER) {
+            throw syntaxError("identifier");
+        }
+        String s = token;
+        read();
+        return s;
+    }
+
+    private void readKeyword(String keyword) {
+        if (!readIfKeyword(keyword)) {
+            throw syntaxError(StringUtils.toUpperEnglish(keyword));
+        }
+    }
+
+    private boolean readIfKeyword(String keyword) {
+        if (tokenType == IDENTIFIER && token.equals(keyword)) {
+            read();
+            return true;
+        }
+        return false;
+    }
+
+    private void readSymbol(String symbol) {
+        if (!readIf(symbol)) {
+            throw syntaxError(symbol);
+        }
+    }
+
+    private boolean readIf(String symbol) {
+        if (tokenType == SYMBOL && token.equals(symbol)) {
+            read();
+            return true;
+        }
+        return false;
+    }
+
+    private DbException syntaxError(String expected) {
+        return expected == null ? DbException.getSyntaxError(sql, tokenStart)
+                : DbException.getSyntaxError(sql, tokenStart, expected);
+    }
+
+    /**
+     * Read the text up to the closing parenthesis, which is then consumed.
+     * The opening parenthesis is already consumed.
+     *
+     * @param start the position after the opening parenthesis
+     * @return the text between the parentheses
+     */
+    private String readParenthesized(int start) {
+        int level = 1;
+        while (true) {
+            if (tokenType == END) {
+                throw syntaxError(")");
+            }
+            if (tokenType == SYMBOL) {
+                if (token.equals("(")) {
+                    level++;
+                } else if (token.equals(")") && --level == 0) {
+                    String s = sql.substring(start, tokenStart);
+                    read();
+                    return s;
+                }
+            }
+            read();
+        }
+    }
+
+    private void read() {
+        int l = sql.length();
+        while (pos < l) {
+            char c = sql.charAt(pos);
+            if (Character.isWhitespace(c)) {
+                pos++;
+            } else if (c == '-' && sql.startsWith("--", pos)) {
+                int end = sql.indexOf('\n', pos);
+                pos = end < 0 ? l : end;
+            } else if (c == '/' && sql.startsWith("/*", pos)) {
+                int end = sql.indexOf("*/", pos + 2);
+                pos = end < 0 ? l : end + 2;
+            } else {
+                break;
+            }
+        }
+        tokenStart = pos;
+        if (pos >= l) {
+            tokenType = END;
+            token = "";
+            return;
+        }
+        char c = sql.charAt(pos);
+        if (c == '"') {
+            tokenType = QUOTED_IDENTIFIER;
+            token = readQuoted('"', false);
+        } else if (c == '\'') {
+            tokenType = STRING;
+            token = readQuoted('\'', false);
+        } else if ((c == 'E' || c == 'e') && pos + 1 < l && sql.charAt(pos + 1) == '\'') {
+            pos++;
+            tokenType = STRING;
+            token = readQuoted('\'', true);
+        } else if (Character.isJavaIdentifierPart(c)) {
+            int start = pos;
+            while (pos < l && Character.isJavaIdentifierPart(sql.charAt(pos))) {
+                pos++;
+            }
+            tokenType = IDENTIFIER;
+            token = StringUtils.toLowerEnglish(sql.substring(start, pos));
+        } else {
+            pos++;
+            tokenType = SYMBOL;
+            token = String.valueOf(c);
+        }
+    }
+
+    private String readQuoted(char q, boolean escapes) {
+        StringBuilder buff = new StringBuilder();
+        int l = sql.length();
+        for (pos++;; pos++) {
+            if (pos >= l) {
+                throw syntaxError(String.valueOf(q));
+            }
+            char c = sql.charAt(pos);
+            if (c == q) {
+                if (pos + 1 < l && sql.charAt(pos + 1) == q) {
+                    pos++;
+                } else {
+                    pos++;
+                    return buff.toString();
+                }
+            } else if (c == '\\' && escapes && pos + 1 < l) {
+                c = sql.charAt(++pos);
+                switch (c) {
+                case 'b':
+                    c = '\b';
+                    break;
+                case 'f':
+                    c = '\f';
+                    break;
+                case 'n':
+                    c = '\n';
+                    break;
+                case 'r':
+                    c = '\r';
+                    break;
+                case 't':
+                    c = '\t';
+                    break;
+                default:
+                }
+            }
+            buff.append(c);
+        }
+    }
+
+    /**
+     * Get the query that returns the copied columns.
+     *
+     * @return the query
+     */
+    String getSelectSQL() {
+        if (query != null) {
+            return query;
+        }
+        StringBuilder buff = new StringBuilder("SELECT ");
+        if (columns == null) {
+            buff.append('*');
+        } else {
+            appendColumns(buff);
+        }
+        return buff.append(" FROM ").append(tableName).toString();
+    }
+
+    /**
+     * Get the statement that inserts a number of rows into the table.
+     *
+     * @param columnCount the number of columns
+     * @param rowCount the number of rows
+     * @return the statement
+     */
+    String getInsertSQL(int columnCount, int rowCount) {
+        StringBuilder buff = new StringBuilder("INSERT INTO ").append(tableName);
+        if (columns != null) {
+            appendColumns(buff.append('('));
+            buff.append(')');
+        }
+        buff.append(" VALUES ");
+        for (int i = 0; i < rowCount; i++) {
+            if (i > 0) {
+                buff.append(", ");
+            }
+            buff.append('(');
+            for (int j = 0; j < columnCount; j++) {
+                if (j > 0) {
+                    buff.append(", ");
+                }
+                buff.append('?');
+            }
+            buff.append(')');
+        }
+        return buff.toString();
+    }
+
+    private void appendColumns(StringBuilder buff) {
+        for (int i = 0, l = columns.size(); i < l; i++) {
+            if (i > 0) {
+                buff.append(", ");
+            }
+            StringUtils.quoteIdentifier(buff, columns.get(i));
+        }
+    }
+
+    /**
+     * Read a row in the text or CSV format.
+     *
+     * @param in the input
+     * @param charset the character encoding
+     * @param row the array to store the fields in, null for NULL
+     * @return false if the end of the data was reached
+     * @throws IOException on failure
+     */
+    boolean readRow(InputStream in, Charset charset, String[] row) throws IOException {
+        if (nullBytes == null) {
+            nullBytes = nullString.getBytes(charset);
+            if (header) {
+                header = false;
+                if (!readRow(in, charset, null)) {
+                    return false;
+                }
+            }
+        }
+        int c = in.read();
+        if (afterCr && c == '\n') {
+            c = in.read();
+        }
+        afterCr = false;
+        if (c < 0) {
+            return false;
+        }
+        for (int i = 0;; i++) {
+            boolean isNull;
+            if (format == FORMAT_CSV) {
+                c = readCsvField(in, c);
+                isNull = length < 0;
+            } else {
+                int raw = readTextField(in, c);
+                c = raw >> 8;
+                isNull = (raw & 1) != 0;
+                if ((raw & 2) != 0 && i == 0) {
+                    // the end-of-data marker
+                    return false;
+                }
+            }
+            if (row != null && i < row.length) {
+                row[i] = isNull ? null : new String(field, 0, length, charset);
+            }
+            if (c == delimiter) {
+                c = in.read();
+            } else {
+                afterCr = c == '\r';
+                if (row != null && i + 1 != row.length) {
+                    throw DbException.get(ErrorCode.COLUMN_COUNT_DOES_NOT_MATCH);
+                }
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Read a field in the text format.
+     *
+     * @param in the input
+     * @param c the first character
+     * @return the next character, shifted by 8 bits, with the flag 1 if the
+     *         field is NULL and 2 if the field is the end-of-data marker
+     */
+    private int readTextField(InputStream in, int c) throws IOException {
+        byte[] nullBytes = this.nullBytes;
+        int nullLength = nullBytes.length;
+        int raw = 0;
+        boolean matchesNull = true, endMarker = false;
+        length = 0;
+        while (c >= 0 && c != delimiter && c != '\n' && c != '\r') {
+            matchesNull &= raw < nullLength && nullBytes[raw] == c;
+            raw++;
+            if (c != '\\') {
+                append(c);
+                c = in.read();
+                continue;
+            }
+            c = in.read();
+            if (c < 0) {
+                append('\\');
+                break;
+            }
+            matchesNull &= raw < nullLength && nullBytes[raw] == c;
+            raw++;
+            int next = in.read();
+            switch (c) {
+            case 'b':
+                c = '\b';
+                break;
+            case 'f':
+                c = '\f';
+                break;
+            case 'n':
+                c = '\n';
+                break;
+            case 'r':
+                c = '\r';
+                break;
+            case 't':
+                c = '\t';
+                break;
+            case 'v':
+                c = 11;
+                break;
+            case '.':
+                endMarker = raw == 2;
+                break;
+            case 'x': {
+                int d = Character.digit(next, 16);
+                if (d >= 0) {
+                    c = d;
+                    matchesNull = false;
+                    next = in.read();
+                    d = Character.digit(next, 16);
+                    if (d >= 0) {
+                        c = (c << 4) + d;
+                        next = in.read();
+                    }
+                }
+                break;
+            }
+            default:
+                if (c >= '0' && c <= '7') {
+                    matchesNull = false;
+                    c -= '0';
+                    for (int i = 0; i < 2 && next >= '0' && next <= '7'; i++) {
+                        c = (c << 3) + next - '0';
+                        next = in.read();
+                    }
+                }
+            }
+            append(c);
+            c = next;
+        }
+        int result = c << 8;
+        if (matchesNull && raw == nullLength) {
+            result |= 1;
+        }
+        if (endMarker && raw == 2 && c != delimiter) {
+            result |= 2;
+        }
+        return result;
+    }
+
+    /**
+     * Read a field in the CSV format. The length is set to -1 if the field
+     * is NULL.
+     *
+     * @param in the input
+     * @param c the first character
+     * @return the next character
+     */
+    private int readCsvField(InputStream in, int c) throws IOException {
+        boolean quoted = false;
+        length = 0;
+        while (c >= 0 && c != delimiter && c != '\n' && c != '\r') {
+            if (c != quote) {
+                append(c);
+                c = in.read();
+                continue;
+            }
+            quoted = true;
+            c = in.read();
+            while (true) {
+                if (c < 0) {
+                    throw DbException.get(ErrorCode.GENERAL_ERROR_1, "Unterminated CSV quoted field");
+                } else if (c == quote) {
+                    c = in.read();
+                    if (c != quote || escape != quote) {
+                        break;
+                    }
+                } else if (c == escape) {
+                    c = in.read();
+                    if (c != quote && c != escape) {
+                        append(escape);
+                        continue;
+                    }
+                }
+                append(c);
+                c = in.read();
+            }
+        }
+        if (!quoted && length == nullBytes.length) {
+            for (int i = 0;; i++) {
+                if (i == length) {
+                    length = -1;
+                    break;
+                } else if (field[i] != nullBytes[i]) {
+                    break;
+                }
+            }
+        }
+        return c;
+    }
+
+    private void append(int c) {
+        if (length == field.length) {
+            field = Utils.copyBytes(field, length * 2);
+        }
+        field[length++] = (byte) c;
+    }
+
+    /**
+     * Write the header row in the text or CSV format, if enabled. This method
+     * must be called before the first row is written.
+     *
+     * @param out the output
+     * @param charset the character encoding
+     * @param names the column names
+     * @throws IOException on failure
+     */
+    void writeHeader(OutputStream out, Charset charset, String[] names) throws IOException {
+        nullBytes = nullString.getBytes(charset);
+        if (header) {
+            for (int i = 0; i < names.length; i++) {
+                if (i > 0) {
+                    out.write(delimiter);
+                }
+                writeField(out, names[i].getBytes(charset), names[i]);
+            }
+            out.write('\n');
+        }
+    }
+
+    /**
+     * Write the delimiter before the given column, if it is not the first.
+     *
+     * @param out the output
+     * @param column the 0-based column index
+     * @throws IOException on failure
+     */
+    void writeDelimiter(OutputStream out, int column) throws IOException {
+        if (column > 0) {
+            out.write(delimiter);
+        }
+    }
+
+    /**
+     * Write a NULL field in the text or CSV format.
+     *
+     * @param out the output
+     * @throws IOException on failure
+     */
+    void writeNull(OutputStream out) throws IOException {
+        out.write(nullBytes);
+    }
+
+    /**
+     * Write a field in the text or CSV format.
+     *
+     * @param out the output
+     * @param data the encoded text of the value
+     * @param columnName the column name
+     * @throws IOException on failure
+     */
+    void writeField(OutputStream out, byte[] data, String columnName) throws IOException {
+        if (format == FORMAT_TEXT) {
+            for (byte b : data) {
+                switch (b) {
+                case '\b':
+                    out.write('\\');
+                    out.write('b');
+                    break;
+                case '\t':
+                    out.write('\\');
+                    out.write('t');
+                    break;
+                case '\n':
+                    out.write('\\');
+                    out.write('n');
+                    break;
+                case 11:
+                    out.write('\\');
+                    out.write('v');
+                    break;
+                case '\f':
+                    out.write('\\');
+                    out.write('f');
+                    break;
+                case '\r':
+                    out.write('\\');
+                    out.write('r');
+                    break;
+                case '\\':
+                    out.write('\\');
+                    out.write('\\');
+                    break;
+                default:
+                    if (b == delimiter) {
+                        out.write('\\');
+                    }
+                    out.write(b);
+                }
+            }
+            return;
+        }
+        boolean quoted = forceQuoteAll || forceQuote != null && forceQuote.contains(columnName)
+                || Arrays.equals(data, nullBytes);
+        if (!quoted) {
+            for (byte b : data) {
+                if (b == delimiter || b == quote || b == '\n' || b == '\r') {
+                    quoted = true;
+                    break;
+                }
+            }
+        }
+        if (!quoted) {
+            out.write(data);
+            return;
+        }
+        out.write(quote);
+        for (byte b : data) {
+            if (b == quote || b == escape) {
+                out.write(escape);
+            }
+            out.write(b);
+        }
+        out.write(quote);
+    }
+
+    /**
+     * Parse a value of the BYTEA data type in the hex or in the escape format.
+     *
+     * @param s the text
+     * @return the bytes
+     */
+    static byte[] parseBytea(String s) {
+        if (s.startsWith("\\x")) {
+            return StringUtils.convertHexToBytes(s.substring(2));
+        }
+        int l = s.length();
+        byte[] b = new byte[l];
+        int j = 0;
+        for (int i = 0; i < l; i++) {
+            char c = s.charAt(i);
+            if (c == '\\') {
+                if (i + 1 < l && s.charAt(i + 1) == '\\') {
+                    i++;
+                } else if (i + 3 < l) {
+                    c = (char) Integer.parseInt(s.substring(i + 1, i + 4), 8);
+                    i += 3;
+                } else {
+                    throw DbException.getInvalidValueException("bytea", s);
+                }
+            }
+            b[j++] = (byte) c;
+        }
+        return Utils.copyBytes(b, j);
+    }
+
+    /**
+     * The data a client sends in CopyData messages during COPY FROM STDIN.
+     * The stream ends with the CopyDone message. If the client sends
+     * CopyFail, an exception is thrown.
+     */
+    static final class Input extends InputStream {
+
+        private final DataInputStream in;
+
+        private final Charset charset;
+
+        private byte[] buffer = new byte[8 * 1024];
+
+        private int pos, limit;
+
+        private boolean done;
+
+        /**
+         * Create a new input.
+         *
+         * @param in the stream with the messages
+         * @param charset the character encoding of the error message
+         */
+        Input(DataInputStream in, Charset charset) {
+            this.in = in;
+            this.charset = charset;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (pos >= limit && !readMessage()) {
+                return -1;
+            }
+            return buffer[pos++] & 255;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (pos >= limit && !readMessage()) {
+                return -1;
+            }
+            len = Math.min(len, limit - pos);
+            System.arraycopy(buffer, pos, b, off, len);
+            pos += len;
+            return len;
+        }
+
+        /**
+         * Skip the remaining data, up to and including the CopyDone message.
+         *
+         * @throws IOException on failure
+         */
+        void skipRemaining() throws IOException {
+            do {
+                pos = limit;
+            } while (readMessage());
+        }
+
+        private boolean readMessage() throws IOException {
+            while (!done) {
+                int type = in.read();
+                if (type < 0) {
+                    throw new EOFException();
+                }
+                int len = in.readInt() - 4;
+                if (len < 0) {
+                    throw DbException.getInvalidValueException("message length", len);
+                }
+                switch (type) {
+                case 'd':
+                    if (len > buffer.length) {
+                        buffer = Utils.newBytes(Math.max(len, buffer.length * 2));
+                    }
+                    in.readFully(buffer, 0, len);
+                    pos = 0;
+                    limit = len;
+                    if (len > 0) {
+                        return true;
+                    }
+                    break;
+                case 'c':
+                    done = true;
+                    break;
+                case 'f': {
+                    done = true;
+                    byte[] data = Utils.newBytes(len);
+                    in.readFully(data);
+                    int l = len;
+                    while (l > 0 && data[l - 1] == 0) {
+                        l--;
+                    }
+                    throw DbException.get(ErrorCode.GENERAL_ERROR_1,
+                            "COPY from stdin failed: " + new String(data, 0, l, charset));
+                }
+                case 'H':
+                case 'S':
+                    // Flush and Sync are ignored in the copy-in mode
+                    in.readFully(Utils.newBytes(len));
+                    break;
+                default:
+                    done = true;
+                    in.readFully(Utils.newBytes(len));
+                    throw DbException.get(ErrorCode.GENERAL_ERROR_1,
+                            "Unexpected message type " + (char) type + " during COPY from stdin");
+                }
+            }
+            return false;
+        }
+
+    }
+
+}
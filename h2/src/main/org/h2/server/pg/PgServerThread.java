@@ -5,6 +5,8 @@
  */
 package org.h2.server.pg;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
@@ -21,8 +23,10 @@
 import java.nio.charset.StandardCharsets;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Properties;
 import java.util.regex.Pattern;
@@ -33,6 +37,7 @@
 import org.h2.engine.Constants;
 import org.h2.engine.Database;
 import org.h2.engine.Engine;
+import org.h2.engine.Session;
 import org.h2.engine.SessionLocal;
 import org.h2.engine.SysProperties;
 import org.h2.expression.ParameterInterface;
@@ -54,6 +59,7 @@
 import org.h2.value.Value;
 import org.h2.value.ValueArray;
 import org.h2.value.ValueBigint;
+import org.h2.value.ValueBoolean;
 import org.h2.value.ValueDate;
 import org.h2.value.ValueDecfloat;
 import org.h2.value.ValueDouble;
@@ -114,6 +120,8 @@ private static String convertTimeZone(String value, String prefix) {
     private int processId;
     private final int secret;
     private CommandInterface activeRequest;
+    private boolean extendedQuery;
+    private boolean discardUntilSync;
     private String clientEncoding = SysProperties.PG_DEFAULT_CLIENT_ENCODING;
     private String dateStyle = "ISO, MDY";
     private TimeZoneProvider timeZone = DateTimeUtils.getTimeZone();
@@ -133,11 +141,16 @@ public void run() {
         try {
             server.trace("Connect");
             InputStream ins = socket.getInputStream();
-            out = socket.getOutputStream();
-            dataInRaw = new DataInputStream(ins);
+            // the responses to the messages of the extended query protocol are
+            // only flushed on Sync or Flush, so that pipelined requests are
+            // answered with few network packets
+            out = new BufferedOutputStream(socket.getOutputStream(), 64 * 1024);
+            dataInRaw = new DataInputStream(new BufferedInputStream(ins, 64 * 1024));
             while (!stop) {
                 process();
-                out.flush();
+                if (!extendedQuery) {
+                    out.flush();
+                }
             }
         } catch (EOFException e) {
             // more or less normal disconnect
@@ -193,6 +206,12 @@ private void process() throws IOException {
         byte[] data = Utils.newBytes(len);
         dataInRaw.readFully(data, 0, len);
         dataIn = new DataInputStream(new ByteArrayInputStream(data, 0, len));
+        extendedQuery = x == 'P' || x == 'B' || x == 'C' || x == 'D' || x == 'E';
+        if (discardUntilSync && extendedQuery) {
+            // after an error, the messages up to the next Sync are ignored
+            server.trace("Discard " + (char) x);
+            return;
+        }
         switch (x) {
         case 0:
             server.trace("Init");
@@ -299,9 +318,8 @@ private void process() throws IOException {
         }
         case 'P': {
             server.trace("Parse");
-            Prepared p = new Prepared();
-            p.name = readString();
-            p.sql = getSQL(readString());
+            String name = readString();
+            String sql = getSQL(readString());
             int paramTypesCount = readShort();
             int[] paramTypes = null;
             if (paramTypesCount > 0) {
@@ -310,6 +328,25 @@ private void process() throws IOException {
                     paramTypes[i] = readInt();
                 }
             }
+            Prepared old = prepared.get(name);
+            if (old != null) {
+                if (old.sql.equals(sql) && Arrays.equals(old.declaredParamTypes, paramTypes)) {
+                    // clients parse the unnamed statement again for each
+                    // execution
+                    sendParseComplete();
+                    break;
+                }
+                // the portals of a replaced statement remain open
+                prepared.remove(name);
+                old.replaced = true;
+                if (!isInUse(old.prep)) {
+                    old.close();
+                }
+            }
+            Prepared p = new Prepared();
+            p.name = name;
+            p.sql = sql;
+            p.declaredParamTypes = paramTypes;
             try {
                 p.prep = session.prepareLocal(p.sql);
                 ArrayList<? extends ParameterInterface> parameters = p.prep.getParameters();
@@ -328,22 +365,27 @@ private void process() throws IOException {
                 prepared.put(p.name, p);
                 sendParseComplete();
             } catch (Exception e) {
+                p.close();
                 sendErrorResponse(e);
             }
             break;
         }
         case 'B': {
             server.trace("Bind");
-            Portal portal = new Portal();
-            portal.name = readString();
+            String portalName = readString();
             String prepName = readString();
             Prepared prep = prepared.get(prepName);
             if (prep == null) {
                 sendErrorResponse("Prepared not found");
                 break;
             }
+            Portal old = portals.remove(portalName);
+            if (old != null) {
+                old.close();
+            }
+            Portal portal = new Portal();
+            portal.name = portalName;
             portal.prep = prep;
-            portals.put(portal.name, portal);
             int formatCodeCount = readShort();
             int[] formatCodes = new int[formatCodeCount];
             for (int i = 0; i < formatCodeCount; i++) {
@@ -351,7 +393,11 @@ private void process() throws IOException {
             }
             int paramCount = readShort();
             try {
-                ArrayList<? extends ParameterInterface> parameters = prep.prep.getParameters();
+                // a portal that is not yet run to completion keeps using the
+                // parameters and the result of its command
+                portal.command = isInUse(prep.prep) ? session.prepareLocal(prep.sql) : prep.prep;
+                portals.put(portal.name, portal);
+                ArrayList<? extends ParameterInterface> parameters = portal.command.getParameters();
                 for (int i = 0; i < paramCount; i++) {
                     setParameter(parameters, prep.paramType[i], i, formatCodes);
                 }
@@ -374,12 +420,12 @@ private void process() throws IOException {
             if (type == 'S') {
                 Prepared p = prepared.remove(name);
                 if (p != null) {
-                    p.close();
+                    closePrepared(p);
                 }
             } else if (type == 'P') {
                 Portal p = portals.remove(name);
                 if (p != null) {
-                    p.prep.closeResult();
+                    p.close();
                 }
             } else {
                 server.trace("expected S or P, got " + type);
@@ -410,9 +456,8 @@ private void process() throws IOException {
                 if (p == null) {
                     sendErrorResponse("Portal not found: " + name);
                 } else {
-                    CommandInterface prep = p.prep.prep;
                     try {
-                        sendRowDescription(prep.getMetaData(), p.resultColumnFormat);
+                        sendRowDescription(p.command.getMetaData(), p.resultColumnFormat);
                     } catch (Exception e) {
                         sendErrorResponse(e);
                     }
@@ -432,14 +477,14 @@ private void process() throws IOException {
                 break;
             }
             int maxRows = readInt();
-            Prepared prepared = p.prep;
-            CommandInterface prep = prepared.prep;
-            server.trace(prepared.sql);
+            CommandInterface prep = p.command;
+            server.trace(p.prep.sql);
             try {
                 setActiveRequest(prep);
                 if (prep.isQuery()) {
-                    executeQuery(prepared, prep, p.resultColumnFormat, maxRows);
+                    executeQuery(p, maxRows);
                 } else {
+                    p.done = true;
                     sendCommandComplete(prep, prep.executeUpdate(null).getUpdateCount());
                 }
             } catch (Exception e) {
@@ -451,9 +496,14 @@ private void process() throws IOException {
         }
         case 'S': {
             server.trace("Sync");
+            discardUntilSync = false;
             sendReadyForQuery();
             break;
         }
+        case 'H': {
+            server.trace("Flush");
+            break;
+        }
         case 'Q': {
             server.trace("Query");
             String query = readString();
@@ -465,16 +515,26 @@ private void process() throws IOException {
                     break;
                 }
                 s = getSQL(s);
+                if (PgCopy.isCopy(s)) {
+                    try {
+                        executeCopy(PgCopy.parse(s));
+                    } catch (Exception e) {
+                        sendErrorOrCancelResponse(e);
+                        break;
+                    }
+                    continue;
+                }
                 try (CommandInterface command = session.prepareLocal(s)) {
                     setActiveRequest(command);
                     if (command.isQuery()) {
-                        try (ResultInterface result = command.executeQuery(0, false)) {
+                        ResultInterface result = executeLazyQuery(command);
+                        try {
                             sendRowDescription(result, null);
-                            while (result.next()) {
-                                sendDataRow(result, null);
-                            }
-                            sendCommandComplete(command, 0);
+                            sendDataRows(result, null, 0);
+                        } finally {
+                            closeResult(command, result);
                         }
+                        sendCommandComplete(command, 0);
                     } else {
                         sendCommandComplete(command, command.executeUpdate(null).getUpdateCount());
                     }
@@ -488,6 +548,12 @@ private void process() throws IOException {
             sendReadyForQuery();
             break;
         }
+        case 'd':
+        case 'c':
+        case 'f':
+            // the rest of the data of a failed COPY FROM STDIN is discarded
+            server.trace("CopyData");
+            break;
         case 'X': {
             server.trace("Terminate");
             close();
@@ -499,34 +565,389 @@ private void process() throws IOException {
         }
     }
 
-    private void executeQuery(Prepared prepared, CommandInterface prep, int[] resultColumnFormat, int maxRows)
-            throws Exception {
-        ResultInterface result = prepared.result;
+    /**
+     * Send the rows of the result of a portal. The query is executed lazily,
+     * so that a portal that is executed with a row limit fetches only the
+     * requested rows, and suspends until it is executed again.
+     */
+    private void executeQuery(Portal portal, int maxRows) throws Exception {
+        CommandInterface command = portal.command;
+        ResultInterface result = portal.result;
         if (result == null) {
-            result = prep.executeQuery(0L, false);
+            portal.done = false;
+            result = executeLazyQuery(command);
+            portal.result = result;
         }
         try {
-            // the meta-data is sent in the prior 'Describe'
-            if (maxRows == 0) {
+            if (sendDataRows(result, portal.resultColumnFormat, maxRows)) {
+                sendCommandSuspended();
+                return;
+            }
+            portal.closeResult();
+            portal.done = true;
+            sendCommandComplete(command, 0);
+        } catch (Exception e) {
+            portal.closeResult();
+            throw e;
+        }
+    }
+
+    private ResultInterface executeLazyQuery(CommandInterface command) {
+        boolean lazy = session.isLazyQueryExecution();
+        session.setLazyQueryExecution(true);
+        try {
+            return command.executeQuery(0, false);
+        } finally {
+            session.setLazyQueryExecution(lazy);
+        }
+    }
+
+    /**
+     * Send the next rows of a result.
+     *
+     * @param result the result
+     * @param formatCodes the format codes, or null
+     * @param maxRows the maximum number of rows, or 0 for all rows
+     * @return whether more rows are available
+     */
+    private boolean sendDataRows(ResultInterface result, int[] formatCodes, int maxRows) throws IOException {
+        Session oldSession = session.setThreadLocalSession();
+        try {
+            if (maxRows <= 0) {
                 while (result.next()) {
-                    sendDataRow(result, resultColumnFormat);
+                    sendDataRow(result, formatCodes);
                 }
+                return false;
+            }
+            for (; maxRows > 0 && result.next(); maxRows--) {
+                sendDataRow(result, formatCodes);
+            }
+            return result.hasNext();
+        } finally {
+            session.resetThreadLocalSession(oldSession);
+        }
+    }
+
+    /**
+     * Close a result, and end the statement that created it if the result is
+     * lazy.
+     *
+     * @param command the command
+     * @param result the result
+     */
+    static void closeResult(CommandInterface command, ResultInterface result) {
+        try {
+            if (result.isLazy()) {
+                command.stop(true);
+            }
+        } finally {
+            result.close();
+        }
+    }
+
+    private boolean isInUse(CommandInterface command) {
+        for (Portal p : portals.values()) {
+            if (p.command == command && !p.done) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void closePrepared(Prepared p) {
+        for (Iterator<Portal> it = portals.values().iterator(); it.hasNext();) {
+            Portal portal = it.next();
+            if (portal.prep == p) {
+                portal.close();
+                it.remove();
+            }
+        }
+        p.close();
+    }
+
+    private void executeCopy(PgCopy copy) throws IOException {
+        String oldEncoding = clientEncoding;
+        if (copy.encoding != null) {
+            clientEncoding = copy.encoding;
+        }
+        try {
+            if (copy.from) {
+                copyIn(copy);
             } else {
-                for (; maxRows > 0 && result.next(); maxRows--) {
-                    sendDataRow(result, resultColumnFormat);
+                copyOut(copy);
+            }
+        } finally {
+            clientEncoding = oldEncoding;
+        }
+    }
+
+    /**
+     * Copy the rows the client sends to a table. The rows are inserted with a
+     * multi-row INSERT statement, so that they are added to the table in
+     * batches. All rows are inserted in one transaction.
+     */
+    private void copyIn(PgCopy copy) throws IOException {
+        int columns;
+        int[] pgTypes;
+        boolean binary = copy.format == PgCopy.FORMAT_BINARY;
+        try (CommandInterface select = session.prepareLocal(copy.getSelectSQL())) {
+            ResultInterface meta = select.getMetaData();
+            columns = meta.getVisibleColumnCount();
+            pgTypes = new int[columns];
+            for (int i = 0; i < columns; i++) {
+                pgTypes[i] = PgServer.convertType(meta.getColumnType(i));
+                if (binary) {
+                    checkBinaryCopyType(pgTypes[i], meta.getColumnName(i), true);
+                }
+            }
+        }
+        startMessage('G');
+        write(binary ? 1 : 0);
+        writeShort(columns);
+        for (int i = 0; i < columns; i++) {
+            writeShort(binary ? 1 : 0);
+        }
+        sendMessage();
+        out.flush();
+        Charset encoding = getEncoding();
+        PgCopy.Input input = new PgCopy.Input(dataInRaw, encoding);
+        int batchSize = Constants.INSERT_BATCH_SIZE;
+        Value[] batch = new Value[batchSize * columns];
+        String[] fields = binary ? null : new String[columns];
+        CommandInterface insert = null;
+        int rows = 0;
+        long count = 0;
+        boolean autoCommit = session.getAutoCommit();
+        SessionLocal.Savepoint savepoint = session.setSavepoint();
+        session.setAutoCommit(false);
+        try {
+            if (binary) {
+                dataIn = new DataInputStream(input);
+                readCopyBinaryHeader();
+            }
+            while (true) {
+                int offset = rows * columns;
+                if (binary) {
+                    int n = readShort();
+                    if (n == -1) {
+                        break;
+                    } else if (n != columns) {
+                        throw DbException.get(ErrorCode.COLUMN_COUNT_DOES_NOT_MATCH);
+                    }
+                    for (int i = 0; i < columns; i++) {
+                        int len = readInt();
+                        batch[offset + i] = len == -1 ? ValueNull.INSTANCE : readBinaryValue(pgTypes[i], len);
+                    }
+                } else {
+                    if (!copy.readRow(input, encoding, fields)) {
+                        break;
+                    }
+                    for (int i = 0; i < columns; i++) {
+                        String s = fields[i];
+                        batch[offset + i] = s == null ? ValueNull.INSTANCE
+                                : pgTypes[i] == PgServer.PG_TYPE_BYTEA ? ValueVarbinary.getNoCopy(PgCopy.parseBytea(s))
+                                : ValueVarchar.get(s, session);
+                    }
                 }
-                if (result.hasNext()) {
-                    prepared.result = result;
-                    sendCommandSuspended();
-                    return;
+                if (++rows == batchSize) {
+                    if (insert == null) {
+                        insert = session.prepareLocal(copy.getInsertSQL(columns, batchSize));
+                    }
+                    count += insertRows(insert, batch, rows * columns);
+                    rows = 0;
+                }
+            }
+            input.skipRemaining();
+            if (rows > 0) {
+                try (CommandInterface last = session.prepareLocal(copy.getInsertSQL(columns, rows))) {
+                    count += insertRows(last, batch, rows * columns);
                 }
             }
-            prepared.closeResult();
-            sendCommandComplete(prep, 0);
+            if (autoCommit) {
+                session.commit(false);
+            }
         } catch (Exception e) {
-            prepared.closeResult();
+            if (autoCommit) {
+                session.rollback();
+            } else {
+                session.rollbackTo(savepoint);
+            }
             throw e;
+        } finally {
+            session.setAutoCommit(autoCommit);
+            if (insert != null) {
+                insert.close();
+            }
+        }
+        sendCopyComplete(count);
+    }
+
+    private void readCopyBinaryHeader() throws IOException {
+        byte[] signature = new byte[PgCopy.BINARY_SIGNATURE.length];
+        readFully(signature);
+        if (!Arrays.equals(signature, PgCopy.BINARY_SIGNATURE)) {
+            throw DbException.get(ErrorCode.GENERAL_ERROR_1, "COPY file signature not recognized");
+        }
+        int flags = readInt();
+        if ((flags & 0x1_0000) != 0) {
+            throw DbException.getUnsupportedException("COPY with OIDS");
+        }
+        int extension = readInt();
+        if (extension < 0) {
+            throw DbException.getInvalidValueException("header extension length", extension);
         }
+        dataIn.skipBytes(extension);
+    }
+
+    private static long insertRows(CommandInterface insert, Value[] batch, int length) {
+        ArrayList<? extends ParameterInterface> parameters = insert.getParameters();
+        for (int i = 0; i < length; i++) {
+            parameters.get(i).setValue(batch[i], true);
+        }
+        return insert.executeUpdate(null).getUpdateCount();
+    }
+
+    /**
+     * Copy the rows of a table or query to the client. The query is executed
+     * lazily, so that the rows are sent while they are read.
+     */
+    private void copyOut(PgCopy copy) throws IOException {
+        try (CommandInterface command = session.prepareLocal(copy.getSelectSQL())) {
+            if (!command.isQuery()) {
+                throw DbException.get(ErrorCode.METHOD_ONLY_ALLOWED_FOR_QUERY);
+            }
+            setActiveRequest(command);
+            ResultInterface result = executeLazyQuery(command);
+            Session oldSession = session.setThreadLocalSession();
+            try {
+                int columns = result.getVisibleColumnCount();
+                int[] pgTypes = new int[columns];
+                String[] names = new String[columns];
+                boolean binary = copy.format == PgCopy.FORMAT_BINARY;
+                for (int i = 0; i < columns; i++) {
+                    pgTypes[i] = PgServer.convertType(result.getColumnType(i));
+                    names[i] = result.getColumnName(i);
+                    if (binary) {
+                        checkBinaryCopyType(pgTypes[i], names[i], false);
+                    }
+                }
+                startMessage('H');
+                write(binary ? 1 : 0);
+                writeShort(columns);
+                for (int i = 0; i < columns; i++) {
+                    writeShort(binary ? 1 : 0);
+                }
+                sendMessage();
+                Charset encoding = getEncoding();
+                startMessage('d');
+                if (binary) {
+                    write(PgCopy.BINARY_SIGNATURE);
+                    writeInt(0);
+                    writeInt(0);
+                } else {
+                    copy.writeHeader(dataOut, encoding, names);
+                }
+                if (outBuffer.size() > 0) {
+                    sendMessage();
+                }
+                long count = 0;
+                while (result.next()) {
+                    Value[] row = result.currentRow();
+                    startMessage('d');
+                    if (binary) {
+                        writeShort(columns);
+                        for (int i = 0; i < columns; i++) {
+                            int pgType = pgTypes[i];
+                            writeDataColumn(row[i], pgType, !hasBinaryFormat(pgType));
+                        }
+                    } else {
+                        for (int i = 0; i < columns; i++) {
+                            copy.writeDelimiter(dataOut, i);
+                            Value v = row[i];
+                            if (v == ValueNull.INSTANCE) {
+                                copy.writeNull(dataOut);
+                            } else {
+                                copy.writeField(dataOut, formatText(v, pgTypes[i]), names[i]);
+                            }
+                        }
+                        write('\n');
+                    }
+                    sendMessage();
+                    count++;
+                }
+                if (binary) {
+                    startMessage('d');
+                    writeShort(-1);
+                    sendMessage();
+                }
+                startMessage('c');
+                sendMessage();
+                sendCopyComplete(count);
+            } finally {
+                session.resetThreadLocalSession(oldSession);
+                closeResult(command, result);
+            }
+        } finally {
+            setActiveRequest(null);
+        }
+    }
+
+    private static boolean hasBinaryFormat(int pgType) {
+        switch (pgType) {
+        case PgServer.PG_TYPE_BOOL:
+        case PgServer.PG_TYPE_INT2:
+        case PgServer.PG_TYPE_INT4:
+        case PgServer.PG_TYPE_INT8:
+        case PgServer.PG_TYPE_FLOAT4:
+        case PgServer.PG_TYPE_FLOAT8:
+        case PgServer.PG_TYPE_NUMERIC:
+        case PgServer.PG_TYPE_BYTEA:
+        case PgServer.PG_TYPE_DATE:
+        case PgServer.PG_TYPE_TIME:
+        case PgServer.PG_TYPE_TIMETZ:
+        case PgServer.PG_TYPE_TIMESTAMP:
+        case PgServer.PG_TYPE_TIMESTAMPTZ:
+            return true;
+        default:
+            // the binary format of character strings is the text
+            return false;
+        }
+    }
+
+    /**
+     * Check that values of the specified type can be copied in the binary
+     * format. The binary format of character strings is their text, other
+     * types need a binary encoder or decoder, the text of values isn't valid
+     * in a binary COPY stream.
+     *
+     * @param pgType the PostgreSQL type
+     * @param columnName the column name
+     * @param from whether the values are read from the client
+     */
+    private static void checkBinaryCopyType(int pgType, String columnName, boolean from) {
+        switch (pgType) {
+        case PgServer.PG_TYPE_VARCHAR:
+        case PgServer.PG_TYPE_BPCHAR:
+        case PgServer.PG_TYPE_TEXT:
+            return;
+        case PgServer.PG_TYPE_TIMETZ:
+            if (!from) {
+                return;
+            }
+            break;
+        default:
+            if (hasBinaryFormat(pgType)) {
+                return;
+            }
+        }
+        throw DbException.getUnsupportedException(
+                "binary COPY of column " + columnName + " with type OID " + pgType);
+    }
+
+    private void sendCopyComplete(long count) throws IOException {
+        startMessage('C');
+        writeString("COPY " + count);
+        sendMessage();
     }
 
     private String getSQL(String s) {
@@ -602,72 +1023,9 @@ private void writeDataColumn(Value v, int pgType, boolean text) throws IOExcepti
         }
         if (text) {
             // plain text
-            switch (pgType) {
-            case PgServer.PG_TYPE_BOOL:
-                writeInt(1);
-                dataOut.writeByte(v.getBoolean() ? 't' : 'f');
-                break;
-            case PgServer.PG_TYPE_BYTEA: {
-                byte[] bytes = v.getBytesNoCopy();
-                int length = bytes.length;
-                int cnt = length;
-                for (int i = 0; i < length; i++) {
-                    byte b = bytes[i];
-                    if (b < 32 || b > 126) {
-                        cnt += 3;
-                    } else if (b == 92) {
-                        cnt++;
-                    }
-                }
-                byte[] data = new byte[cnt];
-                for (int i = 0, j = 0; i < length; i++) {
-                    byte b = bytes[i];
-                    if (b < 32 || b > 126) {
-                        data[j++] = '\\';
-                        data[j++] = (byte) (((b >>> 6) & 3) + '0');
-                        data[j++] = (byte) (((b >>> 3) & 7) + '0');
-                        data[j++] = (byte) ((b & 7) + '0');
-                    } else if (b == 92) {
-                        data[j++] = '\\';
-                        data[j++] = '\\';
-                    } else {
-                        data[j++] = b;
-                    }
-                }
-                writeInt(data.length);
-                write(data);
-                break;
-            }
-            case PgServer.PG_TYPE_INT2_ARRAY:
-            case PgServer.PG_TYPE_INT4_ARRAY:
-            case PgServer.PG_TYPE_VARCHAR_ARRAY:
-                ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                baos.write('{');
-                Value[] values = ((ValueArray) v).getList();
-                Charset encoding = getEncoding();
-                for (int i = 0; i < values.length; i++) {
-                    if (i > 0) {
-                        baos.write(',');
-                    }
-                    String s = values[i].getString();
-                    if (SHOULD_QUOTE.matcher(s).matches()) {
-                        List<String> ss = new ArrayList<>();
-                        for (String s0 : s.split("\\\\")) {
-                            ss.add(s0.replace("\"", "\\\""));
-                        }
-                        s = "\"" + String.join("\\\\", ss) + "\"";
-                    }
-                    baos.write(s.getBytes(encoding));
-                }
-                baos.write('}');
-                writeInt(baos.size());
-                write(baos);
-                break;
-            default:
-                byte[] data = v.getString().getBytes(getEncoding());
-                writeInt(data.length);
-                write(data);
-            }
+            byte[] data = formatText(v, pgType);
+            writeInt(data.length);
+            write(data);
         } else {
             // binary
             switch (pgType) {
@@ -741,6 +1099,68 @@ private void writeDataColumn(Value v, int pgType, boolean text) throws IOExcepti
         }
     }
 
+    private byte[] formatText(Value v, int pgType) throws IOException {
+        switch (pgType) {
+        case PgServer.PG_TYPE_BOOL:
+            return new byte[] { (byte) (v.getBoolean() ? 't' : 'f') };
+        case PgServer.PG_TYPE_BYTEA: {
+            byte[] bytes = v.getBytesNoCopy();
+            int length = bytes.length;
+            int cnt = length;
+            for (int i = 0; i < length; i++) {
+                byte b = bytes[i];
+                if (b < 32 || b > 126) {
+                    cnt += 3;
+                } else if (b == 92) {
+                    cnt++;
+                }
+            }
+            byte[] data = new byte[cnt];
+            for (int i = 0, j = 0; i < length; i++) {
+                byte b = bytes[i];
+                if (b < 32 || b > 126) {
+                    data[j++] = '\\';
+                    data[j++] = (byte) (((b >>> 6) & 3) + '0');
+                    data[j++] = (byte) (((b >>> 3) & 7) + '0');
+                    data[j++] = (byte) ((b & 7) + '0');
+                } else if (b == 92) {
+                    data[j++] = '\\';
+                    data[j++] = '\\';
+                } else {
+                    data[j++] = b;
+                }
+            }
+            return data;
+        }
+        case PgServer.PG_TYPE_INT2_ARRAY:
+        case PgServer.PG_TYPE_INT4_ARRAY:
+        case PgServer.PG_TYPE_VARCHAR_ARRAY: {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            baos.write('{');
+            Value[] values = ((ValueArray) v).getList();
+            Charset encoding = getEncoding();
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    baos.write(',');
+                }
+                String s = values[i].getString();
+                if (SHOULD_QUOTE.matcher(s).matches()) {
+                    List<String> ss = new ArrayList<>();
+                    for (String s0 : s.split("\\\\")) {
+                        ss.add(s0.replace("\"", "\\\""));
+                    }
+                    s = "\"" + String.join("\\\\", ss) + "\"";
+                }
+                baos.write(s.getBytes(encoding));
+            }
+            baos.write('}');
+            return baos.toByteArray();
+        }
+        default:
+            return v.getString().getBytes(getEncoding());
+        }
+    }
+
     private static final int[] POWERS10 = {1, 10, 100, 1000, 10000};
     private static final int MAX_GROUP_SCALE = 4;
     private static final int MAX_GROUP_SIZE = POWERS10[4];
@@ -878,47 +1298,73 @@ private void setParameter(ArrayList<? extends ParameterInterface> parameters, in
             }
             value = ValueVarchar.get(str, session);
         } else {
-            // binary
-            switch (pgType) {
-            case PgServer.PG_TYPE_INT2:
-                checkParamLength(2, paramLen);
-                value = ValueSmallint.get(readShort());
-                break;
-            case PgServer.PG_TYPE_INT4:
-                checkParamLength(4, paramLen);
-                value = ValueInteger.get(readInt());
-                break;
-            case PgServer.PG_TYPE_INT8:
-                checkParamLength(8, paramLen);
-                value = ValueBigint.get(dataIn.readLong());
-                break;
-            case PgServer.PG_TYPE_FLOAT4:
-                checkParamLength(4, paramLen);
-                value = ValueReal.get(dataIn.readFloat());
-                break;
-            case PgServer.PG_TYPE_FLOAT8:
-                checkParamLength(8, paramLen);
-                value = ValueDouble.get(dataIn.readDouble());
-                break;
-            case PgServer.PG_TYPE_BYTEA: {
-                byte[] d = Utils.newBytes(paramLen);
-                readFully(d);
-                value = ValueVarbinary.getNoCopy(d);
-                break;
-            }
-            case PgServer.PG_TYPE_NUMERIC:
-                value = readNumericBinary(paramLen);
-                break;
-            default:
-                server.trace("Binary format for type: "+pgType+" is unsupported");
-                byte[] d = Utils.newBytes(paramLen);
-                readFully(d);
-                value = ValueVarchar.get(new String(d, getEncoding()), session);
-            }
+            value = readBinaryValue(pgType, paramLen);
         }
         parameters.get(i).setValue(value, true);
     }
 
+    private Value readBinaryValue(int pgType, int paramLen) throws IOException {
+        switch (pgType) {
+        case PgServer.PG_TYPE_BOOL:
+            checkParamLength(1, paramLen);
+            return ValueBoolean.get(readByte() != 0);
+        case PgServer.PG_TYPE_INT2:
+            checkParamLength(2, paramLen);
+            return ValueSmallint.get(readShort());
+        case PgServer.PG_TYPE_INT4:
+            checkParamLength(4, paramLen);
+            return ValueInteger.get(readInt());
+        case PgServer.PG_TYPE_INT8:
+            checkParamLength(8, paramLen);
+            return ValueBigint.get(dataIn.readLong());
+        case PgServer.PG_TYPE_FLOAT4:
+            checkParamLength(4, paramLen);
+            return ValueReal.get(dataIn.readFloat());
+        case PgServer.PG_TYPE_FLOAT8:
+            checkParamLength(8, paramLen);
+            return ValueDouble.get(dataIn.readDouble());
+        case PgServer.PG_TYPE_BYTEA: {
+            byte[] d = Utils.newBytes(paramLen);
+            readFully(d);
+            return ValueVarbinary.getNoCopy(d);
+        }
+        case PgServer.PG_TYPE_NUMERIC:
+            return readNumericBinary(paramLen);
+        case PgServer.PG_TYPE_DATE:
+            checkParamLength(4, paramLen);
+            return ValueDate.fromDateValue(DateTimeUtils.dateValueFromAbsoluteDay(readInt() + 10_957L));
+        case PgServer.PG_TYPE_TIME:
+            checkParamLength(8, paramLen);
+            return ValueTime.fromNanos(readTimeBinary());
+        case PgServer.PG_TYPE_TIMESTAMP:
+        case PgServer.PG_TYPE_TIMESTAMPTZ: {
+            checkParamLength(8, paramLen);
+            long nanos = readTimeBinary();
+            long days = Math.floorDiv(nanos, DateTimeUtils.NANOS_PER_DAY);
+            long dateValue = DateTimeUtils.dateValueFromAbsoluteDay(days + 10_957L);
+            nanos = Math.floorMod(nanos, DateTimeUtils.NANOS_PER_DAY);
+            return pgType == PgServer.PG_TYPE_TIMESTAMP ? ValueTimestamp.fromDateValueAndNanos(dateValue, nanos)
+                    : ValueTimestampTimeZone.fromDateValueAndNanos(dateValue, nanos, 0);
+        }
+        default: {
+            server.trace("Binary format for type: "+pgType+" is unsupported");
+            byte[] d = Utils.newBytes(paramLen);
+            readFully(d);
+            return ValueVarchar.get(new String(d, getEncoding()), session);
+        }
+        }
+    }
+
+    private long readTimeBinary() throws IOException {
+        long m = dataIn.readLong();
+        if (INTEGER_DATE_TYPES) {
+            // long format
+            return m * 1_000;
+        }
+        // double format
+        return (long) (Double.longBitsToDouble(m) * 1_000_000_000);
+    }
+
     private static void checkParamLength(int expected, int got) {
         if (expected != got) {
             throw DbException.getInvalidValueException("paramLen", got);
@@ -971,6 +1417,7 @@ private void sendErrorOrCancelResponse(Exception e) throws IOException {
     }
 
     private void sendErrorResponse(Exception re) throws IOException {
+        discardUntilSync = extendedQuery;
         SQLException e = DbException.toSQLException(re);
         server.traceError(e);
         startMessage('E');
@@ -987,6 +1434,7 @@ private void sendErrorResponse(Exception re) throws IOException {
     }
 
     private void sendCancelQueryResponse() throws IOException {
+        discardUntilSync = extendedQuery;
         server.trace("CancelSuccessResponse");
         startMessage('E');
         write('S');
@@ -1115,6 +1563,7 @@ private static int getTypeSize(int pgType, int precision) {
     }
 
     private void sendErrorResponse(String message) throws IOException {
+        discardUntilSync = extendedQuery;
         server.trace("Exception: " + message);
         startMessage('E');
         write('S');
@@ -1124,6 +1573,7 @@ private void sendErrorResponse(String message) throws IOException {
         writeString("08P01");
         write('M');
         writeString(message);
+        write(0);
         sendMessage();
     }
 
@@ -1162,6 +1612,9 @@ private void initDb() {
      * Close this connection.
      */
     void close() {
+        for (Portal portal : portals.values()) {
+            portal.close();
+        }
         for (Prepared prep : prepared.values()) {
             prep.close();
         }
@@ -1267,7 +1720,6 @@ private void sendMessage() throws IOException {
         write(messageType);
         writeInt(outBuffer.size() + 4);
         write(outBuffer);
-        dataOut.flush();
     }
 
     private void sendParameterStatus(String param, String value)
@@ -1329,9 +1781,9 @@ static class Prepared {
         CommandInterface prep;
 
         /**
-         * The current result (for suspended portal).
+         * The parameter types sent by the client, or null.
          */
-        ResultInterface result;
+        int[] declaredParamTypes;
 
         /**
          * The list of parameter types (if set).
@@ -1339,27 +1791,23 @@ static class Prepared {
         int[] paramType;
 
         /**
-         * Closes prepared statement and result, if any.
+         * Whether the statement was replaced by a statement with the same
+         * name, while a portal still used it.
+         */
+        boolean replaced;
+
+        /**
+         * Closes prepared statement.
          */
         void close() {
             try {
-                closeResult();
-                prep.close();
+                if (prep != null) {
+                    prep.close();
+                }
             } catch (Exception e) {
                 // Ignore
             }
         }
-
-        /**
-         * Closes the result, if any.
-         */
-        void closeResult() {
-            ResultInterface result = this.result;
-            if (result != null) {
-                this.result = null;
-                result.close();
-            }
-        }
     }
 
     /**
@@ -1381,5 +1829,46 @@ static class Portal {
          * The prepared object.
          */
         Prepared prep;
+
+        /**
+         * The command, usually the command of the prepared object.
+         */
+        CommandInterface command;
+
+        /**
+         * The current result (for suspended portal).
+         */
+        ResultInterface result;
+
+        /**
+         * Whether the portal was run to completion.
+         */
+        boolean done;
+
+        /**
+         * Closes the result, and the command if it is not the command of a
+         * current prepared object.
+         */
+        void close() {
+            try {
+                closeResult();
+                if (command != null && (command != prep.prep || prep.replaced)) {
+                    command.close();
+                }
+            } catch (Exception e) {
+                // Ignore
+            }
+        }
+
+        /**
+         * Closes the result, if any.
+         */
+        void closeResult() {
+            ResultInterface result = this.result;
+            if (result != null) {
+                this.result = null;
+                PgServerThread.closeResult(command, result);
+            }
+        }
     }
 }
@@ -0,0 +1,363 @@
+/*
+ * Copyright 2004-2025 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (https://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.server.web;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.h2.engine.Constants;
+import org.h2.util.NetworkConnectionInfo;
+import org.h2.util.json.JSONArray;
+import org.h2.util.json.JSONBoolean;
+import org.h2.util.json.JSONBytesSource;
+import org.h2.util.json.JSONNull;
+import org.h2.util.json.JSONNumber;
+import org.h2.util.json.JSONObject;
+import org.h2.util.json.JSONString;
+import org.h2.util.json.JSONStringTarget;
+import org.h2.util.json.JSONValue;
+import org.h2.util.json.JSONValueTarget;
+
+/**
+ * A stateless query request of the web server. The request body is a JSON
+ * object with the database URL, the user name, the password, the SQL statement
+ * and the parameters. Each request uses its own database connection, the
+ * result is streamed lazily as JSON Lines: the column list first, then one
+ * array per row, and finally the number of rows. Parameters that are JSON
+ * objects or arrays are passed as JSON text, to be used as
+ * {@code ? FORMAT JSON}; values of JSON columns are embedded as they are.
+ * <p>
+ * Example request:
+ * <pre>
+ * {"url":"jdbc:h2:~/test","user":"sa","password":"",
+ * "sql":"SELECT * FROM TEST WHERE ID &gt; ?","params":[10],"maxRows":100}
+ * </pre>
+ * Example response:
+ * <pre>
+ * {"columns":[{"name":"ID","type":"INTEGER"},{"name":"NAME","type":"CHARACTER VARYING"}]}
+ * [11,"Hello"]
+ * [12,null]
+ * {"rows":2}
+ * </pre>
+ */
+class WebQuery {
+
+    /**
+     * The MIME type of the response.
+     */
+    static final String MIME_TYPE = "application/x-ndjson";
+
+    private static final int CHUNK_SIZE = 8 * 1024;
+
+    private static final byte[] RN = { '\r', '\n' };
+
+    private final WebServer server;
+
+    private final OutputStream output;
+
+    private final ByteArrayOutputStream chunk = new ByteArrayOutputStream(CHUNK_SIZE + 512);
+
+    private boolean headerSent;
+
+    WebQuery(WebServer server, OutputStream output) {
+        this.server = server;
+        this.output = output;
+    }
+
+    /**
+     * Execute the request and write the response.
+     *
+     * @param body the request body
+     * @param networkConnectionInfo the network connection information
+     * @throws IOException on failure
+     */
+    void process(byte[] body, NetworkConnectionInfo networkConnectionInfo) throws IOException {
+        String url, user, password, sql;
+        Object[] params;
+        int maxRows = server.getQueryMaxRows();
+        try {
+            JSONValue v = JSONBytesSource.parse(body, new JSONValueTarget());
+            if (!(v instanceof JSONObject)) {
+                throw new IllegalArgumentException("JSON object expected");
+            }
+            JSONObject request = (JSONObject) v;
+            url = getString(request, "url", null);
+            user = getString(request, "user", "");
+            password = getString(request, "password", "");
+            sql = getString(request, "sql", null);
+            if (!url.startsWith(Constants.START_URL)) {
+                throw new IllegalArgumentException("url: " + url);
+            }
+            params = getParameters(request.getFirst("params"));
+            v = request.getFirst("maxRows");
+            if (v != null) {
+                if (!(v instanceof JSONNumber)) {
+                    throw new IllegalArgumentException("maxRows");
+                }
+                int rows = ((JSONNumber) v).getBigDecimal().intValueExact();
+                if (rows < 0) {
+                    throw new IllegalArgumentException("maxRows: " + rows);
+                }
+                maxRows = Math.min(maxRows, rows);
+            }
+        } catch (RuntimeException e) {
+            writeError("400 Bad Request", null, e.getMessage());
+            return;
+        }
+        try (Connection conn = server.getConnection("", url, user, password, null, networkConnectionInfo)) {
+            try (Statement stat = conn.createStatement()) {
+                stat.execute("SET LAZY_QUERY_EXECUTION TRUE");
+            }
+            try (PreparedStatement prep = conn.prepareStatement(sql)) {
+                for (int i = 0; i < params.length; i++) {
+                    prep.setObject(i + 1, params[i]);
+                }
+                if (maxRows < Integer.MAX_VALUE) {
+                    // one more row to detect whether the result is truncated
+                    prep.setMaxRows(maxRows + 1);
+                }
+                if (prep.execute()) {
+                    try (ResultSet rs = prep.getResultSet()) {
+                        writeResult(rs, maxRows);
+                    }
+                } else {
+                    JSONStringTarget target = new JSONStringTarget();
+                    target.startObject();
+                    target.member("updateCount");
+                    target.valueNumber(BigDecimal.valueOf(prep.getLargeUpdateCount()));
+                    target.endObject();
+                    writeHeader();
+                    writeLine(target.getResult());
+                    writeEnd();
+                }
+            }
+        } catch (SQLException e) {
+            if (headerSent) {
+                // the response is complete, closing the connection failed
+                server.traceError(e);
+            } else {
+                writeError("400 Bad Request", e, e.getMessage());
+            }
+        }
+    }
+
+    private void writeResult(ResultSet rs, int maxRows) throws IOException, SQLException {
+        ResultSetMetaData meta = rs.getMetaData();
+        int columnCount = meta.getColumnCount();
+        boolean[] json = new boolean[columnCount + 1];
+        JSONStringTarget target = new JSONStringTarget();
+        target.startObject();
+        target.member("columns");
+        target.startArray();
+        for (int i = 1; i <= columnCount; i++) {
+            target.startObject();
+            target.member("name");
+            target.valueString(meta.getColumnLabel(i));
+            target.member("type");
+            String typeName = meta.getColumnTypeName(i);
+            target.valueString(typeName);
+            target.endObject();
+            json[i] = "JSON".equals(typeName);
+        }
+        target.endArray();
+        target.endObject();
+        writeHeader();
+        writeLine(target.getResult());
+        int rows = 0;
+        boolean truncated = false;
+        try {
+            while (rs.next()) {
+                if (rows == maxRows) {
+                    truncated = true;
+                    break;
+                }
+                target = new JSONStringTarget();
+                target.startArray();
+                for (int i = 1; i <= columnCount; i++) {
+                    writeValue(target, rs, i, json[i]);
+                }
+                target.endArray();
+                writeLine(target.getResult());
+                rows++;
+            }
+        } catch (SQLException e) {
+            // the headers are already sent
+            writeLine(getError(e, e.getMessage()));
+            writeEnd();
+            return;
+        }
+        target = new JSONStringTarget();
+        target.startObject();
+        target.member("rows");
+        target.valueNumber(BigDecimal.valueOf(rows));
+        if (truncated) {
+            target.member("truncated");
+            target.valueTrue();
+        }
+        target.endObject();
+        writeLine(target.getResult());
+        writeEnd();
+    }
+
+    private static void writeValue(JSONStringTarget target, ResultSet rs, int columnIndex, boolean json)
+            throws SQLException {
+        Object o = rs.getObject(columnIndex);
+        if (o == null) {
+            target.valueNull();
+        } else if (json) {
+            JSONBytesSource.parse((byte[]) o, new JSONValueTarget()).addTo(target);
+        } else if (o instanceof Boolean) {
+            if ((Boolean) o) {
+                target.valueTrue();
+            } else {
+                target.valueFalse();
+            }
+        } else if (o instanceof Integer || o instanceof Long || o instanceof Short || o instanceof Byte) {
+            target.valueNumber(BigDecimal.valueOf(((Number) o).longValue()));
+        } else if (o instanceof BigDecimal) {
+            target.valueNumber((BigDecimal) o);
+        } else if (o instanceof BigInteger) {
+            target.valueNumber(new BigDecimal((BigInteger) o));
+        } else if (o instanceof Double || o instanceof Float) {
+            double d = ((Number) o).doubleValue();
+            if (Double.isFinite(d)) {
+                target.valueNumber(new BigDecimal(o.toString()));
+            } else {
+                target.valueString(o.toString());
+            }
+        } else {
+            target.valueString(rs.getString(columnIndex));
+        }
+    }
+
+    private static String getString(JSONObject request, String name, String defaultValue) {
+        JSONValue v = request.getFirst(name);
+        if (v == null && defaultValue != null) {
+            return defaultValue;
+        }
+        if (!(v instanceof JSONString)) {
+            throw new IllegalArgumentException(name);
+        }
+        return ((JSONString) v).getString();
+    }
+
+    private static Object[] getParameters(JSONValue v) {
+        if (v == null) {
+            return new Object[0];
+        }
+        if (!(v instanceof JSONArray)) {
+            throw new IllegalArgumentException("params");
+        }
+        JSONValue[] array = ((JSONArray) v).getArray();
+        int length = array.length;
+        Object[] params = new Object[length];
+        for (int i = 0; i < length; i++) {
+            JSONValue p = array[i];
+            Object o;
+            if (p instanceof JSONNull) {
+                o = null;
+            } else if (p instanceof JSONBoolean) {
+                o = ((JSONBoolean) p).getBoolean();
+            } else if (p instanceof JSONNumber) {
+                o = ((JSONNumber) p).getBigDecimal();
+            } else if (p instanceof JSONString) {
+                o = ((JSONString) p).getString();
+            } else {
+                // objects and arrays are passed as JSON text
+                o = p.toString();
+            }
+            params[i] = o;
+        }
+        return params;
+    }
+
+    private void writeError(String status, SQLException e, String message) throws IOException {
+        byte[] bytes = (getError(e, message) + '\n').getBytes(StandardCharsets.UTF_8);
+        String header = "HTTP/1.1 " + status + "\r\n" +
+                "Content-Type: " + MIME_TYPE + "\r\n" +
+                "Cache-Control: no-cache\r\n" +
+                "Content-Length: " + bytes.length + "\r\n\r\n";
+        server.trace(header);
+        output.write(header.getBytes(StandardCharsets.ISO_8859_1));
+        output.write(bytes);
+        output.flush();
+    }
+
+    private static String getError(SQLException e, String message) {
+        JSONStringTarget target = new JSONStringTarget();
+        target.startObject();
+        target.member("error");
+        target.startObject();
+        if (e != null) {
+            target.member("code");
+            target.valueNumber(BigDecimal.valueOf(e.getErrorCode()));
+            target.member("state");
+            if (e.getSQLState() != null) {
+                target.valueString(e.getSQLState());
+            } else {
+                target.valueNull();
+            }
+        }
+        target.member("message");
+        if (message != null) {
+            target.valueString(message);
+        } else {
+            target.valueNull();
+        }
+        target.endObject();
+        target.endObject();
+        return target.getResult();
+    }
+
+    private void writeHeader() throws IOException {
+        String header = "HTTP/1.1 200 OK\r\n" +
+                "Content-Type: " + MIME_TYPE + "\r\n" +
+                "Cache-Control: no-cache\r\n" +
+                "Transfer-Encoding: chunked\r\n\r\n";
+        server.trace(header);
+        output.write(header.getBytes(StandardCharsets.ISO_8859_1));
+        headerSent = true;
+    }
+
+    private void writeLine(String line) throws IOException {
+        chunk.write(line.getBytes(StandardCharsets.UTF_8));
+        chunk.write('\n');
+        if (chunk.size() >= CHUNK_SIZE) {
+            writeChunk();
+            output.flush();
+        }
+    }
+
+    private void writeChunk() throws IOException {
+        int size = chunk.size();
+        if (size > 0) {
+            output.write(Integer.toHexString(size).getBytes(StandardCharsets.ISO_8859_1));
+            output.write(RN);
+            chunk.writeTo(output);
+            output.write(RN);
+            chunk.reset();
+        }
+    }
+
+    private void writeEnd() throws IOException {
+        writeChunk();
+        output.write('0');
+        output.write(RN);
+        output.write(RN);
+        output.flush();
+    }
+
+}
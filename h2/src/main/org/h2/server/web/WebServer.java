@@ -178,6 +178,7 @@ public class WebServer implements Service {
     private Thread listenerThread;
     private boolean ifExists = true;
     boolean virtualThreads;
+    private int queryMaxRows;
     private String key;
     private boolean allowSecureCreation;
     private boolean trace;
@@ -339,6 +340,8 @@ public void init(String... args) {
                 isDaemon = true;
             } else if (Tool.isOption(a,  "-webVirtualThreads")) {
                 virtualThreads = Utils.parseBoolean(args[++i], virtualThreads, true);
+            } else if (Tool.isOption(a, "-webQueryMaxRows")) {
+                queryMaxRows = Integer.decode(args[++i]);
             } else if (Tool.isOption(a, "-baseDir")) {
                 String baseDir = args[++i];
                 SysProperties.setBaseDir(baseDir);
@@ -587,6 +590,15 @@ void setPort(int port) {
         this.port = port;
     }
 
+    /**
+     * Get the maximum number of rows returned by a query request.
+     *
+     * @return the maximum number of rows, or 0 if query requests are disabled
+     */
+    int getQueryMaxRows() {
+        return queryMaxRows;
+    }
+
     boolean getSSL() {
         return ssl;
     }
@@ -44,6 +44,9 @@ class WebThread extends WebApp implements Runnable {
     private String host;
     private int dataLength;
     private String ifModifiedSince;
+    private boolean connectionClose;
+    private String contentType;
+    private String origin;
 
     WebThread(Socket socket, WebServer server) {
         super(server);
@@ -138,6 +141,9 @@ private boolean process() throws IOException {
         }
         file = file.substring(1);
         trace(head + ": " + file);
+        if (!get && file.equals("query") && server.getQueryMaxRows() > 0) {
+            return processQuery();
+        }
         file = getAllowedFile(file);
         int paramIndex = file.indexOf('?');
         session = null;
@@ -151,12 +157,7 @@ private boolean process() throws IOException {
             session = server.getSession(sessionId);
         }
         parseBodyAttributes();
-        file = processRequest(file,
-                new NetworkConnectionInfo(
-                        NetUtils.ipToShortForm(new StringBuilder(server.getSSL() ? "https://" : "http://"),
-                                socket.getLocalAddress().getAddress(), true) //
-                                .append(':').append(socket.getLocalPort()).toString(), //
-                        socket.getInetAddress().getAddress(), socket.getPort(), null));
+        file = processRequest(file, getNetworkConnectionInfo());
         if (file.length() == 0) {
             // asynchronous request
             return true;
@@ -225,6 +226,41 @@ private boolean process() throws IOException {
         return keepAlive;
     }
 
+    /**
+     * Process a stateless query request. Unlike the pages of the H2 Console,
+     * query requests keep the connection alive unless the client closes it.
+     * Query requests need no session, so requests from web pages of other
+     * origins are rejected: browsers can send them only with an
+     * {@code Origin} header, or with a content type other than JSON.
+     *
+     * @return whether the connection should be kept alive
+     */
+    private boolean processQuery() throws IOException {
+        if (!allow() || origin != null && !origin.equalsIgnoreCase((server.getSSL() ? "https://" : "http://") + host)) {
+            writeSimple("HTTP/1.1 403 Forbidden", "Forbidden");
+            return false;
+        }
+        if (contentType == null || !StringUtils.toLowerEnglish(contentType).matches("application/json\\s*(;.*)?")) {
+            writeSimple("HTTP/1.1 415 Unsupported Media Type", "Content-Type: application/json expected");
+            return false;
+        }
+        if (dataLength <= 0) {
+            writeSimple("HTTP/1.1 411 Length Required", "Length required");
+            return false;
+        }
+        byte[] bytes = readBody();
+        new WebQuery(server, output).process(bytes, getNetworkConnectionInfo());
+        return !connectionClose;
+    }
+
+    private NetworkConnectionInfo getNetworkConnectionInfo() {
+        return new NetworkConnectionInfo(
+                NetUtils.ipToShortForm(new StringBuilder(server.getSSL() ? "https://" : "http://"),
+                        socket.getLocalAddress().getAddress(), true) //
+                        .append(':').append(socket.getLocalPort()).toString(), //
+                socket.getInetAddress().getAddress(), socket.getPort(), null);
+    }
+
     private void writeSimple(String status, String text) throws IOException {
         writeSimple(status, text != null ? text.getBytes(StandardCharsets.UTF_8) : null);
     }
@@ -297,15 +333,23 @@ private String readHeaderLine() throws IOException {
 
     private void parseBodyAttributes() throws IOException {
         if (dataLength > 0) {
-            byte[] bytes = Utils.newBytes(dataLength);
-            for (int pos = 0; pos < dataLength;) {
-                pos += input.read(bytes, pos, dataLength - pos);
-            }
-            String s = new String(bytes, StandardCharsets.UTF_8);
+            String s = new String(readBody(), StandardCharsets.UTF_8);
             parseAttributes(s);
         }
     }
 
+    private byte[] readBody() throws IOException {
+        byte[] bytes = Utils.newBytes(dataLength);
+        for (int pos = 0; pos < dataLength;) {
+            int l = input.read(bytes, pos, dataLength - pos);
+            if (l < 0) {
+                throw new IOException("Unexpected EOF");
+            }
+            pos += l;
+        }
+        return bytes;
+    }
+
     private void parseAttributes(String s) {
         trace("data=" + s);
         while (s != null) {
@@ -336,6 +380,9 @@ private boolean parseHeader() throws IOException {
         int len = 0;
         host = null;
         ifModifiedSince = null;
+        connectionClose = false;
+        contentType = null;
+        origin = null;
         boolean multipart = false;
         for (String line; (line = readHeaderLine()) != null;) {
             trace(" " + line);
@@ -348,12 +395,17 @@ private boolean parseHeader() throws IOException {
                 String conn = getHeaderLineValue(line);
                 if ("keep-alive".equals(conn)) {
                     keepAlive = true;
+                } else if ("close".equalsIgnoreCase(conn)) {
+                    connectionClose = true;
                 }
             } else if (lower.startsWith("content-type")) {
                 String type = getHeaderLineValue(line);
+                contentType = type;
                 if (type.startsWith("multipart/form-data")) {
                     multipart = true;
                 }
+            } else if (lower.startsWith("origin")) {
+                origin = getHeaderLineValue(line);
             } else if (lower.startsWith("content-length")) {
                 len = Integer.parseInt(getHeaderLineValue(line));
                 trace("len=" + len);
@@ -90,7 +90,7 @@ public static ArrayList<String> getDatabaseFiles(String dir, String db,
         for (FilePath path : FilePath.get(dir).newDirectoryStream()) {
             boolean ok = false;
             String f = path.toString();
-            if (f.endsWith(Constants.SUFFIX_MV_FILE)) {
+            if (f.endsWith(Constants.SUFFIX_MV_FILE) || f.endsWith(Constants.SUFFIX_REDO_FILE)) {
                 ok = true;
             } else if (all) {
                 if (f.endsWith(Constants.SUFFIX_LOCK_FILE)) {
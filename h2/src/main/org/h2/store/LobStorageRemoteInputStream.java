@@ -7,6 +7,8 @@
 
 import java.io.IOException;
 import java.io.InputStream;
+
+import org.h2.engine.Constants;
 import org.h2.engine.SessionRemote;
 import org.h2.message.DbException;
 import org.h2.mvstore.DataUtils;
@@ -14,9 +16,15 @@
 /**
  * An input stream used by the client side of a tcp connection to fetch LOB data
  * on demand from the server.
+ * <p>
+ * The data is read ahead in blocks. The size of the block is doubled after
+ * each request, up to {@link Constants#LOB_READ_MAX_LENGTH}, so that small
+ * LOBs need little memory, and large LOBs need few round trips.
  */
 public class LobStorageRemoteInputStream extends InputStream {
 
+    private static final int MIN_BLOCK_SIZE = 2 * Constants.IO_BUFFER_SIZE;
+
     private final SessionRemote sessionRemote;
 
     /**
@@ -27,21 +35,42 @@ public class LobStorageRemoteInputStream extends InputStream {
     private final byte[] hmac;
 
     /**
-     * The position.
+     * The length of the data in bytes, or -1 if unknown.
+     */
+    private final long length;
+
+    /**
+     * The position of the next byte to fetch from the server.
      */
     private long pos;
 
-    public LobStorageRemoteInputStream(SessionRemote handler, long lobId, byte[] hmac) {
+    private byte[] buffer;
+
+    private int bufferPos, bufferLimit;
+
+    private int blockSize = MIN_BLOCK_SIZE;
+
+    /**
+     * Create a new stream.
+     *
+     * @param handler the session
+     * @param lobId the lob id
+     * @param hmac the message authentication code of the lob id
+     * @param length the length of the data in bytes, or -1 if unknown
+     */
+    public LobStorageRemoteInputStream(SessionRemote handler, long lobId, byte[] hmac, long length) {
         this.sessionRemote = handler;
         this.lobId = lobId;
         this.hmac = hmac;
+        this.length = length;
     }
 
     @Override
     public int read() throws IOException {
-        byte[] buff = new byte[1];
-        int len = read(buff, 0, 1);
-        return len < 0 ? len : (buff[0] & 255);
+        if (bufferPos >= bufferLimit && !fillBuffer()) {
+            return -1;
+        }
+        return buffer[bufferPos++] & 255;
     }
 
     @Override
@@ -55,16 +84,75 @@ public int read(byte[] buff, int off, int length) throws IOException {
         if (length == 0) {
             return 0;
         }
+        if (bufferPos >= bufferLimit) {
+            if (length >= blockSize) {
+                // large reads don't need to be buffered
+                length = readLob(buff, off, length);
+                if (length <= 0) {
+                    return -1;
+                }
+                blockSize = Math.min(blockSize * 2, Constants.LOB_READ_MAX_LENGTH);
+                return length;
+            }
+            if (!fillBuffer()) {
+                return -1;
+            }
+        }
+        length = Math.min(length, bufferLimit - bufferPos);
+        System.arraycopy(buffer, bufferPos, buff, off, length);
+        bufferPos += length;
+        return length;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        if (n <= 0) {
+            return 0;
+        }
+        int buffered = bufferLimit - bufferPos;
+        if (n <= buffered) {
+            bufferPos += (int) n;
+            return n;
+        }
+        if (length < 0) {
+            return super.skip(n);
+        }
+        // the server opens the LOB at the new position
+        long skip = buffered + Math.max(0L, Math.min(n - buffered, length - pos));
+        pos += skip - buffered;
+        bufferPos = bufferLimit = 0;
+        return skip;
+    }
+
+    @Override
+    public int available() {
+        return bufferLimit - bufferPos;
+    }
+
+    private boolean fillBuffer() throws IOException {
+        int size = blockSize;
+        if (length >= 0) {
+            size = (int) Math.max(1L, Math.min(size, length - pos));
+        }
+        if (buffer == null || buffer.length < size) {
+            buffer = new byte[size];
+        }
+        bufferPos = 0;
+        bufferLimit = Math.max(0, readLob(buffer, 0, size));
+        blockSize = Math.min(blockSize * 2, Constants.LOB_READ_MAX_LENGTH);
+        return bufferLimit > 0;
+    }
+
+    private int readLob(byte[] buff, int off, int len) throws IOException {
         try {
-            length = sessionRemote.readLob(lobId, hmac, pos, buff, off, length);
+            len = sessionRemote.readLob(lobId, hmac, pos, buff, off, len);
         } catch (DbException e) {
             throw DataUtils.convertToIOException(e);
         }
-        if (length == 0) {
-            return -1;
+        if (len > 0) {
+            pos += len;
         }
-        pos += length;
-        return length;
+        return len;
     }
 
 }
@@ -24,6 +24,7 @@
 import org.h2.engine.DbObject;
 import org.h2.engine.Right;
 import org.h2.engine.SessionLocal;
+import org.h2.expression.Expression;
 import org.h2.expression.ExpressionVisitor;
 import org.h2.index.Index;
 import org.h2.index.IndexType;
@@ -231,6 +232,46 @@ public Row lockRow(SessionLocal session, Row row, int timeoutMillis) {
      */
     public abstract void addRow(SessionLocal session, Row row);
 
+    /**
+     * Add rows to the table and all indexes. If a row can't be added, none of
+     * the rows are added.
+     *
+     * @param session the session
+     * @param rows the rows
+     * @throws DbException if a constraint was violated
+     */
+    public void addRows(SessionLocal session, List<Row> rows) {
+        for (Row row : rows) {
+            addRow(session, row);
+        }
+    }
+
+    /**
+     * Start a direct-path load of rows into this empty table. Until
+     * {@link #endDirectLoad(SessionLocal)} is called, rows added with
+     * {@link #addRows(SessionLocal, List)} may be written as committed data
+     * bypassing the transaction, so they can't be rolled back and the caller
+     * must drop the table if the load fails. The table must be locked
+     * exclusively by the session.
+     *
+     * @param session the session
+     * @return whether direct-path load is used; if not, rows are added as
+     *         usual
+     */
+    public boolean startDirectLoad(SessionLocal session) {
+        return false;
+    }
+
+    /**
+     * Finish the direct-path load and fill the remaining indexes.
+     *
+     * @param session the session
+     * @throws DbException if a constraint was violated
+     */
+    public void endDirectLoad(SessionLocal session) {
+        // nothing to do
+    }
+
     /**
      * Update a row to the table and all indexes.
      *
@@ -594,7 +635,7 @@ public void removeChildrenAndResources(SessionLocal session) {
                 database.removeDatabaseObject(session, right);
             }
         }
-        database.removeMeta(session, getId());
+        database.removeMeta(session, this);
         // must delete sequences later (in case there is a power failure
         // before removing the table object)
         while (sequences != null && !sequences.isEmpty()) {
@@ -631,7 +672,14 @@ public void dropMultipleColumnsConstraintsAndIndexes(SessionLocal session, Array
         HashSet<Index> indexesToDrop = new HashSet<>();
         for (Index index : getIndexes()) {
             if (index.getCreateSQL() != null) {
-                Boolean partiallyCovered = isPartiallyCovered(columnSetToDrop, Arrays.asList(index.getColumns()));
+                Collection<Column> columns = Arrays.asList(index.getColumns());
+                Expression condition = index.getIndexType().getCondition();
+                if (condition != null) {
+                    HashSet<Column> set = new HashSet<>(columns);
+                    condition.isEverything(ExpressionVisitor.getColumnsVisitor(set, this));
+                    columns = set;
+                }
+                Boolean partiallyCovered = isPartiallyCovered(columnSetToDrop, columns);
                 if (partiallyCovered == null) { // fully covered
                     indexesToDrop.add(index);
                 } else if (partiallyCovered) {
@@ -1175,6 +1223,30 @@ public boolean hasSelectTrigger() {
         return false;
     }
 
+    /**
+     * Check whether inserted rows may be added in batches with
+     * {@link #addRows(SessionLocal, List)}. In this case the fire before row
+     * method is called for all rows of a batch before the batch is added, and
+     * the fire after row method after that. This is not allowed if there are
+     * row based triggers or referential constraints that refer to this table
+     * itself.
+     *
+     * @return whether rows may be added in batches
+     */
+    public boolean isBatchInsertAllowed() {
+        if (triggers != null && !triggers.isEmpty()) {
+            return false;
+        }
+        if (constraints != null) {
+            for (Constraint constraint : constraints) {
+                if (!constraint.isBefore() && constraint.getTable() == this && constraint.getRefTable() == this) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
     /**
      * Check if row based triggers or constraints are defined.
      * In this case the fire after and before row methods need to be called.
@@ -1300,6 +1372,10 @@ public Index getIndexForColumn(Column column,
             if (needFindNext && !index.canFindNext()) {
                 continue;
             }
+            if (index.getIndexType().getCondition() != null) {
+                // partial indexes don't contain all rows
+                continue;
+            }
             // choose the minimal covering index with the needed first
             // column to work consistently with execution plan from
             // Optimizer
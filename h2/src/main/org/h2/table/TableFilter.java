@@ -369,6 +369,11 @@ public void prepare() {
                             // The first column of the index always matches.
                             continue;
                         }
+                        if (columnIndex < 0 && (condition.isStart() || condition.isEnd())
+                                && index.canSkipRows(col)) {
+                            // The index can't search by this column, but it can skip rows.
+                            continue;
+                        }
                         if (columnIndex < 0 || condition.getCompareType() == Comparison.IN_LIST ) {
                             // The index does not contain the column, or this is an IN() condition which can be used
                             // only if the first index column is the searched one.
@@ -598,6 +603,15 @@ public void addIndexCondition(IndexCondition condition) {
         indexConditions.add(condition);
     }
 
+    /**
+     * Get the index conditions.
+     *
+     * @return the index conditions, the returned list must not be modified
+     */
+    public ArrayList<IndexCondition> getIndexConditions() {
+        return indexConditions;
+    }
+
     /**
      * Add a filter condition.
      *
@@ -246,7 +246,7 @@ private static Compressor getCompressor(String algorithm) {
      * @param algorithm to translate into index
      * @return index of the specified algorithm
      */
-    private static int getCompressAlgorithm(String algorithm) {
+    public static int getCompressAlgorithm(String algorithm) {
         algorithm = StringUtils.toUpperEnglish(algorithm);
         if ("NO".equals(algorithm)) {
             return Compressor.NO;
@@ -261,7 +261,12 @@ private static int getCompressAlgorithm(String algorithm) {
         }
     }
 
-    private static Compressor getCompressor(int algorithm) {
+    /**
+     * INTERNAL
+     * @param algorithm the algorithm index
+     * @return a new compressor for the specified algorithm
+     */
+    public static Compressor getCompressor(int algorithm) {
         switch (algorithm) {
         case Compressor.NO:
             return new CompressNo();
@@ -119,6 +119,8 @@ public void runTool(String... args) throws SQLException {
                     // no parameters
                 } else if ("-webVirtualThreads".equals(arg)) {
                     i++;
+                } else if ("-webQueryMaxRows".equals(arg)) {
+                    i++;
                 } else if ("-webSSL".equals(arg)) {
                     // no parameters
                 } else if ("-webPort".equals(arg)) {
@@ -144,6 +146,10 @@ public void runTool(String... args) throws SQLException {
                     // no parameters
                 } else if ("-tcpVirtualThreads".equals(arg)) {
                     i++;
+                } else if ("-tcpSelectors".equals(arg)) {
+                    i++;
+                } else if ("-tcpWorkers".equals(arg)) {
+                    i++;
                 } else if ("-tcpSSL".equals(arg)) {
                     // no parameters
                 } else if ("-tcpPort".equals(arg)) {
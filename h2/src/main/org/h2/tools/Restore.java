@@ -9,11 +9,17 @@
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 import org.h2.engine.Constants;
 import org.h2.message.DbException;
+import org.h2.mvstore.BackupManifest;
 import org.h2.store.fs.FileUtils;
 import org.h2.util.IOUtils;
 import org.h2.util.Tool;
@@ -35,6 +41,9 @@ public class Restore extends Tool {
      * <td>The target directory (default: .)</td></tr>
      * <tr><td>[-db &lt;database&gt;]</td>
      * <td>The target database name (as stored if not set)</td></tr>
+     * <tr><td>[-incremental &lt;filename&gt;]</td>
+     * <td>An incremental backup to apply (may be used multiple times,
+     * in the order the backups were created)</td></tr>
      * <tr><td>[-quiet]</td>
      * <td>Do not print progress information</td></tr>
      * </table>
@@ -51,6 +60,7 @@ public void runTool(String... args) throws SQLException {
         String zipFileName = "backup.zip";
         String dir = ".";
         String db = null;
+        ArrayList<String> incremental = new ArrayList<>();
         for (int i = 0; args != null && i < args.length; i++) {
             String arg = args[i];
             if (arg.equals("-dir")) {
@@ -59,6 +69,8 @@ public void runTool(String... args) throws SQLException {
                 zipFileName = args[++i];
             } else if (arg.equals("-db")) {
                 db = args[++i];
+            } else if (arg.equals("-incremental")) {
+                incremental.add(args[++i]);
             } else if (arg.equals("-quiet")) {
                 // ignore
             } else if (arg.equals("-help") || arg.equals("-?")) {
@@ -68,7 +80,7 @@ public void runTool(String... args) throws SQLException {
                 showUsageAndThrowUnsupportedOption(arg);
             }
         }
-        execute(zipFileName, dir, db);
+        execute(zipFileName, dir, db, incremental);
     }
 
     private static String getOriginalDbName(String fileName, String db)
@@ -163,8 +175,13 @@ public static void execute(String zipFileName, String directory, String db) {
                     if (fileName.startsWith(File.separator)) {
                         fileName = fileName.substring(1);
                     }
+                    if (fileName.endsWith(BackupManifest.HEADER_SUFFIX)) {
+                        throw new IOException(zipFileName + " is an incremental backup");
+                    }
                     boolean copy = false;
-                    if (db == null) {
+                    if (fileName.endsWith(BackupManifest.SUFFIX)) {
+                        // only needed for incremental backups
+                    } else if (db == null) {
                         copy = true;
                     } else if (fileName.startsWith(originalDbName + ".")) {
                         fileName = db + fileName.substring(originalDbLen);
@@ -191,4 +208,114 @@ public static void execute(String zipFileName, String directory, String db) {
         }
     }
 
+    /**
+     * Restores database files from a full backup and a chain of incremental
+     * backups.
+     *
+     * @param zipFileName the name of the full backup file
+     * @param directory the directory name
+     * @param db the database name (null for all databases)
+     * @param incrementalFileNames the names of the incremental backup files,
+     *            in the order they were created
+     * @throws DbException if there is an IOException, or if the incremental
+     *             backups are not based on each other
+     */
+    public static void execute(String zipFileName, String directory, String db,
+            List<String> incrementalFileNames) {
+        execute(zipFileName, directory, db);
+        if (incrementalFileNames.isEmpty()) {
+            return;
+        }
+        String fileName = zipFileName;
+        try {
+            String originalDbName = db == null ? null : getOriginalDbName(zipFileName, db);
+            HashMap<String, BackupManifest> manifests = readManifests(zipFileName, originalDbName, db);
+            for (String incremental : incrementalFileNames) {
+                fileName = incremental;
+                if (!FileUtils.exists(incremental)) {
+                    throw new IOException("File not found: " + incremental);
+                }
+                HashMap<String, BackupManifest> next = readManifests(incremental, originalDbName, db);
+                for (Map.Entry<String, BackupManifest> e : next.entrySet()) {
+                    BackupManifest previous = manifests.get(e.getKey());
+                    if (previous == null || e.getValue().getPreviousVersion() != previous.getVersion()) {
+                        throw new IOException(incremental + " is not based on the previous backup");
+                    }
+                }
+                applyIncremental(incremental, directory, originalDbName, db, next);
+                manifests.putAll(next);
+            }
+        } catch (IOException e) {
+            throw DbException.convertIOException(e, fileName);
+        }
+    }
+
+    private static HashMap<String, BackupManifest> readManifests(String zipFileName, String originalDbName,
+            String db) throws IOException {
+        HashMap<String, BackupManifest> manifests = new HashMap<>();
+        try (ZipInputStream zipIn = new ZipInputStream(FileUtils.newInputStream(zipFileName))) {
+            for (ZipEntry entry; (entry = zipIn.getNextEntry()) != null;) {
+                String name = getTargetFileName(entry.getName(), originalDbName, db);
+                if (name != null && name.endsWith(BackupManifest.SUFFIX)) {
+                    manifests.put(name.substring(0, name.length() - BackupManifest.SUFFIX.length()),
+                            BackupManifest.read(zipIn));
+                }
+            }
+        }
+        return manifests;
+    }
+
+    private static void applyIncremental(String zipFileName, String directory, String originalDbName, String db,
+            HashMap<String, BackupManifest> manifests) throws IOException {
+        HashMap<String, FileChannel> files = new HashMap<>();
+        try (ZipInputStream zipIn = new ZipInputStream(FileUtils.newInputStream(zipFileName))) {
+            for (ZipEntry entry; (entry = zipIn.getNextEntry()) != null;) {
+                String name = getTargetFileName(entry.getName(), originalDbName, db);
+                if (name == null) {
+                    continue;
+                }
+                int idx = name.lastIndexOf(Constants.SUFFIX_MV_FILE);
+                if (idx < 0) {
+                    continue;
+                }
+                String storeName = name.substring(0, idx + Constants.SUFFIX_MV_FILE.length());
+                String suffix = name.substring(storeName.length());
+                if (suffix.isEmpty() || suffix.equals(BackupManifest.SUFFIX)) {
+                    continue;
+                }
+                FileChannel file = files.get(storeName);
+                if (file == null) {
+                    file = FileUtils.open(directory + File.separatorChar + storeName, "rw");
+                    files.put(storeName, file);
+                }
+                manifests.get(storeName).restore(file, suffix, zipIn);
+            }
+            for (FileChannel file : files.values()) {
+                file.force(true);
+            }
+        } finally {
+            for (FileChannel file : files.values()) {
+                IOUtils.closeSilently(file);
+            }
+        }
+    }
+
+    private static String getTargetFileName(String fileName, String originalDbName, String db) {
+        // restoring windows backups on linux and vice versa
+        fileName = IOUtils.nameSeparatorsToNative(fileName);
+        if (fileName.startsWith(File.separator)) {
+            fileName = fileName.substring(1);
+        }
+        if (db == null) {
+            return fileName;
+        }
+        if (originalDbName.startsWith(File.separator)) {
+            originalDbName = originalDbName.substring(1);
+        }
+        if (fileName.startsWith(originalDbName + ".")) {
+            return db + fileName.substring(originalDbName.length());
+        }
+        return null;
+    }
+
 }
@@ -76,6 +76,15 @@ public Server(Service service, String... args) throws SQLException {
      * <td>Use a daemon thread</td></tr>
      * <tr><td>[-webVirtualThreads &lt;true|false&gt;]</td>
      * <td>Use virtual threads (on Java 21+ only)</td></tr>
+     * <tr><td>[-webQueryMaxRows &lt;rows&gt;]</td>
+     * <td>Allow JSON queries at /query, with this row limit (default: 0, disabled).
+     * Any program that can connect to the web server can run SQL statements
+     * with database credentials it knows; only JSON requests of the same
+     * origin are accepted from web browsers</td></tr>
+     * <tr><td>[-tcpSelectors &lt;count&gt;]</td>
+     * <td>Use selector threads for idle connections (default: 0, disabled)</td></tr>
+     * <tr><td>[-tcpWorkers &lt;count&gt;]</td>
+     * <td>The number of idle worker threads to keep if selectors are used</td></tr>
      * <tr><td>[-webPort &lt;port&gt;]</td>
      * <td>The port (default: 8082)</td></tr>
      * <tr><td>[-webSSL]</td>
@@ -159,6 +168,8 @@ private void verifyArgs(String... args) throws SQLException {
                     // no parameters
                 } else if ("-webVirtualThreads".equals(arg)) {
                     i++;
+                } else if ("-webQueryMaxRows".equals(arg)) {
+                    i++;
                 } else if ("-webSSL".equals(arg)) {
                     // no parameters
                 } else if ("-webPort".equals(arg)) {
@@ -182,6 +193,10 @@ private void verifyArgs(String... args) throws SQLException {
                     // no parameters
                 } else if ("-tcpVirtualThreads".equals(arg)) {
                     i++;
+                } else if ("-tcpSelectors".equals(arg)) {
+                    i++;
+                } else if ("-tcpWorkers".equals(arg)) {
+                    i++;
                 } else if ("-tcpSSL".equals(arg)) {
                     // no parameters
                 } else if ("-tcpPort".equals(arg)) {
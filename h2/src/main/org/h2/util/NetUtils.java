@@ -13,6 +13,7 @@
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.UnknownHostException;
+import java.nio.channels.ServerSocketChannel;
 
 import org.h2.api.ErrorCode;
 import org.h2.engine.SysProperties;
@@ -173,6 +174,23 @@ public static ServerSocket createServerSocket(int port, boolean ssl) {
         }
     }
 
+    /**
+     * Create a server socket with a channel, so that the accepted sockets can
+     * be used with a selector. The system property h2.bindAddress is used if
+     * set. SSL is not supported.
+     *
+     * @param port the port to listen on
+     * @return the server socket
+     */
+    public static ServerSocket createServerSocketWithChannel(int port) {
+        try {
+            return createServerSocketWithChannelTry(port);
+        } catch (Exception e) {
+            // try again
+            return createServerSocketWithChannelTry(port);
+        }
+    }
+
     /**
      * Get the bind address if the system property h2.bindAddress is set, or
      * null if not.
@@ -192,6 +210,22 @@ private static InetAddress getBindAddress() throws UnknownHostException {
         return cachedBindAddress;
     }
 
+    private static ServerSocket createServerSocketWithChannelTry(int port) {
+        ServerSocketChannel channel = null;
+        try {
+            channel = ServerSocketChannel.open();
+            channel.bind(new InetSocketAddress(getBindAddress(), port));
+            return channel.socket();
+        } catch (BindException be) {
+            IOUtils.closeSilently(channel);
+            throw DbException.get(ErrorCode.EXCEPTION_OPENING_PORT_2,
+                    be, Integer.toString(port), be.toString());
+        } catch (IOException e) {
+            IOUtils.closeSilently(channel);
+            throw DbException.convertIOException(e, "port: " + port);
+        }
+    }
+
     private static ServerSocket createServerSocketTry(int port, boolean ssl) {
         try {
             InetAddress bindAddress = getBindAddress();
@@ -40,6 +40,10 @@ public void setMaxSize(int size) {
         this.size = size;
     }
 
+    public int getMaxSize() {
+        return size;
+    }
+
     @Override
     protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
         return size() > size;
@@ -11,7 +11,11 @@
 import java.io.BufferedOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Reader;
 import java.math.BigDecimal;
 import java.net.InetAddress;
@@ -21,16 +25,21 @@
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.ReentrantLock;
 
 import org.h2.api.ErrorCode;
 import org.h2.api.IntervalQualifier;
+import org.h2.compress.Compressor;
+import org.h2.compress.FrameInputStream;
+import org.h2.compress.FrameOutputStream;
 import org.h2.engine.Constants;
 import org.h2.engine.Session;
 import org.h2.message.DbException;
 import org.h2.security.SHA256;
 import org.h2.store.Data;
 import org.h2.store.DataReader;
+import org.h2.tools.CompressTool;
 import org.h2.util.DateTimeUtils;
 import org.h2.util.IOUtils;
 import org.h2.util.MathUtils;
@@ -48,6 +57,12 @@
 public final class Transfer {
 
     private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The minimum number of bytes of a frame to compress it, smaller frames
+     * (most requests, and most responses to updates) are sent uncompressed.
+     */
+    private static final int MIN_COMPRESS_LENGTH = 256;
     private static final int LOB_MAGIC = 0x1234;
     private static final int LOB_MAC_SALT_LENGTH = 16;
 
@@ -87,6 +102,11 @@ public final class Transfer {
     private static final int BINARY = 30;
     private static final int DECFLOAT = 31;
 
+    /**
+     * The type of a column of values that are written one by one.
+     */
+    private static final int MIXED_COLUMN = -1;
+
     private static final int[] VALUE_TO_TI = new int[Value.TYPE_COUNT + 1];
     private static final int[] TI_TO_VALUE = new int[45];
 
@@ -150,6 +170,7 @@ private static void addType(int typeInformationType, int valueType) {
     private boolean ssl;
     private int version;
     private byte[] lobMacSalt;
+    private LongAdder bytesReceived, bytesSent;
 
     /**
      * Create a new transfer object for the specified session.
@@ -196,18 +217,52 @@ public void init() throws IOException {
         lock();
         try {
             if (socket != null) {
+                InputStream socketIn = socket.getInputStream();
+                OutputStream socketOut = socket.getOutputStream();
+                if (bytesReceived != null) {
+                    socketIn = new CountingInputStream(socketIn, bytesReceived);
+                    socketOut = new CountingOutputStream(socketOut, bytesSent);
+                }
                 in = new DataInputStream(
                         new BufferedInputStream(
-                                socket.getInputStream(), Transfer.BUFFER_SIZE));
+                                socketIn, Transfer.BUFFER_SIZE));
                 out = new DataOutputStream(
                         new BufferedOutputStream(
-                                socket.getOutputStream(), Transfer.BUFFER_SIZE));
+                                socketOut, Transfer.BUFFER_SIZE));
             }
         } finally {
             unlock();
         }
     }
 
+    /**
+     * Count the bytes received and sent over the socket. This method needs to
+     * be called before {@link #init()}.
+     *
+     * @param received the counter of received bytes
+     * @param sent the counter of sent bytes
+     */
+    public void setTrafficCounters(LongAdder received, LongAdder sent) {
+        bytesReceived = received;
+        bytesSent = sent;
+    }
+
+    /**
+     * Compress the data written from now on, and expand the data read from
+     * now on, using the specified algorithm. Data is compressed in frames;
+     * each flush ends a frame. Small frames are not compressed. Both sides of
+     * the connection need to switch at the same position of the data stream.
+     *
+     * @param algorithm the compression algorithm, see {@link Compressor}
+     */
+    public void setCompression(int algorithm) {
+        if (algorithm != Compressor.NO) {
+            in = new DataInputStream(new FrameInputStream(in, CompressTool.getCompressor(algorithm)));
+            out = new DataOutputStream(new FrameOutputStream(out, CompressTool.getCompressor(algorithm),
+                    MIN_COMPRESS_LENGTH));
+        }
+    }
+
     /**
      * Write pending changes.
      * @throws IOException on failure
@@ -216,6 +271,17 @@ public void flush() throws IOException {
         out.flush();
     }
 
+    /**
+     * Check whether data can be read without blocking, because it is already
+     * buffered or was already received.
+     *
+     * @return {@code true} if data is available
+     * @throws IOException on failure
+     */
+    public boolean isInputAvailable() throws IOException {
+        return in.available() > 0;
+    }
+
     /**
      * Write a boolean.
      *
@@ -1244,6 +1310,193 @@ public Value readValue(TypeInfo columnType) throws IOException {
         }
     }
 
+    /**
+     * Write a column of values, for example the values of one parameter of a
+     * batch. If all values that are not NULL have the same simple data type,
+     * the column is written as one typed array: the type, the positions of
+     * NULL values, and the values without their type. Otherwise the values are
+     * written one by one.
+     *
+     * @param column the values
+     * @throws IOException on failure
+     */
+    public void writeValueColumn(Value[] column) throws IOException {
+        int type = getColumnType(column);
+        writeInt(type);
+        if (type == MIXED_COLUMN) {
+            for (Value v : column) {
+                writeValue(v);
+            }
+            return;
+        }
+        byte[] nulls = null;
+        for (int i = 0, length = column.length; i < length; i++) {
+            if (column[i] == ValueNull.INSTANCE) {
+                if (nulls == null) {
+                    nulls = new byte[length];
+                }
+                nulls[i] = 1;
+            }
+        }
+        writeBytes(nulls);
+        for (Value v : column) {
+            if (v == ValueNull.INSTANCE) {
+                continue;
+            }
+            switch (type) {
+            case BOOLEAN:
+                writeBoolean(v.getBoolean());
+                break;
+            case TINYINT:
+                writeByte(v.getByte());
+                break;
+            case SMALLINT:
+                writeShort(v.getShort());
+                break;
+            case INTEGER:
+                writeInt(v.getInt());
+                break;
+            case BIGINT:
+                writeLong(v.getLong());
+                break;
+            case REAL:
+                writeFloat(v.getFloat());
+                break;
+            case DOUBLE:
+                writeDouble(v.getDouble());
+                break;
+            case DATE:
+                writeLong(((ValueDate) v).getDateValue());
+                break;
+            case TIMESTAMP: {
+                ValueTimestamp ts = (ValueTimestamp) v;
+                writeLong(ts.getDateValue());
+                writeLong(ts.getTimeNanos());
+                break;
+            }
+            case NUMERIC:
+            case VARCHAR:
+                writeString(v.getString());
+                break;
+            default:
+                writeBytes(v.getBytesNoCopy());
+            }
+        }
+    }
+
+    private static int getColumnType(Value[] column) {
+        int valueType = Value.NULL;
+        for (Value v : column) {
+            int t = v.getValueType();
+            if (t != Value.NULL) {
+                if (valueType == Value.NULL) {
+                    valueType = t;
+                } else if (t != valueType) {
+                    return MIXED_COLUMN;
+                }
+            }
+        }
+        switch (valueType) {
+        case Value.BOOLEAN:
+            return BOOLEAN;
+        case Value.TINYINT:
+            return TINYINT;
+        case Value.SMALLINT:
+            return SMALLINT;
+        case Value.INTEGER:
+            return INTEGER;
+        case Value.BIGINT:
+            return BIGINT;
+        case Value.REAL:
+            return REAL;
+        case Value.DOUBLE:
+            return DOUBLE;
+        case Value.NUMERIC:
+            return NUMERIC;
+        case Value.DATE:
+            return DATE;
+        case Value.TIMESTAMP:
+            return TIMESTAMP;
+        case Value.VARCHAR:
+            return VARCHAR;
+        case Value.VARBINARY:
+            return VARBINARY;
+        default:
+            return MIXED_COLUMN;
+        }
+    }
+
+    /**
+     * Read a column of values written with {@link #writeValueColumn(Value[])}.
+     *
+     * @param size the number of values
+     * @return the values
+     * @throws IOException on failure
+     */
+    public Value[] readValueColumn(int size) throws IOException {
+        Value[] column = new Value[size];
+        int type = readInt();
+        if (type == MIXED_COLUMN) {
+            for (int i = 0; i < size; i++) {
+                column[i] = readValue(null);
+            }
+            return column;
+        }
+        byte[] nulls = readBytes();
+        if (nulls != null && nulls.length != size) {
+            throw DbException.get(ErrorCode.CONNECTION_BROKEN_1, "nulls=" + nulls.length);
+        }
+        for (int i = 0; i < size; i++) {
+            Value v;
+            if (nulls != null && nulls[i] != 0) {
+                v = ValueNull.INSTANCE;
+            } else {
+                switch (type) {
+                case BOOLEAN:
+                    v = ValueBoolean.get(readBoolean());
+                    break;
+                case TINYINT:
+                    v = ValueTinyint.get(readByte());
+                    break;
+                case SMALLINT:
+                    v = ValueSmallint.get(readShort());
+                    break;
+                case INTEGER:
+                    v = ValueInteger.get(readInt());
+                    break;
+                case BIGINT:
+                    v = ValueBigint.get(readLong());
+                    break;
+                case REAL:
+                    v = ValueReal.get(readFloat());
+                    break;
+                case DOUBLE:
+                    v = ValueDouble.get(readDouble());
+                    break;
+                case DATE:
+                    v = ValueDate.fromDateValue(readLong());
+                    break;
+                case TIMESTAMP:
+                    v = ValueTimestamp.fromDateValueAndNanos(readLong(), readLong());
+                    break;
+                case NUMERIC:
+                    v = ValueNumeric.get(new BigDecimal(readString()));
+                    break;
+                case VARCHAR:
+                    v = ValueVarchar.get(readString());
+                    break;
+                case VARBINARY:
+                    v = ValueVarbinary.getNoCopy(readBytes());
+                    break;
+                default:
+                    throw DbException.get(ErrorCode.CONNECTION_BROKEN_1, "type=" + type);
+                }
+            }
+            column[i] = v;
+        }
+        return column;
+    }
+
     private Value[] readArrayElements(int len, TypeInfo elementType) throws IOException {
         Value[] list = new Value[len];
         for (int i = 0; i < len; i++) {
@@ -1357,4 +1610,62 @@ private byte[] calculateLobMac(long lobId) {
         return SHA256.getHashWithSalt(data, lobMacSalt);
     }
 
+    /**
+     * An input stream that counts the bytes read.
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+
+        private final LongAdder counter;
+
+        CountingInputStream(InputStream in, LongAdder counter) {
+            super(in);
+            this.counter = counter;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int x = in.read();
+            if (x >= 0) {
+                counter.increment();
+            }
+            return x;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            len = in.read(b, off, len);
+            if (len > 0) {
+                counter.add(len);
+            }
+            return len;
+        }
+
+    }
+
+    /**
+     * An output stream that counts the bytes written.
+     */
+    private static final class CountingOutputStream extends FilterOutputStream {
+
+        private final LongAdder counter;
+
+        CountingOutputStream(OutputStream out, LongAdder counter) {
+            super(out);
+            this.counter = counter;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            counter.increment();
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            counter.add(len);
+        }
+
+    }
+
 }
@@ -89,6 +89,7 @@
 import org.h2.test.db.TestView;
 import org.h2.test.db.TestViewAlterTable;
 import org.h2.test.db.TestViewDropView;
+import org.h2.test.jdbc.TestAsyncConnection;
 import org.h2.test.jdbc.TestBatchUpdates;
 import org.h2.test.jdbc.TestCallableStatement;
 import org.h2.test.jdbc.TestCancel;
@@ -774,6 +775,7 @@ private void test() throws SQLException {
             addTest(new TestSynonymForTable());
 
             // jdbc
+            addTest(new TestAsyncConnection());
             addTest(new TestBatchUpdates());
             addTest(new TestCallableStatement());
             addTest(new TestCancel());
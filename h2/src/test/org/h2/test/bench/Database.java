@@ -24,6 +24,7 @@
 import java.util.StringTokenizer;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import org.h2.server.TcpServer;
 import org.h2.test.TestBase;
 import org.h2.tools.Server;
 import org.h2.util.StringUtils;
@@ -52,6 +53,7 @@ class Database {
     private final AtomicInteger executedStatements = new AtomicInteger();
 
     private Server serverH2;
+    private long initialNetworkTraffic;
     private Object serverDerby;
     private boolean serverHSQLDB;
 
@@ -91,7 +93,26 @@ ArrayList<Measurement> getResults() {
         return results;
     }
 
+    /**
+     * Get the number of bytes sent and received by the H2 TCP server since
+     * the last reset.
+     *
+     * @return the number of bytes, or 0 if the H2 TCP server is not used
+     */
+    long getNetworkTraffic() {
+        return getServerTraffic() - initialNetworkTraffic;
+    }
+
+    private long getServerTraffic() {
+        if (serverH2 == null) {
+            return 0;
+        }
+        TcpServer server = (TcpServer) serverH2.getService();
+        return server.getBytesReceived() + server.getBytesSent();
+    }
+
     ArrayList<Measurement> reset() {
+        initialNetworkTraffic = getServerTraffic();
         executedStatements.set(0);
         totalTime = 0;
         totalGCTime = 0;
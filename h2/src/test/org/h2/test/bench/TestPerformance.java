@@ -190,6 +190,12 @@ private void testAll(ArrayList<Database> dbs, ArrayList<Bench> tests,
             int statPerSec = (int) (db.getExecutedStatements() * 1000L / db.getTotalTime());
             db.log("Statements per second", "#/s", statPerSec);
             System.out.println("Statements per second: " + statPerSec);
+            long traffic = db.getNetworkTraffic();
+            db.log("Network traffic", "KB", (int) (traffic / 1024));
+            System.out.println("Network traffic: " + traffic / 1024 + " KB");
+            int trafficPerSec = (int) (traffic * 1000L / 1024 / db.getTotalTime());
+            db.log("Network throughput", "KB/s", trafficPerSec);
+            System.out.println("Network throughput: " + trafficPerSec + " KB/s");
             System.out.println("GC overhead: " + (100 * db.getTotalGCTime() / db.getTotalTime()) + "%");
             collect = false;
             db.stopServer();
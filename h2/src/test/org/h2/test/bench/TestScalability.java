@@ -214,6 +214,7 @@ private void testAll(ArrayList<RunSequence> runSequences, BenchB test, int size)
                     db.log("Total time", "ms", totalTime);
                     int statPerSec = (int) (executedStatements * 1000L / totalTime);
                     db.log("Statements per second", "#/s", statPerSec);
+                    testSessions(db, threadCount, size);
                     collect = false;
                     System.out.println("Statements per second: " + statPerSec);
                     System.out.println("GC overhead: " + (100 * totalGCTime / totalTime) + "%");
@@ -232,6 +233,83 @@ private void testAll(ArrayList<RunSequence> runSequences, BenchB test, int size)
         }
     }
 
+    /**
+     * Open and close connections, and create and drop local temporary tables,
+     * in the specified number of threads. These operations don't touch shared
+     * data, so their throughput should grow with the number of threads.
+     *
+     * @param db the database
+     * @param threadCount the number of threads
+     * @param size the test size
+     */
+    private void testSessions(Database db, int threadCount, int size) throws Exception {
+        int count = size * 8;
+        int perThread = Math.max(1, count / threadCount);
+        count = perThread * threadCount;
+        long time = runThreads(threadCount, () -> {
+            for (int i = 0; i < perThread; i++) {
+                db.openNewConnection().close();
+            }
+        });
+        int perSec = (int) (count * 1_000_000_000L / time);
+        db.log("Sessions opened and closed per second", "#/s", perSec);
+        System.out.println("Sessions opened and closed per second: " + perSec);
+        time = runThreads(threadCount, () -> {
+            try (Connection conn = db.openNewConnection(); Statement stat = conn.createStatement()) {
+                for (int i = 0; i < perThread; i++) {
+                    stat.execute("CREATE LOCAL TEMPORARY TABLE TEMP(ID INT PRIMARY KEY, NAME VARCHAR(255))");
+                    stat.execute("INSERT INTO TEMP VALUES(1, 'Hello')");
+                    stat.execute("DROP TABLE TEMP");
+                }
+            }
+        });
+        perSec = (int) (count * 1_000_000_000L / time);
+        db.log("Temporary tables created and dropped per second", "#/s", perSec);
+        System.out.println("Temporary tables created and dropped per second: " + perSec);
+    }
+
+    private static long runThreads(int threadCount, Task task) throws Exception {
+        Thread[] threads = new Thread[threadCount];
+        Exception[] exception = new Exception[1];
+        for (int i = 0; i < threadCount; i++) {
+            threads[i] = new Thread(() -> {
+                try {
+                    task.run();
+                } catch (Exception e) {
+                    synchronized (exception) {
+                        exception[0] = e;
+                    }
+                }
+            });
+        }
+        long start = System.nanoTime();
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long time = Math.max(1L, System.nanoTime() - start);
+        synchronized (exception) {
+            if (exception[0] != null) {
+                throw exception[0];
+            }
+        }
+        return time;
+    }
+
+    /**
+     * A task executed in each thread.
+     */
+    private interface Task {
+
+        /**
+         * Run the task.
+         */
+        void run() throws Exception;
+
+    }
+
     /**
      * Print a message to system out if trace is enabled.
      *
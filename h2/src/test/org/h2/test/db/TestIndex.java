@@ -5,6 +5,7 @@
  */
 package org.h2.test.db;
 
+import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
@@ -102,6 +103,10 @@ public void test() throws SQLException {
         testHashIndex(false, true);
 
         testMultiColumnHashIndex();
+        testHashIndexOnStrings();
+        testMultiColumnHashIndexInList();
+        testHashIndexUnconvertibleValue();
+        testPartialIndexParameters();
 
         testFunctionIndex();
 
@@ -680,6 +685,108 @@ private void testMultiColumnHashIndex() throws SQLException {
         stat.execute("DROP TABLE TEST");
     }
 
+    private void testHashIndexOnStrings() throws SQLException {
+        if (config.memory) {
+            return;
+        }
+        stat.execute("DROP TABLE IF EXISTS TEST");
+        stat.execute("CREATE TABLE TEST(ID INT PRIMARY KEY, NAME VARCHAR, U UUID)");
+        stat.execute("CREATE HASH INDEX IDX_NAME ON TEST(NAME)");
+        stat.execute("CREATE HASH INDEX IDX_NAME_U ON TEST(NAME, U)");
+        int len = getSize(100, 2000);
+        stat.execute("INSERT INTO TEST SELECT X, 'name ' || MOD(X, 10), RANDOM_UUID() FROM SYSTEM_RANGE(1, "
+                + len + ")");
+        stat.execute("INSERT INTO TEST VALUES (0, NULL, NULL)");
+        ResultSet rs = stat.executeQuery("EXPLAIN SELECT * FROM TEST WHERE NAME = 'name 1'");
+        rs.next();
+        assertContains(rs.getString(1), "PUBLIC.IDX_NAME: NAME = 'name 1'");
+        rs = stat.executeQuery("EXPLAIN SELECT * FROM TEST WHERE NAME > 'name 1'");
+        rs.next();
+        assertContains(rs.getString(1), "tableScan");
+        assertEquals(len / 10, getValue("SELECT COUNT(*) FROM TEST WHERE NAME = 'name 1'"));
+        assertEquals(0, getValue("SELECT COUNT(*) FROM TEST WHERE NAME = 'name'"));
+        assertEquals(1, getValue("SELECT COUNT(*) FROM TEST WHERE NAME IS NULL"));
+        assertEquals(len / 5, getValue("SELECT COUNT(*) FROM TEST WHERE NAME IN ('name 1', 'name 2')"));
+        reconnect();
+        stat.execute("UPDATE TEST SET NAME = 'x' WHERE ID = 1");
+        stat.execute("DELETE FROM TEST WHERE ID = 2");
+        assertEquals(len / 10 - 1, getValue("SELECT COUNT(*) FROM TEST WHERE NAME = 'name 1'"));
+        assertEquals(len / 10 - 1, getValue("SELECT COUNT(*) FROM TEST WHERE NAME = 'name 2'"));
+        assertEquals(1, getValue("SELECT COUNT(*) FROM TEST T1 WHERE NAME = 'x' AND U = "
+                + "(SELECT U FROM TEST T2 WHERE T2.ID = 1)"));
+        stat.execute("DROP TABLE TEST");
+    }
+
+    private void testMultiColumnHashIndexInList() throws SQLException {
+        stat.execute("DROP TABLE IF EXISTS TEST");
+        stat.execute("CREATE TABLE TEST(ID INT PRIMARY KEY, A INT, B INT)");
+        stat.execute("CREATE HASH INDEX IDX_AB ON TEST(A, B)");
+        stat.execute("INSERT INTO TEST SELECT X, MOD(X, 10), MOD(X, 7) FROM SYSTEM_RANGE(1, 700)");
+        // an IN condition on a single column of the index doesn't produce
+        // point lookups
+        ResultSet rs = stat.executeQuery("EXPLAIN SELECT * FROM TEST WHERE A IN (1, 2) AND B = 3");
+        rs.next();
+        assertContains(rs.getString(1), "tableScan");
+        assertEquals(20, getValue("SELECT COUNT(*) FROM TEST WHERE A IN (1, 2) AND B = 3"));
+        rs = stat.executeQuery("EXPLAIN SELECT * FROM TEST WHERE B IN (1, 2) AND A = 3");
+        rs.next();
+        assertContains(rs.getString(1), "tableScan");
+        assertEquals(20, getValue("SELECT COUNT(*) FROM TEST WHERE B IN (1, 2) AND A = 3"));
+        // a compound IN condition sets all columns
+        rs = stat.executeQuery("EXPLAIN SELECT * FROM TEST WHERE (A, B) IN ((1, 1), (2, 3))");
+        rs.next();
+        assertContains(rs.getString(1), "PUBLIC.IDX_AB");
+        assertEquals(20, getValue("SELECT COUNT(*) FROM TEST WHERE (A, B) IN ((1, 1), (2, 3))"));
+        stat.execute("DROP TABLE TEST");
+    }
+
+    private void testHashIndexUnconvertibleValue() throws SQLException {
+        stat.execute("DROP TABLE IF EXISTS TEST");
+        stat.execute("CREATE TABLE TEST(X INT)");
+        stat.execute("CREATE HASH INDEX TX ON TEST(X)");
+        stat.execute("INSERT INTO TEST VALUES 1, 2, 3");
+        ResultSet rs = stat.executeQuery("EXPLAIN SELECT * FROM TEST WHERE X = 100000000000000000000");
+        rs.next();
+        assertContains(rs.getString(1), "PUBLIC.TX");
+        assertEquals(0, getValue("SELECT COUNT(*) FROM TEST WHERE X = 100000000000000000000"));
+        PreparedStatement prep = conn.prepareStatement("SELECT COUNT(*) FROM TEST WHERE X = ?");
+        prep.setBigDecimal(1, new BigDecimal("1e20"));
+        rs = prep.executeQuery();
+        rs.next();
+        assertEquals(0, rs.getInt(1));
+        prep.setBigDecimal(1, new BigDecimal("2"));
+        rs = prep.executeQuery();
+        rs.next();
+        assertEquals(1, rs.getInt(1));
+        stat.execute("DROP TABLE TEST");
+    }
+
+    private void testPartialIndexParameters() throws SQLException {
+        stat.execute("DROP TABLE IF EXISTS TEST");
+        stat.execute("CREATE TABLE TEST(ID INT PRIMARY KEY, STATUS VARCHAR, V INT)");
+        stat.execute("CREATE INDEX TEST_IDX ON TEST(V) WHERE STATUS = 'PENDING'");
+        stat.execute("INSERT INTO TEST VALUES (1, 'PENDING', 1), (2, 'DONE', 2), (3, 'PENDING', 3)");
+        // the plan is created before the values of parameters are known, so
+        // only constants can imply the condition of the index
+        PreparedStatement prep = conn.prepareStatement("EXPLAIN SELECT ID FROM TEST WHERE STATUS = ? AND V > ?");
+        prep.setString(1, "PENDING");
+        prep.setInt(2, 0);
+        ResultSet rs = prep.executeQuery();
+        rs.next();
+        assertContains(rs.getString(1), "tableScan");
+        prep = conn.prepareStatement("EXPLAIN SELECT ID FROM TEST WHERE STATUS = 'PENDING' AND V > ?");
+        prep.setInt(1, 0);
+        rs = prep.executeQuery();
+        rs.next();
+        assertContains(rs.getString(1), "PUBLIC.TEST_IDX: V > ?1");
+        prep = conn.prepareStatement("SELECT COUNT(*) FROM TEST WHERE STATUS = 'PENDING' AND V > ?");
+        prep.setInt(1, 0);
+        rs = prep.executeQuery();
+        rs.next();
+        assertEquals(2, rs.getInt(1));
+        stat.execute("DROP TABLE TEST");
+    }
+
     private void testHashIndexOnMemoryTable() throws SQLException {
         reconnect();
         stat.execute("drop table if exists hash_index_test");
@@ -17,6 +17,7 @@
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.Arrays;
 import java.util.concurrent.TimeUnit;
 
 import org.h2.api.DatabaseEventListener;
@@ -53,6 +54,7 @@ public void test() throws Exception {
         testCloseDelay();
         testBackup();
         testBackupWithYoungDeadChunks();
+        testIncrementalBackup();
         testCase();
         testReconnectFast();
         test1_1();
@@ -133,6 +135,55 @@ private void testBackup() throws SQLException {
         FileUtils.delete(getBaseDir() + "/test.zip");
     }
 
+    private void testIncrementalBackup() throws SQLException {
+        if (config.memory || config.cipher != null) {
+            return;
+        }
+        deleteDb("openClose");
+        String url = getURL("openClose", true);
+        String full = getBaseDir() + "/full.zip";
+        String inc1 = getBaseDir() + "/inc1.zip";
+        String inc2 = getBaseDir() + "/inc2.zip";
+        try {
+            Connection conn = DriverManager.getConnection(url, getUser(), getPassword());
+            Statement stat = conn.createStatement();
+            stat.execute("CREATE TABLE TEST(ID INT PRIMARY KEY, NAME VARCHAR) AS "
+                    + "SELECT X, SPACE(100) || X FROM SYSTEM_RANGE(1, 20000)");
+            stat.execute("BACKUP TO '" + full + "'");
+            stat.execute("UPDATE TEST SET NAME = 'updated' WHERE MOD(ID, 100) = 0");
+            stat.execute("BACKUP TO '" + inc1 + "' INCREMENTAL FROM '" + full + "'");
+            assertTrue(FileUtils.size(inc1) < FileUtils.size(full));
+            stat.execute("DELETE FROM TEST WHERE ID > 15000");
+            stat.execute("CREATE TABLE TEST2 AS SELECT * FROM TEST WHERE ID < 10");
+            stat.execute("BACKUP TO '" + inc2 + "' INCREMENTAL FROM '" + inc1 + "'");
+            assertThrows(ErrorCode.FILE_NOT_FOUND_1, stat).execute("BACKUP TO '" + inc2 + "' INCREMENTAL FROM 'missing.zip'");
+            stat.execute("INSERT INTO TEST2 VALUES (-1, 'not in a backup')");
+            conn.close();
+
+            deleteDb("openClose");
+            assertThrows(ErrorCode.IO_EXCEPTION_2,
+                    () -> Restore.execute(full, getBaseDir(), null, Arrays.asList(inc2)));
+            deleteDb("openClose");
+            Restore.execute(full, getBaseDir(), null, Arrays.asList(inc1, inc2));
+            conn = DriverManager.getConnection(url, getUser(), getPassword());
+            stat = conn.createStatement();
+            ResultSet rs = stat.executeQuery("SELECT COUNT(*), SUM(ID), "
+                    + "COUNT(CASE WHEN NAME = 'updated' THEN 1 END) FROM TEST");
+            rs.next();
+            assertEquals(15000, rs.getInt(1));
+            assertEquals(15000L * 15001 / 2, rs.getLong(2));
+            assertEquals(150, rs.getInt(3));
+            rs = stat.executeQuery("SELECT COUNT(*) FROM TEST2");
+            rs.next();
+            assertEquals(9, rs.getInt(1));
+            conn.close();
+        } finally {
+            FileUtils.delete(full);
+            FileUtils.delete(inc1);
+            FileUtils.delete(inc2);
+        }
+    }
+
     private void testBackupWithYoungDeadChunks() throws SQLException {
         if (config.memory || !config.big) {
             return;
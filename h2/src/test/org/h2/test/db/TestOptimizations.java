@@ -44,6 +44,8 @@ public void test() throws Exception {
         testConditionsStackOverflow();
         testIdentityIndexUsage();
         testFastRowIdCondition();
+        testZoneMap();
+        testIndexBloomFilter();
         testExplainRoundTrip();
         testOrderByExpression();
         testGroupSubquery();
@@ -114,6 +116,107 @@ private void testFastRowIdCondition() throws Exception {
         conn.close();
     }
 
+    private void testZoneMap() throws Exception {
+        deleteDb("optimizations2");
+        String url = "optimizations2;ZONE_MAP_SIZE=100";
+        Connection conn = getConnection(url);
+        Statement stat = conn.createStatement();
+        stat.execute("create table test(id int, v bigint, s varchar) " +
+                "as select x, x * 10, 'a' from system_range(1, 10000)");
+        stat.execute("update test set v = null where id between 5001 and 5010");
+        assertZoneMapScan(stat, "v > 99000", 100, 200);
+        assertZoneMapScan(stat, "v between 42000 and 42100", 11, 200);
+        assertZoneMapScan(stat, "v is null", 10, 200);
+        assertZoneMapScan(stat, "s = 'a'", 10000, 10000);
+        stat.execute("update test set v = 1 where id = 9500");
+        assertZoneMapScan(stat, "v < 20", 2, 300);
+        ResultSet rs = stat.executeQuery("select id from test where v > 99900 order by _rowid_ desc");
+        for (int i = 10000; i > 9990; i--) {
+            assertTrue(rs.next());
+            assertEquals(i, rs.getInt(1));
+        }
+        assertFalse(rs.next());
+        conn.close();
+        if (!config.memory) {
+            conn = getConnection(url);
+            stat = conn.createStatement();
+            assertZoneMapScan(stat, "v < 20", 2, 300);
+            stat.execute("truncate table test");
+            stat.execute("insert into test values (1, 5, 'a')");
+            assertZoneMapScan(stat, "v > 3", 1, 1);
+            conn.close();
+        }
+        deleteDb("optimizations2");
+    }
+
+    private void testIndexBloomFilter() throws Exception {
+        deleteDb("optimizations2");
+        Connection conn = getConnection("optimizations2;INDEX_BLOOM_FILTER_BITS=8");
+        Statement stat = conn.createStatement();
+        stat.execute("create table parent(id int primary key, name varchar)");
+        stat.execute("create table child(id int primary key, parent_id bigint, name varchar)");
+        stat.execute("create index idx_parent on child(parent_id)");
+        stat.execute("create index idx_name on child(name, id)");
+        stat.execute("insert into parent select x, 'p' || x from system_range(1, 1000)");
+        stat.execute("insert into child select x, x * 10, 'c' || x from system_range(1, 100)");
+        assertSingleValue(stat, "select count(*) from parent p where not exists"
+                + " (select * from child c where c.parent_id = p.id)", 900);
+        assertSingleValue(stat, "select count(*) from parent p join child c on c.name = p.name", 0);
+        assertSingleValue(stat, "select count(*) from child where name = 'c7'", 1);
+        // rows added after the filter was built, enough to rebuild it
+        stat.execute("insert into child select x, x, 'p' || x from system_range(101, 30100)");
+        assertSingleValue(stat, "select count(*) from parent p where not exists"
+                + " (select * from child c where c.parent_id = p.id)", 90);
+        assertSingleValue(stat, "select count(*) from parent p join child c on c.name = p.name", 900);
+        conn.setAutoCommit(false);
+        stat.execute("insert into child values (0, 5, 'x')");
+        assertSingleValue(stat, "select count(*) from child where parent_id = 5", 1);
+        assertSingleValue(stat, "select count(*) from child where name = 'x' and id = 0", 1);
+        conn.rollback();
+        stat.execute("delete from child where id <= 100");
+        assertSingleValue(stat, "select count(*) from child where parent_id = 10", 0);
+        conn.rollback();
+        conn.setAutoCommit(true);
+        assertSingleValue(stat, "select count(*) from child where parent_id = 10", 1);
+        assertSingleValue(stat, "select count(*) from child where parent_id = 5", 0);
+        assertSingleValue(stat, "select count(*) from child where parent_id in (10, 20, 7, 12345)", 3);
+        stat.execute("truncate table child");
+        assertSingleValue(stat, "select count(*) from child where parent_id = 10", 0);
+        stat.execute("insert into child values (1, 10, 'c')");
+        assertSingleValue(stat, "select count(*) from child where parent_id = 10", 1);
+        // a snapshot that is older than the filter
+        stat.execute("create table snap(id int primary key, v int)");
+        stat.execute("create index idx_snap on snap(v)");
+        stat.execute("insert into snap values (1, 1), (2, 2)");
+        Connection conn2 = getConnection("optimizations2;INDEX_BLOOM_FILTER_BITS=8");
+        conn2.setAutoCommit(false);
+        conn2.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+        Statement stat2 = conn2.createStatement();
+        assertSingleValue(stat2, "select count(*) from snap", 2);
+        stat.execute("delete from snap where id = 1");
+        // the filter is built without the deleted row
+        assertSingleValue(stat2, "select count(*) from snap where v = 1", 1);
+        assertSingleValue(stat, "select count(*) from snap where v = 1", 0);
+        conn2.commit();
+        assertSingleValue(stat2, "select count(*) from snap where v = 1", 0);
+        conn2.close();
+        conn.close();
+        deleteDb("optimizations2");
+    }
+
+    private void assertZoneMapScan(Statement stat, String condition, int expectedCount, int maxScanCount)
+            throws SQLException {
+        ResultSet rs = stat.executeQuery("select count(*) from test where " + condition);
+        rs.next();
+        assertEquals(expectedCount, rs.getInt(1));
+        rs = stat.executeQuery("explain analyze select count(*) from test where " + condition);
+        rs.next();
+        String plan = rs.getString(1);
+        int start = plan.indexOf("/* scanCount: ") + 14;
+        int scanCount = Integer.parseInt(plan.substring(start, plan.indexOf(' ', start)));
+        assertTrue(plan, scanCount <= maxScanCount + 1);
+    }
+
     private void testExplainRoundTrip() throws Exception {
         Connection conn = getConnection("optimizations");
         assertExplainRoundTrip(conn, "SELECT \"X\" FROM SYSTEM_RANGE(1, 1)"
@@ -13,6 +13,7 @@
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import org.h2.api.ErrorCode;
 import org.h2.api.Trigger;
 import org.h2.engine.Constants;
 import org.h2.test.TestBase;
@@ -37,10 +38,13 @@ public static void main(String... a) throws Exception {
     public void test() throws Exception {
         testConcurrentCreate();
         testConcurrentNextAndCurrentValue();
+        testConcurrentNextValue();
+        testConcurrentNextValueAndAlter();
         testSchemaSearchPath();
         testAlterSequenceColumn();
         testAlterSequence();
         testCache();
+        testLargeCache();
         testTwo();
         testMetaTable();
         testCreateWithMinValue();
@@ -166,6 +170,88 @@ public void call() throws Exception {
         }
     }
 
+    private void testConcurrentNextValue() throws Exception {
+        deleteDb("sequence");
+        final String url = getURL("sequence", true);
+        Connection conn = getConnection(url);
+        Task[] tasks = new Task[8];
+        try {
+            Statement stat = conn.createStatement();
+            stat.execute("CREATE SEQUENCE SEQ1 CACHE 5");
+            for (int i = 0; i < tasks.length; i++) {
+                tasks[i] = new Task() {
+                    @Override
+                    public void call() throws Exception {
+                        try (Connection conn = getConnection(url)) {
+                            PreparedStatement next = conn.prepareStatement("CALL NEXT VALUE FOR SEQ1");
+                            for (int j = 0; j < 1_000; j++) {
+                                try (ResultSet rs = next.executeQuery()) {
+                                    rs.next();
+                                    rs.getLong(1);
+                                }
+                            }
+                        }
+                    }
+                }.execute();
+            }
+            for (Task t : tasks) {
+                t.get();
+            }
+            assertSingleValue(stat, "CALL NEXT VALUE FOR SEQ1", 8_001);
+        } finally {
+            for (Task t : tasks) {
+                t.join();
+            }
+            conn.close();
+        }
+    }
+
+    private void testConcurrentNextValueAndAlter() throws Exception {
+        deleteDb("sequence");
+        final String url = getURL("sequence", true);
+        Connection conn = getConnection(url);
+        Task[] tasks = new Task[4];
+        try {
+            Statement stat = conn.createStatement();
+            stat.execute("CREATE SEQUENCE SEQ1 START WITH 1000000000 CACHE 100000");
+            for (int i = 0; i < tasks.length; i++) {
+                tasks[i] = new Task() {
+                    @Override
+                    public void call() throws Exception {
+                        try (Connection conn = getConnection(url)) {
+                            PreparedStatement next = conn.prepareStatement("CALL NEXT VALUE FOR SEQ1");
+                            while (!stop) {
+                                try (ResultSet rs = next.executeQuery()) {
+                                    rs.next();
+                                    long v = rs.getLong(1);
+                                    // values after the restart must use the
+                                    // new increment
+                                    if (v < 1_000_000_000 && (v - 1) % 7 != 0) {
+                                        throw new AssertionError("value " + v);
+                                    }
+                                }
+                            }
+                        }
+                    }
+                }.execute();
+            }
+            for (int i = 0; i < 200; i++) {
+                stat.execute("ALTER SEQUENCE SEQ1 RESTART WITH 1000000000 INCREMENT BY 1");
+                Thread.yield();
+                stat.execute("ALTER SEQUENCE SEQ1 RESTART WITH 1 INCREMENT BY 7");
+                Thread.yield();
+            }
+            for (Task t : tasks) {
+                t.get();
+            }
+        } finally {
+            for (Task t : tasks) {
+                t.join();
+            }
+            conn.close();
+        }
+    }
+
     private void testSchemaSearchPath() throws SQLException {
         deleteDb("sequence");
         Connection conn = getConnection("sequence");
@@ -228,6 +314,37 @@ private void testCache() throws SQLException {
         conn.close();
     }
 
+    private void testLargeCache() throws SQLException {
+        if (config.memory) {
+            return;
+        }
+        deleteDb("sequence");
+        Connection conn = getConnection("sequence");
+        Statement stat = conn.createStatement();
+        stat.execute("CREATE SEQUENCE TEST_SEQ MAXVALUE 1000 CACHE 1000");
+        stat.execute("CREATE SEQUENCE TEST_SEQ2 START WITH 995 MAXVALUE 1000 CACHE 100");
+        for (int i = 1; i <= 10; i++) {
+            assertSingleValue(stat, "CALL NEXT VALUE FOR TEST_SEQ", i);
+        }
+        assertSingleValue(stat, "CALL NEXT VALUE FOR TEST_SEQ2", 995);
+        conn.close();
+        // values are not lost on normal close
+        conn = getConnection("sequence");
+        stat = conn.createStatement();
+        assertSingleValue(stat, "CALL NEXT VALUE FOR TEST_SEQ", 11);
+        assertSingleValue(stat, "CALL NEXT VALUE FOR TEST_SEQ2", 996);
+        stat.execute("CHECKPOINT");
+        stat.execute("SHUTDOWN IMMEDIATELY");
+        // the cache near the end of the sequence is limited by the maximum
+        // value, values aren't reused after abnormal termination
+        conn = getConnection("sequence");
+        stat = conn.createStatement();
+        assertSingleValue(stat, "CALL NEXT VALUE FOR TEST_SEQ", 1000);
+        assertSingleValue(stat, "CALL NEXT VALUE FOR TEST_SEQ2", 1000);
+        assertThrows(ErrorCode.SEQUENCE_EXHAUSTED, stat).execute("CALL NEXT VALUE FOR TEST_SEQ2");
+        conn.close();
+    }
+
     private void testMetaTable() throws SQLException {
         deleteDb("sequence");
         Connection conn = getConnection("sequence");
@@ -0,0 +1,203 @@
+/*
+ * Copyright 2004-2025 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (https://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.test.jdbc;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+import org.h2.api.ErrorCode;
+import org.h2.jdbc.JdbcAsyncConnection;
+import org.h2.test.TestBase;
+import org.h2.test.TestDb;
+
+/**
+ * Tests the asynchronous operations of a connection.
+ */
+public class TestAsyncConnection extends TestDb {
+
+    /**
+     * Run just this test.
+     *
+     * @param a ignored
+     */
+    public static void main(String... a) throws Exception {
+        TestBase.createCaller().init().testFromMain();
+    }
+
+    @Override
+    public void test() throws Exception {
+        deleteDb("asyncConnection");
+        try (Connection conn = getConnection("asyncConnection")) {
+            JdbcAsyncConnection async = new JdbcAsyncConnection(conn);
+            testUpdateAndQuery(async);
+            testErrors(async);
+            testTransaction(conn, async);
+            testPublisher(async);
+            testPublisherCancel(async);
+        }
+        deleteDb("asyncConnection");
+    }
+
+    private void testUpdateAndQuery(JdbcAsyncConnection async) throws Exception {
+        async.executeUpdate("CREATE TABLE TEST(ID INT PRIMARY KEY, NAME VARCHAR)");
+        ArrayList<CompletableFuture<Long>> updates = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            updates.add(async.executeUpdate("INSERT INTO TEST VALUES(?, ?)", i, "Name " + i));
+        }
+        CompletableFuture<List<Object[]>> query = async.executeQuery("SELECT * FROM TEST WHERE ID >= ? ORDER BY ID",
+                50);
+        CompletableFuture<Long> update = async.executeUpdate("UPDATE TEST SET NAME = NULL WHERE ID < ?", 10);
+        // the operations are executed in the submitted order
+        List<Object[]> rows = get(query);
+        for (CompletableFuture<Long> f : updates) {
+            assertTrue(f.isDone());
+            assertEquals(1L, get(f).longValue());
+        }
+        assertEquals(50, rows.size());
+        assertEquals(50, rows.get(0)[0]);
+        assertEquals("Name 99", rows.get(49)[1]);
+        assertEquals(10L, get(update).longValue());
+        assertEquals(90L, get(async.executeQuery("SELECT COUNT(NAME) FROM TEST")).get(0)[0]);
+    }
+
+    private void testErrors(JdbcAsyncConnection async) throws Exception {
+        CompletableFuture<Long> failed = async.executeUpdate("INSERT INTO TEST VALUES(?, ?)", 1, "Duplicate");
+        CompletableFuture<List<Object[]>> query = async.executeQuery("SELECT NAME FROM TEST WHERE ID = ?", 1);
+        assertEquals(ErrorCode.DUPLICATE_KEY_1, getErrorCode(failed));
+        // later operations are still executed
+        assertEquals(1, get(query).size());
+        assertEquals(ErrorCode.SYNTAX_ERROR_2, getErrorCode(async.executeQuery("SELECT FROM WHERE")));
+        assertEquals(ErrorCode.INVALID_VALUE_2,
+                getErrorCode(async.executeQuery("SELECT NAME FROM TEST WHERE ID = ?", 1, 2)));
+    }
+
+    private void testTransaction(Connection conn, JdbcAsyncConnection async) throws Exception {
+        conn.setAutoCommit(false);
+        async.executeUpdate("DELETE FROM TEST WHERE ID >= 90");
+        get(async.rollback());
+        assertEquals(100L, get(async.executeQuery("SELECT COUNT(*) FROM TEST")).get(0)[0]);
+        async.executeUpdate("DELETE FROM TEST WHERE ID >= 90");
+        get(async.commit());
+        conn.setAutoCommit(true);
+        assertEquals(90L, get(async.executeQuery("SELECT COUNT(*) FROM TEST")).get(0)[0]);
+    }
+
+    private void testPublisher(JdbcAsyncConnection async) throws Exception {
+        RowSubscriber subscriber = new RowSubscriber(7);
+        async.query("SELECT ID FROM TEST WHERE ID >= ? ORDER BY ID", 3, 20).subscribe(subscriber);
+        // operations can be executed while the query is open
+        CompletableFuture<Long> update = async.executeUpdate("UPDATE TEST SET NAME = 'x' WHERE ID = 0");
+        assertEquals(70, get(subscriber.result).size());
+        assertEquals(20, subscriber.rows.get(0)[0]);
+        assertEquals(89, subscriber.rows.get(69)[0]);
+        assertEquals(1L, get(update).longValue());
+
+        subscriber = new RowSubscriber(5);
+        async.query("SELECT * FROM TEST WHERE ID = 'x'", 10).subscribe(subscriber);
+        try {
+            get(subscriber.result);
+            fail();
+        } catch (ExecutionException e) {
+            assertEquals(ErrorCode.DATA_CONVERSION_ERROR_1, ((SQLException) e.getCause()).getErrorCode());
+        }
+    }
+
+    private void testPublisherCancel(JdbcAsyncConnection async) throws Exception {
+        RowSubscriber subscriber = new RowSubscriber(10) {
+            @Override
+            public void onNext(Object[] row) {
+                super.onNext(row);
+                if (rows.size() == 15) {
+                    subscription.cancel();
+                    result.complete(rows);
+                }
+            }
+        };
+        async.query("SELECT ID FROM TEST ORDER BY ID", 4).subscribe(subscriber);
+        assertEquals(15, get(subscriber.result).size());
+        get(async.flush());
+        assertEquals(15, subscriber.rows.size());
+        assertEquals(90L, get(async.executeQuery("SELECT COUNT(*) FROM TEST")).get(0)[0]);
+        async.executeUpdate("DROP TABLE TEST");
+        get(async.flush());
+    }
+
+    private static <T> T get(CompletableFuture<T> future) throws Exception {
+        return future.get(10, TimeUnit.SECONDS);
+    }
+
+    private static int getErrorCode(CompletableFuture<?> future) throws Exception {
+        try {
+            get(future);
+        } catch (ExecutionException e) {
+            return ((SQLException) e.getCause()).getErrorCode();
+        }
+        return 0;
+    }
+
+    /**
+     * A subscriber that requests a number of rows at a time.
+     */
+    private static class RowSubscriber implements Flow.Subscriber<Object[]> {
+
+        /**
+         * The received rows.
+         */
+        final ArrayList<Object[]> rows = new ArrayList<>();
+
+        /**
+         * Completed with the rows, or with the error.
+         */
+        final CompletableFuture<List<Object[]>> result = new CompletableFuture<>();
+
+        /**
+         * The subscription.
+         */
+        Flow.Subscription subscription;
+
+        private final int batchSize;
+
+        private int pending;
+
+        RowSubscriber(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            pending = batchSize;
+            subscription.request(batchSize);
+        }
+
+        @Override
+        public void onNext(Object[] row) {
+            rows.add(row);
+            if (--pending == 0) {
+                pending = batchSize;
+                subscription.request(batchSize);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            result.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            result.complete(rows);
+        }
+
+    }
+
+}
@@ -13,10 +13,13 @@
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.h2.api.ErrorCode;
+import org.h2.api.Trigger;
 import org.h2.test.TestBase;
 import org.h2.test.TestDb;
+import org.h2.util.Task;
 
 /**
  * Test for batch updates.
@@ -61,10 +64,13 @@ public static void main(String... a) throws Exception {
     }
 
     @Override
-    public void test() throws SQLException {
+    public void test() throws Exception {
         testRootCause();
         testExecuteCall();
         testException();
+        testInsertBatch();
+        testInsertBatchDeadlock();
+        testInsertBatchTriggers();
         testCoffee();
         deleteDb("batchUpdates");
     }
@@ -157,6 +163,184 @@ private void testException() throws SQLException {
         conn.close();
     }
 
+    private void testInsertBatch() throws SQLException {
+        deleteDb("batchUpdates");
+        conn = getConnection("batchUpdates");
+        stat = conn.createStatement();
+        stat.execute("create table test(id int primary key, name varchar, amount double precision, "
+                + "d date, x varchar)");
+        prep = conn.prepareStatement("insert into test values(?, ?, ?, ?, ?)");
+        for (int i = 0; i < 3000; i++) {
+            prep.setInt(1, i == 2000 ? 1000 : i);
+            prep.setString(2, i % 10 == 0 ? null : "name " + i);
+            prep.setDouble(3, i * 0.5);
+            prep.setDate(4, i % 3 == 0 ? null : java.sql.Date.valueOf("2020-01-01"));
+            if (i % 2 == 0) {
+                prep.setInt(5, i);
+            } else {
+                prep.setString(5, "x" + i);
+            }
+            prep.addBatch();
+        }
+        try {
+            prep.executeBatch();
+            fail();
+        } catch (BatchUpdateException e) {
+            assertEquals(ErrorCode.DUPLICATE_KEY_1, e.getNextException().getErrorCode());
+            int[] updateCounts = e.getUpdateCounts();
+            assertEquals(3000, updateCounts.length);
+            for (int i = 0; i < 3000; i++) {
+                assertEquals(i == 2000 ? Statement.EXECUTE_FAILED : 1, updateCounts[i]);
+            }
+        }
+        ResultSet rs = stat.executeQuery("select count(*), count(name), sum(amount), count(d) from test");
+        rs.next();
+        assertEquals(2999, rs.getInt(1));
+        assertEquals(2700, rs.getInt(2));
+        assertEquals(2248250d, rs.getDouble(3));
+        assertEquals(1999, rs.getInt(4));
+        rs = stat.executeQuery("select name, x from test where id in (11, 12) order by id");
+        rs.next();
+        assertEquals("name 11", rs.getString(1));
+        assertEquals("x11", rs.getString(2));
+        rs.next();
+        assertEquals("name 12", rs.getString(1));
+        assertEquals("12", rs.getString(2));
+        for (int i = 0; i < 3; i++) {
+            prep.setInt(1, 3000 + i);
+            prep.setString(2, null);
+            prep.setNull(3, java.sql.Types.DOUBLE);
+            prep.setNull(4, java.sql.Types.DATE);
+            prep.setNull(5, java.sql.Types.VARCHAR);
+            prep.addBatch();
+        }
+        for (int updateCount : prep.executeBatch()) {
+            assertEquals(1, updateCount);
+        }
+        rs = stat.executeQuery("select count(*) from test where id >= 3000 and amount is null");
+        rs.next();
+        assertEquals(3, rs.getInt(1));
+        stat.execute("drop table test");
+        conn.close();
+    }
+
+    /**
+     * A trigger that counts how often it is fired.
+     */
+    public static final class CountingTrigger implements Trigger {
+
+        /**
+         * The number of times the row trigger was fired.
+         */
+        static final AtomicInteger ROW_COUNT = new AtomicInteger();
+
+        /**
+         * The number of times the statement trigger was fired.
+         */
+        static final AtomicInteger STATEMENT_COUNT = new AtomicInteger();
+
+        private AtomicInteger count;
+
+        @Override
+        public void init(Connection conn, String schemaName, String triggerName, String tableName,
+                boolean before, int type) {
+            count = triggerName.endsWith("_ROW") ? ROW_COUNT : STATEMENT_COUNT;
+        }
+
+        @Override
+        public void fire(Connection conn, Object[] oldRow, Object[] newRow) {
+            count.incrementAndGet();
+        }
+
+    }
+
+    private void testInsertBatchTriggers() throws SQLException {
+        deleteDb("batchUpdates");
+        conn = getConnection("batchUpdates");
+        stat = conn.createStatement();
+        stat.execute("create table test(id int primary key)");
+        String trigger = '"' + CountingTrigger.class.getName() + '"';
+        stat.execute("create trigger test_row before insert on test for each row call " + trigger);
+        stat.execute("create trigger test_statement after insert on test call " + trigger);
+        CountingTrigger.ROW_COUNT.set(0);
+        CountingTrigger.STATEMENT_COUNT.set(0);
+        prep = conn.prepareStatement("insert into test values ?");
+        for (int id : new int[] { 1, 2, 3, 2, 4 }) {
+            prep.setInt(1, id);
+            prep.addBatch();
+        }
+        assertThrows(BatchUpdateException.class, prep).executeBatch();
+        // each parameter set fires the row trigger once, the statement
+        // trigger isn't fired for the failed one
+        assertEquals(5, CountingTrigger.ROW_COUNT.get());
+        assertEquals(4, CountingTrigger.STATEMENT_COUNT.get());
+        CountingTrigger.ROW_COUNT.set(0);
+        CountingTrigger.STATEMENT_COUNT.set(0);
+        for (int id = 5; id < 8; id++) {
+            prep.setInt(1, id);
+            prep.addBatch();
+        }
+        prep.executeBatch();
+        assertEquals(3, CountingTrigger.ROW_COUNT.get());
+        assertEquals(3, CountingTrigger.STATEMENT_COUNT.get());
+        stat.execute("drop table test");
+        conn.close();
+    }
+
+    private void testInsertBatchDeadlock() throws Exception {
+        deleteDb("batchUpdates");
+        conn = getConnection("batchUpdates");
+        stat = conn.createStatement();
+        stat.execute("create table test(id int primary key)");
+        stat.execute("create table u(id int primary key, v int)");
+        stat.execute("insert into u values (1, 0), (2, 0)");
+        Connection conn2 = getConnection("batchUpdates");
+        Statement stat2 = conn2.createStatement();
+        conn.setAutoCommit(false);
+        conn2.setAutoCommit(false);
+        // the younger transaction is chosen as the deadlock victim
+        stat2.execute("insert into test values 2");
+        stat.execute("insert into u values (3, 0)");
+        stat.execute("update u set v = 1 where id = 1");
+        prep = conn.prepareStatement("insert into test values ?");
+        for (int i = 1; i <= 2; i++) {
+            prep.setInt(1, i);
+            prep.addBatch();
+        }
+        // the batch waits for the row of the second transaction
+        Task task = new Task() {
+            @Override
+            public void call() throws SQLException {
+                prep.executeBatch();
+            }
+        }.execute();
+        ResultSet rs;
+        do {
+            Thread.sleep(10);
+            rs = stat2.executeQuery("select count(*) from information_schema.sessions where blocker_id is not null");
+            rs.next();
+        } while (rs.getInt(1) == 0);
+        stat2.execute("update u set v = 2 where id = 1");
+        conn2.commit();
+        Exception e = task.getException();
+        assertTrue(e instanceof BatchUpdateException);
+        // the whole transaction of the batch was rolled back
+        assertEquals(ErrorCode.DEADLOCK_1, ((BatchUpdateException) e).getNextException().getErrorCode());
+        for (int updateCount : ((BatchUpdateException) e).getUpdateCounts()) {
+            assertEquals(Statement.EXECUTE_FAILED, updateCount);
+        }
+        conn.setAutoCommit(true);
+        rs = stat.executeQuery("select count(*), sum(v) from u");
+        rs.next();
+        assertEquals(2, rs.getInt(1));
+        assertEquals(2, rs.getInt(2));
+        rs = stat.executeQuery("select count(*) from test");
+        rs.next();
+        assertEquals(1, rs.getInt(1));
+        conn2.close();
+        conn.close();
+    }
+
     private void testCoffee() throws SQLException {
         deleteDb("batchUpdates");
         conn = getConnection("batchUpdates");
@@ -60,6 +60,7 @@ public void test() throws Exception {
         testBlob(1);
         testBlob(100);
         testBlob(100000);
+        testBlobStream(5_000_000);
         stat.execute("drop table test");
         stat.execute("create table test(id int, x clob)");
         testClob(0);
@@ -237,6 +238,58 @@ public int read() throws IOException {
         conn.close();
     }
 
+    private void testBlobStream(int length) throws Exception {
+        Random r = new Random(length);
+        byte[] data = new byte[length];
+        r.nextBytes(data);
+        stat.execute("delete from test");
+        PreparedStatement prep = conn.prepareStatement("insert into test values(1, ?)");
+        prep.setBinaryStream(1, new ByteArrayInputStream(data), -1);
+        prep.execute();
+        ResultSet rs = stat.executeQuery("select x from test");
+        assertTrue(rs.next());
+        Blob b = rs.getBlob(1);
+        assertEquals(length, b.length());
+        // mixed small, large, and single byte reads, and skips
+        try (InputStream in = b.getBinaryStream()) {
+            byte[] buff = new byte[3 * 1024 * 1024];
+            int pos = 0;
+            for (int i = 0; pos < length; i++) {
+                int len;
+                if (i % 5 == 4) {
+                    len = (int) in.skip(r.nextInt(300_000));
+                    pos += len;
+                    continue;
+                } else if (i % 3 == 0) {
+                    int x = in.read();
+                    assertEquals(data[pos] & 255, x);
+                    len = 1;
+                } else {
+                    len = in.read(buff, 0, 1 + r.nextInt(i % 7 == 1 ? buff.length : 20_000));
+                    assertTrue(len > 0);
+                    for (int j = 0; j < len; j++) {
+                        if (buff[j] != data[pos + j]) {
+                            fail("pos: " + (pos + j));
+                        }
+                    }
+                }
+                pos += len;
+            }
+            assertEquals(length, pos);
+            assertEquals(-1, in.read());
+            assertEquals(0L, in.skip(10));
+        }
+        byte[] part = b.getBytes(length - 10_000, 20_000);
+        assertEquals(10_001, part.length);
+        for (int i = 0; i < part.length; i++) {
+            assertEquals(data[length - 10_001 + i], part[i]);
+        }
+        try (InputStream in = b.getBinaryStream()) {
+            assertEquals(data, IOUtils.readBytesAndClose(in, -1));
+        }
+        rs.close();
+    }
+
     private void testBlob(int length) throws Exception {
         Random r = new Random(length);
         byte[] data = new byte[length];
@@ -84,6 +84,7 @@ public void test() throws Exception {
         testTempView(conn);
         testInsertFunction(conn);
         testPrepareRecompile(conn);
+        testPrepareCached(conn);
         testMaxRowsChange(conn);
         testUnknownDataType(conn);
         testCancelReuse(conn);
@@ -381,6 +382,74 @@ private void testPrepareRecompile(Connection conn) throws SQLException {
 
     }
 
+    private void testPrepareCached(Connection conn) throws SQLException {
+        Statement stat = conn.createStatement();
+        stat.execute("CREATE TABLE TEST(ID INT PRIMARY KEY, NAME VARCHAR)");
+        stat.execute("INSERT INTO TEST VALUES (1, 'Hello'), (2, 'World')");
+        String sql = "SELECT * FROM TEST WHERE ID = ?";
+        PreparedStatement prep = conn.prepareStatement(sql);
+        assertEquals(2, prep.getMetaData().getColumnCount());
+        prep.setInt(1, 1);
+        ResultSet rs = prep.executeQuery();
+        assertTrue(rs.next());
+        assertEquals("Hello", rs.getString(2));
+        prep.close();
+        prep = conn.prepareStatement(sql);
+        // parameters of a re-used command are not set
+        assertThrows(ErrorCode.PARAMETER_NOT_SET_1, prep).executeQuery();
+        PreparedStatement prep2 = conn.prepareStatement(sql);
+        prep.setInt(1, 1);
+        prep2.setInt(1, 2);
+        rs = prep2.executeQuery();
+        assertTrue(rs.next());
+        assertEquals("World", rs.getString(2));
+        prep2.close();
+        rs = prep.executeQuery();
+        assertTrue(rs.next());
+        assertEquals("Hello", rs.getString(2));
+        prep.close();
+        stat.execute("ALTER TABLE TEST ADD COLUMN V INT DEFAULT 3");
+        prep = conn.prepareStatement(sql);
+        assertEquals(3, prep.getMetaData().getColumnCount());
+        prep.setInt(1, 2);
+        rs = prep.executeQuery();
+        assertTrue(rs.next());
+        assertEquals(3, rs.getInt(3));
+        prep.close();
+        // a schema change by another connection
+        prep = conn.prepareStatement(sql);
+        assertEquals(3, prep.getMetaData().getColumnCount());
+        try (Connection conn2 = getConnection("preparedStatement")) {
+            conn2.createStatement().execute("ALTER TABLE TEST ADD COLUMN W INT DEFAULT 4");
+        }
+        prep.setInt(1, 2);
+        rs = prep.executeQuery();
+        assertEquals(4, rs.getMetaData().getColumnCount());
+        assertEquals(4, prep.getMetaData().getColumnCount());
+        prep.close();
+        prep = conn.prepareStatement(sql);
+        assertEquals(4, prep.getMetaData().getColumnCount());
+        prep.close();
+        // many other statements, so that the cached command gets old
+        for (int i = 0; i < 200; i++) {
+            prep = conn.prepareStatement("SELECT ? + " + (i % 20));
+            prep.setInt(1, i);
+            rs = prep.executeQuery();
+            assertTrue(rs.next());
+            assertEquals(i + i % 20, rs.getInt(1));
+            prep.close();
+            if (i % 7 == 0) {
+                prep = conn.prepareStatement(sql);
+                prep.setInt(1, 1);
+                rs = prep.executeQuery();
+                assertTrue(rs.next());
+                assertEquals("Hello", rs.getString(2));
+                prep.close();
+            }
+        }
+        stat.execute("DROP TABLE TEST");
+    }
+
     private void testMaxRowsChange(Connection conn) throws SQLException {
         PreparedStatement prep = conn.prepareStatement(
                 "SELECT * FROM SYSTEM_RANGE(1, 100)");
@@ -7,13 +7,17 @@
 
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 import javax.sql.DataSource;
 
 import org.h2.api.ErrorCode;
@@ -49,6 +53,9 @@ public void test() throws Exception {
         testConnect();
         testThreads();
         testUnwrap();
+        testMinIdleAndEviction();
+        testStatistics();
+        testBrokenConnection();
         deleteDb("connectionPool");
         deleteDb("connectionPool2");
     }
@@ -254,6 +261,97 @@ private void testConnect() throws SQLException {
                 getConnection(null, null);
     }
 
+    private void testMinIdleAndEviction() throws Exception {
+        JdbcConnectionPool pool = getConnectionPool(5);
+        pool.setMinIdle(2);
+        assertEquals(2, pool.getIdleConnections());
+        assertEquals(2, pool.getConnectionsCreated());
+        Connection[] list = new Connection[5];
+        for (int i = 0; i < list.length; i++) {
+            list[i] = pool.getConnection();
+        }
+        assertEquals(5, pool.getConnectionsCreated());
+        for (Connection conn : list) {
+            conn.close();
+        }
+        assertEquals(5, pool.getIdleConnections());
+        pool.setIdleTimeout(1);
+        for (int i = 0; i < 100 && pool.getIdleConnections() > 2; i++) {
+            Thread.sleep(50);
+        }
+        assertEquals(2, pool.getIdleConnections());
+        assertEquals(3, pool.getConnectionsClosed());
+        pool.setIdleTimeout(0);
+        pool.setMaxLifetime(1);
+        Thread.sleep(1100);
+        Connection conn = pool.getConnection();
+        // the expired idle connections were replaced
+        assertTrue(pool.getConnectionsClosed() >= 5);
+        conn.close();
+        pool.dispose();
+        assertEquals(0, pool.getIdleConnections());
+        assertEquals(pool.getConnectionsCreated(), pool.getConnectionsClosed());
+    }
+
+    private void testBrokenConnection() throws Exception {
+        JdbcConnectionPool pool = getConnectionPool(2);
+        Connection conn = pool.getConnection();
+        ResultSet rs = conn.createStatement().executeQuery("CALL SESSION_ID()");
+        rs.next();
+        int id = rs.getInt(1);
+        try (Connection conn2 = pool.getConnection()) {
+            conn2.createStatement().execute("CALL ABORT_SESSION(" + id + ')');
+        }
+        assertEquals(1, pool.getIdleConnections());
+        conn.close();
+        // the broken connection is closed instead of being returned
+        assertEquals(1, pool.getIdleConnections());
+        assertEquals(1, pool.getConnectionsClosed());
+        pool.dispose();
+    }
+
+    private void testStatistics() throws Exception {
+        JdbcConnectionPool pool = getConnectionPool(2);
+        pool.setLoginTimeout(1);
+        Connection conn1 = pool.getConnection();
+        Connection conn2 = pool.getConnection();
+        Task t = new Task() {
+            @Override
+            public void call() throws Exception {
+                pool.getConnection().close();
+            }
+        };
+        t.execute();
+        for (int i = 0; i < 100 && pool.getWaitingThreads() == 0; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, pool.getWaitingThreads());
+        conn1.close();
+        t.get();
+        Connection conn3 = pool.getConnection();
+        DataSource ds = pool;
+        assertThrows(SQLException.class, ds).getConnection();
+        conn3.close();
+        assertEquals(1, pool.getConnectionTimeouts());
+        long[] waitTimes = pool.getWaitTimeHistogram();
+        long count = 0;
+        for (long c : waitTimes) {
+            count += c;
+        }
+        assertEquals(4, count);
+        long[] utilization = pool.getUtilizationHistogram();
+        assertEquals(1, utilization[4]);
+        assertEquals(3, utilization[9]);
+        ObjectName name = pool.registerMBean("test:pool");
+        MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+        assertEquals(1, ((Integer) mbeanServer.getAttribute(name, "ActiveConnections")).intValue());
+        assertEquals(2, ((Integer) mbeanServer.getAttribute(name, "MaxConnections")).intValue());
+        assertEquals(1L, ((Long) mbeanServer.getAttribute(name, "ConnectionTimeouts")).longValue());
+        conn2.close();
+        pool.dispose();
+        assertFalse(mbeanServer.isRegistered(name));
+    }
+
     private void testUnwrap() throws SQLException {
         JdbcConnectionPool pool = JdbcConnectionPool.create(new JdbcDataSource());
         assertTrue(pool.isWrapperFor(Object.class));
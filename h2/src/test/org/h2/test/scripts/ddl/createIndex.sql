@@ -22,7 +22,43 @@ CREATE TABLE TEST(A INT, B INT, C INT);
 > ok
 
 CREATE INDEX TEST_IDX ON TEST(C) INCLUDE(B);
-> exception SYNTAX_ERROR_1
+> ok
+
+SELECT DB_OBJECT_SQL('INDEX', 'PUBLIC', 'TEST_IDX');
+>> CREATE INDEX "PUBLIC"."TEST_IDX" ON "PUBLIC"."TEST"("C" NULLS FIRST) INCLUDE("B" NULLS FIRST)
+
+INSERT INTO TEST VALUES (1, 10, 3), (2, 20, 2), (3, 30, 3), (4, NULL, 1);
+> update count: 4
+
+EXPLAIN SELECT B FROM TEST WHERE C = 3;
+>> SELECT "B" FROM "PUBLIC"."TEST" /* PUBLIC.TEST_IDX: C = 3 */ WHERE "C" = 3
+
+SELECT B FROM TEST WHERE C = 3 ORDER BY B;
+> B
+> --
+> 10
+> 30
+> rows (ordered): 2
+
+EXPLAIN SELECT A FROM TEST WHERE C = 3;
+>> SELECT "A" FROM "PUBLIC"."TEST" /* PUBLIC.TEST_IDX: C = 3 */ WHERE "C" = 3
+
+UPDATE TEST SET B = 31 WHERE A = 3;
+> update count: 1
+
+SELECT C, B FROM TEST WHERE C >= 2 ORDER BY C, B;
+> C B
+> - --
+> 2 20
+> 3 10
+> 3 31
+> rows (ordered): 3
+
+DROP INDEX TEST_IDX;
+> ok
+
+DELETE FROM TEST;
+> update count: 4
 
 CREATE UNIQUE INDEX TEST_IDX ON TEST(C) INCLUDE(B);
 > ok
@@ -78,3 +114,86 @@ INSERT INTO TEST VALUES (1, NULL, NULL);
 
 DROP TABLE TEST;
 > ok
+
+CREATE TABLE TEST(ID INT PRIMARY KEY, STATUS VARCHAR, V INT);
+> ok
+
+INSERT INTO TEST VALUES (1, 'DONE', 1), (2, 'PENDING', 2), (3, 'DONE', 3), (4, 'PENDING', 4), (5, NULL, 5);
+> update count: 5
+
+CREATE INDEX TEST_IDX ON TEST(V) WHERE STATUS = 'PENDING';
+> ok
+
+SELECT DB_OBJECT_SQL('INDEX', 'PUBLIC', 'TEST_IDX');
+>> CREATE INDEX "PUBLIC"."TEST_IDX" ON "PUBLIC"."TEST"("V" NULLS FIRST) WHERE "STATUS" = 'PENDING'
+
+EXPLAIN SELECT ID FROM TEST WHERE STATUS = 'PENDING' AND V > 1;
+>> SELECT "ID" FROM "PUBLIC"."TEST" /* PUBLIC.TEST_IDX: V > 1 */ WHERE ("STATUS" = 'PENDING') AND ("V" > 1)
+
+EXPLAIN SELECT ID FROM TEST WHERE V > 1;
+>> SELECT "ID" FROM "PUBLIC"."TEST" /* PUBLIC.TEST.tableScan */ WHERE "V" > 1
+
+EXPLAIN SELECT ID FROM TEST WHERE STATUS = 'DONE' AND V > 1;
+>> SELECT "ID" FROM "PUBLIC"."TEST" /* PUBLIC.TEST.tableScan */ WHERE ("STATUS" = 'DONE') AND ("V" > 1)
+
+EXPLAIN SELECT MIN(V) FROM TEST;
+>> SELECT MIN("V") FROM "PUBLIC"."TEST" /* PUBLIC.TEST.tableScan */
+
+SELECT ID FROM TEST WHERE STATUS = 'PENDING' AND V > 1 ORDER BY ID;
+> ID
+> --
+> 2
+> 4
+> rows (ordered): 2
+
+UPDATE TEST SET STATUS = 'PENDING' WHERE ID IN (3, 5);
+> update count: 2
+
+UPDATE TEST SET STATUS = 'DONE' WHERE ID = 2;
+> update count: 1
+
+UPDATE TEST SET V = 6 WHERE ID = 4;
+> update count: 1
+
+DELETE FROM TEST WHERE ID = 5;
+> update count: 1
+
+SELECT ID, V FROM TEST WHERE STATUS = 'PENDING' AND V > 0 ORDER BY V;
+> ID V
+> -- -
+> 3  3
+> 4  6
+> rows (ordered): 2
+
+DROP INDEX TEST_IDX;
+> ok
+
+CREATE UNIQUE INDEX TEST_IDX ON TEST(V) WHERE STATUS IN ('NEW', 'PENDING') AND V BETWEEN 1 AND 10;
+> ok
+
+INSERT INTO TEST VALUES (6, 'DONE', 3);
+> update count: 1
+
+INSERT INTO TEST VALUES (7, 'NEW', 3);
+> exception DUPLICATE_KEY_1
+
+EXPLAIN SELECT ID FROM TEST WHERE STATUS = 'NEW' AND V = 2;
+>> SELECT "ID" FROM "PUBLIC"."TEST" /* PUBLIC.TEST_IDX: V = 2 */ WHERE ("STATUS" = 'NEW') AND ("V" = 2)
+
+EXPLAIN SELECT ID FROM TEST WHERE STATUS = 'NEW' AND V = 20;
+>> SELECT "ID" FROM "PUBLIC"."TEST" /* PUBLIC.TEST.tableScan */ WHERE ("STATUS" = 'NEW') AND ("V" = 20)
+
+ALTER TABLE TEST ADD CONSTRAINT TEST_V_UNIQUE UNIQUE(V);
+> exception DUPLICATE_KEY_1
+
+ALTER TABLE TEST DROP COLUMN STATUS;
+> exception COLUMN_IS_REFERENCED_1
+
+CREATE INDEX TEST_IDX_2 ON TEST(V) WHERE STATUS <> 'DONE';
+> exception FEATURE_NOT_SUPPORTED_1
+
+CREATE INDEX TEST_IDX_2 ON TEST(V) WHERE RAND() > 0.5;
+> exception FEATURE_NOT_SUPPORTED_1
+
+DROP TABLE TEST;
+> ok
@@ -281,3 +281,49 @@ SELECT CONSTRAINT_NAME, NULLS_DISTINCT, INDEX_NAME FROM INFORMATION_SCHEMA.TABLE
 
 DROP TABLE TEST;
 > ok
+
+CREATE TABLE TEST(ID BIGINT PRIMARY KEY, V INT UNIQUE, W INT) AS
+    SELECT X, 20000 - X, MOD(X, 10) FROM SYSTEM_RANGE(1, 10000);
+> ok
+
+CREATE INDEX TEST_W_IDX ON TEST(W);
+> ok
+
+SELECT COUNT(*), SUM(ID), MIN(V), MAX(V) FROM TEST;
+> COUNT(*) SUM(ID)  MIN(V) MAX(V)
+> -------- -------- ------ ------
+> 10000    50005000 10000  19999
+> rows: 1
+
+SELECT ID FROM TEST WHERE V = 15000;
+>> 5000
+
+SELECT COUNT(*) FROM TEST WHERE W = 3;
+>> 1000
+
+CREATE TABLE TEST2(ID BIGINT PRIMARY KEY, V INT) AS SELECT MOD(X * 7919, 10007), X FROM SYSTEM_RANGE(1, 10000);
+> ok
+
+SELECT COUNT(*), MIN(ID), MAX(ID) FROM TEST2;
+> COUNT(*) MIN(ID) MAX(ID)
+> -------- ------- -------
+> 10000    1       10006
+> rows: 1
+
+SELECT V FROM TEST2 WHERE ID = 7919;
+>> 1
+
+DROP TABLE TEST2;
+> ok
+
+CREATE TABLE TEST2(ID BIGINT PRIMARY KEY) AS SELECT MOD(X, 5000) FROM SYSTEM_RANGE(1, 10000);
+> exception DUPLICATE_KEY_1
+
+CREATE TABLE TEST2(ID INT, V INT UNIQUE) AS SELECT X, MOD(X, 5000) FROM SYSTEM_RANGE(1, 10000);
+> exception DUPLICATE_KEY_1
+
+SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_NAME = 'TEST2';
+>> 0
+
+DROP TABLE TEST;
+> ok
@@ -148,3 +148,45 @@ TABLE TEST;
 
 DROP TABLE TEST;
 > ok
+
+CREATE TABLE TEST(ID INT PRIMARY KEY, V INT UNIQUE, W VARCHAR, PARENT INT);
+> ok
+
+CREATE INDEX TEST_W_IDX ON TEST(W);
+> ok
+
+INSERT INTO TEST VALUES (3, 30, 'c', NULL), (1, 10, 'b', NULL), (2, 20, 'a', NULL);
+> update count: 3
+
+INSERT INTO TEST VALUES (5, 50, 'e', NULL), (4, 10, 'd', NULL);
+> exception DUPLICATE_KEY_1
+
+SELECT * FROM FINAL TABLE (INSERT INTO TEST VALUES (6, 60, 'f', NULL), (4, 40, 'd', NULL));
+> ID V  W PARENT
+> -- -- - ------
+> 4  40 d null
+> 6  60 f null
+> rows: 2
+
+SELECT ID FROM TEST WHERE W > 'b';
+> ID
+> --
+> 3
+> 4
+> 6
+> rows: 3
+
+ALTER TABLE TEST ADD FOREIGN KEY(PARENT) REFERENCES TEST(ID);
+> ok
+
+INSERT INTO TEST VALUES (8, 80, 'h', 7), (7, 70, 'g', NULL);
+> exception REFERENTIAL_INTEGRITY_VIOLATED_PARENT_MISSING_1
+
+INSERT INTO TEST VALUES (7, 70, 'g', NULL), (8, 80, 'h', 7);
+> update count: 2
+
+SELECT COUNT(*) FROM TEST;
+>> 7
+
+DROP TABLE TEST;
+> ok
@@ -79,6 +79,7 @@ public void test() throws Exception {
         testServer();
         testWebApp();
         testIfExists();
+        testQuery();
 
         testSpecialAutoComplete();
     }
@@ -297,6 +298,69 @@ private void testIfExists() throws Exception {
 
     }
 
+    private void testQuery() throws Exception {
+        Connection conn = getConnection("jdbc:h2:mem:" + getTestName(),
+                getUser(), getPassword());
+        Server server = Server.createWebServer("-webPort", "8182",
+                "-properties", "null", "-webQueryMaxRows", "3").start();
+        try {
+            String url = "http://localhost:8182/query";
+            String db = "{\"url\":\"jdbc:h2:mem:" + getTestName() +
+                    "\",\"user\":\"" + getUser() + "\",\"password\":\"" + getPassword() + "\",";
+            WebClient client = new WebClient();
+            assertEquals("{\"updateCount\":0}\n", client.post(url, db +
+                    "\"sql\":\"CREATE TABLE TEST(ID INT, NAME VARCHAR, DATA JSON)\"}"));
+            assertEquals(200, client.getResponseCode());
+            assertEquals("application/x-ndjson", client.getContentType());
+            assertEquals("{\"updateCount\":5}\n", client.post(url, db +
+                    "\"sql\":\"INSERT INTO TEST SELECT X, 'Name ' || X, ? FORMAT JSON FROM SYSTEM_RANGE(1, ?)\"," +
+                    "\"params\":[{\"a\":[1,true]},5]}"));
+            assertEquals("{\"columns\":[{\"name\":\"ID\",\"type\":\"INTEGER\"}," +
+                    "{\"name\":\"NAME\",\"type\":\"CHARACTER VARYING\"},{\"name\":\"DATA\",\"type\":\"JSON\"}]}\n" +
+                    "[2,\"Name 2\",{\"a\":[1,true]}]\n" +
+                    "[3,\"Name 3\",{\"a\":[1,true]}]\n" +
+                    "{\"rows\":2}\n",
+                    client.post(url, db + "\"sql\":\"SELECT * FROM TEST WHERE ID BETWEEN ? AND ? ORDER BY ID\"," +
+                            "\"params\":[2,3]}"));
+            // the row limit of the server
+            String result = client.post(url, db + "\"sql\":\"SELECT ID FROM TEST ORDER BY ID\"}");
+            assertEquals("{\"columns\":[{\"name\":\"ID\",\"type\":\"INTEGER\"}]}\n[1]\n[2]\n[3]\n" +
+                    "{\"rows\":3,\"truncated\":true}\n", result);
+            // the row limit of the request
+            result = client.post(url, db + "\"sql\":\"SELECT ID FROM TEST ORDER BY ID\",\"maxRows\":1}");
+            assertContains(result, "[1]\n{\"rows\":1,\"truncated\":true}");
+            // errors
+            result = client.post(url, db + "\"sql\":\"SELECT * FROM TEST_WRONG\"}");
+            assertEquals(400, client.getResponseCode());
+            assertContains(result, "{\"error\":{\"code\":" + ErrorCode.TABLE_OR_VIEW_NOT_FOUND_1);
+            result = client.post(url, db + "\"sql\":\"SELECT 1 / (3 - ID) FROM TEST\"}");
+            assertEquals(200, client.getResponseCode());
+            assertContains(result, "[0]\n[1]\n{\"error\":{\"code\":" + ErrorCode.DIVISION_BY_ZERO_1);
+            client.post(url, "{\"url\":\"jdbc:h2:mem:" + getTestName() + "Wrong\",\"sql\":\"SELECT 1\"}");
+            assertEquals(400, client.getResponseCode());
+            client.post(url, "{\"url\":\"jdbc:unknown:test\",\"sql\":\"SELECT 1\"}");
+            assertEquals(400, client.getResponseCode());
+            client.post(url, "[]");
+            assertEquals(400, client.getResponseCode());
+            // requests that web pages of other origins can send
+            String create = db + "\"sql\":\"CREATE TABLE TEST2(ID INT)\"}";
+            assertEquals("HTTP/1.1 415 Unsupported Media Type",
+                    client.postStatus(8182, "/query", "text/plain", null, create));
+            assertEquals("HTTP/1.1 415 Unsupported Media Type",
+                    client.postStatus(8182, "/query", null, null, create));
+            assertEquals("HTTP/1.1 403 Forbidden",
+                    client.postStatus(8182, "/query", "application/json", "http://evil.example", create));
+            assertEquals("HTTP/1.1 200 OK", client.postStatus(8182, "/query", "application/json; charset=UTF-8",
+                    "http://localhost:8182", db + "\"sql\":\"SELECT 1\"}"));
+            assertContains(client.post(url, db +
+                    "\"sql\":\"SELECT * FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_NAME = 'TEST2'\"}"),
+                    "{\"rows\":0}");
+        } finally {
+            server.stop();
+            conn.close();
+        }
+    }
+
     private void testWebApp() throws Exception {
         Server server = new Server();
         server.setOut(new PrintStream(new ByteArrayOutputStream()));
@@ -9,8 +9,11 @@
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.util.UUID;
 import org.h2.util.IOUtils;
 
@@ -22,6 +25,7 @@ public class WebClient {
     private String sessionId;
     private String acceptLanguage;
     private String contentType;
+    private int responseCode;
 
     /**
      * Open a URL and get the HTML data.
@@ -84,6 +88,68 @@ String upload(String url, String fileName, InputStream in) throws IOException {
         return result;
     }
 
+    /**
+     * Post a request body and read the response, also if the request failed.
+     *
+     * @param url the target URL
+     * @param body the request body
+     * @return the response
+     */
+    String post(String url, String body) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+        conn.setDoOutput(true);
+        conn.setRequestMethod("POST");
+        conn.setRequestProperty("Content-Type", "application/json");
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        conn.setFixedLengthStreamingMode(bytes.length);
+        conn.getOutputStream().write(bytes);
+        responseCode = conn.getResponseCode();
+        contentType = conn.getContentType();
+        InputStream in = responseCode < 400 ? conn.getInputStream() : conn.getErrorStream();
+        return IOUtils.readStringAndClose(new InputStreamReader(in, StandardCharsets.UTF_8), -1);
+    }
+
+    /**
+     * Post a request body with the given headers to localhost over a new
+     * connection, and read the status line of the response.
+     *
+     * @param port the port
+     * @param path the path
+     * @param contentType the content type, or null
+     * @param origin the origin, or null
+     * @param body the request body
+     * @return the status line
+     */
+    String postStatus(int port, String path, String contentType, String origin, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        StringBuilder buff = new StringBuilder("POST ").append(path).append(" HTTP/1.1\r\n")
+                .append("Host: localhost:").append(port).append("\r\n")
+                .append("Connection: close\r\n");
+        if (contentType != null) {
+            buff.append("Content-Type: ").append(contentType).append("\r\n");
+        }
+        if (origin != null) {
+            buff.append("Origin: ").append(origin).append("\r\n");
+        }
+        buff.append("Content-Length: ").append(bytes.length).append("\r\n\r\n");
+        try (Socket socket = new Socket("localhost", port)) {
+            OutputStream out = socket.getOutputStream();
+            out.write(buff.toString().getBytes(StandardCharsets.ISO_8859_1));
+            out.write(bytes);
+            out.flush();
+            InputStream in = socket.getInputStream();
+            StringBuilder line = new StringBuilder();
+            for (int c; (c = in.read()) >= 0 && c != '\r';) {
+                line.append((char) c);
+            }
+            return line.toString();
+        }
+    }
+
+    int getResponseCode() {
+        return responseCode;
+    }
+
     void setAcceptLanguage(String acceptLanguage) {
         this.acceptLanguage = acceptLanguage;
     }
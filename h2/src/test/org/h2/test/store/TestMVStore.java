@@ -24,9 +24,11 @@
 import org.h2.mvstore.MVMap;
 import org.h2.mvstore.MVStore;
 import org.h2.mvstore.MVStoreException;
+import org.h2.mvstore.MVStoreReplica;
 import org.h2.mvstore.OffHeapStore;
 import org.h2.mvstore.RandomAccessStore;
 import org.h2.mvstore.type.DataType;
+import org.h2.mvstore.type.LongDataType;
 import org.h2.mvstore.type.ObjectDataType;
 import org.h2.mvstore.type.StringDataType;
 import org.h2.store.fs.FilePath;
@@ -70,6 +72,8 @@ public void test() throws Exception {
         testRemoveMap();
         testIsEmpty();
         testOffHeapStorage();
+        testAppendLeaf();
+        testReplica();
         testNewerWriteVersion();
         testCompactFully();
         testBackgroundExceptionListener();
@@ -419,6 +423,120 @@ private void testOffHeapStorage() {
         }
     }
 
+    private void testAppendLeaf() {
+        String fileName = getBaseDir() + "/" + getTestName();
+        FileUtils.delete(fileName);
+        long count = 0;
+        MVMap.Builder<Long, String> builder = new MVMap.Builder<Long, String>()
+                .keyType(LongDataType.INSTANCE).valueType(StringDataType.INSTANCE);
+        try (MVStore s = openStore(fileName)) {
+            MVMap<Long, String> map = s.openMap("data", builder);
+            map.put(-1L, "first");
+            for (int i = 0; i < 1000; i++) {
+                int size = 1 + i % 70;
+                Long[] keys = map.getKeyType().createStorage(size);
+                String[] values = map.getValueType().createStorage(size);
+                for (int j = 0; j < size; j++) {
+                    keys[j] = count;
+                    values[j] = "Hello " + count++;
+                }
+                map.appendLeaf(keys, values);
+                if (i % 100 == 0) {
+                    s.commit();
+                }
+            }
+            assertEquals(count + 1, map.size());
+            assertEquals(count - 1, map.lastKey().longValue());
+            assertEquals("first", map.get(-1L));
+            map.put(count, "last");
+        }
+        try (MVStore s = openStore(fileName)) {
+            MVMap<Long, String> map = s.openMap("data", builder);
+            assertEquals(count + 2, map.size());
+            Iterator<Long> it = map.keyIterator(null);
+            for (long i = -1; i < count; i++) {
+                assertEquals(i, it.next().longValue());
+                if (i >= 0) {
+                    assertEquals("Hello " + i, map.get(i));
+                }
+            }
+            assertEquals("last", map.get(count));
+            assertEquals(count / 2, map.getKeyIndex(count / 2) - 1);
+        }
+    }
+
+    private void testReplica() {
+        String fileName = getBaseDir() + "/" + getTestName();
+        String replicaName = fileName + ".replica";
+        String dir = getBaseDir() + "/" + getTestName() + ".ship";
+        FileUtils.delete(fileName);
+        FileUtils.delete(replicaName);
+        FileUtils.deleteRecursive(dir, false);
+        FileUtils.createDirectories(dir);
+        try (MVStore s = new MVStore.Builder().fileName(fileName).replicaDirectory(dir).open()) {
+            MVMap<Integer, String> map = s.openMap("data");
+            map.put(0, "Hello");
+            s.commit();
+            try (MVStoreReplica replica = new MVStoreReplica(replicaName, dir, 0)) {
+                assertEquals("Hello", replica.read(r -> r.<Integer, String>openMap("data").get(0)));
+                for (int i = 1; i < 1000; i++) {
+                    map.put(i, "Hello " + i);
+                    if (i % 100 == 0) {
+                        s.commit();
+                    }
+                }
+                s.commit();
+                // snapshots are only replaced by a refresh
+                assertEquals(1, replica.read(r -> r.openMap("data").size()).intValue());
+                assertTrue(replica.refresh());
+                assertFalse(replica.refresh());
+                assertEquals(1000, replica.read(r -> r.openMap("data").size()).intValue());
+                map.clear();
+                s.compactFile(1000);
+                map.put(1, "World");
+                s.commit();
+                assertTrue(replica.refresh());
+                replica.read(r -> {
+                    MVMap<Integer, String> m = r.openMap("data");
+                    assertEquals(1, m.size());
+                    assertEquals("World", m.get(1));
+                    return null;
+                });
+            }
+        }
+        // reopening ships the whole file, and the replica catches up
+        try (MVStore s = new MVStore.Builder().fileName(fileName).replicaDirectory(dir).open()) {
+            s.openMap("data").put(2, "Again");
+            s.commit();
+        }
+        try (MVStoreReplica replica = new MVStoreReplica(replicaName, dir, 0)) {
+            assertEquals(2, replica.read(r -> r.openMap("data").size()).intValue());
+            assertEquals("Again", replica.read(r -> r.<Integer, String>openMap("data").get(2)));
+        }
+        // segments that no replica consumes are superseded by new copies
+        // of the whole file, and deleted
+        try (MVStore s = new MVStore.Builder().fileName(fileName).replicaDirectory(dir).open()) {
+            s.setRetentionTime(0);
+            MVMap<Integer, String> map = s.openMap("data");
+            for (int i = 0; i < 100; i++) {
+                for (int j = 0; j < 100; j++) {
+                    map.put(j, i + new String(new char[1000]));
+                }
+                s.commit();
+            }
+            long size = Math.max(FileUtils.size(fileName), 1024 * 1024);
+            long shipped = 0;
+            for (String name : FileUtils.newDirectoryStream(dir)) {
+                shipped += FileUtils.size(name);
+            }
+            assertTrue(shipped + " " + size, shipped < 3 * size);
+        }
+        try (MVStoreReplica replica = new MVStoreReplica(replicaName, dir, 0)) {
+            assertEquals("99", replica.read(r -> r.<Integer, String>openMap("data").get(50)).substring(0, 2));
+        }
+        FileUtils.deleteRecursive(dir, false);
+    }
+
     private void testNewerWriteVersion() {
         String fileName = getBaseDir() + "/" + getTestName();
         FileUtils.delete(fileName);
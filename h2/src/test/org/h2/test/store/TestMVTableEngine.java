@@ -90,6 +90,7 @@ public void test() throws Exception {
         testRollbackAfterCrash();
         testReferentialIntegrity();
         testWriteDelay();
+        testRedoLog();
         testAutoCommit();
         testReopen();
         testBlob();
@@ -967,6 +968,48 @@ private void testWriteDelay() throws Exception {
         conn.close();
     }
 
+    private void testRedoLog() throws Exception {
+        if (config.memory || config.cipher != null) {
+            return;
+        }
+        deleteDb(getTestName());
+        String url = getTestName() + ";REDO_LOG_SIZE=1024";
+        Connection conn = getConnection(url);
+        Statement stat = conn.createStatement();
+        stat.execute("set write_delay 1000000");
+        stat.execute("create table test(id int primary key, name varchar, x int)");
+        stat.execute("create index idx_x on test(x)");
+        for (int i = 0; i < 100; i++) {
+            stat.execute("insert into test values(" + i + ", 'n" + i + "', " + i % 10 + ")");
+        }
+        stat.execute("update test set name = 'u' where id < 10");
+        stat.execute("delete from test where id >= 90");
+        conn.setAutoCommit(false);
+        stat.execute("insert into test values(100, 'uncommitted', 1)");
+        stat.execute("delete from test where id = 1");
+        assertTrue(FileUtils.size(getBaseDir() + "/" + getTestName() + Constants.SUFFIX_REDO_FILE) > 0);
+        stat.execute("shutdown immediately");
+        JdbcUtils.closeSilently(conn);
+
+        conn = getConnection(url);
+        stat = conn.createStatement();
+        assertSingleValue(stat, "select count(*) from test", 90);
+        assertSingleValue(stat, "select count(*) from test where name = 'u'", 10);
+        assertSingleValue(stat, "select count(*) from test where x = 1", 9);
+        assertSingleValue(stat, "select count(*) from test where id = 1", 1);
+        stat.execute("truncate table test");
+        stat.execute("insert into test values(1, 'a', 1)");
+        stat.execute("shutdown immediately");
+        JdbcUtils.closeSilently(conn);
+
+        conn = getConnection(url);
+        stat = conn.createStatement();
+        assertSingleValue(stat, "select count(*) from test", 1);
+        conn.close();
+        assertEquals(0, FileUtils.size(getBaseDir() + "/" + getTestName() + Constants.SUFFIX_REDO_FILE));
+        deleteDb(getTestName());
+    }
+
     private void testAutoCommit() throws SQLException {
         Connection conn;
         Statement stat;
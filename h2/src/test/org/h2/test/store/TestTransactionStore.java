@@ -16,8 +16,11 @@
 import java.util.List;
 import java.util.Map.Entry;
 import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.h2.engine.IsolationLevel;
 import org.h2.mvstore.DataUtils;
 import org.h2.mvstore.MVStore;
 import org.h2.mvstore.MVStoreException;
@@ -60,6 +63,7 @@ public void test() throws Exception {
         testGetModifiedMaps();
         testKeyIterator();
         testTwoPhaseCommit();
+        testUndoLogBuffer();
         testSavepoint();
         testConcurrentTransactionsReadCommitted();
         testSingleConnection();
@@ -67,6 +71,8 @@ public void test() throws Exception {
         testStoreMultiThreadedReads();
         testCommitAfterMapRemoval();
         testDeadLock();
+        testRowLockQueue();
+        testDeadLockThroughLockQueue();
     }
 
     private void testHCLFKey() {
@@ -536,6 +542,141 @@ private void testTwoPhaseCommit() {
         FileUtils.delete(fileName);
     }
 
+    private void testUndoLogBuffer() {
+        String fileName = getBaseDir() + "/testUndoLogBuffer.h3";
+        FileUtils.delete(fileName);
+
+        try (MVStore s = new MVStore.Builder().fileName(fileName).autoCommitDisabled().open()) {
+            TransactionStore ts = new TransactionStore(s);
+            ts.init();
+            Transaction tx = ts.begin();
+            TransactionMap<Integer, String> m = tx.openMap("test");
+            m.put(0, "committed");
+            tx.commit();
+            s.commit();
+
+            // a savepoint in the part of the undo log that was moved to the map
+            tx = ts.begin();
+            m = tx.openMap("test");
+            for (int i = 1; i < 100; i++) {
+                m.put(i, "a" + i);
+            }
+            long savepoint = tx.setSavepoint();
+            for (int i = 100; i < 1000; i++) {
+                m.put(i, "b" + i);
+            }
+            Iterator<Change> changes = tx.getChanges(savepoint);
+            int count = 0;
+            while (changes.hasNext()) {
+                assertEquals(999 - count, ((Integer) changes.next().key).intValue());
+                count++;
+            }
+            assertEquals(900, count);
+            tx.rollbackToSavepoint(savepoint);
+            assertNull(m.get(100));
+            assertEquals("a99", m.get(99));
+            tx.commit();
+
+            // records in memory have to be persisted with the changes
+            tx = ts.begin();
+            m = tx.openMap("test");
+            for (int i = 0; i < 10; i++) {
+                m.put(i, "uncommitted");
+            }
+            s.commit();
+            s.closeImmediately();
+        }
+
+        try (MVStore s = MVStore.open(fileName)) {
+            TransactionStore ts = new TransactionStore(s);
+            ts.init();
+            List<Transaction> list = ts.getOpenTransactions();
+            assertEquals(1, list.size());
+            list.get(0).rollback();
+            Transaction tx = ts.begin();
+            TransactionMap<Integer, String> m = tx.openMap("test");
+            assertEquals(100, m.sizeAsLong());
+            assertEquals("committed", m.get(0));
+            assertEquals("a9", m.get(9));
+            tx.commit();
+        }
+
+        // chunks stored by compaction have to include the records as well
+        try (MVStore s = new MVStore.Builder().fileName(fileName).autoCommitDisabled().open()) {
+            TransactionStore ts = new TransactionStore(s);
+            ts.init();
+            for (int j = 0; j < 10; j++) {
+                Transaction tx = ts.begin();
+                TransactionMap<Integer, String> m = tx.openMap("test");
+                for (int i = 1000; i < 1100; i++) {
+                    if (j % 2 == 0) {
+                        m.put(i, "garbage" + i);
+                    } else {
+                        m.remove(i);
+                    }
+                }
+                tx.commit();
+                s.commit();
+            }
+            Transaction tx = ts.begin();
+            TransactionMap<Integer, String> m = tx.openMap("test");
+            for (int i = 0; i < 10; i++) {
+                m.put(i, "uncommitted");
+            }
+            s.compactFile(1000);
+            s.closeImmediately();
+        }
+
+        try (MVStore s = MVStore.open(fileName)) {
+            TransactionStore ts = new TransactionStore(s);
+            ts.init();
+            ts.endLeftoverTransactions();
+            Transaction tx = ts.begin();
+            TransactionMap<Integer, String> m = tx.openMap("test");
+            assertEquals(100, m.sizeAsLong());
+            assertEquals("committed", m.get(0));
+            assertEquals("a9", m.get(9));
+            tx.commit();
+        }
+
+        // a store during a rollback spills the remaining records
+        try (MVStore s = new MVStore.Builder().fileName(fileName).autoCommitDisabled().open()) {
+            TransactionStore ts = new TransactionStore(s);
+            ts.init();
+            Transaction tx = ts.begin((map, key, existingValue, restoredValue) -> s.commit(), 0, 0,
+                    IsolationLevel.READ_COMMITTED);
+            TransactionMap<Integer, String> m = tx.openMap("test");
+            for (int i = 0; i < 10; i++) {
+                m.put(i, "uncommitted");
+            }
+            long savepoint = tx.setSavepoint();
+            for (int i = 2000; i < 2010; i++) {
+                m.put(i, "uncommitted");
+            }
+            tx.rollbackToSavepoint(savepoint);
+            assertNull(m.get(2000));
+            assertFalse(tx.getChanges(savepoint).hasNext());
+            s.commit();
+            // only the records of the changes before the savepoint are left
+            assertEquals(10, s.openMap(TransactionStore.UNDO_LOG_NAME_PREFIX + '.' + tx.getId()).size());
+            s.closeImmediately();
+        }
+
+        try (MVStore s = MVStore.open(fileName)) {
+            TransactionStore ts = new TransactionStore(s);
+            ts.init();
+            ts.endLeftoverTransactions();
+            Transaction tx = ts.begin();
+            TransactionMap<Integer, String> m = tx.openMap("test");
+            assertEquals(100, m.sizeAsLong());
+            assertEquals("committed", m.get(0));
+            assertEquals("a9", m.get(9));
+            tx.commit();
+        }
+
+        FileUtils.delete(fileName);
+    }
+
     private void testSavepoint() {
         try (MVStore s = MVStore.open(null)) {
             TransactionStore ts = new TransactionStore(s);
@@ -997,4 +1138,119 @@ public void call() throws Exception {
             assertEquals(" "+stepCount, (stepCount+1) * (threadCount - failureCount), count);
         }
     }
+
+    private void testRowLockQueue() throws Exception {
+        try (MVStore s = MVStore.open(null)) {
+            TransactionStore ts = new TransactionStore(s,
+                                    new MetaType<>(null, s.backgroundExceptionHandler), new ObjectDataType(), 10000);
+            ts.init();
+            Transaction t = ts.begin();
+            TransactionMap<Long,Long> m = t.openMap("test", LongDataType.INSTANCE, LongDataType.INSTANCE);
+            m.put(1L, 0L);
+            int waiterCount = 4;
+            ConcurrentLinkedQueue<Integer> order = new ConcurrentLinkedQueue<>();
+            Thread[] threads = new Thread[waiterCount];
+            Task[] tasks = new Task[waiterCount];
+            for (int i = 0; i < waiterCount; i++) {
+                int id = i;
+                AtomicReference<Thread> thread = new AtomicReference<>();
+                tasks[i] = new Task() {
+                    @Override
+                    public void call() throws Exception {
+                        thread.set(Thread.currentThread());
+                        Transaction tx = ts.begin();
+                        TransactionMap<Long, Long> map = tx.openMap("test", LongDataType.INSTANCE,
+                                LongDataType.INSTANCE);
+                        map.put(1L, map.lock(1L) + 1);
+                        order.add(id);
+                        tx.commit();
+                    }
+                }.execute();
+                // wait until the task waits for the lock, so waiters are
+                // queued in a known order
+                while ((threads[i] = thread.get()) == null || threads[i].getState() != Thread.State.TIMED_WAITING) {
+                    Thread.sleep(1);
+                }
+            }
+            t.commit();
+            for (Task task : tasks) {
+                task.get();
+            }
+            assertEquals("[0, 1, 2, 3]", order.toString());
+            t = ts.begin();
+            m = t.openMap("test", LongDataType.INSTANCE, LongDataType.INSTANCE);
+            assertEquals(waiterCount, m.get(1L).longValue());
+            TransactionStore.LockWaits waits = ts.getLockWaits(m.map.getId());
+            assertNotNull(waits);
+            assertTrue(waits.getCount() >= waiterCount);
+            assertTrue(waits.getMaxNanos() > 0L);
+            t.commit();
+        }
+    }
+
+    private void testDeadLockThroughLockQueue() throws Exception {
+        try (MVStore s = MVStore.open(null)) {
+            TransactionStore ts = new TransactionStore(s);
+            ts.init();
+            Transaction[] tx = new Transaction[5];
+            for (int i = 1; i < tx.length; i++) {
+                tx[i] = ts.begin((map, key, existingValue, restoredValue) -> {}, 10000, i,
+                        IsolationLevel.READ_COMMITTED);
+            }
+            TransactionMap<String, String> m1 = tx[1].openMap("test");
+            TransactionMap<String, String> m3 = tx[3].openMap("test");
+            TransactionMap<String, String> m4 = tx[4].openMap("test");
+            m1.put("k", "1");
+            m3.put("l", "3");
+            // tx2 waits for tx1, tx3 waits behind tx2 in the queue of "k"
+            Task task2 = new Task() {
+                @Override
+                public void call() throws Exception {
+                    tx[2].openMap("test").put("k", "2");
+                }
+            }.execute();
+            waitForBlocker(tx[2], 1);
+            Task task3 = new Task() {
+                @Override
+                public void call() throws Exception {
+                    m3.put("k", "3");
+                }
+            }.execute();
+            while (tx[3].getBlockerId() == 0) {
+                Thread.sleep(1);
+            }
+            // tx2 can't leave the monitor of tx1 before tx4 locks "k", so it
+            // starts to wait for tx4 and stays first in the queue
+            synchronized (tx[1]) {
+                tx[1].commit();
+                m4.put("k", "4");
+            }
+            waitForBlocker(tx[2], 4);
+            // tx4 -> tx3 -> tx2 -> tx4
+            long start = System.nanoTime();
+            try {
+                m4.put("l", "4");
+                fail();
+            } catch (MVStoreException e) {
+                checkErrorCode(DataUtils.ERROR_TRANSACTIONS_DEADLOCK, e);
+            }
+            assertTrue(System.nanoTime() - start < 5_000_000_000L);
+            tx[4].rollback();
+            task2.get();
+            tx[2].commit();
+            task3.get();
+            tx[3].commit();
+            Transaction t = ts.begin();
+            TransactionMap<String, String> m = t.openMap("test");
+            assertEquals("3", m.get("k"));
+            assertEquals("3", m.get("l"));
+            t.commit();
+        }
+    }
+
+    private static void waitForBlocker(Transaction tx, int blockerId) throws InterruptedException {
+        while (tx.getBlockerId() != blockerId) {
+            Thread.sleep(1);
+        }
+    }
 }
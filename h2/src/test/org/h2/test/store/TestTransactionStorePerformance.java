@@ -0,0 +1,100 @@
+/*
+ * Copyright 2004-2025 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (https://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.test.store;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.h2.mvstore.MVStore;
+import org.h2.mvstore.tx.Transaction;
+import org.h2.mvstore.tx.TransactionMap;
+import org.h2.mvstore.tx.TransactionStore;
+import org.h2.test.TestBase;
+import org.h2.util.Task;
+
+/**
+ * Measures the throughput of many short transactions that are started and
+ * committed concurrently, while other threads read with snapshots.
+ */
+public class TestTransactionStorePerformance extends TestBase {
+
+    /**
+     * Run just this test.
+     *
+     * @param a ignored
+     */
+    public static void main(String... a) throws Exception {
+        TestBase test = TestBase.createCaller().init();
+        test.test();
+    }
+
+    @Override
+    public void test() throws Exception {
+        testShortTransactions(1, 0);
+        testShortTransactions(4, 1);
+        testShortTransactions(16, 4);
+        testShortTransactions(64, 4);
+        testShortTransactions(256, 8);
+    }
+
+    private void testShortTransactions(int writerCount, int readerCount) throws Exception {
+        try (MVStore s = MVStore.open(null)) {
+            TransactionStore ts = new TransactionStore(s);
+            ts.init();
+            Transaction init = ts.begin();
+            init.openMap("test");
+            init.commit();
+            AtomicLong commits = new AtomicLong(), reads = new AtomicLong();
+            Task[] tasks = new Task[writerCount + readerCount];
+            for (int i = 0; i < writerCount; i++) {
+                final int base = i << 24;
+                tasks[i] = new Task() {
+
+                    @Override
+                    public void call() {
+                        for (int key = base; !stop; key++) {
+                            Transaction tx = ts.begin();
+                            TransactionMap<Integer, Integer> map = tx.openMap("test");
+                            map.put(key, key);
+                            tx.commit();
+                            commits.incrementAndGet();
+                        }
+                    }
+
+                };
+            }
+            for (int i = writerCount; i < tasks.length; i++) {
+                tasks[i] = new Task() {
+
+                    @Override
+                    public void call() {
+                        while (!stop) {
+                            Transaction tx = ts.begin();
+                            TransactionMap<Integer, Integer> map = tx.openMap("test");
+                            map.get(0);
+                            map.sizeAsLong();
+                            tx.commit();
+                            reads.incrementAndGet();
+                        }
+                    }
+
+                };
+            }
+            for (Task t : tasks) {
+                t.execute();
+            }
+            Thread.sleep(2000);
+            for (Task t : tasks) {
+                t.get();
+            }
+            Transaction tx = ts.begin();
+            assertEquals(commits.get(), tx.openMap("test").sizeAsLong());
+            tx.commit();
+            System.out.println(commits.get() / 2000 + " commits/ms, " + reads.get() / 2000 + " reads/ms; "
+                    + writerCount + " writer(s), " + readerCount + " reader(s)");
+        }
+    }
+
+}
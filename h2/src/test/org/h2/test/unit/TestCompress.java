@@ -21,6 +21,8 @@
 
 import org.h2.compress.CompressLZF;
 import org.h2.compress.Compressor;
+import org.h2.compress.FrameInputStream;
+import org.h2.compress.FrameOutputStream;
 import org.h2.engine.Constants;
 import org.h2.store.fs.FileUtils;
 import org.h2.test.TestBase;
@@ -276,6 +278,24 @@ private void testByteArray(int len) throws IOException {
                 IOUtils.copy(in, out);
                 assertEquals(b, out.toByteArray());
             }
+            for (int a : new int[] { Compressor.LZF, Compressor.DEFLATE }) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                OutputStream out2 = new FrameOutputStream(out, CompressTool.getCompressor(a), 256);
+                for (int pos = 0; pos < len;) {
+                    int l = Math.min(len - pos, 1 + r.nextInt(100_000));
+                    out2.write(b, pos, l);
+                    pos += l;
+                    if (r.nextBoolean()) {
+                        out2.flush();
+                    }
+                }
+                out2.close();
+                InputStream in = new FrameInputStream(new ByteArrayInputStream(out.toByteArray()),
+                        CompressTool.getCompressor(a));
+                out.reset();
+                IOUtils.copy(in, out);
+                assertEquals(b, out.toByteArray());
+            }
         }
     }
 
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2004-2025 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (https://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.test.unit;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+import org.h2.test.TestBase;
+import org.h2.tools.Server;
+
+/**
+ * Compares loading rows over the PostgreSQL protocol with COPY FROM STDIN and
+ * with batched INSERT statements, and measures COPY TO STDOUT. The PostgreSQL
+ * JDBC driver is required.
+ */
+public class TestPgCopyPerformance extends TestBase {
+
+    private static final int ROWS = 200_000;
+
+    /**
+     * Run just this test.
+     *
+     * @param a ignored
+     */
+    public static void main(String... a) throws Exception {
+        TestBase test = TestBase.createCaller().init();
+        test.test();
+    }
+
+    @Override
+    public void test() throws Exception {
+        try {
+            Class.forName("org.postgresql.Driver");
+        } catch (ClassNotFoundException e) {
+            println("PostgreSQL JDBC driver is not available");
+            return;
+        }
+        Server server = Server.createPgServer("-ifNotExists", "-pgPort", "5536", "-key", "pgcopy", "mem:pgcopy")
+                .start();
+        try (Connection conn = DriverManager.getConnection("jdbc:postgresql://localhost:5536/pgcopy", "sa", "sa");
+                Statement stat = conn.createStatement()) {
+            for (int i = 0; i < 3; i++) {
+                testBatchInsert(conn, stat);
+                testCopyIn(conn, stat, "COPY test FROM STDIN", '\t');
+                testCopyIn(conn, stat, "COPY test FROM STDIN (FORMAT csv)", ',');
+                testCopyOut(conn);
+            }
+        } finally {
+            server.stop();
+        }
+    }
+
+    private void testBatchInsert(Connection conn, Statement stat) throws Exception {
+        stat.execute("DROP TABLE IF EXISTS test");
+        stat.execute("CREATE TABLE test(id INT PRIMARY KEY, name VARCHAR, amount DOUBLE PRECISION)");
+        long time = System.nanoTime();
+        conn.setAutoCommit(false);
+        try (PreparedStatement prep = conn.prepareStatement("INSERT INTO test VALUES(?, ?, ?)")) {
+            for (int i = 0; i < ROWS; i++) {
+                prep.setInt(1, i);
+                prep.setString(2, "name " + i);
+                prep.setDouble(3, i * 0.5);
+                prep.addBatch();
+                if (i % 1_000 == 999) {
+                    prep.executeBatch();
+                }
+            }
+            prep.executeBatch();
+        }
+        conn.commit();
+        conn.setAutoCommit(true);
+        print("batched INSERT", time);
+        checkCount(stat);
+    }
+
+    private void testCopyIn(Connection conn, Statement stat, String sql, char delimiter) throws Exception {
+        stat.execute("DROP TABLE IF EXISTS test");
+        stat.execute("CREATE TABLE test(id INT PRIMARY KEY, name VARCHAR, amount DOUBLE PRECISION)");
+        StringBuilder buff = new StringBuilder();
+        for (int i = 0; i < ROWS; i++) {
+            buff.append(i).append(delimiter).append("name ").append(i).append(delimiter).append(i * 0.5)
+                    .append('\n');
+        }
+        String data = buff.toString();
+        long time = System.nanoTime();
+        Object copyManager = getCopyManager(conn);
+        long count = (Long) copyManager.getClass().getMethod("copyIn", String.class, Reader.class)
+                .invoke(copyManager, sql, new StringReader(data));
+        print(sql, time);
+        assertEquals(ROWS, count);
+        checkCount(stat);
+    }
+
+    private void testCopyOut(Connection conn) throws Exception {
+        long time = System.nanoTime();
+        Object copyManager = getCopyManager(conn);
+        StringWriter writer = new StringWriter();
+        long count = (Long) copyManager.getClass().getMethod("copyOut", String.class, Writer.class)
+                .invoke(copyManager, "COPY test TO STDOUT", writer);
+        print("COPY TO STDOUT", time);
+        assertEquals(ROWS, count);
+    }
+
+    private void checkCount(Statement stat) throws Exception {
+        try (ResultSet rs = stat.executeQuery("SELECT COUNT(*) FROM test")) {
+            rs.next();
+            assertEquals(ROWS, rs.getInt(1));
+        }
+    }
+
+    private void print(String name, long start) {
+        long ms = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        println(name + ": " + ms + " ms, " + ROWS * 1_000L / ms + " rows/s");
+    }
+
+    private static Object getCopyManager(Connection conn) throws Exception {
+        Object pgConnection = conn.unwrap(Class.forName("org.postgresql.PGConnection"));
+        return pgConnection.getClass().getMethod("getCopyAPI").invoke(pgConnection);
+    }
+
+}
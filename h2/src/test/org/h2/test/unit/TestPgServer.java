@@ -5,8 +5,18 @@
  */
 package org.h2.test.unit;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
 import java.math.BigDecimal;
+import java.sql.BatchUpdateException;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.Date;
@@ -71,6 +81,8 @@ public void test() throws Exception {
         testPrepareWithUnspecifiedType();
         testOtherPgClients();
         testArray();
+        testCopy();
+        testPortals();
     }
 
     private boolean getPgJdbcDriver() {
@@ -910,4 +922,221 @@ private void testArray() throws Exception {
         }
     }
 
+    private void testCopy() throws Exception {
+        if (!getPgJdbcDriver()) {
+            return;
+        }
+
+        Server server = createPgServer(
+                "-ifNotExists", "-pgPort", "5535", "-pgDaemon", "-key", "pgserver", "mem:pgserver");
+        try (
+                Connection conn = DriverManager.getConnection(
+                        "jdbc:postgresql://localhost:5535/pgserver", "sa", "sa");
+                Statement stat = conn.createStatement();
+        ) {
+            stat.execute("CREATE TABLE test (id int primary key, name varchar, data bytea, d date)");
+            assertEquals(3, copyIn(conn, "COPY test FROM STDIN",
+                    "1\tHello\t\\\\x0102\t2020-01-31\n"
+                    + "2\ta\\tb\\\\c\t\\N\t\\N\n"
+                    + "3\t\t\\\\x\t\\N\n"));
+            assertEquals(2, copyIn(conn, "COPY test (id, name) FROM STDIN WITH (FORMAT csv, HEADER)",
+                    "id,name\n10,\"x,\"\"y\"\"\nz\"\n11,\n"));
+            try (ResultSet rs = stat.executeQuery("SELECT * FROM test ORDER BY id")) {
+                assertTrue(rs.next());
+                assertEquals("Hello", rs.getString(2));
+                assertEquals(new byte[] { 1, 2 }, rs.getBytes(3));
+                assertEquals("2020-01-31", rs.getString(4));
+                assertTrue(rs.next());
+                assertEquals("a\tb\\c", rs.getString(2));
+                assertNull(rs.getBytes(3));
+                assertTrue(rs.next());
+                assertEquals("", rs.getString(2));
+                assertEquals(new byte[0], rs.getBytes(3));
+                assertTrue(rs.next());
+                assertEquals("x,\"y\"\nz", rs.getString(2));
+                assertTrue(rs.next());
+                assertNull(rs.getString(2));
+                assertFalse(rs.next());
+            }
+            assertEquals("1\tHello\t\\\\001\\\\002\t2020-01-31\n"
+                    + "2\ta\\tb\\\\c\t\\N\t\\N\n"
+                    + "3\t\t\t\\N\n"
+                    + "10\tx,\"y\"\\nz\t\\N\t\\N\n"
+                    + "11\t\\N\t\\N\t\\N\n",
+                    copyOut(conn, "COPY test TO STDOUT"));
+            assertEquals("id,name\n2,a\tb\\c\n3,\"\"\n10,\"x,\"\"y\"\"\nz\"\n11,\n",
+                    copyOut(conn, "COPY (SELECT id, name FROM test WHERE id > 1 ORDER BY id) TO STDOUT CSV HEADER"));
+            // the whole COPY is rolled back on failure
+            try {
+                copyIn(conn, "COPY test (id) FROM STDIN", "20\n21\n1\n");
+                fail();
+            } catch (SQLException e) {
+                assertEquals("23505", e.getSQLState());
+            }
+            try (ResultSet rs = stat.executeQuery("SELECT COUNT(*) FROM test WHERE id >= 20")) {
+                assertTrue(rs.next());
+                assertEquals(0, rs.getInt(1));
+            }
+            StringBuilder buff = new StringBuilder();
+            for (int i = 100; i < 5_000; i++) {
+                buff.append(i).append(",name ").append(i).append('\n');
+            }
+            assertEquals(4_900, copyIn(conn, "COPY test (id, name) FROM STDIN (FORMAT csv)", buff.toString()));
+            try (ResultSet rs = stat.executeQuery("SELECT COUNT(*), SUM(id) FROM test WHERE id >= 100")) {
+                assertTrue(rs.next());
+                assertEquals(4_900, rs.getInt(1));
+                assertEquals(12_492_550, rs.getInt(2));
+            }
+            // binary format round trip
+            stat.execute("CREATE TABLE test3 (id int primary key, name varchar, data bytea, d date)");
+            byte[] binary = copyOutBinary(conn, "COPY (SELECT * FROM test WHERE id < 100) TO STDOUT (FORMAT binary)");
+            assertEquals(5, copyIn(conn, "COPY test3 FROM STDIN (FORMAT binary)", binary));
+            try (ResultSet rs = stat.executeQuery("SELECT COUNT(*) FROM (SELECT * FROM test WHERE id < 100"
+                    + " EXCEPT SELECT * FROM test3) T")) {
+                assertTrue(rs.next());
+                assertEquals(0, rs.getInt(1));
+            }
+            assertEquals(binary, copyOutBinary(conn, "COPY test3 TO STDOUT BINARY"));
+            // custom delimiter, null string and quoting
+            assertEquals("2|a\\tb\\\\c|-\n3||-\n",
+                    copyOut(conn, "COPY (SELECT id, name, d FROM test3 WHERE id IN (2, 3) ORDER BY id) TO STDOUT"
+                            + " WITH (DELIMITER '|', NULL '-')"));
+            assertEquals("\"10\",\"x,\"\"y\"\"\nz\"\n\"11\",\n",
+                    copyOut(conn, "COPY (SELECT id, name FROM test3 WHERE id > 3 ORDER BY id) TO STDOUT"
+                            + " (FORMAT csv, FORCE_QUOTE *)"));
+            // types without a binary format can't be copied in binary format
+            stat.execute("CREATE TABLE test2 (id int, a int array, t time with time zone)");
+            try {
+                copyOut(conn, "COPY (SELECT a FROM test2) TO STDOUT (FORMAT binary)");
+                fail();
+            } catch (SQLException e) {
+                assertEquals("HYC00", e.getSQLState());
+            }
+            try {
+                copyIn(conn, "COPY test2 (id, t) FROM STDIN (FORMAT binary)", "");
+                fail();
+            } catch (SQLException e) {
+                assertEquals("HYC00", e.getSQLState());
+            }
+            try {
+                copyIn(conn, "COPY test FROM '/tmp/test.csv'", "");
+                fail();
+            } catch (SQLException e) {
+                assertEquals("HYC00", e.getSQLState());
+            }
+        } finally {
+            server.stop();
+        }
+    }
+
+    private void testPortals() throws Exception {
+        if (!getPgJdbcDriver()) {
+            return;
+        }
+
+        Server server = createPgServer(
+                "-ifNotExists", "-pgPort", "5535", "-pgDaemon", "-key", "pgserver", "mem:pgserver");
+        try (
+                Connection conn = DriverManager.getConnection(
+                        "jdbc:postgresql://localhost:5535/pgserver", "sa", "sa");
+                Statement stat = conn.createStatement();
+        ) {
+            stat.execute("CREATE TABLE test (id int primary key, name varchar)");
+            PreparedStatement prep = conn.prepareStatement("INSERT INTO test VALUES (?, ?)");
+            for (int i = 0; i < 1_000; i++) {
+                prep.setInt(1, i);
+                prep.setString(2, "name " + i);
+                prep.addBatch();
+            }
+            assertEquals(1_000, prep.executeBatch().length);
+            // the statements after the failed one are not executed
+            prep.setInt(1, 1_000);
+            prep.setString(2, "x");
+            prep.addBatch();
+            prep.setInt(1, 1);
+            prep.addBatch();
+            prep.setInt(1, 1_001);
+            prep.addBatch();
+            try {
+                prep.executeBatch();
+                fail();
+            } catch (BatchUpdateException e) {
+                // expected
+            }
+            try (ResultSet rs = stat.executeQuery("SELECT COUNT(*) FROM test WHERE id = 1001")) {
+                assertTrue(rs.next());
+                assertEquals(0, rs.getInt(1));
+            }
+
+            // with a fetch size, the rows are fetched from suspended portals
+            conn.setAutoCommit(false);
+            Statement stat2 = conn.createStatement();
+            stat.setFetchSize(10);
+            stat2.setFetchSize(7);
+            try (ResultSet rs = stat.executeQuery("SELECT id FROM test WHERE id < 1000 ORDER BY id");
+                    ResultSet rs2 = stat2.executeQuery("SELECT name FROM test WHERE id < 1000 ORDER BY id")) {
+                for (int i = 0; i < 1_000; i++) {
+                    assertTrue(rs.next());
+                    assertEquals(i, rs.getInt(1));
+                    assertTrue(rs2.next());
+                    assertEquals("name " + i, rs2.getString(1));
+                }
+                assertFalse(rs.next());
+                assertFalse(rs2.next());
+            }
+            conn.commit();
+        } finally {
+            server.stop();
+        }
+    }
+
+    private static long copyIn(Connection conn, String sql, String data) throws Exception {
+        Object copyManager = getCopyManager(conn);
+        try {
+            return (Long) copyManager.getClass().getMethod("copyIn", String.class, Reader.class)
+                    .invoke(copyManager, sql, new StringReader(data));
+        } catch (InvocationTargetException e) {
+            throw (Exception) e.getCause();
+        }
+    }
+
+    private static long copyIn(Connection conn, String sql, byte[] data) throws Exception {
+        Object copyManager = getCopyManager(conn);
+        try {
+            return (Long) copyManager.getClass().getMethod("copyIn", String.class, InputStream.class)
+                    .invoke(copyManager, sql, new ByteArrayInputStream(data));
+        } catch (InvocationTargetException e) {
+            throw (Exception) e.getCause();
+        }
+    }
+
+    private static byte[] copyOutBinary(Connection conn, String sql) throws Exception {
+        Object copyManager = getCopyManager(conn);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            copyManager.getClass().getMethod("copyOut", String.class, OutputStream.class)
+                    .invoke(copyManager, sql, out);
+        } catch (InvocationTargetException e) {
+            throw (Exception) e.getCause();
+        }
+        return out.toByteArray();
+    }
+
+    private static String copyOut(Connection conn, String sql) throws Exception {
+        Object copyManager = getCopyManager(conn);
+        StringWriter writer = new StringWriter();
+        try {
+            copyManager.getClass().getMethod("copyOut", String.class, Writer.class)
+                    .invoke(copyManager, sql, writer);
+        } catch (InvocationTargetException e) {
+            throw (Exception) e.getCause();
+        }
+        return writer.toString();
+    }
+
+    private static Object getCopyManager(Connection conn) throws Exception {
+        Object pgConnection = conn.unwrap(Class.forName("org.postgresql.PGConnection"));
+        return pgConnection.getClass().getMethod("getCopyAPI").invoke(pgConnection);
+    }
+
 }
@@ -40,6 +40,7 @@
 import java.util.UUID;
 import org.h2.api.ErrorCode;
 import org.h2.engine.SysProperties;
+import org.h2.server.TcpServer;
 import org.h2.store.FileLister;
 import org.h2.store.fs.FileUtils;
 import org.h2.test.TestBase;
@@ -108,6 +109,8 @@ public void test() throws Exception {
         }
         testChangeFileEncryptionWithWrongPassword();
         testServer();
+        testTcpServerSelectors();
+        testNetworkCompression();
         testScriptRunscript();
         testBackupRestore();
         testRecover();
@@ -1141,6 +1144,117 @@ private void testServer() throws SQLException {
         }
     }
 
+    private void testTcpServerSelectors() throws Exception {
+        deleteDb("testSelectors");
+        assertThrows(ErrorCode.FEATURE_NOT_SUPPORTED_1,
+                () -> Server.createTcpServer("-tcpSelectors", "1", "-tcpSSL").start());
+        Server server = Server.createTcpServer("-ifNotExists", "-baseDir", getBaseDir(),
+                "-tcpSelectors", "2", "-tcpWorkers", "2").start();
+        Connection[] connections = new Connection[50];
+        try {
+            String url = "jdbc:h2:tcp://localhost:" + server.getPort() + "/testSelectors";
+            for (int i = 0; i < connections.length; i++) {
+                connections[i] = getConnection(url, "sa", "");
+            }
+            Statement stat = connections[0].createStatement();
+            stat.execute("CREATE TABLE TEST(ID INT PRIMARY KEY, DATA VARCHAR)");
+            stat.execute("INSERT INTO TEST SELECT X, SPACE(100) FROM SYSTEM_RANGE(1, 1000)");
+            for (Connection conn : connections) {
+                PreparedStatement prep = conn.prepareStatement("SELECT ID, DATA FROM TEST WHERE ID > ? ORDER BY ID");
+                prep.setFetchSize(100);
+                prep.setInt(1, 0);
+                try (ResultSet rs = prep.executeQuery()) {
+                    int count = 0;
+                    while (rs.next()) {
+                        assertEquals(++count, rs.getInt(1));
+                        assertEquals(100, rs.getString(2).length());
+                    }
+                    assertEquals(1000, count);
+                }
+            }
+            // connections that wait for a lock do not block the other ones,
+            // even if there are more of them than idle workers
+            Connection c1 = connections[1];
+            c1.setAutoCommit(false);
+            c1.createStatement().executeUpdate("UPDATE TEST SET DATA = 'x' WHERE ID = 1");
+            Task[] tasks = new Task[4];
+            for (int i = 0; i < tasks.length; i++) {
+                Connection c = connections[2 + i];
+                tasks[i] = new Task() {
+                    @Override
+                    public void call() throws Exception {
+                        c.createStatement().executeUpdate("UPDATE TEST SET DATA = DATA || 'y' WHERE ID = 1");
+                    }
+                }.execute();
+            }
+            Thread.sleep(100);
+            try (ResultSet rs = connections[10].createStatement().executeQuery("SELECT COUNT(*) FROM TEST")) {
+                rs.next();
+                assertEquals(1000, rs.getInt(1));
+            }
+            long time = System.nanoTime();
+            c1.commit();
+            assertTrue(System.nanoTime() - time < 1_000_000_000L);
+            for (Task task : tasks) {
+                task.get();
+            }
+            try (ResultSet rs = stat.executeQuery("SELECT DATA FROM TEST WHERE ID = 1")) {
+                rs.next();
+                assertEquals("xyyyy", rs.getString(1));
+            }
+        } finally {
+            for (Connection conn : connections) {
+                JdbcUtils.closeSilently(conn);
+            }
+            server.stop();
+        }
+        deleteDb("testSelectors");
+    }
+
+    private void testNetworkCompression() throws Exception {
+        deleteDb("testCompression");
+        Server server = Server.createTcpServer("-ifNotExists", "-baseDir", getBaseDir()).start();
+        TcpServer tcpServer = (TcpServer) server.getService();
+        try {
+            String url = "jdbc:h2:tcp://localhost:" + server.getPort() + "/testCompression";
+            try (Connection conn = getConnection(url, "sa", "")) {
+                Statement stat = conn.createStatement();
+                stat.execute("CREATE TABLE TEST(ID INT PRIMARY KEY, DATA VARCHAR, DOC CLOB)");
+                stat.execute("INSERT INTO TEST SELECT X, 'Hello World ' || MOD(X, 10), "
+                        + "CASE WHEN X = 1 THEN REPEAT('Hello World ', 100000) END FROM SYSTEM_RANGE(1, 10000)");
+            }
+            assertThrows(ErrorCode.UNSUPPORTED_COMPRESSION_ALGORITHM_1,
+                    () -> getConnection(url + ";NETWORK_COMPRESSION=XYZ", "sa", ""));
+            long uncompressed = 0;
+            for (String compression : new String[] { "NO", "LZF", "DEFLATE" }) {
+                long sent = tcpServer.getBytesSent();
+                try (Connection conn = getConnection(url + ";NETWORK_COMPRESSION=" + compression, "sa", "")) {
+                    Statement stat = conn.createStatement();
+                    try (ResultSet rs = stat.executeQuery("SELECT ID, DATA FROM TEST ORDER BY ID")) {
+                        for (int i = 1; rs.next(); i++) {
+                            assertEquals(i, rs.getInt(1));
+                            assertEquals("Hello World " + i % 10, rs.getString(2));
+                        }
+                    }
+                    try (ResultSet rs = stat.executeQuery("SELECT DOC FROM TEST WHERE ID = 1")) {
+                        rs.next();
+                        assertEquals(1_200_000, rs.getString(1).length());
+                    }
+                    stat.execute("UPDATE TEST SET DATA = 'x' WHERE ID = 1");
+                }
+                sent = tcpServer.getBytesSent() - sent;
+                if (uncompressed == 0) {
+                    uncompressed = sent;
+                } else {
+                    assertSmaller(sent * 3, uncompressed);
+                }
+            }
+        } finally {
+            server.stop();
+        }
+        deleteDb("testCompression");
+    }
+
     /**
      * A simple Clob implementation.
      */